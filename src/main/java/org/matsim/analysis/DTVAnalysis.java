@@ -11,8 +11,6 @@ import org.matsim.application.MATSimAppCommand;
 import org.matsim.application.options.InputOptions;
 import org.matsim.application.options.OutputOptions;
 import org.matsim.application.options.SampleOptions;
-import org.matsim.core.api.experimental.events.EventsManager;
-import org.matsim.core.events.EventsUtils;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.utils.io.IOUtils;
 import picocli.CommandLine;
@@ -63,13 +61,8 @@ public class DTVAnalysis implements MATSimAppCommand {
 
 		Network network = input.getNetwork();
 
-		//reading events file & create volumes
-		EventsManager eventsManager = EventsUtils.createEventsManager();
-		VolumesAnalyzer volume = new VolumesAnalyzer(3600, 86400, network, true);
-		eventsManager.addHandler(volume);
-		eventsManager.initProcessing();
-		EventsUtils.readEvents(eventsManager, input.getEventsPath());
-		eventsManager.finishProcessing();
+		// volumes are shared with the travel time comparison, if both run within the same events pass (see OpenBerlinScenario)
+		VolumesAnalyzer volume = EventsPass.get(input.getEventsPath(), input.getNetworkPath(), network, VolumesAnalyzer.class, DTVAnalysis::createVolumes);
 
 		Table sim = createSimDtvTable(dtv, network, volume);
 
@@ -104,6 +97,13 @@ public class DTVAnalysis implements MATSimAppCommand {
 		return 0;
 	}
 
+	/**
+	 * Create the handler for hourly volumes of this analysis.
+	 */
+	public static VolumesAnalyzer createVolumes(Network network) {
+		return new VolumesAnalyzer(3600, 86400, network, true);
+	}
+
 	private Table createSimDtvTable(Table dtv, Network network, VolumesAnalyzer volume) {
 
 		dtv.addColumns(
@@ -0,0 +1,176 @@
+package org.matsim.analysis;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.EventHandler;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reads an events file once and passes the events to the handlers of all registered analyses.
+ * A pass is opened by the caller that runs several analyses, which registers the handlers to share and closes the pass afterward:
+ * <pre>{@code
+ * try (EventsPass pass = EventsPass.open()) {
+ *     pass.register(VolumesAnalyzer.class, DTVAnalysis::createVolumes);
+ *     pass.register(TravelTimeCalculator.class, TravelTimeComparison::createTravelTimes);
+ *     // run analyses
+ * }
+ * }</pre>
+ * Without an open pass, or for handlers that are not registered, each analysis reads the events on its own.
+ * <p>
+ * Filled handlers are kept as long as the events and network files are unchanged, identified by path, modification time and size.
+ * Handlers are executed in parallel, each in its own thread.
+ */
+public final class EventsPass implements AutoCloseable {
+
+	private static final Logger log = LogManager.getLogger(EventsPass.class);
+
+	/**
+	 * Pass of the current run, null if none is open.
+	 */
+	private static EventsPass active;
+
+	/**
+	 * Factories of all handlers that are filled when an events file is read.
+	 */
+	private final Map<Class<? extends EventHandler>, Function<Network, ? extends EventHandler>> factories = new LinkedHashMap<>();
+
+	/**
+	 * Input of the filled handlers.
+	 */
+	private Key key;
+	private Map<Class<? extends EventHandler>, EventHandler> handlers = new LinkedHashMap<>();
+
+	private EventsPass() {
+	}
+
+	/**
+	 * Open a pass, which is used by all analyses until it is closed.
+	 *
+	 * @throws IllegalStateException if another pass is already open
+	 */
+	public static synchronized EventsPass open() {
+		if (active != null)
+			throw new IllegalStateException("Another events pass is already open");
+
+		active = new EventsPass();
+		return active;
+	}
+
+	/**
+	 * Return the handler of the given type, after all events of the file have been processed.
+	 * If a pass is open and the type was registered, the handler is shared with the other analyses of the pass.
+	 *
+	 * @param networkPath path of the network file, used to check whether shared handlers were created with the same network
+	 * @param factory     creates the handler if it is not shared
+	 */
+	public static <T extends EventHandler> T get(String eventsPath, String networkPath, Network network,
+												 Class<T> type, Function<Network, T> factory) {
+
+		EventsPass pass;
+		synchronized (EventsPass.class) {
+			pass = active;
+		}
+
+		if (pass == null || !pass.isRegistered(type))
+			return type.cast(read(eventsPath, network, Map.of(type, factory)).get(type));
+
+		return pass.getShared(eventsPath, networkPath, network, type);
+	}
+
+	/**
+	 * Register a handler that will be filled during the next read of an events file.
+	 */
+	public synchronized <T extends EventHandler> EventsPass register(Class<T> type, Function<Network, T> factory) {
+		factories.put(type, factory);
+		return this;
+	}
+
+	private synchronized boolean isRegistered(Class<? extends EventHandler> type) {
+		return factories.containsKey(type);
+	}
+
+	private synchronized <T extends EventHandler> T getShared(String eventsPath, String networkPath, Network network, Class<T> type) {
+
+		Key current = new Key(Source.of(eventsPath), Source.of(networkPath));
+
+		if (!current.equals(key)) {
+			// Release handlers of previous input before reading
+			key = null;
+			handlers = new LinkedHashMap<>();
+			handlers.putAll(read(eventsPath, network, factories));
+			key = current;
+		} else if (!handlers.containsKey(type)) {
+			log.warn("Handler {} was registered after the events were read, reading {} again", type.getSimpleName(), eventsPath);
+			handlers.putAll(read(eventsPath, network, Map.of(type, factories.get(type))));
+		}
+
+		return type.cast(handlers.get(type));
+	}
+
+	/**
+	 * Release the handlers, analyses will read the events on their own afterward.
+	 */
+	@Override
+	public void close() {
+		synchronized (EventsPass.class) {
+			if (active == this)
+				active = null;
+		}
+
+		synchronized (this) {
+			key = null;
+			handlers = new LinkedHashMap<>();
+		}
+	}
+
+	private static Map<Class<? extends EventHandler>, EventHandler> read(String eventsPath, Network network,
+																		  Map<Class<? extends EventHandler>, Function<Network, ? extends EventHandler>> factories) {
+
+		Map<Class<? extends EventHandler>, EventHandler> result = new LinkedHashMap<>();
+		factories.forEach((type, factory) -> result.put(type, factory.apply(network)));
+
+		Config config = ConfigUtils.createConfig();
+		if (result.size() > 1) {
+			config.eventsManager().setNumberOfThreads(result.size());
+			config.eventsManager().setOneThreadPerHandler(true);
+		}
+
+		log.info("Reading {} with handlers {}", eventsPath, result.keySet().stream().map(Class::getSimpleName).toList());
+
+		EventsManager manager = EventsUtils.createEventsManager(config);
+		result.values().forEach(manager::addHandler);
+
+		manager.initProcessing();
+		EventsUtils.readEvents(manager, eventsPath);
+		manager.finishProcessing();
+
+		return result;
+	}
+
+	/**
+	 * Identifies an input file by path, modification time and size.
+	 */
+	private record Source(String path, long modified, long size) {
+
+		static Source of(String path) {
+			// Both values are 0 if the file can not be accessed, e.g. for urls
+			File file = new File(path);
+			return new Source(path, file.lastModified(), file.length());
+		}
+	}
+
+	/**
+	 * Input files of a pass.
+	 */
+	private record Key(Source events, Source network) {
+	}
+}
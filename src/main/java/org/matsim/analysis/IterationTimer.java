@@ -0,0 +1,367 @@
+package org.matsim.analysis;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.Timespan;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.*;
+import org.matsim.core.controler.listener.*;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the wall-clock time of all controller phases in every iteration, the busy time of the QSim threads,
+ * the real-time ratio per simulated hour and garbage collection statistics.
+ * <p>
+ * Phases are delimited by the controller events, i.e. listeners of other modules are attributed to the phase
+ * in which their event is fired. All rows contain the number of global and QSim threads, so that files of runs with different
+ * settings can be concatenated for scaling analysis.
+ * <p>
+ * Each phase is also emitted as JFR event, which is recorded if a flight recording is running.
+ */
+final class IterationTimer implements IterationStartsListener, BeforeMobsimListener, ScoringListener, IterationEndsListener, ShutdownListener,
+	MobsimInitializedListener, MobsimAfterSimStepListener, MobsimBeforeCleanupListener {
+
+	private static final Logger log = LogManager.getLogger(IterationTimer.class);
+
+	/**
+	 * Prefix of the names of the QSim worker threads.
+	 */
+	private static final String QSIM_THREAD = "QNetsimEngine";
+
+	private static final String[] PHASES = {"replanning", "prepare_mobsim", "mobsim", "after_mobsim", "scoring", "analysis"};
+
+	private static final int REPLANNING = 0;
+	private static final int PREPARE_MOBSIM = 1;
+	private static final int MOBSIM = 2;
+	private static final int AFTER_MOBSIM = 3;
+	private static final int SCORING = 4;
+	private static final int ANALYSIS = 5;
+
+	private final Config config;
+	private final OutputDirectoryHierarchy outDir;
+	private final boolean jfr;
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private final Long2LongMap threadCpu = new Long2LongOpenHashMap();
+
+	private final long[] phases = new long[PHASES.length];
+	private final PhaseEvent[] events = new PhaseEvent[PHASES.length];
+
+	private int iteration = -1;
+	private int phase = -1;
+	private long phaseStart;
+
+	private long gcCount;
+	private long gcTime;
+
+	private double nextHour = Double.NaN;
+	private long hourStart;
+
+	private CSVPrinter iterations;
+	private CSVPrinter hours;
+	private CSVPrinter qsimThreads;
+	private Recording recording;
+
+	IterationTimer(Config config, OutputDirectoryHierarchy outDir, boolean jfr) {
+		this.config = config;
+		this.outDir = outDir;
+		this.jfr = jfr;
+	}
+
+	private static CSVPrinter createPrinter(Path path, String... header) throws IOException {
+		BufferedWriter writer = Files.newBufferedWriter(path);
+		return new CSVPrinter(writer, CSVFormat.DEFAULT.builder().setHeader(header).build());
+	}
+
+	@Override
+	public void notifyIterationStarts(IterationStartsEvent event) {
+
+		if (iterations == null)
+			open();
+		else
+			writeIteration();
+
+		iteration = event.getIteration();
+		long[] gc = gcStats();
+		gcCount = gc[0];
+		gcTime = gc[1];
+
+		begin(REPLANNING);
+	}
+
+	@Override
+	public void notifyBeforeMobsim(BeforeMobsimEvent event) {
+		begin(PREPARE_MOBSIM);
+	}
+
+	@Override
+	public void notifyMobsimInitialized(MobsimInitializedEvent e) {
+		begin(MOBSIM);
+
+		threadCpu.clear();
+		if (threads.isThreadCpuTimeSupported()) {
+			for (long id : threads.getAllThreadIds()) {
+				threadCpu.put(id, threads.getThreadCpuTime(id));
+			}
+		}
+
+		nextHour = Double.NaN;
+	}
+
+	@Override
+	public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
+
+		double time = e.getSimulationTime();
+		if (Double.isNaN(nextHour)) {
+			nextHour = (Math.floor(time / 3600) + 1) * 3600;
+			hourStart = System.nanoTime();
+		} else if (time >= nextHour) {
+			long now = System.nanoTime();
+			writeHour((int) (nextHour / 3600) - 1, now - hourStart);
+			nextHour += 3600;
+			hourStart = now;
+		}
+	}
+
+	@Override
+	public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+
+		long wall = System.nanoTime() - phaseStart;
+		begin(AFTER_MOBSIM);
+
+		if (!threads.isThreadCpuTimeSupported())
+			return;
+
+		String current = Thread.currentThread().getName();
+		try {
+			for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+				if (info == null || !(info.getThreadName().startsWith(QSIM_THREAD) || info.getThreadName().equals(current)))
+					continue;
+
+				long cpu = threads.getThreadCpuTime(info.getThreadId());
+				if (cpu < 0)
+					continue;
+
+				long busy = cpu - threadCpu.getOrDefault(info.getThreadId(), 0L);
+				qsimThreads.printRecord(iteration, config.qsim().getNumberOfThreads(), info.getThreadName(),
+					TimeUnit.NANOSECONDS.toMillis(busy), TimeUnit.NANOSECONDS.toMillis(Math.max(0, wall - busy)));
+			}
+			qsimThreads.flush();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	@Override
+	public void notifyScoring(ScoringEvent event) {
+		begin(SCORING);
+	}
+
+	@Override
+	public void notifyIterationEnds(IterationEndsEvent event) {
+		begin(ANALYSIS);
+	}
+
+	@Override
+	public void notifyShutdown(ShutdownEvent event) {
+
+		if (iterations == null)
+			return;
+
+		writeIteration();
+
+		try {
+			iterations.close();
+			hours.close();
+			qsimThreads.close();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+
+		if (recording != null) {
+			log.info("Writing flight recording to {}", recording.getDestination());
+			recording.stop();
+			recording.close();
+		}
+	}
+
+	/**
+	 * End the current phase and start the next one.
+	 */
+	private void begin(int next) {
+		end();
+		phase = next;
+		phaseStart = System.nanoTime();
+		events[phase] = new PhaseEvent(iteration, PHASES[phase]);
+		events[phase].begin();
+	}
+
+	private void end() {
+		if (phase >= 0) {
+			phases[phase] += System.nanoTime() - phaseStart;
+			events[phase].commit();
+			phase = -1;
+		}
+	}
+
+	private void open() {
+		try {
+			iterations = createPrinter(Path.of(outDir.getOutputFilename("timings.csv")),
+				"iteration", "global_threads", "qsim_threads", "replanning", "prepare_mobsim", "mobsim", "after_mobsim", "scoring", "analysis",
+				"total", "rtr", "gc_count", "gc_time", "heap_used", "heap_committed", "heap_max");
+			hours = createPrinter(Path.of(outDir.getOutputFilename("timings_qsim_hours.csv")),
+				"iteration", "qsim_threads", "hour", "runtime", "rtr");
+			qsimThreads = createPrinter(Path.of(outDir.getOutputFilename("timings_qsim_threads.csv")),
+				"iteration", "qsim_threads", "thread", "busy", "idle");
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+
+		if (jfr) {
+			try {
+				recording = new Recording(Configuration.getConfiguration("default"));
+				recording.enable(PhaseEvent.class);
+				recording.enable(SimHourEvent.class);
+				recording.setDestination(Path.of(outDir.getOutputFilename("timings.jfr")));
+				recording.start();
+			} catch (IOException | ParseException ex) {
+				log.warn("Could not start flight recording", ex);
+			}
+		}
+	}
+
+	/**
+	 * Write the timings of the last iteration and reset the counters.
+	 */
+	private void writeIteration() {
+
+		end();
+
+		long total = 0;
+		for (long t : phases) {
+			total += t;
+		}
+
+		long[] gc = gcStats();
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		double mobsim = phases[MOBSIM] / 1e9;
+
+		try {
+			iterations.printRecord(iteration, config.global().getNumberOfThreads(), config.qsim().getNumberOfThreads(),
+				toMillis(phases[REPLANNING]), toMillis(phases[PREPARE_MOBSIM]), toMillis(phases[MOBSIM]), toMillis(phases[AFTER_MOBSIM]),
+				toMillis(phases[SCORING]), toMillis(phases[ANALYSIS]), toMillis(total),
+				mobsim > 0 ? config.qsim().getEndTime().orElse(0) / mobsim : 0,
+				gc[0] - gcCount, gc[1] - gcTime, toMegaBytes(heap.getUsed()), toMegaBytes(heap.getCommitted()), toMegaBytes(heap.getMax()));
+			iterations.flush();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+
+		Arrays.fill(phases, 0);
+	}
+
+	private void writeHour(int hour, long runtime) {
+		new SimHourEvent(iteration, hour, runtime).commit();
+		try {
+			hours.printRecord(iteration, config.qsim().getNumberOfThreads(), hour, toMillis(runtime), 3600 / (runtime / 1e9));
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static long toMillis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+
+	private static long toMegaBytes(long bytes) {
+		return bytes / (1024 * 1024);
+	}
+
+	/**
+	 * Total number of collections and collection time over all collectors.
+	 */
+	private static long[] gcStats() {
+		long count = 0;
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return new long[]{count, time};
+	}
+
+	/**
+	 * Flight recorder event for one controller phase.
+	 */
+	@Name("org.matsim.ControllerPhase")
+	@Label("Controller phase")
+	@Category("MATSim")
+	static final class PhaseEvent extends Event {
+
+		@Label("Iteration")
+		private int iteration;
+
+		@Label("Phase")
+		private String phase;
+
+		PhaseEvent(int iteration, String phase) {
+			this.iteration = iteration;
+			this.phase = phase;
+		}
+	}
+
+	/**
+	 * Flight recorder event for the runtime of one simulated hour.
+	 */
+	@Name("org.matsim.SimHour")
+	@Label("Simulated hour")
+	@Category("MATSim")
+	static final class SimHourEvent extends Event {
+
+		@Label("Iteration")
+		private int iteration;
+
+		@Label("Hour")
+		private int hour;
+
+		@Label("Runtime")
+		@Timespan
+		private long runtime;
+
+		SimHourEvent(int iteration, int hour, long runtime) {
+			this.iteration = iteration;
+			this.hour = hour;
+			this.runtime = runtime;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package org.matsim.analysis;
 
 import com.google.inject.Inject;
+import com.google.inject.Provides;
 import com.google.inject.Singleton;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
@@ -24,9 +25,25 @@ import java.time.Instant;
 
 /**
  * This module measures the runtime of the QSim and writes it to a CSV file.
+ * Additionally, timings of all controller phases are written for every iteration, see {@link IterationTimer}.
  */
 public final class QsimTimingModule extends AbstractModule {
 
+	private final boolean jfr;
+
+	public QsimTimingModule() {
+		this(false);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param jfr whether to write a flight recording with the phase events into the output directory.
+	 */
+	public QsimTimingModule(boolean jfr) {
+		this.jfr = jfr;
+	}
+
 	@Override
 	public void install() {
 		// bind the timer, so that it can be injected into CheckForLastIteration
@@ -34,6 +51,15 @@ public final class QsimTimingModule extends AbstractModule {
 		bind(Timer.class).in(Singleton.class);
 		addMobsimListenerBinding().to(Timer.class);
 		addControlerListenerBinding().to(CheckForLastIteration.class);
+
+		addMobsimListenerBinding().to(IterationTimer.class);
+		addControlerListenerBinding().to(IterationTimer.class);
+	}
+
+	@Provides
+	@Singleton
+	IterationTimer provideIterationTimer(Config config, OutputDirectoryHierarchy outDir) {
+		return new IterationTimer(config, outDir, jfr);
 	}
 
 	private static final class CheckForLastIteration implements BeforeMobsimListener {
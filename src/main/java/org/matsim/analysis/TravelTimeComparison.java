@@ -1,22 +1,27 @@
 package org.matsim.analysis;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.api.core.v01.network.Node;
 import org.matsim.application.CommandSpec;
 import org.matsim.application.MATSimAppCommand;
 import org.matsim.application.options.InputOptions;
 import org.matsim.application.options.OutputOptions;
-import org.matsim.core.api.experimental.events.EventsManager;
-import org.matsim.core.events.EventsUtils;
-import org.matsim.core.router.DijkstraFactory;
 import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
-import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.speedy.LeastCostPathTree;
+import org.matsim.core.router.speedy.SpeedyGraph;
+import org.matsim.core.router.speedy.SpeedyGraphBuilder;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
 import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
 import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.misc.OptionalTime;
 import picocli.CommandLine;
 import tech.tablesaw.api.ColumnType;
 import tech.tablesaw.api.DoubleColumn;
@@ -25,9 +30,16 @@ import tech.tablesaw.api.Table;
 import tech.tablesaw.columns.Column;
 import tech.tablesaw.io.csv.CsvReadOptions;
 
+import javax.annotation.Nullable;
 import java.io.BufferedReader;
-import java.util.List;
-import java.util.Map;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static tech.tablesaw.aggregate.AggregateFunctions.mean;
 
@@ -43,6 +55,8 @@ import static tech.tablesaw.aggregate.AggregateFunctions.mean;
 )
 public class TravelTimeComparison implements MATSimAppCommand {
 
+	private static final Logger log = LogManager.getLogger(TravelTimeComparison.class);
+
 	@CommandLine.Mixin
 	private InputOptions input = InputOptions.ofCommand(TravelTimeComparison.class);
 
@@ -52,6 +66,12 @@ public class TravelTimeComparison implements MATSimAppCommand {
 	@CommandLine.Option(names = "--input-ref", description = "File with reference data", required = true)
 	private String apiFile;
 
+	@CommandLine.Option(names = "--free-flow-cache", description = "File to cache free flow speeds, which do not depend on the events")
+	private Path freeFlowCache;
+
+	@CommandLine.Option(names = "--threads", description = "Number of threads for routing")
+	private int threads = Runtime.getRuntime().availableProcessors();
+
 	public static void main(String[] args) {
 		new TravelTimeComparison().execute(args);
 	}
@@ -68,33 +88,44 @@ public class TravelTimeComparison implements MATSimAppCommand {
 		}
 
 		Network network = input.getNetwork();
-		TravelTime tt = collectTravelTimes(network).getLinkTravelTimes();
+		TravelTime tt = EventsPass.get(input.getEventsPath(), input.getNetworkPath(), network, TravelTimeCalculator.class,
+			TravelTimeComparison::createTravelTimes).getLinkTravelTimes();
 		TravelTime fs = new FreeSpeedTravelTime();
 
-		OnlyTimeDependentTravelDisutility util = new OnlyTimeDependentTravelDisutility(tt);
+		SpeedyGraph graph = SpeedyGraphBuilder.build(network);
 
-		LeastCostPathCalculator congestedRouter = new DijkstraFactory(false).createPathCalculator(network, util, tt);
-		LeastCostPathCalculator freeflowRouter = new DijkstraFactory(false).createPathCalculator(network, new OnlyTimeDependentTravelDisutility(fs), fs);
+		int[] from = new int[data.rowCount()];
+		int[] to = new int[data.rowCount()];
+		int[] hours = new int[data.rowCount()];
+		for (int i = 0; i < data.rowCount(); i++) {
+			Row row = data.row(i);
+			from[i] = network.getNodes().get(Id.createNodeId(row.getString("from_node"))).getId().index();
+			to[i] = network.getNodes().get(Id.createNodeId(row.getString("to_node"))).getId().index();
+			hours[i] = row.getInt("hour");
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		double[] simulated;
+		double[] freeFlow;
+		try {
+			simulated = computeSpeeds(graph, tt, from, to, hours, executor);
+
+			freeFlow = freeFlowCache != null ? readCache(network, data) : null;
+			if (freeFlow == null) {
+				// Free speed does not depend on the time of day
+				freeFlow = computeSpeeds(graph, fs, from, to, new int[from.length], executor);
+				if (freeFlowCache != null)
+					writeCache(network, data, freeFlow);
+			}
+		} finally {
+			executor.shutdown();
+		}
 
 		data.addColumns(
-			DoubleColumn.create("simulated", data.rowCount()),
-			DoubleColumn.create("free_flow", data.rowCount())
+			DoubleColumn.create("simulated", simulated),
+			DoubleColumn.create("free_flow", freeFlow)
 		);
 
-		for (Row row : data) {
-			LeastCostPathCalculator.Path congested = computePath(network, congestedRouter, row);
-			double dist = congested.links.stream().mapToDouble(Link::getLength).sum();
-			double speed = 3.6 * dist / congested.travelTime;
-
-			row.setDouble("simulated", speed);
-
-			LeastCostPathCalculator.Path freeflow = computePath(network, freeflowRouter, row);
-			dist = freeflow.links.stream().mapToDouble(Link::getLength).sum();
-			speed = 3.6 * dist / freeflow.travelTime;
-
-			row.setDouble("free_flow", speed);
-		}
-
 		data.addColumns(
 			data.doubleColumn("simulated").subtract(data.doubleColumn("mean")).setName("bias")
 		);
@@ -118,30 +149,122 @@ public class TravelTimeComparison implements MATSimAppCommand {
 		return 0;
 	}
 
-	private LeastCostPathCalculator.Path computePath(Network network, LeastCostPathCalculator router, Row row) {
-		Node fromNode = network.getNodes().get(Id.createNodeId(row.getString("from_node")));
-		Node toNode = network.getNodes().get(Id.createNodeId(row.getString("to_node")));
-
-		return router.calcLeastCostPath(fromNode, toNode, row.getInt("hour") * 3600, null, null);
-	}
-
-	private TravelTimeCalculator collectTravelTimes(Network network) {
+	/**
+	 * Create the handler for link travel times of this analysis.
+	 */
+	public static TravelTimeCalculator createTravelTimes(Network network) {
 		TravelTimeCalculator.Builder builder = new TravelTimeCalculator.Builder(network);
 		builder.setCalculateLinkTravelTimes(true);
 		builder.setMaxTime(86400);
 		builder.setTimeslice(900);
+		return builder.build();
+	}
+
+	/**
+	 * Compute average speeds for all routes. Routes with the same origin and hour share one least cost path tree,
+	 * which is only expanded until all destinations of the group are settled.
+	 */
+	private static double[] computeSpeeds(SpeedyGraph graph, TravelTime tt, int[] from, int[] to, int[] hours, ExecutorService executor) {
+
+		Map<Origin, IntList> groups = new LinkedHashMap<>();
+		for (int i = 0; i < from.length; i++) {
+			groups.computeIfAbsent(new Origin(from[i], hours[i]), k -> new IntArrayList()).add(i);
+		}
+
+		ThreadLocal<LeastCostPathTree> trees = ThreadLocal.withInitial(() -> new LeastCostPathTree(graph, tt, new OnlyTimeDependentTravelDisutility(tt)));
+		double[] speeds = new double[from.length];
+
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (Map.Entry<Origin, IntList> e : groups.entrySet()) {
+			futures.add(CompletableFuture.runAsync(() -> {
 
-		TravelTimeCalculator travelTimes = builder.build();
+				LeastCostPathTree tree = trees.get();
+				double departure = e.getKey().hour * 3600;
 
-		EventsManager manager = EventsUtils.createEventsManager();
+				IntSet targets = new IntOpenHashSet();
+				for (int i : e.getValue()) {
+					targets.add(to[i]);
+				}
+
+				tree.calculate(e.getKey().node, departure, null, null,
+					(node, arrival, cost, distance, departureTime) -> targets.remove(node) && targets.isEmpty());
+
+				for (int i : e.getValue()) {
+					OptionalTime arrival = tree.getTime(to[i]);
+					speeds[i] = arrival.isDefined() ? 3.6 * tree.getDistance(to[i]) / (arrival.seconds() - departure) : Double.NaN;
+				}
+			}, executor));
+		}
 
-		manager.addHandler(travelTimes);
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
 
-		manager.initProcessing();
-		EventsUtils.readEvents(manager, input.getEventsPath());
-		manager.finishProcessing();
+		return speeds;
+	}
+
+	/**
+	 * Read cached free flow speeds.
+	 *
+	 * @return null if the cache does not exist or does not match the network and reference data.
+	 */
+	@Nullable
+	private double[] readCache(Network network, Table data) throws IOException {
+
+		if (!Files.exists(freeFlowCache))
+			return null;
+
+		List<String> lines;
+		try (BufferedReader reader = IOUtils.getBufferedReader(freeFlowCache.toString())) {
+			lines = reader.lines().toList();
+		}
+
+		if (lines.size() != data.rowCount() + 1 || !lines.get(0).equals(cacheKey(network, data))) {
+			log.info("Free flow cache {} does not match the input, speeds will be recomputed", freeFlowCache);
+			return null;
+		}
+
+		log.info("Using cached free flow speeds from {}", freeFlowCache);
+
+		double[] speeds = new double[data.rowCount()];
+		for (int i = 0; i < speeds.length; i++) {
+			speeds[i] = Double.parseDouble(lines.get(i + 1));
+		}
+
+		return speeds;
+	}
+
+	private void writeCache(Network network, Table data, double[] speeds) throws IOException {
+		try (BufferedWriter writer = IOUtils.getBufferedWriter(freeFlowCache.toString())) {
+			writer.write(cacheKey(network, data));
+			writer.newLine();
+			for (double speed : speeds) {
+				writer.write(Double.toString(speed));
+				writer.newLine();
+			}
+		}
+	}
+
+	/**
+	 * Key to identify the network and the routes of the reference data.
+	 */
+	private static String cacheKey(Network network, Table data) {
+
+		double length = 0;
+		double freespeed = 0;
+		for (Link link : network.getLinks().values()) {
+			length += link.getLength();
+			freespeed += link.getFreespeed();
+		}
+
+		int routes = 1;
+		for (Row row : data) {
+			routes = 31 * routes + Objects.hash(row.getString("from_node"), row.getString("to_node"));
+		}
+
+		return "# links=%d nodes=%d length=%.3f freespeed=%.3f routes=%d".formatted(
+			network.getLinks().size(), network.getNodes().size(), length, freespeed, routes);
+	}
 
-		return travelTimes;
+	private record Origin(int node, int hour) {
 	}
 
 }
@@ -5,9 +5,9 @@ import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.application.MATSimAppCommand;
-import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.ParallelPersonAlgorithmUtils;
 import org.matsim.core.population.algorithms.PersonAlgorithm;
+import org.matsim.prepare.population.PopulationSnapshot;
 import picocli.CommandLine;
 
 import java.nio.file.Path;
@@ -24,11 +24,11 @@ public class CleanAttributes implements MATSimAppCommand, PersonAlgorithm {
 	@Override
 	public Integer call() throws Exception {
 
-		Population population = PopulationUtils.readPopulation(input.toString());
+		Population population = PopulationSnapshot.readPopulation(input.toString());
 
 		ParallelPersonAlgorithmUtils.run(population, 8, this);
 
-		PopulationUtils.writePopulation(population, output.toString());
+		PopulationSnapshot.writePopulation(population, output.toString());
 
 		return 0;
 	}
@@ -18,7 +18,6 @@ import org.matsim.application.options.CrsOptions;
 import org.matsim.application.options.ShpOptions;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
-import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.ParallelPersonAlgorithmUtils;
 import org.matsim.core.population.algorithms.PersonAlgorithm;
 import org.matsim.core.router.TripStructureUtils;
@@ -32,6 +31,7 @@ import org.matsim.core.utils.geometry.geotools.MGC;
 import org.matsim.facilities.ActivityFacilities;
 import org.matsim.facilities.FacilitiesUtils;
 import org.matsim.facilities.MatsimFacilitiesReader;
+import org.matsim.prepare.population.PopulationSnapshot;
 import org.matsim.run.OpenBerlinScenario;
 import picocli.CommandLine;
 
@@ -115,7 +115,7 @@ public class FilterRelevantAgents implements MATSimAppCommand, PersonAlgorithm {
 		ctxs = ThreadLocal.withInitial(() -> this.createRouter(network));
 		toRemove = ConcurrentHashMap.newKeySet();
 
-		Population population = PopulationUtils.readPopulation(input.toString());
+		Population population = PopulationSnapshot.readPopulation(input.toString());
 
 		ParallelPersonAlgorithmUtils.run(population, 8, this);
 
@@ -123,7 +123,7 @@ public class FilterRelevantAgents implements MATSimAppCommand, PersonAlgorithm {
 
 		toRemove.forEach(population::removePerson);
 
-		PopulationUtils.writePopulation(population, output.toString());
+		PopulationSnapshot.writePopulation(population, output.toString());
 
 		log.info("Written {} agents to output", population.getPersons().size());
 
@@ -2,20 +2,24 @@ package org.matsim.prepare;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
-import org.matsim.api.core.v01.population.Population;
 import org.matsim.application.MATSimAppCommand;
-import org.matsim.core.population.PopulationUtils;
+import org.matsim.prepare.population.StreamingPopulation;
 import picocli.CommandLine;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 @CommandLine.Command(
 		name = "merge-plans",
-		description = "Merge selected plans of the same person into one population."
+		description = "Merge selected plans of the same person into one population. Inputs are streamed and should have a similar order of persons."
 )
 public class MergePlans implements MATSimAppCommand {
 
@@ -27,6 +31,10 @@ public class MergePlans implements MATSimAppCommand {
 	@CommandLine.Option(names = "--output", description = "Path to output population", required = true)
 	private Path output;
 
+	@CommandLine.Option(names = "--read-ahead", description = "Maximum number of persons per input that are held in memory, " +
+		"if the order differs from the first input", defaultValue = "100000")
+	private int readAhead;
+
 	public static void main(String[] args) {
 		new MergePlans().execute(args);
 	}
@@ -34,42 +42,116 @@ public class MergePlans implements MATSimAppCommand {
 	@Override
 	public Integer call() throws Exception {
 
-		Population population = PopulationUtils.readPopulation(inputs.get(0).toString());
-
-		for (Person person : population.getPersons().values()) {
-			Plan selected = person.getSelectedPlan();
+		List<StreamingPopulation.Reader> readers = inputs.stream().map(p -> StreamingPopulation.openReader(p.toString())).toList();
 
-			List<? extends Plan> toRemove = person.getPlans().stream()
-					.filter(plan -> !Objects.equals(plan, selected))
-					.toList();
+		StreamingPopulation.Reader first = readers.get(0);
+		first.hasNext();
 
-			// Need intermediate list to avoid concurrent modification
-			toRemove.forEach(person::removePlan);
+		// Persons of the other inputs are looked up by id, following the order of the first input
+		List<Input> others = new ArrayList<>();
+		for (int i = 1; i < readers.size(); i++) {
+			others.add(new Input(readers.get(i), inputs.get(i), readAhead));
 		}
 
-		for (int i = 1; i < inputs.size(); i++) {
+		int n = 0;
+		try (StreamingPopulation.Writer writer = StreamingPopulation.openWriter(output.toString(), first.getAttributes())) {
+			while (first.hasNext()) {
+				Person person = first.next();
+				Plan selected = person.getSelectedPlan();
 
-			String filename = inputs.get(i).toString();
-			log.info("Reading {}", filename);
+				List<? extends Plan> toRemove = person.getPlans().stream()
+						.filter(plan -> !Objects.equals(plan, selected))
+						.toList();
 
-			Population pop = PopulationUtils.readPopulation(filename);
+				// Need intermediate list to avoid concurrent modification
+				toRemove.forEach(person::removePlan);
 
-			for (Person p : pop.getPersons().values()) {
+				for (Input other : others) {
+					Plan plan = other.find(person.getId(), n);
+					if (plan == null) {
+						log.warn("Person {} not present in all populations.", person.getId());
+						continue;
+					}
 
-				Person destPerson = population.getPersons().get(p.getId());
-				if (destPerson == null) {
-					log.warn("Person {} not present in all populations.", p.getId());
-					continue;
+					person.addPlan(plan);
 				}
 
-				destPerson.addPlan(p.getSelectedPlan());
+				writer.write(person);
+				n++;
 			}
+		} finally {
+			readers.forEach(StreamingPopulation.Reader::close);
 		}
 
-		PopulationUtils.writePopulation(population, output.toString());
+		for (Input other : others) {
+			int ignored = other.ignored + other.pending.size();
+			if (ignored > 0)
+				log.warn("Ignored {} persons of {}, which are not present in the first population or too far out of order.", ignored, other.path);
+		}
+
+		log.info("Merged plans of {} persons", n);
 
 		return 0;
 	}
-}
 
+	/**
+	 * Selected plans of one of the other inputs, which have been read ahead.
+	 */
+	private static final class Input {
+
+		private final StreamingPopulation.Reader reader;
+		private final Path path;
+		private final int limit;
+
+		/**
+		 * Persons that have been read ahead, in the order they were read.
+		 */
+		private final Map<Id<Person>, Pending> pending = new LinkedHashMap<>();
+		private int ignored;
+
+		private Input(StreamingPopulation.Reader reader, Path path, int limit) {
+			this.reader = reader;
+			this.path = path;
+			this.limit = limit;
+		}
+
+		/**
+		 * Find the selected plan of a person. At most {@link #limit} persons are read ahead.
+		 *
+		 * @param position position of the person in the first input
+		 * @return null if the person was not found
+		 */
+		private Plan find(Id<Person> id, int position) {
+
+			// Persons read more than limit positions ago are not expected anymore
+			Iterator<Pending> it = pending.values().iterator();
+			while (it.hasNext()) {
+				if (it.next().position >= position - limit)
+					break;
+
+				it.remove();
+				ignored++;
+			}
+
+			Pending p = pending.remove(id);
+			if (p != null)
+				return p.plan;
 
+			while (pending.size() < limit && reader.hasNext()) {
+				Person next = reader.next();
+				if (next.getId().equals(id))
+					return next.getSelectedPlan();
+
+				pending.put(next.getId(), new Pending(next.getSelectedPlan(), position));
+			}
+
+			return null;
+		}
+	}
+
+	/**
+	 * Plan that has been read ahead, with the position of the first input at that time.
+	 */
+	private record Pending(Plan plan, int position) {
+	}
+}
@@ -8,10 +8,10 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.*;
 import org.matsim.application.MATSimAppCommand;
 import org.matsim.core.population.PersonUtils;
-import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.ParallelPersonAlgorithmUtils;
 import org.matsim.core.population.algorithms.PersonAlgorithm;
 import org.matsim.prepare.population.Attributes;
+import org.matsim.prepare.population.PopulationSnapshot;
 import picocli.CommandLine;
 
 import java.nio.file.Path;
@@ -52,7 +52,7 @@ public class RunActitopp implements MATSimAppCommand, PersonAlgorithm {
 	@Override
 	public Integer call() throws Exception {
 
-		Population population = PopulationUtils.readPopulation(input.toString());
+		Population population = PopulationSnapshot.readPopulation(input.toString());
 		factory = population.getFactory();
 
 		log.info("Generating activity chains...");
@@ -61,7 +61,7 @@ public class RunActitopp implements MATSimAppCommand, PersonAlgorithm {
 
 		ParallelPersonAlgorithmUtils.run(population, 8, this);
 
-		PopulationUtils.writePopulation(population, output.toString());
+		PopulationSnapshot.writePopulation(population, output.toString());
 
 		return 0;
 	}
@@ -3,7 +3,6 @@ package org.matsim.prepare.choices;
 import com.google.inject.Injector;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.population.Leg;
@@ -34,10 +33,8 @@ import org.matsim.simwrapper.SimWrapperConfigGroup;
 import picocli.CommandLine;
 
 import javax.annotation.Nullable;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -50,10 +47,6 @@ public class ComputePlanChoices implements MATSimAppCommand, PersonAlgorithm {
 
 	// TODO: move whole class to contrib when done, can probably go into imc
 	private static final Logger log = LogManager.getLogger(ComputePlanChoices.class);
-	/**
-	 * Rows for the result table.
-	 */
-	private final Queue<List<Object>> rows = new ConcurrentLinkedQueue<>();
 	private final MainModeIdentifier mmi = new DefaultAnalysisMainModeIdentifier();
 
 	@CommandLine.Mixin
@@ -84,6 +77,10 @@ public class ComputePlanChoices implements MATSimAppCommand, PersonAlgorithm {
 	private Path output;
 
 	private ThreadLocal<Ctx> thread;
+	/**
+	 * Writer for the result table, rows are written while the population is processed.
+	 */
+	private StreamingCsvWriter writer;
 	private ProgressBar pb;
 	private double globalAvgIncome;
 	/**
@@ -158,6 +155,25 @@ public class ComputePlanChoices implements MATSimAppCommand, PersonAlgorithm {
 
 		Population population = controler.getScenario().getPopulation();
 
+		globalAvgIncome = population.getPersons().values().stream()
+			.map(PersonUtils::getIncome)
+			.filter(Objects::nonNull)
+			.mapToDouble(d -> d)
+			.filter(dd -> dd > 0)
+			.average()
+			.orElse(Double.NaN);
+
+		String out = output.toString().replace(".csv", "-%s_%d.csv".formatted(planCandidates, topK));
+
+		if (timeUtil && (planCandidates == PlanCandidates.bestK || planCandidates == PlanCandidates.diverse)) {
+			out = out.replace(".csv", "-tt-only.csv");
+		}
+
+		log.info("Writing choices to {}", out);
+
+		writer = new StreamingCsvWriter(Path.of(out), CSVFormat.DEFAULT.builder().setCommentMarker('#').build(), 4096,
+			List.of("Average global income: " + globalAvgIncome), createHeader());
+
 		thread = ThreadLocal.withInitial(() ->
 			new Ctx(
 				new PlanRouter(injector.getInstance(TripRouter.class),
@@ -172,73 +188,60 @@ public class ComputePlanChoices implements MATSimAppCommand, PersonAlgorithm {
 						injector.getInstance(PermissibleModesCalculator.class),
 						config);
 				},
-				calcScores ? new PseudoScorer(injector, population) : null
+				calcScores ? new PseudoScorer(injector) : null,
+				writer.newRow()
 			)
 		);
 
-		globalAvgIncome = population.getPersons().values().stream()
-			.map(PersonUtils::getIncome)
-			.filter(Objects::nonNull)
-			.mapToDouble(d -> d)
-			.filter(dd -> dd > 0)
-			.average()
-			.orElse(Double.NaN);
-
 		pb = new ProgressBar("Computing plan choices", population.getPersons().size());
 
-		ParallelPersonAlgorithmUtils.run(population, Runtime.getRuntime().availableProcessors(), this);
+		// Writer is also closed if the computation fails
+		try (StreamingCsvWriter w = writer) {
+			ParallelPersonAlgorithmUtils.run(population, Runtime.getRuntime().availableProcessors(), this);
 
-		pb.close();
+			pb.close();
 
-		String out = output.toString().replace(".csv", "-%s_%d.csv".formatted(planCandidates, topK));
-
-		if (timeUtil && (planCandidates == PlanCandidates.bestK || planCandidates == PlanCandidates.diverse)) {
-			out = out.replace(".csv", "-tt-only.csv");
+			// The maximum is only known after all persons have been processed
+			w.addComment("Max number of plan options: " + maxK.get());
 		}
 
-		log.info("Writing {} choices to {}", rows.size(), out);
+		log.info("Written {} choices", writer.getRows());
 
-		try (CSVPrinter csv = new CSVPrinter(Files.newBufferedWriter(Path.of(out)), CSVFormat.DEFAULT.builder().setCommentMarker('#').build())) {
-
-			// header
-			List<Object> header = new ArrayList<>();
-			header.add("person");
-			header.add("weight");
-			header.add("income");
-			header.add("util_money");
-			header.add("choice");
-			header.add("n_trips");
-
-			for (int i = 1; i <= topK; i++) {
-
-				for (String mode : modes) {
-					header.add(String.format("plan_%d_%s_usage", i, mode));
-					header.add(String.format("plan_%d_%s_km", i, mode));
-					header.add(String.format("plan_%d_%s_hours", i, mode));
-					header.add(String.format("plan_%d_%s_ride_hours", i, mode));
-					header.add(String.format("plan_%d_%s_n_switches", i, mode));
-				}
-
-				for (int j = 0; j < maxPlanLength; j++) {
-					header.add("plan_%d_trip_%d_mode".formatted(i, j));
-				}
+		return 0;
+	}
 
-				header.add(String.format("plan_%d_act_util", i));
-				header.add(String.format("plan_%d_valid", i));
+	/**
+	 * Header of the result table.
+	 */
+	private List<String> createHeader() {
+
+		List<String> header = new ArrayList<>();
+		header.add("person");
+		header.add("weight");
+		header.add("income");
+		header.add("util_money");
+		header.add("choice");
+		header.add("n_trips");
+
+		for (int i = 1; i <= topK; i++) {
+
+			for (String mode : modes) {
+				header.add(String.format("plan_%d_%s_usage", i, mode));
+				header.add(String.format("plan_%d_%s_km", i, mode));
+				header.add(String.format("plan_%d_%s_hours", i, mode));
+				header.add(String.format("plan_%d_%s_ride_hours", i, mode));
+				header.add(String.format("plan_%d_%s_n_switches", i, mode));
 			}
 
-			csv.printComment("Average global income: " + globalAvgIncome);
-			csv.printComment("Max number of plan options: " + maxK.get());
-
-			csv.printRecord(header);
-
-			for (List<Object> row : rows) {
-				csv.printRecord(row);
+			for (int j = 0; j < maxPlanLength; j++) {
+				header.add("plan_%d_trip_%d_mode".formatted(i, j));
 			}
-		}
 
+			header.add(String.format("plan_%d_act_util", i));
+			header.add(String.format("plan_%d_valid", i));
+		}
 
-		return 0;
+		return header;
 	}
 
 	@Override
@@ -284,17 +287,6 @@ public class ComputePlanChoices implements MATSimAppCommand, PersonAlgorithm {
 
 		Ctx ctx = thread.get();
 
-		List<Object> row = new ArrayList<>();
-
-		row.add(person.getAttributes().getAttribute(TripAnalysis.ATTR_REF_ID));
-		row.add(person.getAttributes().getAttribute(TripAnalysis.ATTR_REF_WEIGHT));
-		row.add(PersonUtils.getIncome(person));
-		row.add(globalAvgIncome / PersonUtils.getIncome(person));
-
-		// choice, always the first one
-		row.add(1);
-		row.add(model.trips());
-
 		List<PlanCandidate> candidates = ctx.generator.generate(plan, model, modes);
 
 		// skip possible error cases
@@ -303,43 +295,54 @@ public class ComputePlanChoices implements MATSimAppCommand, PersonAlgorithm {
 			return;
 		}
 
-		int i = 0;
-		for (PlanCandidate candidate : candidates) {
-
-			if (i >= topK)
-				break;
+		// Values of a row that could not be completed are discarded, so that they do not end up in the next row
+		try (StreamingCsvWriter.Row row = ctx.row) {
+			row.add(person.getAttributes().getAttribute(TripAnalysis.ATTR_REF_ID));
+			row.add(person.getAttributes().getAttribute(TripAnalysis.ATTR_REF_WEIGHT));
+			row.add(PersonUtils.getIncome(person));
+			row.add(globalAvgIncome / PersonUtils.getIncome(person));
 
-			// TODO: apply method might also shift times to better fit the schedule
-			candidate.applyTo(plan);
-			ctx.router.run(plan);
-			row.addAll(convert(plan, ctx.scorer));
-			// available choice
+			// choice, always the first one
 			row.add(1);
-			i++;
-		}
+			row.add(model.trips());
 
-		maxK.accumulateAndGet(i, Math::max);
+			int i = 0;
+			for (PlanCandidate candidate : candidates) {
 
-		for (int j = i; j < topK; j++) {
-			row.addAll(convert(null, ctx.scorer));
-			// not available
-			row.add(0);
-		}
+				if (i >= topK)
+					break;
 
-		rows.add(row);
+				// TODO: apply method might also shift times to better fit the schedule
+				candidate.applyTo(plan);
+				ctx.router.run(plan);
+				convert(row, plan, ctx.scorer);
+				// available choice
+				row.add(1);
+				i++;
+			}
+
+			maxK.accumulateAndGet(i, Math::max);
+
+			for (int j = i; j < topK; j++) {
+				convert(row, null, ctx.scorer);
+				// not available
+				row.add(0);
+			}
+
+			row.write();
+		}
 
 		pb.step();
 	}
 
 	/**
-	 * Create one csv entry row for a plan.
+	 * Append the csv entries for a plan to the row.
 	 */
-	private List<Object> convert(@Nullable Plan plan, PseudoScorer scorer) {
+	private void convert(StreamingCsvWriter.Row row, @Nullable Plan plan, PseudoScorer scorer) {
 
-		List<Object> row = new ArrayList<>();
 		if (plan == null) {
 			for (String ignored : modes) {
-				row.addAll(List.of(0, 0, 0, 0, 0));
+				row.add(0).add(0).add(0).add(0).add(0);
 			}
 
 			for (int j = 0; j < maxPlanLength; j++) {
@@ -348,7 +351,7 @@ public class ComputePlanChoices implements MATSimAppCommand, PersonAlgorithm {
 
 			row.add(0);
 
-			return row;
+			return;
 		}
 
 		AggrModeInfo info = collect(plan);
@@ -375,8 +378,6 @@ public class ComputePlanChoices implements MATSimAppCommand, PersonAlgorithm {
 			row.add(scorer.score(plan).getDouble("score"));
 		else
 			row.add(0);
-
-		return row;
 	}
 
 	/**
@@ -434,7 +435,7 @@ public class ComputePlanChoices implements MATSimAppCommand, PersonAlgorithm {
 	private record ModeStats(int usage, double travelTime, double travelDistance, double rideTime, long numSwitches) {
 	}
 
-	private record Ctx(PlanRouter router, ChoiceGenerator generator, PseudoScorer scorer) {
+	private record Ctx(PlanRouter router, ChoiceGenerator generator, PseudoScorer scorer, StreamingCsvWriter.Row row) {
 	}
 }
 
@@ -1,5 +1,8 @@
 package org.matsim.prepare.choices;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.inject.Injector;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.commons.csv.CSVFormat;
@@ -26,6 +29,7 @@ import org.matsim.core.population.PersonUtils;
 import org.matsim.core.router.TripRouter;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.timing.TimeInterpretation;
 import org.matsim.core.utils.timing.TimeTracker;
 import org.matsim.facilities.FacilitiesUtils;
@@ -35,13 +39,11 @@ import org.matsim.simwrapper.SimWrapperConfigGroup;
 import org.matsim.utils.objectattributes.attributable.AttributesImpl;
 import picocli.CommandLine;
 
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -67,13 +69,29 @@ public class ComputeTripChoices implements MATSimAppCommand {
 	@CommandLine.Option(names = "--max-plan-length", description = "Maximum plan length", defaultValue = "7")
 	private int maxPlanLength;
 
+	@CommandLine.Option(names = "--route-cache", description = "Maximum number of cached routes, 0 disables the cache. " +
+		"Routes are shared between persons and coordinates on the same links and time bin, which is only an approximation.", defaultValue = "0")
+	private long cacheSize;
+
+	@CommandLine.Option(names = "--time-bin", description = "Size of departure time bins in seconds, routes within the same bin are shared", defaultValue = "3600")
+	private int timeBin;
+
+	@CommandLine.Option(names = "--window", description = "Maximum number of trips that are processed concurrently", defaultValue = "10000")
+	private int window;
+
 	private double globalAvgIncome;
 
+	/**
+	 * Route metrics shared between all threads, may be null if disabled.
+	 */
+	private Cache<RouteKey, RouteMetrics> cache;
+
 	public static void main(String[] args) {
 		new ComputeTripChoices().execute(args);
 	}
 
 	@Override
+	@SuppressWarnings("JavaNCSS")
 	public Integer call() throws Exception {
 
 		Config config = this.scenario.getConfig();
@@ -96,7 +114,8 @@ public class ComputeTripChoices implements MATSimAppCommand {
 		ThreadLocal<TripRouter> ctx = ThreadLocal.withInitial(() -> injector.getInstance(TripRouter.class));
 		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
 
-		List<CompletableFuture<List<Object>>> futures = new ArrayList<>();
+		if (cacheSize > 0)
+			cache = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build();
 
 		Collection<? extends Person> persons = scenario.getPopulation().getPersons().values();
 
@@ -111,77 +130,98 @@ public class ComputeTripChoices implements MATSimAppCommand {
 		// Progress bar will be inaccurate
 		ProgressBar pb = new ProgressBar("Computing choices", persons.size() * 3L);
 
-		for (Person person : persons) {
+		log.info("Writing trip choices to {}", output);
+
+		// Results are written in order, only a limited number of trips is processed at the same time
+		Deque<CompletableFuture<List<Object>>> pending = new ArrayDeque<>();
+		long written = 0;
+
+		try (CSVPrinter csv = new CSVPrinter(IOUtils.getBufferedWriter(output.toString()), CSVFormat.DEFAULT.builder().setCommentMarker('#').build())) {
 
-			if (person.getAttributes().getAttribute(Attributes.REF_MODES) == null) {
-				continue;
+			List<String> header = new ArrayList<>(List.of("person", "weight", "income", "util_money", "trip_n", "choice", "beelineDist"));
+			for (String mode : modes) {
+				header.add(mode + "_km");
+				header.add(mode + "_hours");
+				header.add(mode + "_walking_km");
+				header.add(mode + "_switches");
+				header.add(mode + "_valid");
 			}
 
-			Plan plan = person.getSelectedPlan();
+			csv.printComment("Average global income: " + globalAvgIncome);
+			csv.printRecord(header);
 
-			int seq = 0;
-			TimeTracker tt = new TimeTracker(TimeInterpretation.create(PlansConfigGroup.ActivityDurationInterpretation.tryEndTimeThenDuration, PlansConfigGroup.TripDurationHandling.ignoreDelays));
+			for (Person person : persons) {
 
-			List<TripStructureUtils.Trip> trips = TripStructureUtils.getTrips(plan);
+				if (person.getAttributes().getAttribute(Attributes.REF_MODES) == null) {
+					continue;
+				}
 
-			if (trips.size() > maxPlanLength) {
-				continue;
-			}
+				Plan plan = person.getSelectedPlan();
 
-			for (TripStructureUtils.Trip trip : trips) {
+				int seq = 0;
+				TimeTracker tt = new TimeTracker(TimeInterpretation.create(PlansConfigGroup.ActivityDurationInterpretation.tryEndTimeThenDuration, PlansConfigGroup.TripDurationHandling.ignoreDelays));
 
-				tt.addActivity(trip.getOriginActivity());
+				List<TripStructureUtils.Trip> trips = TripStructureUtils.getTrips(plan);
 
-				double departure = tt.getTime().orElseThrow(() -> new IllegalStateException("No departure time for trip"));
-				int n = seq++;
+				if (trips.size() > maxPlanLength) {
+					continue;
+				}
 
-				futures.add(CompletableFuture.supplyAsync(() -> {
-					TripRouter r = ctx.get();
+				for (TripStructureUtils.Trip trip : trips) {
 
-					List<Object> entries = computeAlternatives(r, scenario.getNetwork(), person, trip, departure, n);
-					pb.step();
+					tt.addActivity(trip.getOriginActivity());
 
-					return entries;
+					double departure = tt.getTime().orElseThrow(() -> new IllegalStateException("No departure time for trip"));
+					int n = seq++;
 
-				}, executor));
+					pending.add(CompletableFuture.supplyAsync(() -> {
+						TripRouter r = ctx.get();
 
-				tt.addElements(trip.getLegsOnly());
-			}
-		}
+						List<Object> entries = computeAlternatives(r, scenario.getNetwork(), person, trip, departure, n);
+						pb.step();
 
-		CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-			.exceptionally(ex -> {
-				log.error("Error while computing trip choices", ex);
-				return null;
-			})
-			.join();
+						return entries;
 
-		executor.shutdown();
-		pb.close();
+					}, executor));
 
-		log.info("Writing {} trip choices to {}", futures.size(), output);
+					while (pending.size() >= window) {
+						written += write(csv, pending.poll());
+					}
 
-		try (CSVPrinter csv = new CSVPrinter(Files.newBufferedWriter(output), CSVFormat.DEFAULT.builder().setCommentMarker('#').build())) {
+					tt.addElements(trip.getLegsOnly());
+				}
+			}
 
-			List<String> header = new ArrayList<>(List.of("person", "weight", "income", "util_money", "trip_n", "choice", "beelineDist"));
-			for (String mode : modes) {
-				header.add(mode + "_km");
-				header.add(mode + "_hours");
-				header.add(mode + "_walking_km");
-				header.add(mode + "_switches");
-				header.add(mode + "_valid");
+			while (!pending.isEmpty()) {
+				written += write(csv, pending.poll());
 			}
+		} finally {
+			executor.shutdown();
+			pb.close();
+		}
 
-			csv.printComment("Average global income: " + globalAvgIncome);
-			csv.printRecord(header);
+		log.info("Written {} trip choices", written);
 
-			for (CompletableFuture<List<Object>> f : futures) {
+		if (cache != null) {
+			CacheStats stats = cache.stats();
+			log.info("Route cache: {} hits, {} misses, hit rate {}, {} evictions",
+				stats.hitCount(), stats.missCount(), String.format("%.3f", stats.hitRate()), stats.evictionCount());
+		}
 
-				List<Object> entries = f.get();
-				if (entries != null) {
-					csv.printRecord(entries);
-				}
-			}
+		return 0;
+	}
+
+	/**
+	 * Wait for the result of a trip and write it.
+	 *
+	 * @return number of written rows
+	 */
+	private static int write(CSVPrinter csv, CompletableFuture<List<Object>> f) throws IOException {
+
+		List<Object> entries = f.join();
+		if (entries != null) {
+			csv.printRecord(entries);
+			return 1;
 		}
 
 		return 0;
@@ -210,33 +250,21 @@ public class ComputeTripChoices implements MATSimAppCommand {
 			beelineDist / 1000)
 		);
 
-		for (String mode : modes) {
-
-			double travelTime = 0;
-			double travelDistance = 0;
-			double walkDistance = 0;
-			boolean valid = false;
-
-			List<? extends PlanElement> route = router.calcRoute(mode, origin, destination, departure, person, new AttributesImpl());
-			for (PlanElement el : route) {
-
-				if (el instanceof Leg leg) {
+		for (int i = 0; i < modes.size(); i++) {
 
-					travelTime += leg.getTravelTime().seconds();
-					travelDistance += leg.getRoute().getDistance();
-
-					if (leg.getMode().equals(TransportMode.walk)) {
-						walkDistance += leg.getRoute().getDistance();
-					}
-
-					if (leg.getMode().equals(mode))
-						valid = true;
+			String mode = modes.get(i);
+			RouteMetrics m;
+			if (cache != null) {
+				RouteKey key = new RouteKey(i, origin.getLinkId().index(), destination.getLinkId().index(), (int) (departure / timeBin));
+				try {
+					m = cache.get(key, () -> route(router, mode, origin, destination, departure, person));
+				} catch (ExecutionException e) {
+					throw new IllegalStateException("Could not route trip of person " + person.getId(), e);
 				}
-			}
-
-			// This is mainly used for PT, to count the number of switches
-			long switches = route.stream().filter(r -> r instanceof Leg l && l.getMode().equals(mode)).count() - 1;
+			} else
+				m = route(router, mode, origin, destination, departure, person);
 
+			boolean valid = m.valid;
 			if (!PersonUtils.canUseCar(person) && mode.equals(TransportMode.car)) {
 				valid = false;
 			}
@@ -246,12 +274,59 @@ public class ComputeTripChoices implements MATSimAppCommand {
 				return null;
 			}
 
-			row.addAll(List.of(travelDistance / 1000, travelTime / 3600, walkDistance / 1000, switches, valid));
+			row.addAll(List.of(m.travelDistance / 1000, m.travelTime / 3600, m.walkDistance / 1000, m.switches, valid));
 		}
 
 		return row;
 	}
 
+	/**
+	 * Route one mode and aggregate the metrics of the resulting legs.
+	 */
+	private static RouteMetrics route(TripRouter router, String mode, Facility origin, Facility destination, double departure, Person person) {
+
+		double travelTime = 0;
+		double travelDistance = 0;
+		double walkDistance = 0;
+		boolean valid = false;
+
+		List<? extends PlanElement> route = router.calcRoute(mode, origin, destination, departure, person, new AttributesImpl());
+		for (PlanElement el : route) {
+
+			if (el instanceof Leg leg) {
+
+				travelTime += leg.getTravelTime().seconds();
+				travelDistance += leg.getRoute().getDistance();
+
+				if (leg.getMode().equals(TransportMode.walk)) {
+					walkDistance += leg.getRoute().getDistance();
+				}
+
+				if (leg.getMode().equals(mode))
+					valid = true;
+			}
+		}
+
+		// This is mainly used for PT, to count the number of switches
+		long switches = route.stream().filter(r -> r instanceof Leg l && l.getMode().equals(mode)).count() - 1;
+
+		return new RouteMetrics(travelTime, travelDistance, walkDistance, switches, valid);
+	}
+
+	/**
+	 * Cache key for routes, using the index of mode and links.
+	 * Exact coordinates, departure time within the bin and person attributes are not part of the key,
+	 * the cached route of the first trip is used for all others.
+	 */
+	private record RouteKey(int mode, int from, int to, int bin) {
+	}
+
+	/**
+	 * Aggregated metrics of a routed trip.
+	 */
+	private record RouteMetrics(double travelTime, double travelDistance, double walkDistance, long switches, boolean valid) {
+	}
+
 }
 
 
@@ -3,113 +3,138 @@ package org.matsim.prepare.choices;
 import com.google.inject.Injector;
 import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
-import org.matsim.api.core.v01.Scenario;
-import org.matsim.api.core.v01.events.ActivityEndEvent;
-import org.matsim.api.core.v01.events.ActivityStartEvent;
 import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.PlanElement;
-import org.matsim.api.core.v01.population.Population;
-import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
-import org.matsim.core.events.EventsUtils;
-import org.matsim.core.scoring.EventsToActivities;
-import org.matsim.core.scoring.EventsToLegs;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.TripStructureUtils;
 import org.matsim.core.scoring.ScoringFunction;
 import org.matsim.core.scoring.ScoringFunctionFactory;
+import org.matsim.core.scoring.SumScoringFunction;
 import org.matsim.core.utils.timing.TimeInterpretation;
 import org.matsim.core.utils.timing.TimeTracker;
+import org.matsim.run.scoring.AdvancedScoringFunctionFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Replicates the event sequence of a trip to perform scoring without simulation.
+ * Scores a plan without simulation, by passing its activities, legs and trips directly to the scoring function.
+ * Times of activities and legs are determined with a {@link TimeTracker}. Scoring of events, e.g. waiting times or money, is not possible.
+ * Pt transfers are scored per trip by the {@link org.matsim.run.scoring.PiecewiseLinearlLegScoring}.
+ * <p>
+ * If the {@link AdvancedScoringFunctionFactory} is used, the score of each of its components is reported separately.
+ * This class is not thread-safe, each thread needs its own instance.
  */
 final class PseudoScorer {
 
-	private final EventsManager eventsManager;
-	private final ScoringFunctionsForPopulation scoring;
-
+	private final ScoringFunctionFactory factory;
 	private final TimeInterpretation timeInterpretation;
 
-	/**
-	 * Buffer resulting score outputs.
-	 */
-	private final StringBuilder result = new StringBuilder();
-
-	PseudoScorer(Injector injector, Population population) {
-		this.eventsManager = EventsUtils.createEventsManager();
-		this.scoring = new ScoringFunctionsForPopulation(
-			eventsManager,
-			new EventsToActivities(),
-			new EventsToLegs(injector.getInstance(Scenario.class)),
-			population,
-			injector.getInstance(ScoringFunctionFactory.class)
-		);
+	PseudoScorer(Injector injector) {
+		this.factory = injector.getInstance(ScoringFunctionFactory.class);
 		this.timeInterpretation = TimeInterpretation.create(injector.getInstance(Config.class));
 	}
 
+	/**
+	 * Score a plan.
+	 *
+	 * @return score of each component and the total under the key "score".
+	 */
 	public Object2DoubleMap<String> score(Plan plan) {
 
-		scoring.reset(0);
-		scoring.init(plan.getPerson());
-
-		createEvents(plan);
-
-		scoring.finishScoringFunctions();
-
-		ScoringFunction scoring = this.scoring.getScoringFunctionForAgent(plan.getPerson().getId());
-
-		result.setLength(0);
-		if (true)
-			throw new UnsupportedOperationException("This functionality depends on code that is not yet available in MATSim core");
-//		scoring.explainScore(result);
-
-		Object2DoubleOpenHashMap<String> scores = new Object2DoubleOpenHashMap<>();
+		Person person = plan.getPerson();
+		Map<String, ScoringFunction> functions = new LinkedHashMap<>();
+
+		if (factory instanceof AdvancedScoringFunctionFactory advanced) {
+			advanced.createComponents(person).forEach((name, component) -> {
+				SumScoringFunction f = new SumScoringFunction();
+				f.addScoringFunction(component);
+				functions.put(name, f);
+			});
+		} else
+			functions.put("total", factory.createNewScoringFunction(person));
+
+		List<PlanElement> elements = createElements(plan);
+		for (PlanElement el : elements) {
+			for (ScoringFunction f : functions.values()) {
+				if (el instanceof Activity act)
+					f.handleActivity(act);
+				else
+					f.handleLeg((Leg) el);
+			}
+		}
 
-		String[] split = new String[0];
-//		String[] split = result.toString().split(ScoringFunction.SCORE_DELIMITER);
-		for (String s : split) {
-			String[] kv = s.split("=");
-			if (kv.length > 1) {
-				scores.put(kv[0], Double.parseDouble(kv[1]));
+		for (TripStructureUtils.Trip trip : TripStructureUtils.getTrips(elements)) {
+			for (ScoringFunction f : functions.values()) {
+				f.handleTrip(trip);
 			}
 		}
 
-		scores.put("score", scoring.getScore());
+		Object2DoubleMap<String> scores = new Object2DoubleOpenHashMap<>();
+		double total = 0;
+		for (Map.Entry<String, ScoringFunction> e : functions.entrySet()) {
+			ScoringFunction f = e.getValue();
+			f.finish();
+			scores.put(e.getKey(), f.getScore());
+			total += f.getScore();
+		}
 
+		scores.put("score", total);
 		return scores;
 	}
 
-	private void createEvents(Plan plan) {
+	/**
+	 * Create copies of the plan elements, with start and end times as they would be observed in the simulation.
+	 */
+	private List<PlanElement> createElements(Plan plan) {
 
 		TimeTracker tt = new TimeTracker(timeInterpretation);
+		List<PlanElement> planElements = plan.getPlanElements();
+		List<PlanElement> result = new ArrayList<>(planElements.size());
 
-		Activity currentAct = null;
-		for (PlanElement el : plan.getPlanElements()) {
+		for (int i = 0; i < planElements.size(); i++) {
+			PlanElement el = planElements.get(i);
 
 			if (el instanceof Activity act) {
 
-				// The first activity does not have a start event
-				if (currentAct != null) {
-					eventsManager.processEvent(new ActivityStartEvent(tt.getTime().seconds(),
-						plan.getPerson().getId(), act.getLinkId(), act.getFacilityId(), act.getType(), act.getCoord()
-					));
-				}
+				Activity copy = PopulationUtils.createActivity(act);
+
+				// The first activity does not have a start time
+				if (i > 0)
+					copy.setStartTime(tt.getTime().seconds());
+				else
+					copy.setStartTimeUndefined();
 
 				tt.addElement(act);
 
 				// The last activity does not have an end time
-				if (tt.getTime().isDefined()) {
-					eventsManager.processEvent(new ActivityEndEvent(tt.getTime().seconds(),
-						plan.getPerson().getId(), act.getLinkId(), act.getFacilityId(), act.getType(), act.getCoord()
-					));
-				}
+				if (i < planElements.size() - 1 && tt.getTime().isDefined())
+					copy.setEndTime(tt.getTime().seconds());
+				else
+					copy.setEndTimeUndefined();
+
+				result.add(copy);
 
-				currentAct = act;
-			} else
-				tt.addElement(el);
+			} else if (el instanceof Leg leg) {
 
+				double departure = tt.getTime().seconds();
+				tt.addElement(leg);
+
+				Leg copy = PopulationUtils.createLeg(leg.getMode());
+				PopulationUtils.copyFromTo(leg, copy);
+				copy.setDepartureTime(departure);
+				copy.setTravelTime(tt.getTime().seconds() - departure);
+
+				result.add(copy);
+			}
 		}
+
+		return result;
 	}
 }
-
-
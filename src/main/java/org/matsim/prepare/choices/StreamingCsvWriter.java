@@ -0,0 +1,216 @@
+package org.matsim.prepare.choices;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.matsim.core.utils.io.IOUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes csv rows produced by multiple threads. Rows are formatted by the producing thread and passed
+ * through a bounded queue to a single writer thread, so that only a limited number of rows is held in memory.
+ * Compressed output is supported via the file extension.
+ */
+final class StreamingCsvWriter implements AutoCloseable {
+
+	/**
+	 * Marks the end of the queue, rows are never empty because they contain at least the record separator.
+	 */
+	private static final String END = "";
+
+	private final CSVFormat format;
+	private final BufferedWriter writer;
+	private final BlockingQueue<String> queue;
+	private final Thread thread;
+	private final AtomicLong rows = new AtomicLong();
+
+	private volatile IOException error;
+
+	StreamingCsvWriter(Path path, CSVFormat format, int capacity, List<String> comments, List<String> header) throws IOException {
+		this.format = format;
+		this.writer = IOUtils.getBufferedWriter(path.toString());
+		this.queue = new ArrayBlockingQueue<>(capacity);
+
+		// The printer is not closed, because it would close the underlying writer
+		CSVPrinter printer = new CSVPrinter(writer, format);
+		for (String comment : comments) {
+			printer.printComment(comment);
+		}
+		printer.printRecord(header);
+
+		this.thread = new Thread(this::drain, "csv-writer");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Create a new row builder. Row builders are not thread safe and should be used by one thread only.
+	 */
+	Row newRow() {
+		return new Row();
+	}
+
+	/**
+	 * Add a comment, which will be written after all previously added rows.
+	 */
+	void addComment(String comment) {
+		StringBuilder sb = new StringBuilder();
+		try {
+			new CSVPrinter(sb, format).printComment(comment);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		put(sb.toString());
+	}
+
+	/**
+	 * Number of rows written or queued so far.
+	 */
+	long getRows() {
+		return rows.get();
+	}
+
+	/**
+	 * Waits until all rows are written and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			// The thread has already terminated if it was interrupted
+			if (thread.isAlive())
+				put(END);
+
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for writer", e);
+		} finally {
+			writer.close();
+		}
+
+		if (error != null)
+			throw error;
+	}
+
+	private void put(String line) {
+		try {
+			// Producers must not wait forever if the writer thread has terminated
+			while (!queue.offer(line, 1, TimeUnit.SECONDS)) {
+				if (!thread.isAlive())
+					throw new UncheckedIOException(error != null ? error : new IOException("Writer thread has terminated"));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while writing row", e);
+		}
+	}
+
+	private void drain() {
+		while (true) {
+			String line;
+			try {
+				line = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				error = new InterruptedIOException("Writer thread was interrupted");
+				return;
+			}
+
+			if (line.isEmpty())
+				return;
+
+			// After an error the queue is still drained, so that producers are not blocked
+			if (error != null)
+				continue;
+
+			try {
+				writer.write(line);
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+	}
+
+	/**
+	 * Formats the values of one row. Closing a row discards values that have not been written,
+	 * the row can still be used afterward.
+	 */
+	final class Row implements AutoCloseable {
+
+		private final StringBuilder sb = new StringBuilder();
+		private final CSVPrinter printer;
+
+		/**
+		 * Whether values have been added since the last write.
+		 */
+		private boolean pending;
+
+		private Row() {
+			try {
+				printer = new CSVPrinter(sb, format);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * Append a value to the current row.
+		 */
+		Row add(Object value) {
+			try {
+				printer.print(value);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			pending = true;
+			return this;
+		}
+
+		/**
+		 * Discard the current row.
+		 */
+		void discard() {
+			// Ending the record resets the state of the printer
+			endRecord();
+			sb.setLength(0);
+			pending = false;
+		}
+
+		/**
+		 * Pass the current row to the writer, blocks if the queue is full.
+		 */
+		void write() {
+			endRecord();
+			put(sb.toString());
+			rows.incrementAndGet();
+			sb.setLength(0);
+			pending = false;
+		}
+
+		/**
+		 * Discard the current row, if it has not been written.
+		 */
+		@Override
+		public void close() {
+			if (pending)
+				discard();
+		}
+
+		private void endRecord() {
+			try {
+				printer.println();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
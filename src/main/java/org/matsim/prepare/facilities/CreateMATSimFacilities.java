@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonAnySetter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -32,8 +34,6 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @CommandLine.Command(
 	name = "facilities",
@@ -59,6 +59,9 @@ public class CreateMATSimFacilities implements MATSimAppCommand {
 	@CommandLine.Option(names = "--zones-shp", description = "Path to shp file with zonal system", required = false)
 	private Path zonesPath;
 
+	@CommandLine.Option(names = "--seed", description = "Seed used to sample points and generate ids", defaultValue = "1")
+	private long seed;
+
 	@CommandLine.Mixin
 	private ShpOptions shp;
 
@@ -115,8 +118,10 @@ public class CreateMATSimFacilities implements MATSimAppCommand {
 
 		List<SimpleFeature> fts = shp.readFeatures();
 
+		LinkIndex index = new LinkIndex(carOnlyNetwork);
+
 		List<Holder> data = fts.parallelStream()
-			.map(ft -> processFeature(ft, carOnlyNetwork))
+			.map(ft -> processFeature(ft, index))
 			.filter(Objects::nonNull)
 			.toList();
 
@@ -138,7 +143,7 @@ public class CreateMATSimFacilities implements MATSimAppCommand {
 
 		ActivityFacilities facilities = FacilitiesUtils.createActivityFacilities();
 
-		SplittableRandom rnd = new SplittableRandom();
+		SplittableRandom rnd = new SplittableRandom(seed);
 		ActivityFacilitiesFactory f = facilities.getFactory();
 
 		for (Holder h : data) {
@@ -189,22 +194,28 @@ public class CreateMATSimFacilities implements MATSimAppCommand {
 	/**
 	 * Sample points and choose link with the nearest points.
 	 */
-	private Holder processFeature(SimpleFeature ft, Network network) {
+	private Holder processFeature(SimpleFeature ft, LinkIndex index) {
 
 		Set<String> activities = activities(ft);
 		if (activities.isEmpty())
 			return null;
 
-		// Pairs of coords and corresponding links
-		List<Coord> coords = samplePoints((MultiPolygon) ft.getDefaultGeometry(), 23);
-		List<Id<Link>> links = coords.stream().map(coord -> NetworkUtils.getNearestLinkExactly(network, coord).getId()).toList();
+		// The random generator depends only on the feature, so that results do not depend on the order of processing
+		SplittableRandom rnd = new SplittableRandom(seed ^ (ft.getID().hashCode() * 0x9E3779B97F4A7C15L));
 
-		Map<Id<Link>, Long> map = links.stream()
-			.filter(l -> !IGNORED_LINK_TYPES.contains(NetworkUtils.getType(network.getLinks().get(l))))
-			.collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+		// Pairs of coords and corresponding links
+		List<Coord> coords = samplePoints((MultiPolygon) ft.getDefaultGeometry(), 23, rnd);
+		List<Link> links = coords.stream().map(index::getNearestLink).toList();
+
+		// Count occurrences, the link found first wins ties
+		Object2IntMap<Id<Link>> counts = new Object2IntLinkedOpenHashMap<>();
+		for (Link l : links) {
+			if (!IGNORED_LINK_TYPES.contains(NetworkUtils.getType(l)))
+				counts.mergeInt(l.getId(), 1, Integer::sum);
+		}
 
 		// Everything could be filtered and map empty
-		if (map.isEmpty())
+		if (counts.isEmpty())
 			return null;
 
 		Object2DoubleMap<String> features = new Object2DoubleOpenHashMap<>();
@@ -214,11 +225,15 @@ public class CreateMATSimFacilities implements MATSimAppCommand {
 			}
 		}
 
-		List<Map.Entry<Id<Link>, Long>> counts = map.entrySet().stream().sorted(Map.Entry.comparingByValue())
-			.toList();
-
 		// The "main" link of the facility
-		Id<Link> link = counts.get(counts.size() - 1).getKey();
+		Id<Link> link = null;
+		int max = 0;
+		for (Object2IntMap.Entry<Id<Link>> e : counts.object2IntEntrySet()) {
+			if (e.getIntValue() > max) {
+				link = e.getKey();
+				max = e.getIntValue();
+			}
+		}
 
 		Holder holder = new Holder(link, activities, new ArrayList<>(),
 			FacilityAttractionModelWork.INSTANCE.predict(features, null),
@@ -227,7 +242,7 @@ public class CreateMATSimFacilities implements MATSimAppCommand {
 
 		// Search for the original drawn coordinate of the associated link
 		for (int i = 0; i < links.size(); i++) {
-			if (links.get(i).equals(link)) {
+			if (links.get(i).getId().equals(link)) {
 				holder.coords.add(coords.get(i));
 				break;
 			}
@@ -239,9 +254,7 @@ public class CreateMATSimFacilities implements MATSimAppCommand {
 	/**
 	 * Sample coordinates within polygon.
 	 */
-	private List<Coord> samplePoints(MultiPolygon geometry, int n) {
-
-		SplittableRandom rnd = new SplittableRandom();
+	private List<Coord> samplePoints(MultiPolygon geometry, int n, SplittableRandom rnd) {
 
 		List<Coord> result = new ArrayList<>();
 		Envelope bbox = geometry.getEnvelopeInternal();
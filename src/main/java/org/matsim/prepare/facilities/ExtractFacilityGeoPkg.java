@@ -9,10 +9,14 @@ import de.topobyte.osm4j.core.dataset.InMemoryMapDataSet;
 import de.topobyte.osm4j.core.dataset.MapDataSetLoader;
 import de.topobyte.osm4j.core.model.iface.*;
 import de.topobyte.osm4j.core.resolve.EntityNotFoundException;
+import de.topobyte.osm4j.core.resolve.OsmEntityProvider;
 import de.topobyte.osm4j.geometry.GeometryBuilder;
 import de.topobyte.osm4j.pbf.seq.PbfIterator;
 import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.ObjectCollection;
@@ -44,7 +48,9 @@ import org.matsim.core.utils.io.IOUtils;
 import org.matsim.run.OpenBerlinScenario;
 import picocli.CommandLine;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -75,6 +81,11 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 	 */
 	private static final double INTERSECT_THRESHOLD = 0.2;
 
+	/**
+	 * Number of features written in one transaction.
+	 */
+	private static final int BATCH_SIZE = 50_000;
+
 	private final GeometryBuilder geometryBuilder = new GeometryBuilder();
 	@CommandLine.Option(names = "--input", description = "Path to input .pbf file", required = true)
 	private Path pbf;
@@ -84,6 +95,8 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 	private Path mappingPath;
 	@CommandLine.Option(names = "--exclude", description = "Exclude these activities types from the output", split = ",", defaultValue = "")
 	private Set<String> exclude;
+	@CommandLine.Option(names = "--streaming", description = "Read the pbf file in multiple passes, instead of loading it into memory. Needed for large regions.")
+	private boolean streaming;
 
 	@CommandLine.Mixin
 	private CrsOptions crs = new CrsOptions("EPSG:4326", OpenBerlinScenario.CRS);
@@ -97,7 +110,10 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 	private Long2ObjectMap<Feature> landuse;
 	private Long2ObjectMap<Feature> entities;
 	private MathTransform transform;
-	private InMemoryMapDataSet data;
+	/**
+	 * Provides nodes and ways to build geometries.
+	 */
+	private OsmEntityProvider data;
 	private int ignored;
 
 	public static void main(String[] args) {
@@ -107,8 +123,6 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 	@Override
 	public Integer call() throws Exception {
 
-		PbfIterator reader = new PbfIterator(Files.newInputStream(pbf), true);
-
 		config = new ObjectMapper().readerFor(ActivityMapping.class).readValue(mappingPath.toFile());
 
 		CRSAuthorityFactory cFactory = CRS.getAuthorityFactory(true);
@@ -144,29 +158,10 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 		entities = new Long2ObjectLinkedOpenHashMap<>();
 		landuse = new Long2ObjectLinkedOpenHashMap<>();
 
-		data = MapDataSetLoader.read(reader, true, true, true);
-
-		log.info("Finished loading pbf file.");
-
-		TLongObjectIterator<OsmNode> it = data.getNodes().iterator();
-		while (it.hasNext()) {
-			it.advance();
-			process(it.value());
-		}
-
-		log.info("Collected {} POIs", pois.size());
-
-		TLongObjectIterator<OsmWay> it2 = data.getWays().iterator();
-		while (it2.hasNext()) {
-			it2.advance();
-			process(it2.value());
-		}
-
-		TLongObjectIterator<OsmRelation> it3 = data.getRelations().iterator();
-		while (it3.hasNext()) {
-			it3.advance();
-			process(it3.value());
-		}
+		if (streaming)
+			readStreaming();
+		else
+			readInMemory();
 
 		log.info("Collected {} landuse shapes", landuse.size());
 		log.info("Collected {} other entities", entities.size());
@@ -199,19 +194,15 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 		ds.createSchema(ft.featureType);
 
 		SimpleFeatureStore source = (SimpleFeatureStore) ds.getFeatureSource(ft.featureType.getTypeName());
-		ListFeatureCollection collection = new ListFeatureCollection(ft.featureType);
-
-		addFeatures(entities, ft, collection);
-		addFeatures(landuse, ft, collection);
-		addFeatures(pois, ft, collection);
 
 		Transaction transaction = new DefaultTransaction("create");
 		source.setTransaction(transaction);
 
-		source.addFeatures(collection);
-		transaction.commit();
+		long written = writeFeatures(entities, ft, source, transaction);
+		written += writeFeatures(landuse, ft, source, transaction);
+		written += writeFeatures(pois, ft, source, transaction);
 
-		log.info("Wrote {} features", collection.size());
+		log.info("Wrote {} features", written);
 
 		transaction.close();
 
@@ -223,6 +214,126 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 		return 0;
 	}
 
+	/**
+	 * Load the whole pbf file into memory and process all entities.
+	 */
+	private void readInMemory() throws IOException {
+
+		InMemoryMapDataSet dataSet = MapDataSetLoader.read(new PbfIterator(Files.newInputStream(pbf), true), true, true, true);
+		data = dataSet;
+
+		log.info("Finished loading pbf file.");
+
+		TLongObjectIterator<OsmNode> it = dataSet.getNodes().iterator();
+		while (it.hasNext()) {
+			it.advance();
+			process(it.value());
+		}
+
+		log.info("Collected {} POIs", pois.size());
+
+		TLongObjectIterator<OsmWay> it2 = dataSet.getWays().iterator();
+		while (it2.hasNext()) {
+			it2.advance();
+			process(it2.value());
+		}
+
+		TLongObjectIterator<OsmRelation> it3 = dataSet.getRelations().iterator();
+		while (it3.hasNext()) {
+			it3.advance();
+			process(it3.value());
+		}
+	}
+
+	/**
+	 * Read the pbf file in multiple passes. Only relevant relations, ways that are members of these relations, and
+	 * coordinates of needed nodes are kept. Coordinates are stored off-heap.
+	 */
+	private void readStreaming() throws IOException {
+
+		// 1. Relevant relations and their member ways
+		Long2ObjectMap<OsmRelation> relations = new Long2ObjectLinkedOpenHashMap<>();
+		LongSet memberWays = new LongOpenHashSet();
+		try (InputStream in = Files.newInputStream(pbf)) {
+			for (EntityContainer c : new PbfIterator(in, false)) {
+				if (c.getType() == EntityType.Relation && classify(c.getEntity()) != null) {
+					OsmRelation rel = (OsmRelation) c.getEntity();
+					relations.put(rel.getId(), rel);
+					for (int i = 0; i < rel.getNumberOfMembers(); i++) {
+						if (rel.getMember(i).getType() == EntityType.Way)
+							memberWays.add(rel.getMember(i).getId());
+					}
+				}
+			}
+		}
+
+		log.info("Pass 1: collected {} relations with {} member ways", relations.size(), memberWays.size());
+
+		try (NodeStore nodes = new NodeStore()) {
+
+			// 2. Mark nodes of relevant ways and keep member ways
+			Long2ObjectMap<OsmWay> ways = new Long2ObjectOpenHashMap<>();
+			try (InputStream in = Files.newInputStream(pbf)) {
+				for (EntityContainer c : new PbfIterator(in, false)) {
+					if (c.getType() == EntityType.Relation)
+						break;
+
+					if (c.getType() == EntityType.Way) {
+						OsmWay way = (OsmWay) c.getEntity();
+						boolean member = memberWays.contains(way.getId());
+						if (member || classify(way) != null) {
+							for (int i = 0; i < way.getNumberOfNodes(); i++) {
+								nodes.mark(way.getNodeId(i));
+							}
+						}
+
+						if (member)
+							ways.put(way.getId(), way);
+					}
+				}
+			}
+
+			log.info("Pass 2: collected {} member ways", ways.size());
+
+			// 3. Store coordinates and process nodes
+			try (InputStream in = Files.newInputStream(pbf)) {
+				for (EntityContainer c : new PbfIterator(in, false)) {
+					if (c.getType() != EntityType.Node)
+						break;
+
+					OsmNode node = (OsmNode) c.getEntity();
+					if (nodes.isMarked(node.getId()))
+						nodes.add(node);
+
+					process(node);
+				}
+			}
+
+			nodes.finish();
+			data = new StreamingEntityProvider(nodes, ways, relations);
+
+			log.info("Pass 3: stored {} node coordinates", nodes.size());
+			log.info("Collected {} POIs", pois.size());
+
+			// 4. Process ways and relations
+			try (InputStream in = Files.newInputStream(pbf)) {
+				for (EntityContainer c : new PbfIterator(in, false)) {
+					if (c.getType() == EntityType.Relation)
+						break;
+
+					if (c.getType() == EntityType.Way)
+						process(c.getEntity());
+				}
+			}
+
+			for (OsmRelation rel : relations.values()) {
+				process(rel);
+			}
+
+			data = null;
+		}
+	}
+
 	/**
 	 * Often landuse shapes are redundant if the area already contains enough detailed shapes with more specific types. These shapes are marked here.
 	 */
@@ -311,22 +422,33 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 		}
 	}
 
-	private void addFeatures(Long2ObjectMap<Feature> fts, FacilityFeatureExtractor exc,
-							 ListFeatureCollection collection) {
+	/**
+	 * Create and write features in batches, each batch is committed separately.
+	 *
+	 * @return number of written features
+	 */
+	private long writeFeatures(Long2ObjectMap<Feature> fts, FacilityFeatureExtractor exc,
+							   SimpleFeatureStore source, Transaction transaction) throws IOException {
+
+		List<Feature> values = fts.values().stream().filter(Feature::hasTypes).toList();
 
-		try (ProgressBar pb = new ProgressBar("Creating features", fts.size())) {
+		try (ProgressBar pb = new ProgressBar("Creating features", values.size())) {
+			for (int i = 0; i < values.size(); i += BATCH_SIZE) {
 
-			List<SimpleFeature> features = fts.values().parallelStream()
-				.filter(Feature::hasTypes)
-				.map(f -> {
-					pb.step();
-					return exc.createFeature(f);
-				})
-				.toList();
+				List<SimpleFeature> features = values.subList(i, Math.min(i + BATCH_SIZE, values.size())).parallelStream()
+					.map(f -> {
+						pb.step();
+						return exc.createFeature(f);
+					})
+					.toList();
 
-			// toList retains the original order
-			collection.addAll(features);
+				// toList retains the original order
+				source.addFeatures(new ListFeatureCollection(exc.featureType, features));
+				transaction.commit();
+			}
 		}
+
+		return values.size();
 	}
 
 	/**
@@ -361,51 +483,17 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 	 * Stores entities and geometries as necessary.
 	 */
 	private void process(OsmEntity entity) {
-		boolean filtered = true;
-		boolean isBuilding = false;
-		boolean isUnspecific = false;
-		boolean isBusStop = false;
-		boolean isTrainStation = false;
 
-		int n = entity.getNumberOfTags();
-		for (int i = 0; i < n; i++) {
-			OsmTag tag = entity.getTag(i);
-
-			// Buildings are always kept
-			if (tag.getKey().equals("building")) {
-				filtered = false;
-				isBuilding = true;
-				if (tag.getValue().equals("yes")) {
-					isUnspecific = true;
-				}
-				break;
-			}
-
-			if (tag.getKey().equals("highway") && tag.getValue().equals("bus_stop")) {
-				isBusStop = true;
-				filtered = false;
-				break;
-			}
-
-			if ((tag.getKey().equals("railway") && tag.getValue().equals("stop")) ||
-				(tag.getKey().equals("railway") && tag.getValue().equals("tram_stop"))) {
-				isTrainStation = true;
-				filtered = false;
-				break;
-			}
-
-			MappingConfig c = config.types.get(tag.getKey());
-			if (c != null) {
-				if (c.values.containsKey("*") || c.values.containsKey(tag.getValue())) {
-					filtered = false;
-					break;
-				}
-			}
-		}
-
-		if (filtered)
+		Tags tags = classify(entity);
+		if (tags == null)
 			return;
 
+		boolean isBuilding = tags.isBuilding();
+		boolean isUnspecific = tags.isUnspecific();
+		boolean isBusStop = tags.isBusStop();
+		boolean isTrainStation = tags.isTrainStation();
+		int n = entity.getNumberOfTags();
+
 		if (entity instanceof OsmNode node) {
 
 			Point p = geometryBuilder.build(node);
@@ -460,6 +548,58 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 		}
 	}
 
+	/**
+	 * Check the tags of an entity.
+	 *
+	 * @return null if the entity is not relevant
+	 */
+	@Nullable
+	private Tags classify(OsmEntity entity) {
+		boolean filtered = true;
+		boolean isBuilding = false;
+		boolean isUnspecific = false;
+		boolean isBusStop = false;
+		boolean isTrainStation = false;
+
+		int n = entity.getNumberOfTags();
+		for (int i = 0; i < n; i++) {
+			OsmTag tag = entity.getTag(i);
+
+			// Buildings are always kept
+			if (tag.getKey().equals("building")) {
+				filtered = false;
+				isBuilding = true;
+				if (tag.getValue().equals("yes")) {
+					isUnspecific = true;
+				}
+				break;
+			}
+
+			if (tag.getKey().equals("highway") && tag.getValue().equals("bus_stop")) {
+				isBusStop = true;
+				filtered = false;
+				break;
+			}
+
+			if ((tag.getKey().equals("railway") && tag.getValue().equals("stop")) ||
+				(tag.getKey().equals("railway") && tag.getValue().equals("tram_stop"))) {
+				isTrainStation = true;
+				filtered = false;
+				break;
+			}
+
+			MappingConfig c = config.types.get(tag.getKey());
+			if (c != null) {
+				if (c.values.containsKey("*") || c.values.containsKey(tag.getValue())) {
+					filtered = false;
+					break;
+				}
+			}
+		}
+
+		return filtered ? null : new Tags(isBuilding, isUnspecific, isBusStop, isTrainStation);
+	}
+
 	/**
 	 * Parse tags into features. Can also be from different entity.
 	 */
@@ -511,6 +651,40 @@ public class ExtractFacilityGeoPkg implements MATSimAppCommand {
 		return null;
 	}
 
+	private record Tags(boolean isBuilding, boolean isUnspecific, boolean isBusStop, boolean isTrainStation) {
+	}
+
+	/**
+	 * Resolves entities for geometry building from the data kept during streaming.
+	 */
+	private record StreamingEntityProvider(NodeStore nodes, Long2ObjectMap<OsmWay> ways,
+										   Long2ObjectMap<OsmRelation> relations) implements OsmEntityProvider {
+
+		@Override
+		public OsmNode getNode(long id) throws EntityNotFoundException {
+			OsmNode node = nodes.get(id);
+			if (node == null)
+				throw new EntityNotFoundException("Node " + id + " not found");
+			return node;
+		}
+
+		@Override
+		public OsmWay getWay(long id) throws EntityNotFoundException {
+			OsmWay way = ways.get(id);
+			if (way == null)
+				throw new EntityNotFoundException("Way " + id + " not found");
+			return way;
+		}
+
+		@Override
+		public OsmRelation getRelation(long id) throws EntityNotFoundException {
+			OsmRelation rel = relations.get(id);
+			if (rel == null)
+				throw new EntityNotFoundException("Relation " + id + " not found");
+			return rel;
+		}
+	}
+
 	private static final class ActivityMapping {
 		private final Map<String, MappingConfig> types = new HashMap<>();
 
@@ -8,26 +8,48 @@ import org.geotools.api.referencing.FactoryException;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.referencing.CRS;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.TopologyException;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.operation.buffer.BufferParameters;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
-import java.util.OptionalDouble;
 import java.util.function.Predicate;
 
 /**
  * Class to extract more features / columns for the facility shape file.
+ * All methods are thread-safe, features can be created in parallel.
  */
 final class FacilityFeatureExtractor {
 
+	/**
+	 * Landuse types that are aggregated in the neighbourhood of each feature.
+	 */
+	private static final String[] LANDUSE = {"residential", "retail", "commercial", "recreation_ground"};
+
+	/**
+	 * Maximum search distance for the nearest stops.
+	 */
+	private static final double MAX_STOP_DISTANCE = 20000;
+
 	final STRtree entities;
 	final STRtree pois;
 	final STRtree landuse;
 
+	/**
+	 * Indices only containing bus stops and train stations, for nearest neighbour queries.
+	 */
+	private final STRtree busStops;
+	private final STRtree trainStops;
+
 	final SimpleFeatureType featureType;
 
 	final ThreadLocal<SimpleFeatureBuilder> featureBuilder;
@@ -41,6 +63,8 @@ final class FacilityFeatureExtractor {
 		this.entities = createIndex(entities);
 		this.pois = createIndex(pois);
 		this.landuse = createIndex(landuse);
+		this.busStops = createIndex(pois, f -> f.isBusStop);
+		this.trainStops = createIndex(pois, f -> f.isTrainStop);
 		this.types = types;
 
 		SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
@@ -82,9 +106,14 @@ final class FacilityFeatureExtractor {
 	}
 
 	private static STRtree createIndex(Long2ObjectMap<Feature> entities) {
+		return createIndex(entities, f -> true);
+	}
+
+	private static STRtree createIndex(Long2ObjectMap<Feature> entities, Predicate<Feature> filter) {
 		STRtree index = new STRtree();
 		for (Feature entity : entities.values()) {
-			index.insert(entity.geometry.getBoundary().getEnvelopeInternal(), entity);
+			if (filter.test(entity))
+				index.insert(entity.geometry.getBoundary().getEnvelopeInternal(), entity);
 		}
 		index.build();
 		return index;
@@ -107,16 +136,19 @@ final class FacilityFeatureExtractor {
 		b.add(ft.isBuilding);
 		b.add(ft.isResidentialOnly());
 
-		b.add(calcLanduse("residential", ft, 500));
-		b.add(calcLanduse("residential", ft, 1500));
-		b.add(calcLanduse("retail", ft, 500));
-		b.add(calcLanduse("retail", ft, 1500));
-		b.add(calcLanduse("commercial", ft, 500));
-		b.add(calcLanduse("commercial", ft, 1500));
-		b.add(calcLanduse("recreation_ground", ft, 1500));
-		b.add(calcArea("parking", ft, 500));
-		b.add(findNearest(ft, f -> f.isBusStop));
-		b.add(findNearest(ft, f -> f.isTrainStop));
+		Point centroid = ft.geometry.getCentroid();
+		double[] area = calcLanduse(ft, new Neighbourhood(centroid, 500), new Neighbourhood(centroid, 1500));
+
+		// residential, retail, commercial for both radii, recreation only for the larger one
+		for (int i = 0; i < LANDUSE.length - 1; i++) {
+			b.add(area[2 * i]);
+			b.add(area[2 * i + 1]);
+		}
+		b.add(area[2 * LANDUSE.length - 1]);
+
+		b.add(calcArea("parking", ft, new Neighbourhood(centroid, 500)));
+		b.add(findNearest(ft, busStops));
+		b.add(findNearest(ft, trainStops));
 
 		b.add(countPOIs("leisure", ft));
 		b.add(countPOIs("leisure", ft, 250));
@@ -132,50 +164,67 @@ final class FacilityFeatureExtractor {
 	}
 
 	/**
-	 * Calculate the area of landuse within a given radius.
+	 * Calculate the area of all landuse types within two radii. The buffer geometries are shared by all types.
+	 *
+	 * @return area in square kilometers for each type, with the smaller radius first.
 	 */
 	@SuppressWarnings("unchecked")
-	private double calcLanduse(String type, Feature ft, double radius) {
+	private double[] calcLanduse(Feature ft, Neighbourhood small, Neighbourhood large) {
 
+		double[] res = new double[LANDUSE.length * 2];
 		if (ft.isResidentialOnly()) {
-			return 0;
+			return res;
 		}
 
-		MultiPolygon geometry = ft.geometry;
-		Geometry bbox = geometry.getCentroid().buffer(radius);
-
-		double res = 0;
-		List<Feature> query = landuse.query(bbox.getEnvelopeInternal());
+		List<Feature> query = landuse.query(large.envelope);
 		for (Feature q : query) {
 
-			if (!q.geomIssues && q.hasLanduse(type)) {
+			if (q.geomIssues)
+				continue;
+
+			// areas are only computed if needed, and then shared between types
+			double areaSmall = Double.NaN;
+			double areaLarge = Double.NaN;
+			for (int i = 0; i < LANDUSE.length; i++) {
+				if (!q.hasLanduse(LANDUSE[i]))
+					continue;
+
 				try {
-					res += q.geometry.intersection(bbox).getArea();
+					if (Double.isNaN(areaLarge)) {
+						areaSmall = small.intersectionArea(q.geometry);
+						areaLarge = large.intersectionArea(q.geometry);
+					}
 				} catch (TopologyException e) {
 					q.geomIssues = true;
+					break;
 				}
+
+				res[2 * i] += areaSmall;
+				res[2 * i + 1] += areaLarge;
 			}
 		}
 
 		// convert to square kilometers
-		return BigDecimal.valueOf(res / 1_000_000).setScale(4, RoundingMode.HALF_EVEN).doubleValue();
+		for (int i = 0; i < res.length; i++) {
+			res[i] = BigDecimal.valueOf(res[i] / 1_000_000).setScale(4, RoundingMode.HALF_EVEN).doubleValue();
+		}
+
+		return res;
 	}
 
-	private double calcArea(String activityType, Feature ft, double radius) {
+	@SuppressWarnings("unchecked")
+	private double calcArea(String activityType, Feature ft, Neighbourhood n) {
 
 		if (ft.isResidentialOnly()) {
 			return 0;
 		}
 
-		MultiPolygon geometry = ft.geometry;
-		Geometry bbox = geometry.getCentroid().buffer(radius);
-
 		double res = 0;
-		List<Feature> query = entities.query(bbox.getEnvelopeInternal());
+		List<Feature> query = entities.query(n.envelope);
 		for (Feature q : query) {
 			if (!q.geomIssues && q.hasType(activityType)) {
 				try {
-					res += q.geometry.intersection(bbox).getArea();
+					res += n.intersectionArea(q.geometry);
 				} catch (TopologyException e) {
 					q.geomIssues = true;
 				}
@@ -185,31 +234,19 @@ final class FacilityFeatureExtractor {
 		return BigDecimal.valueOf(res / 1_000).setScale(4, RoundingMode.HALF_EVEN).doubleValue();
 	}
 
-	private double findNearest(Feature ft, Predicate<Feature> filter) {
+	/**
+	 * Distance to the nearest feature in the index, at most {@link #MAX_STOP_DISTANCE}.
+	 */
+	private double findNearest(Feature ft, STRtree index) {
 
-		if (ft.isResidentialOnly()) {
+		if (ft.isResidentialOnly() || index.isEmpty()) {
 			return 0;
 		}
 
-		MultiPolygon geometry = ft.geometry;
-		for (Integer radius : List.of(500, 5000, 20000)) {
-
-			Geometry bbox = geometry.getCentroid().buffer(radius);
-
-			List<Feature> query = pois.query(bbox.getEnvelopeInternal());
-
-			OptionalDouble dist = query.stream()
-				.filter(filter)
-				.mapToDouble(a -> a.geometry.distance(geometry))
-				.min();
+		Feature nearest = (Feature) index.nearestNeighbour(ft.geometry.getBoundary().getEnvelopeInternal(), ft,
+			(a, b) -> ((Feature) a.getItem()).geometry.distance(((Feature) b.getItem()).geometry));
 
-			if (dist.isPresent()) {
-				return dist.getAsDouble();
-			}
-
-		}
-
-		return 20000;
+		return Math.min(nearest.geometry.distance(ft.geometry), MAX_STOP_DISTANCE);
 	}
 
 	private int countPOIs(String type, Feature ft) {
@@ -241,12 +278,14 @@ final class FacilityFeatureExtractor {
 		// Base count
 		int count = countPOIs(type, ft);
 
-		Geometry bbox = ft.geometry.getCentroid().buffer(radius);
+		Point centroid = ft.geometry.getCentroid();
+		Envelope env = centroid.getEnvelopeInternal();
+		env.expandBy(radius);
 
-		Iterable<Feature> query = entities.query(bbox.getEnvelopeInternal());
+		Iterable<Feature> query = entities.query(env);
 		for (Feature q : query) {
 			try {
-				if (!q.geomIssues && q.geometry.distance(ft.geometry.getCentroid()) < radius && q != ft) {
+				if (!q.geomIssues && q != ft && q.geometry.distance(centroid) < radius) {
 					count += countPOIs(type, q);
 				}
 			} catch (TopologyException e) {
@@ -256,6 +295,57 @@ final class FacilityFeatureExtractor {
 
 		return count;
 	}
-}
 
+	/**
+	 * Circular buffer around a point, which is prepared for repeated intersection tests.
+	 */
+	private static final class Neighbourhood {
+
+		/**
+		 * Ratio of the inner radius of the buffer polygon to the radius, for the default number of quadrant segments.
+		 */
+		private static final double INNER = Math.cos(Math.PI / (4 * BufferParameters.DEFAULT_QUADRANT_SEGMENTS));
+
+		private final Coordinate center;
+		private final Geometry buffer;
+		private final Envelope envelope;
+		private final double innerRadiusSq;
+		private PreparedGeometry prepared;
+
+		private Neighbourhood(Point center, double radius) {
+			this.center = center.getCoordinate();
+			this.buffer = center.buffer(radius);
+			this.envelope = buffer.getEnvelopeInternal();
+			this.innerRadiusSq = (radius * INNER) * (radius * INNER);
+		}
+
+		/**
+		 * Area of the intersection of the buffer with a geometry.
+		 * Geometries, whose envelope is inside the buffer, or which do not intersect are handled without exact intersection.
+		 */
+		double intersectionArea(Geometry geom) {
+
+			Envelope env = geom.getEnvelopeInternal();
+			if (!envelope.intersects(env))
+				return 0;
+
+			if (contains(env.getMinX(), env.getMinY()) && contains(env.getMinX(), env.getMaxY())
+				&& contains(env.getMaxX(), env.getMinY()) && contains(env.getMaxX(), env.getMaxY()))
+				return geom.getArea();
+
+			if (prepared == null)
+				prepared = PreparedGeometryFactory.prepare(buffer);
 
+			if (!prepared.intersects(geom))
+				return 0;
+
+			return geom.intersection(buffer).getArea();
+		}
+
+		private boolean contains(double x, double y) {
+			double dx = x - center.x;
+			double dy = y - center.y;
+			return dx * dx + dy * dy <= innerRadiusSq;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package org.matsim.prepare.facilities;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.ItemBoundable;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.utils.geometry.CoordUtils;
+
+import java.util.List;
+
+/**
+ * Spatial index over the straight line segments of all links. Queries return the same link as
+ * {@link org.matsim.core.network.NetworkUtils#getNearestLinkExactly(Network, Coord)}, including the tie-breaking by network order.
+ * <p>
+ * The index is built eagerly and is read-only afterward, so it can be queried from multiple threads.
+ */
+final class LinkIndex {
+
+	private final STRtree index = new STRtree();
+
+	LinkIndex(Network network) {
+		int i = 0;
+		for (Link link : network.getLinks().values()) {
+			Segment s = new Segment(link, i++);
+			index.insert(new Envelope(s.from.getX(), s.to.getX(), s.from.getY(), s.to.getY()), s);
+		}
+
+		index.build();
+	}
+
+	/**
+	 * Find the link with the smallest distance to the coordinate.
+	 */
+	Link getNearestLink(Coord coord) {
+
+		Envelope env = new Envelope(coord.getX(), coord.getX(), coord.getY(), coord.getY());
+		Segment nearest = (Segment) index.nearestNeighbour(env, coord, LinkIndex::distance);
+
+		if (nearest == null)
+			return null;
+
+		// Other segments with exactly the same distance, i.e. links in opposite direction, are resolved by their order in the network
+		double dist = nearest.distance(coord);
+		env.expandBy(dist);
+
+		List<Segment> candidates = index.query(env);
+		for (Segment s : candidates) {
+			if (s.order < nearest.order && s.distance(coord) <= dist)
+				nearest = s;
+		}
+
+		return nearest.link;
+	}
+
+	private static double distance(ItemBoundable a, ItemBoundable b) {
+		Object x = a.getItem();
+		Object y = b.getItem();
+		if (x instanceof Segment s)
+			return s.distance((Coord) y);
+
+		return ((Segment) y).distance((Coord) x);
+	}
+
+	private static final class Segment {
+
+		private final Link link;
+		private final int order;
+		private final Coord from;
+		private final Coord to;
+
+		private Segment(Link link, int order) {
+			this.link = link;
+			this.order = order;
+			this.from = link.getFromNode().getCoord();
+			this.to = link.getToNode().getCoord();
+		}
+
+		private double distance(Coord coord) {
+			return CoordUtils.distancePointLinesegment(from, to, coord);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package org.matsim.prepare.facilities;
+
+import de.topobyte.osm4j.core.model.iface.OsmNode;
+import de.topobyte.osm4j.core.model.impl.Node;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores coordinates of a subset of osm nodes in a memory-mapped file, so that they do not occupy heap space.
+ * <p>
+ * Nodes have to be marked first. Afterward, coordinates of marked nodes are added in ascending order of their ids, as they appear in pbf files.
+ * Lookups use binary search over the sorted ids.
+ */
+final class NodeStore implements AutoCloseable {
+
+	/**
+	 * Each record consists of the id and the fixed point coordinates.
+	 */
+	private static final int RECORD = 16;
+
+	/**
+	 * Size of each mapped chunk, a multiple of the record size.
+	 */
+	private static final int CHUNK = 1 << 30;
+
+	/**
+	 * Precision of osm coordinates.
+	 */
+	private static final double SCALE = 1e7;
+
+	/**
+	 * Bits are stored in pages, which are only allocated when used.
+	 */
+	private static final int PAGE_BITS = 30;
+
+	private long[][] marked = new long[16][];
+
+	private final Path file;
+	private DataOutputStream out;
+	private MappedByteBuffer[] chunks;
+	private long size;
+	private long lastId = Long.MIN_VALUE;
+
+	NodeStore() throws IOException {
+		this.file = Files.createTempFile("nodes", ".bin");
+		this.file.toFile().deleteOnExit();
+		this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 20));
+	}
+
+	/**
+	 * Mark a node whose coordinates will be needed. Negative ids are not supported and ignored.
+	 */
+	void mark(long id) {
+		if (id < 0)
+			return;
+
+		int page = (int) (id >>> PAGE_BITS);
+		if (page >= marked.length) {
+			long[][] copy = new long[Math.max(page + 1, marked.length * 2)][];
+			System.arraycopy(marked, 0, copy, 0, marked.length);
+			marked = copy;
+		}
+
+		if (marked[page] == null)
+			marked[page] = new long[1 << (PAGE_BITS - 6)];
+
+		int bit = (int) (id & ((1L << PAGE_BITS) - 1));
+		marked[page][bit >>> 6] |= 1L << bit;
+	}
+
+	boolean isMarked(long id) {
+		int page = (int) (id >>> PAGE_BITS);
+		if (id < 0 || page >= marked.length || marked[page] == null)
+			return false;
+
+		int bit = (int) (id & ((1L << PAGE_BITS) - 1));
+		return (marked[page][bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Add the coordinates of a node. Nodes must be added in ascending order of their id.
+	 */
+	void add(OsmNode node) {
+		if (node.getId() <= lastId)
+			throw new IllegalArgumentException("Nodes must be sorted by id, got %d after %d".formatted(node.getId(), lastId));
+
+		try {
+			out.writeLong(node.getId());
+			out.writeInt((int) Math.round(node.getLongitude() * SCALE));
+			out.writeInt((int) Math.round(node.getLatitude() * SCALE));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		lastId = node.getId();
+		size++;
+	}
+
+	/**
+	 * Finish adding nodes and map the file for reading. Marks are released.
+	 */
+	void finish() throws IOException {
+		out.close();
+		out = null;
+		marked = null;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long bytes = channel.size();
+			chunks = new MappedByteBuffer[(int) ((bytes + CHUNK - 1) / CHUNK)];
+			for (int i = 0; i < chunks.length; i++) {
+				long offset = (long) i * CHUNK;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK, bytes - offset));
+			}
+		}
+	}
+
+	/**
+	 * Number of stored nodes.
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Return the node with given id, or null if it is not stored.
+	 */
+	OsmNode get(long id) {
+
+		long lo = 0;
+		long hi = size - 1;
+		while (lo <= hi) {
+			long mid = (lo + hi) >>> 1;
+			long midId = getId(mid);
+			if (midId < id)
+				lo = mid + 1;
+			else if (midId > id)
+				hi = mid - 1;
+			else {
+				long pos = mid * RECORD;
+				MappedByteBuffer chunk = chunks[(int) (pos / CHUNK)];
+				int offset = (int) (pos % CHUNK);
+				return new Node(id, chunk.getInt(offset + 8) / SCALE, chunk.getInt(offset + 12) / SCALE);
+			}
+		}
+
+		return null;
+	}
+
+	private long getId(long idx) {
+		long pos = idx * RECORD;
+		return chunks[(int) (pos / CHUNK)].getLong((int) (pos % CHUNK));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (out != null)
+			out.close();
+
+		chunks = null;
+		Files.deleteIfExists(file);
+	}
+}
@@ -0,0 +1,52 @@
+package org.matsim.prepare.network;
+
+import java.util.stream.IntStream;
+
+/**
+ * Predictor that evaluates many rows of a column-oriented {@link FeatureMatrix} at once.
+ * Implementations must not allocate per row and must be safe to call concurrently on disjoint ranges.
+ */
+public interface BatchPredictor {
+
+	/**
+	 * Number of rows processed by one task.
+	 */
+	int CHUNK_SIZE = 4096;
+
+	/**
+	 * Feature names, the order determines the order of columns passed to {@link #predict(double[][], double[], int, int)}.
+	 */
+	String[] getFeatures();
+
+	/**
+	 * Predict rows in the range {@code [from, to)} and store them in {@code out} at the same index.
+	 *
+	 * @param ft one column per feature, in the order of {@link #getFeatures()}
+	 */
+	void predict(double[][] ft, double[] out, int from, int to);
+
+	/**
+	 * Predict all rows of the matrix, using parallel chunks.
+	 */
+	default double[] predict(FeatureMatrix matrix) {
+		double[] out = new double[matrix.rows()];
+		predict(matrix, out);
+		return out;
+	}
+
+	/**
+	 * Predict all rows of the matrix, using parallel chunks.
+	 */
+	default void predict(FeatureMatrix matrix, double[] out) {
+
+		if (out.length < matrix.rows())
+			throw new IllegalArgumentException("Output array too small: " + out.length + " < " + matrix.rows());
+
+		double[][] ft = matrix.columns(getFeatures());
+		int n = matrix.rows();
+		int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+		IntStream.range(0, chunks).parallel()
+			.forEach(c -> predict(ft, out, c * CHUNK_SIZE, Math.min(n, (c + 1) * CHUNK_SIZE)));
+	}
+}
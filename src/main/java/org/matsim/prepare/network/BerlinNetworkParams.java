@@ -3,14 +3,42 @@ package org.matsim.prepare.network;
 import org.matsim.application.prepare.Predictor;
 import org.matsim.application.prepare.network.params.NetworkModel;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 @SuppressWarnings("unused")
 public class BerlinNetworkParams implements NetworkModel {
+
+	/**
+	 * Junction types with a trained model.
+	 */
+	public static final Set<String> JUNCTION_TYPES = Set.of("traffic_light", "right_before_left", "priority");
+
+	private static final Map<Class<?>, TreeEnsembleRegressor> INTERPRETED = new ConcurrentHashMap<>();
+
+	private final boolean interpreted;
+
+	public BerlinNetworkParams() {
+		this(false);
+	}
+
+	/**
+	 * Create network params.
+	 *
+	 * @param interpreted use the array based {@link TreeEnsembleRegressor} instead of the generated sources.
+	 *                    The capacity model for traffic lights is always the generated one, because it contains additional scaling.
+	 */
+	public BerlinNetworkParams(boolean interpreted) {
+		this.interpreted = interpreted;
+	}
+
 	@Override
 	public Predictor capacity(String junctionType, String highwayType) {
 		return switch (junctionType) {
 			case "traffic_light" -> BerlinNetworkParams_capacity_traffic_light.INSTANCE;
-			case "right_before_left" -> BerlinNetworkParams_capacity_right_before_left.INSTANCE;
-			case "priority" -> BerlinNetworkParams_capacity_priority.INSTANCE;
+			case "right_before_left" -> model(BerlinNetworkParams_capacity_right_before_left.INSTANCE);
+			case "priority" -> model(BerlinNetworkParams_capacity_priority.INSTANCE);
 			default -> throw new IllegalArgumentException("Unknown type: " + junctionType);
 		};
 	}
@@ -18,12 +46,31 @@ public class BerlinNetworkParams implements NetworkModel {
 	@Override
 	public Predictor speedFactor(String junctionType, String highwayType) {
 		return switch (junctionType) {
-			case "traffic_light" -> BerlinNetworkParams_speedRelative_traffic_light.INSTANCE;
-			case "right_before_left" -> BerlinNetworkParams_speedRelative_right_before_left.INSTANCE;
-			case "priority" -> BerlinNetworkParams_speedRelative_priority.INSTANCE;
+			case "traffic_light" -> model(BerlinNetworkParams_speedRelative_traffic_light.INSTANCE);
+			case "right_before_left" -> model(BerlinNetworkParams_speedRelative_right_before_left.INSTANCE);
+			case "priority" -> model(BerlinNetworkParams_speedRelative_priority.INSTANCE);
 			default -> throw new IllegalArgumentException("Unknown type: " + junctionType);
 		};
 	}
-}
 
+	/**
+	 * Batch variant of {@link #capacity(String, String)}, to be used with a {@link FeatureMatrix} of all links with this junction type.
+	 */
+	public BatchPredictor batchCapacity(String junctionType) {
+		return (BatchPredictor) capacity(junctionType, null);
+	}
+
+	/**
+	 * Batch variant of {@link #speedFactor(String, String)}, to be used with a {@link FeatureMatrix} of all links with this junction type.
+	 */
+	public BatchPredictor batchSpeedFactor(String junctionType) {
+		return (BatchPredictor) speedFactor(junctionType, null);
+	}
+
+	private Predictor model(Predictor generated) {
+		if (!interpreted)
+			return generated;
 
+		return INTERPRETED.computeIfAbsent(generated.getClass(), TreeEnsembleRegressor::load);
+	}
+}
@@ -5,10 +5,11 @@ import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 /**
 * Generated model, do not modify.
 */
-public final class BerlinNetworkParams_capacity_priority implements FeatureRegressor {
+public final class BerlinNetworkParams_capacity_priority implements FeatureRegressor, BatchPredictor {
 
     public static BerlinNetworkParams_capacity_priority INSTANCE = new BerlinNetworkParams_capacity_priority();
     public static final double[] DEFAULT_PARAMS = {1784.558849944155, 1830.8929052688675, 1804.5291832103176, 1768.7316493589826, 1807.7341095728548, 1821.8375572610482, 1832.1935255586811, 1825.5607637595556, 1867.747319981965, 1842.681034301975, 1828.7885321870872, 1790.0922365782958, 1831.7157582674888, 1870.5949042571033, 1829.3910959294847, 1824.159345754533, 1868.4707639562555, 1869.808016358253, 1872.5522578258544, 1873.653837358919, 1850.600270571979, 1845.8058578572995, 1849.5222861330296, 1876.0267763817653, 1864.8973689905315, 1854.1365559121793, 1873.2206745552148, 1870.92499491686, 1860.574762365022, 1846.1454386598853, 1839.7098668446201, 1871.5515459936605, -57.18489544158277, -17.359064471674806, -40.07905065168397, -73.30419634435927, -38.201982923234986, -25.50887908753872, -15.503027314677803, -21.947521817107393, 10.307151403755647, -6.749748842792816, -19.730003061930287, -54.07966862269765, -16.61849747003284, 18.372733490384775, -18.71069377325524, -23.40693725585896, 14.725749803229801, 0.1758366318822235, 18.57679718017563, 19.620956857960564, 20.012037059172915, 21.125773639975385, 1.3440890924702367, -3.9683379950886484, 11.75415244286853, 3.5694801624303576, 20.62400785338186, 21.36201712259409, 13.718176619131293, 6.943735753554272, -9.423799846548532, 19.23371173585533, -51.466407827823616, -15.623158940333852, -36.071146518640184, -65.97377642248426, -34.381784207934196, -19.47828015621573, -15.125924370532836, -21.16934262901127, 14.779192799654437, -6.074774264366087, -17.392439489925557, -48.67170346214613, -14.956647494446905, 16.535460691780795, -16.839624429161315, -18.727267049901343, 14.578570094997843, 14.88403979918179, 17.963724674535634, 19.013195970676055, -7.263400666216611, 4.598911265055178, -3.571504369882068, 10.578737389712842, 2.4286791549719466, 13.709343193717206, 18.561606632448413, 19.225815440852234, 12.34635945404626, 6.249362703637171, -8.481420098354688, 17.310340086316657, -46.31976481823201, -14.060842045802602, -32.46403275740757, -59.37640093420302, -30.94360527697041, -21.321045705704236, -11.7079213832932, -17.720048958747007, -43.80453165690059, -13.51682823181143, -22.712117111499126, 10.128186564445366, 15.51705668676456, -12.574940326301785, 14.140512893352033, -6.716997862316084, 17.51069934844953, 15.800297366117304, 11.810906518634745, -16.866038041024748, -7.633277745497601, 15.579306364874345, 17.111877309571845, 1.0887118500753805, -1.4521842989237632, 9.640911420445843, 2.8912787221925567, 16.705445953944764, 17.303234145001436, 11.202808916303784, 5.7072502466139765, -15.699021609371304, -43.56260977285868, -13.688370154617099, -31.7223920738912, -53.438760553343656, -29.94112315586601, -15.187837827700879, -20.270623270231773, -11.743436630640979, -17.73710457920756, 8.029833560811731, -22.80115655755949, -1.4030126896607413, -1.2102368507380459, -15.710563671845462, -39.424080345516664, -12.109300212486025, -17.93203307037315, 9.788593432030074, 4.623138921986039, 15.717805133898773, 10.022752692265918, 13.729089529643339, 14.947556118881451, -0.48485776148331716, -2.207575207971871, -3.1911242312472186, 18.328467129793747, 8.584146436489233, 14.40477243795604, 2.7515823725766753, -8.310611113571305, 12.917565268107802, -39.206349901740815, -12.319533270811341, -28.550153786398972, -48.09488530085633, -25.921313297634807, -28.123412426757433, -10.000248199527539, -5.93594884304195, -14.40374811682427, -35.481670503161745, -10.974805093911886, -18.628974014795375, 8.185302305801365, 12.908298937126325, -11.212752045631088, 13.090445229081064, -9.485508371275102, 3.75758088654144, 12.0845593543418, 13.364792861428445, 9.373290782727441, -15.646685387233427, -6.038888808802302, 12.729619343605636, 13.905934085351767, -6.019358786305765, 0.08127218327038643, -3.29265963781402, 9.51806518964584, 14.560549058499337, 3.4608163614874314, -12.691647159924507, -35.285715121045406, -10.053967991249142, -24.071067073276925, -43.28539751623427, -24.666395092691353, -12.292905614299679, -16.50993180340701, -9.362993362421665, -14.456094987109715, 6.865734031939998, -19.458111530303476, -0.1410496480644644, -1.5574553044632475, -12.86213353103227, -31.933504173641662, -9.800889582914373, -14.667337539990479, 9.306893415306481, 12.751318677383528, 8.231911055431047, 8.720360543351362, 12.314289033071198, 12.164707993289838, -5.417422864359885, 11.250570411682004, -7.934281764983652, 2.4964421137027735, 6.578712355231113, 2.3298921850578114, -6.988433361518439, 7.67525475003819, 11.631069984314518, -31.757143923912402, -9.902476973574304, -23.288031053022735, -38.95685747717177, -21.75651819978419, -8.500233921316127, -11.31268624493115, -2.9287138849878644, -17.088010658441476, -12.137839452793598, 6.17916052982692, -10.477245845328154, -4.522289688321925, -28.740154389880498, -8.820800776762027, 9.639365904248912, -13.65514311195309, -5.288024066403768, 1.5502944650882042, 4.140257355210953, 11.291205214587016, 7.802434352393243, -5.3902400372819885, 7.871112621723487, 11.082910366917503, 9.329336533700163, 12.461047489335604, 13.191192971065059, 12.001343491679442, 8.952997879938426, 9.990543979432637, 5.122801722147098, -34.61460050142692, -25.729385686700823, -8.058323627546628, -19.62199051884229, -35.06116961096083, -19.58086595978033, -3.5985355374730044, -9.046118304445326, -10.590178881977096, 5.561244501573956, -8.743713491256722, -25.86613705589612, -7.9387207061168255, 8.675429361606383, -12.289628786664188, -20.26394914717879, -2.9970140657420132, 6.588479974602385, -13.15249721984825, 10.531858412290774, 2.59501552742958, -3.538878148090293, -5.687280303291236, 4.0828702784579445, 0.7814845122057373, 7.714831390123973, 11.024585142116791, 11.626778205468213, 10.583882332943086, 11.019391975197259, 8.795282269564517, 5.363704983168496, -25.72328593312946, -7.958144531249919, -18.997028952858493, -31.555053888304585, -17.622779741627603, -6.66471655646728, -10.38493535224562, -8.207144702687565, -1.726645635481787, -14.368668147242236, -9.922062857629339, -3.2483061362754926, 10.007991281508922, -8.600258993056956, -23.27952497209776, -7.144848635804326, 7.807886386082008, -11.060665931522326, -4.765558855288945, 1.1209094612772288, 3.334313826436439, 7.112893287892212, -5.448188175201096, 6.185449775505031, 9.069639069210645, 7.350902971461792, 10.210313146401642, 10.506400551106498, 9.919775833672025, 7.302197899260218, 8.984404262360844, 3.8840907317768094, -27.590622647192863, -18.77111532437583, -6.135894238153995, -15.862400347600062, -28.346962326049766, -9.913214334054507, -18.221627692634193, 0.34888191490758674, -9.83420987701368, 3.3999120867317907, -6.929451707681259, 3.5053078855313906, -7.144740104352948, -20.949937799626696, -6.58826722259512, 6.106292315382221, -11.117858681604192, -5.57483017255657, 7.520862152185206, 7.835056874665639, 3.416171644944263, -7.275462899490776, 10.357494679967845, -0.7513902534482945, 0.5723633475668971, 12.028349682092468, 5.550243087617454, 9.421083268669838, 0.6836590880968788, 2.000605363257019, 7.975300867931096, 6.096248247782362, -20.67831335856107, -5.522304760614932, -14.296011075471453, -25.512266891479452, -17.61957328414869, -11.129946174775569, 0.2076942070741811, -6.271226198176444, 6.918843266522088, -6.1165610073010726, -8.088270912399265, -4.194184108543013, 7.388145569020615, -0.8899859495160222, -8.176156366822026, -18.85494434703437, -5.929440413665676, 6.048698346676951, -9.561846109137745, -6.341731463114101, 5.934179811702621, 6.929342509354964, 3.0745545126106553, -6.547916375903597, 2.7452563271401504, 6.471299326285588, 1.800544864984088, 7.177771104725368, 0.6152933133032776, 8.843233726582527, -2.2687866396514775, 5.353113233867606, -18.610481937662634, -5.54571600232797, -13.89756771596257, -22.961040084838828, -15.8576160297389, -10.75318632724417, 1.7081953606006488, -4.546029370701968, -7.325948271845615, 3.30180350731126, -13.534218507766244, 3.336341000794995, -6.367155408107815, -16.96944949063344, -5.336496447753811, 4.992325275545575, -9.04988815799348, -2.7769996032710047, -24.180264602660657, -3.915222463607352, 3.957165926725396, -10.347333971220541, 11.522781956370052, 0.6655278907565016, -6.104171059926151, 7.867129843139456, 1.422742796560008, 8.916945355379847, 7.919456340937178, 5.039728430729934, 4.150706550729004, 6.746581329203429, -16.74943443196602, -4.415502805709739, -11.65248124373574, -20.664935609181683, -14.066702310174463, -6.064220343844052, 5.581105925625603, -4.182324150146668, -5.949056452902873, -6.300581539303698, 2.9716230431915136, -12.1807964859004, -4.54163452754153, -15.27250416148749, -4.802846995544338, 4.944596040621965, -7.783273947379098, -2.4992995700831386, -21.762238403319834, 2.952569349496006, -9.312600771147299, 10.37050384242337, 0.5989751388828902, -5.493753980000614, 7.080417166137504, 1.2804685088685088, 8.02525088557473, -1.881811005909918, 7.362809535998543, 4.65094944801793, 3.76413980059322, 6.004954771801874, -20.038170621317896, -10.45954706365383, -3.973952709833681, -11.049059610476329, -18.598442428588825, -13.897330044399173, 0.2933917297948682, -12.805108679746724, -3.211132194667485, -5.256412200051962, 0.9731080958303739, -7.850208235842243, -3.4467956741329178, 7.06049525174184, -5.13763199121836, -13.745253628817034, -4.322562121581936, 2.6820036496285766, 8.234509840934198, -6.209004496490426, -13.617436448096749, -6.041033922342031, 5.920065870132079, 5.12451950847147, 5.5873157012440435, 5.6014640608787065, -4.748811817784154, 6.558211869133665, 2.0197125254621358, -8.138147400991983, 3.1645556093751637, 6.192063282453066, -11.717106081008431, -25.60732184831464, -7.7723798392797905, 1.01282805559104, -17.12562698807805, -14.834338697705782, -7.950886277220267, -9.739068025100842, -3.5861785611575976, 3.2981033729840394, -8.73345534224234, -2.2434532969837973, -5.391891485479027, 3.162260802664174, 1.4477880427413812, -5.4933652480392094, 3.350949977669671, -6.596341942539365, -10.870090475410919, 1.9771269648781324, 0.22654421880826267, -10.725026735577806, 7.31982454073615, 2.096248064337794, 4.910068388532427, 5.614916637917186, -4.247553334602574, 5.277836936522187, 7.252863634799185, 0.9582524876249633, -0.8148955329257238, 5.9870378180574075, -16.813881037927136, -4.521286178707078, -9.042162585203565, -15.900191829681356, -10.970621817588567, -5.455732056283345, -3.146680813605711, 5.324378098447918, -2.5573159053470644, -19.856958435035434, -4.385289609961773, 3.4990547091162982, -7.409920585492279, -4.091715573829923, 2.106688527674029, -11.424523904973375, -3.2612041904448503, 3.4248417115404544, -5.990507662817762, -5.348856170018195, 3.820669199519474, 4.295916330887828, 1.6078951633158454, -2.7637686503271364, -11.122210161685544, 10.889223496221419, 6.686765444362752, 2.8403871898070387, 10.217211823096273, -0.5875965979129151, 2.6765980547513104, 3.13836910045307, -11.827513920084508, -2.945614562034521, -8.084292461792469, -14.310172654469767, -11.983445259093758, -11.260831331718615, -11.424803647654054, -3.2236558972296105, 3.469151775202088, -2.711626819749924, 5.670903410911337, -3.342056895168909, -4.2017727335156065, 2.883060709196615, -10.23741399383497, 5.489948631286142, -3.895106342502798, -10.282071630304074, -2.935083737563991, 3.38962170031788, -5.152816149929797, -5.436749084613586, 3.2731292801845067, 3.875077115632049, 1.4471056031445715, -5.547431667901539, 10.127438450622174, 0.6828917341685518, 3.6008904914081237, 10.00760292510948, 4.887325692353337, 1.2897144009090205, -14.147441816175828, -5.061371539786966, -12.879155239740967, -9.29929086613631, -10.05797872400236, -3.8496480162000637, 5.855104891102724, -2.7980730622386916, -2.725503833618285, -3.8442379474421275, -3.3879892587426377, 2.1107703562037994, -3.833955340463529, 4.372723919710894, -3.6331847444278615, -12.886781788662853, -0.5555291485334781, 2.0040143840371174, 3.7789777047178563, 1.3023950271604972, -4.992688545655234, 5.942222918929252, 1.9656458479421008, -8.13445182093832, 6.193787588119388, 4.481517680508207, 6.4843154999060095, 4.897214285278128, 5.348573771990016, 0.21884484668789073, -3.6938318405146577, 3.942616215260472, -9.944789080556106, -3.6789828957235535, -11.591239688873252, -10.35163907623243, -9.195294105789442, -1.0783883611889888, -3.569430372082186, -8.099689530081955, 3.9438177280423634, -2.9387393703972013, -8.87046884710095, -2.2581798927306167, 4.674238421086407, -2.6937315042053247, -11.59810369707034, -13.300464378024802, -13.0693387037002, -0.7680791383468066, 5.496133083752156, -9.438019694548016, 4.725185720269894, -2.336881865858882, 8.39464343351448, 0.22220373722656694, 6.212470767974613, -2.827703883647719, 1.8602584696253086, 4.450312823038881, 5.89612065666575, 2.0897729441664326, -5.46232343034289, 3.2340884950083906, -14.28750740127525, -6.581407905861005, -2.171573778183913, -6.96144117832163, -10.44547185906152, 0.5945838058467843, -17.791310091971873, -2.7050324430321906, -19.15611675444058, -1.266836496928772, -8.54154134974732, -4.42744124672586, 0.754631769399277, 3.2842118267953424, -18.903706493377268, -2.8339919757842016, -5.880598064422128, 5.7916415986016965, 5.507174728393315, -3.3904829451475473, 7.135540578024386, -3.6638471557752186, 0.747308494372234, 3.009505719045748, 2.828908263191521, -5.3445023738012045, 4.397636028153488, 1.5638551179018088, 0.6269053632763011, -10.135163370131968, -1.8206693538025993, 3.6952422783103964, -12.858756680297468, -5.923267204143205, -3.1418446389214862, -9.400924697276244, 0.5351253021236397, -16.012179513930796, -3.478398017191047, -2.7630266854166528, -9.291039171218454, -2.5696460086105075, 2.3658392064810996, -0.4040489258686085, -5.225530403964458, -2.634251604971922, -0.5286151333408158, 6.92642336338104, -11.60124794799511, 2.5487954922513145, 2.170472672360377, 2.8245682764923075, -2.9468531025258495, 3.1863857660288786, -12.19632655596685, -2.4234967663851084, -1.5973790673165764, 0.8173552994847895, 7.236119735871904, -0.3897771892542811, -8.86126264865545, 4.579548736164515, 3.802901045795991, 1.1714482887921327, -6.60826700782728, -14.352272923278424, -26.641052405947278, -18.2316500720973, -5.510110626743133, 0.47848138852546707, -2.174458925782502, -11.776919500031504, -3.671800365416145, 11.699602542545067, 1.6770787723643712, -5.171948556082316, -11.48882826915117, -0.514917012187992, -1.1812130691605127, 8.784045687719939, -0.5135408676128199, -2.725954604298525, -10.665136548463746, 2.6457319438030886, -1.7021494093902085, -4.174958588033615, 4.284146924802098, -1.7477920644256753, 3.888514034883685, 0.7034713196348655, 3.063294603744018, -1.7151584019780355, -8.7488754456128, 7.889137787196531, -0.09847057436871626, 2.11523841851871, -3.01629928573278, -7.210428581961996, -7.7518377379174215, -1.9999283105612387, -10.132444578170297, -3.4151579100995586, -8.138074321313047, 0.9306800843739588, 1.289868556671502, 3.299914258658526, -4.612537727263889, 2.303500373311613, -2.4039496912156366, -6.342280738466806, -9.810904897053637, -0.16052165582736094, 5.264380035400206, -0.20690860043798392, 6.26162879814435, -11.180613416262693, -2.318390603841514, 2.733295928720378, -4.248943957624434, 3.040877318877804, -3.261269751570296, 1.1634467488277946, -2.785550423383553, 2.904141507110519, 0.09120287135213434, -9.356448570250986, 5.3916392204977015, 2.368985000910525, -1.8435906355303346, -6.199796699082284, -0.5528999100239356, -9.788092209994494, 3.2533188048854313, -2.180410480085067, 7.936047851500662, -0.8645828539589724, 0.6116390282606511, -10.315216006323947, -4.369450099128123, -6.924274740642758, -1.2678726893454566, -6.689580948773269, 1.900705963748929, -4.15128386277382, 2.0731504312740197, -2.163554666917393, -5.708052331833156, -0.11514047698252515, 5.635465770200813, -10.062552129200185, -2.086551549157208, 2.4181465033007057, -3.8240496839322695, 2.736789598459992, -2.935142831702882, 0.4044684845208729, 4.81426191284824, 0.08208259105652392, -8.42080386733961, 2.362830542402561, -5.588761830873007, -1.6016004856188992, -6.74870962084637, -9.59380345439863, 2.2119471009337195, -0.10251853131630007, 0.9222886176727105, -13.727883659362313, -1.4110191173946658, 4.294393556843216, -4.453205353941985, -2.063938896856162, -12.875616525502934, -3.751165376504063, 0.7424169648515107, 2.6104853887292223, -12.863758385397881, -8.52183772520542, 1.6826581212380471, -5.852010551452158, 5.116416854858165, -10.373596121830937, 5.068419641494431, -3.0818050516434132, 7.42883612823459, -4.756219110488592, 3.235382464606626, -1.1464614704356098, 1.6327569045151151, -0.07576610500573873, -5.928730958967597, 1.9324296760134996, -7.450051165262538, -1.91935172796245, -6.0738385701074975, -8.634423099517344, -9.438822266390321, -0.13016080730197502, -0.4456294391218806, 7.783895106196164, 0.047060083881501416, -1.8671811221178463, -4.946296185818412, -6.247995811461923, 4.353436019049537, 0.49826680755567265, -5.4963131966854455, -0.6530173841014943, -2.5999328868386735, 5.312618673642078, -9.729634731541092, 0.27159788214338554, 1.300460088928351, -3.408292705272476, 1.2183339687761918, 6.0689160917674165, -4.987628924340623, 2.9356729087812994, -4.006415236729473, 7.726040536811752, 0.914521550195101, 2.09729225446855, 2.847386104996508, 0.18406074453925683, -6.956327066728836, -4.098922836431942, -0.6146483053842542, -5.466454748586755, -4.317353138943353, 7.568507103686212, -2.174062747450296, 1.4762550291830203, -1.1857931513220563, -1.0999289772139615, -4.91994763046257, -8.886626066112377, 2.70708270483609, -5.486804828201929, -0.8454688744903378, -1.9105707812880703, -9.253325580249697, -18.99214809036207, 3.3707785639259926, -9.011613361524082, 0.01894460679658273, -7.337214029672724, -1.2099871419267636, -0.3011372512577632, 8.803614607192175, -1.4551474977895686, 4.322056138813346, -4.451878321510948, 4.83802136500276, 1.190564217916063, 2.798257297070578, 1.395077473238109, -6.260694364424366, -1.5012302517010276, -4.919809311373224, -7.726710029601572, -8.129152291141654, -0.9934375935383358, 1.3604333604470127, -1.6122426353650063, -12.810343257358639, 0.02143761191709878, 3.3973007160421194, -9.99544742679548, -1.754444351196137, -5.453410635980736, 0.4003675774532769, 1.914201899096211, -13.596162494161437, -4.984097171782968, -2.27750168495427, 4.531981680898809, -4.813188164519881, 4.448519735128775, -7.48002493034666, 3.7581452858887765, 4.56694542514899, -2.359542507529186, 2.7785130021784497, 7.451753359707628, -3.7868189801571357, 0.40383865522667595, -3.0757206709628253, 1.3389018452773531, -4.037939370372506, -0.8752348278524773, -4.427828300342768, -6.954038845061778, 2.0131984259449727, 0.22010389752041137, 1.8914374691502918, -11.91744676208448, -2.052113016584228, 3.9217010922836666, -1.1604976957440196, 3.737610843699495, -7.365258684341356, -3.011491614263159, -7.653831594540154, 2.3599516641437606, -1.3494906416926695, -4.949166366939997, -7.994240085427975, -18.265427700042245, 2.1636802636733194, -3.7004002398249494, -0.6991424439391628, 7.434039575655856, -4.712554667362432, 6.544101005838098, -3.4754724874946024, 2.6571651597211634, -5.18482441286206, 1.6159972424387299, 0.2750664188518197, 1.2409410470767468};
+    public static final String[] FEATURES = {"length", "speed", "num_lanes", "change_speed", "change_num_lanes", "num_to_links", "junction_inc_lanes", "priority_lower", "priority_equal", "priority_higher", "is_secondary_or_higher", "is_primary_or_higher", "is_motorway", "is_link"};
 
     @Override
     public double predict(Object2DoubleMap<String> ft) {
@@ -45,6 +46,41 @@ public final class BerlinNetworkParams_capacity_priority implements FeatureRegre
 
         return score(data, params);
     }
+
+    @Override
+    public String[] getFeatures() {
+        return FEATURES;
+    }
+
+    @Override
+    public void predict(double[][] ft, double[] out, int from, int to) {
+        predict(ft, DEFAULT_PARAMS, out, from, to);
+    }
+
+    public static void predict(double[][] ft, double[] params, double[] out, int from, int to) {
+        double[] data = new double[14];
+        for (int i = from; i < to; i++) {
+			data[0] = (ft[0][i] - 148.0435475514987) / 111.07058642831188;
+			data[1] = (ft[1][i] - 14.66753793018379) / 5.4539706917562265;
+			data[2] = (ft[2][i] - 1.2443567287529296) / 0.6166684044913211;
+			data[3] = ft[3][i];
+			data[4] = ft[4][i];
+			data[5] = ft[5][i];
+			data[6] = ft[6][i];
+			data[7] = ft[7][i];
+			data[8] = ft[8][i];
+			data[9] = ft[9][i];
+			data[10] = ft[10][i];
+			data[11] = ft[11][i];
+			data[12] = ft[12][i];
+			data[13] = ft[13][i];
+
+            for (int j = 0; j < data.length; j++)
+                if (Double.isNaN(data[j])) throw new IllegalArgumentException("Invalid data at index: " + j + " for row: " + i);
+
+            out[i] = score(data, params);
+        }
+    }
     public static double score(double[] input, double[] params) {
         double var0;
         if (input[4] <= -0.000000000000000000000000000000000010000000180025095) {
@@ -5,10 +5,11 @@ import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 /**
 * Generated model, do not modify.
 */
-public final class BerlinNetworkParams_capacity_right_before_left implements FeatureRegressor {
+public final class BerlinNetworkParams_capacity_right_before_left implements FeatureRegressor, BatchPredictor {
 
     public static BerlinNetworkParams_capacity_right_before_left INSTANCE = new BerlinNetworkParams_capacity_right_before_left();
     public static final double[] DEFAULT_PARAMS = {328.5757, 269.49268, 231.0964, 232.20732, 238.96944, 217.52971, 245.93172, 196.2599, 130.11137, 162.67091, 163.88892, 168.91855, 177.93335, 120.14436, 164.4786, 162.06781, 139.9658, 110.37732, 114.853226, 122.946236, 104.39815, 115.12266, 119.465096, 79.75374, 124.89497, 87.860054, 29.94975, 71.75533, 135.55458, 111.58922, 81.732124, 63.05375, 83.79276, 88.973175, 59.21387, 86.27968, 54.50634, 43.036, 57.698544, 59.136612, 63.140118, 66.2636, 54.35065, 94.81921, 33.714684, 63.78595, 2.5854192, 40.278103, 67.96995, 65.76385, 51.57006, 39.75378, 41.452232, 44.53736, 31.997284, 10.905647, 42.840084, 27.180868, 41.26702, 44.15924, 62.49501, 33.340282, 34.941944, 20.610315, 61.56515, 26.562513, 17.145185, 42.70646, 29.333172, 32.076294, 16.195492, 47.306076, 0.038455993, 26.993008, 57.766266, 19.425892, 44.300034, 18.40526, 34.33802, 20.988033, 24.663631, 8.912071, 16.680994, 20.58277, -2.8025827, 17.442913, 27.01601, 13.931712, 15.10554, 19.0708, 7.64242, 19.289486, 26.840696, -7.763874, 16.059181, 38.44315, -12.641703, 15.14082, 9.366194, 14.997878, -10.614942, 7.670979, -2.6596265, 22.54426, -39.99585, 10.795762, 15.121941, -24.76626, 8.156524, 13.459406, 1.9710164, 25.679066, 32.778603, 7.3173504, 18.013678, -12.889844, 8.557115, -16.925081, 21.958729, 5.212196, 18.448833, -9.052041, 25.488205, -11.65606, 18.484278, -24.807718, 16.140015, 3.490814, 6.3571334, -22.313322, 1.9848174, -14.237209, 5.360275, 14.617204, -6.1242256, -21.332108, 13.842055, 4.7554398, -8.330782, -2.283184, 1.6876256, 2.2970202, 2.9211318, 11.132554, 8.222093, -3.9318573, 1.0153062, -5.786771, 1.9176867, 20.111982, -13.341735, -5.2488017, 18.932772, -2.2183902, 6.023973, 1.0027256, -11.451071, 2.4872222, -18.286674, 7.4326425, 1.363571, -8.058313, 2.9623373, 0.6662814, 2.0770974, -7.1936674, 5.135833, -1.0970511, 1.265644, 2.826718, 17.753006, 6.6504216, 1.1511834, -4.57029, 1.2588999, -9.778034, 10.277584, 0.7607379, -14.093642, -5.7878227, 25.867159, -12.429686, 5.3511887, 0.4285916, 10.114006, -17.682116, -0.6951186, -3.686415, 5.9004226, 13.114284, 6.1482863, -8.650964, -21.94511, 4.131482, -13.5670595, 0.4509796, -5.169152, 9.02604, 4.7153153, 11.034595, 0.36327785, -10.315573, 11.911259, -11.446489, 0.21937746, -1.9593282, -16.709671, 7.9414787, 10.704911, -15.123205, 0.19036125, -24.913687, 17.289347, 7.1274853, -6.104514, 0.09103825, -16.644897, 14.6652155, -9.731849, 9.392941, 0.027961692, 13.964792, -12.233078, 6.300041, -8.140979, 5.66955, 0.23326816, -8.987359, 24.763414, 0.5058552, 7.135163, -13.049223, 0.9535057, -20.696547, -0.0388047, 14.340578, -16.97962, 12.339516, -10.289911, -0.96544015, -0.017682046, -25.752195, -4.7804914, 1.9569407, 9.993857, -14.980678, -5.454724, 0.24939379, 0.6361772, -0.1201637, -1.6190526, -3.2766292, 0.441606, 12.357215, -1.7070338, 0.3730253, -0.013359121, -14.511282, 10.292064, 3.6254585, -16.11821, 4.9755793, -8.917786, 13.915958};
+    public static final String[] FEATURES = {"length", "speed", "num_lanes", "change_speed", "change_num_lanes", "num_to_links", "junction_inc_lanes", "priority_lower", "priority_equal", "priority_higher", "is_secondary_or_higher", "is_primary_or_higher", "is_motorway", "is_link"};
 
     @Override
     public double predict(Object2DoubleMap<String> ft) {
@@ -45,6 +46,41 @@ public final class BerlinNetworkParams_capacity_right_before_left implements Fea
 
         return score(data, params);
     }
+
+    @Override
+    public String[] getFeatures() {
+        return FEATURES;
+    }
+
+    @Override
+    public void predict(double[][] ft, double[] out, int from, int to) {
+        predict(ft, DEFAULT_PARAMS, out, from, to);
+    }
+
+    public static void predict(double[][] ft, double[] params, double[] out, int from, int to) {
+        double[] data = new double[14];
+        for (int i = from; i < to; i++) {
+			data[0] = (ft[0][i] - 143.222974798649) / 82.88768569254515;
+			data[1] = (ft[1][i] - 8.335055858664587) / 0.16557690987318385;
+			data[2] = (ft[2][i] - 1.0017320516151382) / 0.04742011278858442;
+			data[3] = ft[3][i];
+			data[4] = ft[4][i];
+			data[5] = ft[5][i];
+			data[6] = ft[6][i];
+			data[7] = ft[7][i];
+			data[8] = ft[8][i];
+			data[9] = ft[9][i];
+			data[10] = ft[10][i];
+			data[11] = ft[11][i];
+			data[12] = ft[12][i];
+			data[13] = ft[13][i];
+
+            for (int j = 0; j < data.length; j++)
+                if (Double.isNaN(data[j])) throw new IllegalArgumentException("Invalid data at index: " + j + " for row: " + i);
+
+            out[i] = score(data, params);
+        }
+    }
     public static double score(double[] input, double[] params) {
         double var0;
         if (input[0] >= -1.5885108) {
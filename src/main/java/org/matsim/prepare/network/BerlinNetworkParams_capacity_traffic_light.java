@@ -19,10 +19,11 @@ import org.matsim.application.prepare.Predictor;
              min_child_weight=8, missing=nan, monotone_constraints='()',
              n_estimators=30, n_jobs=0, ...)
 */
-public final class BerlinNetworkParams_capacity_traffic_light implements Predictor {
+public final class BerlinNetworkParams_capacity_traffic_light implements Predictor, BatchPredictor {
 
     public static BerlinNetworkParams_capacity_traffic_light INSTANCE = new BerlinNetworkParams_capacity_traffic_light();
     public static final double[] DEFAULT_PARAMS = {120.49426, 144.23634, 176.85863, 141.85364, 190.75696, 222.93301, 265.98166, 218.37746, 435.78235, 356.49872, 532.8341, 415.45447, 442.81064, 340.13422, 371.5444, 410.15225, 59.037926, 88.06354, 64.639946, 119.052216, 118.94829, 195.70755, 92.24206, 164.79692, 256.24506, 299.74417, 85.83028, 147.62825, 371.17477, 226.61607, 231.30916, 318.83243, 18.345224, 42.45009, 56.17625, 82.335266, 89.46965, 71.07942, 109.97693, 79.931526, 144.59903, 189.5599, 211.52019, 135.29271, 128.19968, 149.30782, 194.29205, 167.53056, 26.6483, 2.5114083, 37.2103, 55.092377, 53.847168, 32.690998, 72.3803, 28.17736, 113.514275, 152.52472, -31.19217, 33.795063, 108.2306, 82.351135, 118.39192, 94.24523, -73.696, -19.979353, 14.157042, 29.819204, 57.32583, 26.149326, 22.975346, -14.209185, 4.0672297, 56.446335, -38.535393, -27.19353, 36.364372, 88.063545, 65.1905, 15.053817, 60.38553, 8.744071, -8.494278, 11.646749, -33.347908, 31.109875, 15.37061, -17.577547, -36.250965, -14.885776, 40.35406, 61.205334, 97.15457, 61.102592, -5.312496, 4.6384983, 11.336888, -2.5808558, -18.864212, 13.407413, 29.133062, 23.825205, -25.057493, -13.955483, -70.86994, 22.903076, -26.5507, 39.624695, 25.703302, 0.821612, -65.60758, -1.9834079, -62.237267, -23.240376, -67.95218, 40.810192, 9.882693, 31.784784, 12.784874, -14.660674, 20.694582, -11.028931, 101.85731, -67.88605, 1.4346863, -6.9392357, -23.357416, 6.526499, -0.07597236, 33.960964, -80.98684, -0.5791053, 7.7659125, -47.35109, 18.062014, 3.833865, -18.151062, 7.149092, 4.649397, -5.3530445, -7.371597, -15.70551, 28.88867, 1.0832975, -6.995907, 33.08812, -45.303284, 6.500982, -72.95547, 60.977, 13.577403, 2.1199994, -7.716016, -1.1638446, -15.602898, 3.8238697, 41.293682, -43.65799, 9.463854, 31.95385, 6.3125377, 9.451338, 32.53724, -19.548334, 6.157807, -12.018502, 9.6463, -45.882168, -16.784565, -9.321689, 2.0157843, -1.4258658, -56.869373, 6.543343, 21.873459, -80.23896, -17.8595, 16.517387, -21.567091, -48.5633, -0.29963833, 3.344198, -7.094839, -29.622002, -88.97607, -1.6944087, 14.728632, -48.01166, -0.5523689, 19.333853, 70.26248, 30.643167, 4.346452, -10.339705, -24.976522, 51.634693, 25.314564, 66.712715, 0.2617382, 15.793596, -3.0511916, 24.23845, 16.968756, 1.3424442, -42.0059, -2.6236048, 3.9660504, -2.808516, 9.43076, -15.892035, -52.07929, -0.46310726, -99.18235, -11.007244, 19.825527, -14.813451, -2.9147213, 13.790986, 40.65582, -13.091324, -0.04984132, 41.59082, -14.52366, 1.0103111, -19.534575, 23.991581, 37.35831, -74.48797, 41.18364, 81.24579, -42.973347, 59.772606, -81.346466, -66.18567, 23.055445, -1.4219692, 5.7437778, -20.75848, 7.9285054, -63.45346, 1.7404125, -33.24766, 43.850113, -4.9093533, 5.236828, -35.42528, -2.8403587, 2.3255866, -40.707363, 36.78737, 3.2079086, -15.61722, 31.449936, -41.47577, -3.6103203, 24.344547, 74.75395, 38.4803, -53.510635, -0.7233074, -0.035281874, 27.485872, -39.864906, 50.7327, -70.79828, -22.159994, -15.875036, -0.06120714, -31.281004, 0.52760744, -12.105713, 8.977068, -2.2936924, -36.259823, 76.4563, 0.046459302, 9.12112, 17.27247, 4.34476, -1.3091905, 2.7716637, -74.35873, 6.3124847, -8.228346, -28.945152, -11.320066, 64.02686, -22.054539, 4.2219057, -11.238134, 7.1784983, -54.661884, 29.802792, -35.07111, -53.024155, -7.791357, 18.132824, -2.8491168, -25.672855, -1.5283177, 1.3678759, 23.01982, -11.022074, 2.4540086, -7.761553, 14.117198, 49.42193, 4.623291, -16.403389, 41.573673, -1.6961627, -7.989792, -1.081079, 3.9185448, -30.934427, 13.549328, 20.424013, -1.3499842, 1.3837997, -1.5665351, 6.136379, -7.948176, -67.2593, 1.7542174, -12.849709, -34.455315, -25.372015, 18.109741, 32.060146, -9.2019005, 1.7474107, -1.8326497, 39.67979, 17.258509, 6.7043233, 0.5433281, -131.06569, -11.020212, -43.662212, -20.632881, 6.9032445, 56.387096, 18.296072, -29.94616, 2.6680706, 11.377827, -27.659697, 13.2376585, 55.71633, -0.3144063, -7.0986767, 9.998999, -0.37414578, -64.27474, -4.3082685, 35.013187, 5.6364393, -47.026714, -0.17854747, 2.5423157, -0.92739356, -12.940792, -66.22313, -16.891813, 43.30377, -4.7439427, -20.530468, -22.655607, 15.102622, -35.644787, 36.95956, -35.41971, -7.7455697, -0.013062295, 12.402798, 3.2888505, -34.729126, 1.5855132, -16.979069, 29.092934, 10.36071, 13.937312, -5.101226, 38.229256, 32.026665, -1.6190432, 0.5351575, 10.357025, -30.88293, 3.1167831, -7.556241, 5.5443535, 0.2929742, 3.217742, 22.01282, 1.450663, -43.770924, -14.019111, -66.206505, 35.423653, -19.071333, 8.978611, -5.453257, -6.1721787, 18.963472, -0.25508207, -42.796616, 0.016214658, -19.092773, 2.2526999, 9.626387, -16.032166, 8.648903, -2.5534189, -19.078411, -11.62906, 2.8987596, 55.95079, 5.0766244, 0.7850271, -5.0118766, -0.073889196, -6.806319, 0.04729633, 7.1832604, 25.577148, -62.06377, -6.672181, -22.133873, 66.0882, -0.80976695, -38.63526, 19.23159, 35.614384, 27.911171, -2.0380037};
+    public static final String[] FEATURES = {"speed", "num_lanes", "num_to_links", "junction_inc_lanes", "num_conns", "num_response", "num_foes", "is_primary_or_higher", "is_secondary_or_higher", "num_left", "num_right", "num_straight"};
 
     @Override
     public double predict(Object2DoubleMap<String> features, Object2ObjectMap<String, String> categories) {
@@ -66,6 +67,46 @@ public final class BerlinNetworkParams_capacity_traffic_light implements Predict
 
         return score(data, params) * scale;
     }
+
+    @Override
+    public String[] getFeatures() {
+        return FEATURES;
+    }
+
+    @Override
+    public void predict(double[][] ft, double[] out, int from, int to) {
+        predict(ft, DEFAULT_PARAMS, out, from, to);
+    }
+
+    public static void predict(double[][] ft, double[] params, double[] out, int from, int to) {
+        double[] data = new double[12];
+        for (int i = from; i < to; i++) {
+			data[0] = ft[0][i];
+			data[1] = ft[1][i];
+			data[2] = ft[2][i];
+			data[3] = ft[3][i];
+			data[4] = ft[4][i];
+			data[5] = ft[5][i];
+			data[6] = ft[6][i];
+			data[7] = ft[7][i];
+			data[8] = ft[8][i];
+			data[9] = ft[9][i];
+			data[10] = ft[10][i];
+			data[11] = ft[11][i];
+
+            for (int j = 0; j < data.length; j++)
+                if (Double.isNaN(data[j])) throw new IllegalArgumentException("Invalid data at index: " + j + " for row: " + i);
+
+            // Same scaling of major roads as in the single link prediction
+            double scale = 1;
+            if (data[7] == 1)
+                scale = 1.5;
+            else if (data[8] == 1)
+                scale = 1.3;
+
+            out[i] = score(data, params) * scale;
+        }
+    }
     public static double score(double[] input, double[] params) {
         double var0;
         if (input[1] >= 1.5) {
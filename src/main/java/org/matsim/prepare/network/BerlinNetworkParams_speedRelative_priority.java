@@ -5,10 +5,11 @@ import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 /**
 * Generated model, do not modify.
 */
-public final class BerlinNetworkParams_speedRelative_priority implements FeatureRegressor {
+public final class BerlinNetworkParams_speedRelative_priority implements FeatureRegressor, BatchPredictor {
 
     public static BerlinNetworkParams_speedRelative_priority INSTANCE = new BerlinNetworkParams_speedRelative_priority();
     public static final double[] DEFAULT_PARAMS = {0.12550950050354004, 0.189355731010437, 0.17886589467525482, 0.15100084245204926, 0.16275350749492645, 0.22602279484272003, 0.15281672775745392, 0.15926821529865265, 0.07377482205629349, 0.08893188834190369, 0.091558538377285, 0.09821221232414246, 0.10520006716251373, 0.0773724764585495, 0.11609984934329987, 0.11544670909643173, 0.057235196232795715, 0.07558291405439377, 0.009422936476767063, 0.008980573154985905, 0.05040629580616951, 0.08543317019939423, -0.006561304908245802, -0.005893743131309748, -0.004282128997147083, -0.026850620284676552, 0.054473187774419785, 0.08489955961704254, 0.01490788534283638, 0.006346927955746651, 0.02943824604153633, 0.008724082261323929, -0.026141716167330742, -0.033894672989845276, 0.04418030381202698, 0.01323855109512806, 0.004540024790912867, 0.012382707558572292, 0.04508198797702789, -0.004851947072893381, 0.03212041035294533, 0.018353469669818878, 0.015060266479849815, -0.01619911752641201, 0.06256382167339325, 0.012398114427924156, 0.04449858516454697, -0.018833644688129425, 0.015152745880186558, 0.01700606942176819, -0.02672872692346573, 0.0416702926158905, 0.010799357667565346, -0.07898901402950287, 0.006450137123465538, -0.005750605836510658, -0.014523745514452457, -0.04408177360892296, 0.04883847013115883, -0.022843588143587112, -0.023223113268613815, -0.019399531185626984, 0.021782495081424713, 0.019667288288474083, -0.02515421062707901, -0.00809520948678255, 0.06308271735906601, -0.0023248018696904182, 0.015324900858104229, -0.010448208078742027, -0.005368105135858059, 0.0036487847100943327, 0.014546352438628674, -0.010148151777684689, -0.011488407850265503, 0.011713712476193905, 0.03729243949055672, -0.028871363028883934, -0.020864658057689667, 0.0068322136066854, 0.026309804990887642, -0.008680366910994053, 0.009399128146469593, -0.06411990523338318, 0.0028396653942763805, -0.027854491025209427, 0.0044095274060964584, 0.0025082863867282867, 0.02044624462723732, 0.005750803276896477, -0.0233260877430439, -0.017139121890068054, 0.01264281664043665, -0.013013861142098904, 0.0036902816500514746, 0.03193708509206772, 0.0081612728536129, -0.04379268363118172, -0.016621025279164314, 0.01968771405518055, -0.016309073194861412, -0.01988919824361801, -0.022129802033305168, -0.0036659406032413244, -0.054972246289253235, -0.048217542469501495, 0.013189898803830147, -0.023465821519494057, -0.014551885426044464, -0.01085179764777422, -0.004108797758817673, -0.021892372518777847, 0.038366325199604034, -0.00669700326398015, -0.002341065788641572, -0.012381287291646004, -0.003254153998568654, 0.018539857119321823, -0.004215467255562544, 0.006622281391173601, 0.025530768558382988, -0.010200202465057373, -0.015365288592875004, -0.043065737932920456, -0.0172751322388649, 0.00842320080846548, -0.013684536330401897, 0.006557685323059559, 0.02774382010102272, -0.04138639569282532, 0.014490441419184208, 0.029965436086058617, -0.02057560347020626, 0.008018595166504383, -0.07125191390514374, -0.013040341436862946, 0.025720685720443726, 0.034274134784936905, -0.007738122250884771, -0.02914026565849781, 0.002046799287199974, 0.002551571000367403, 0.003382128896191716, -0.013111705891788006, 0.010415175929665565, 0.022097080945968628, -0.038005538284778595, -0.0016290235798805952, -0.03373470902442932, 0.008343146182596684, -0.031475234776735306, 0.03533920645713806, -0.02184664085507393, 0.04885302484035492, -0.011739714071154594, -0.043699465692043304, -0.006461615674197674, 0.0024099647998809814, 0.001549588399939239, 0.002348459791392088, 0.0012500251177698374, -0.015067570842802525, 0.006313795689493418, 0.0053595551289618015, 0.04169558733701706, -0.010738281533122063, -0.024225503206253052, -0.03299573063850403, -0.02137511409819126, 0.0010198460659012198, 0.01464577205479145, -0.010252954438328743, 0.010739730671048164, -0.016007104888558388, -0.0064740474335849285, -0.011928597465157509, 0.01651456579566002, -0.007379315327852964, -0.05368182808160782, -0.0026138005778193474, -0.00727581512182951, -0.026764769107103348, -0.014498701319098473, 0.0025670919567346573, 0.007335836533457041, -0.0023193827364593744, -0.020489776507019997, 0.022850999608635902, -0.011527427472174168, -0.047909364104270935, 0.013235253281891346, 0.027461105957627296, -0.03219754993915558, -0.020433438941836357, 0.007957947440445423, 0.02916964516043663, -0.01599435694515705, -0.02039303071796894, -0.005623361561447382, 0.037930265069007874, -0.02354472316801548, 0.013999874703586102, -0.01911725476384163, -0.014107367023825645, 0.011351631954312325, -0.003752398770302534, -0.02974548190832138, -0.04380866512656212, 0.01848854497075081, 0.006680892314761877, 0.004972042050212622, 0.03653397038578987, -0.011084431782364845, -0.006494482047855854, 0.020584935322403908, -0.003768667345866561, -3.340105104143731e-05, -0.029125778004527092, 0.006228133104741573, 0.008600886911153793, -0.033562663942575455, -0.0025175928603857756, 0.016567666083574295, -0.027320487424731255, 0.017588986083865166, 0.0015938619617372751, -0.012684625573456287, 0.01542857475578785, 0.013579197227954865, -0.01283981278538704, -0.03461580350995064, -0.02341916412115097, -0.005692454520612955, -0.0031673801131546497, -0.029014386236667633, -0.0018230746500194073, -0.004706212785094976, 0.011962894350290298, 0.011240237392485142, 0.015453718602657318, 0.011790980584919453, -0.01706736907362938, -0.03504134342074394, -0.06385992467403412, -0.014527950435876846, -0.0013383073965087533, 0.021808616816997528, -0.008378241211175919, -0.0390448197722435, -0.02441360056400299, -0.03476740047335625, 0.02811412513256073, -0.011769075877964497, 0.004476679023355246, 0.004439139738678932, -0.009369712322950363, 0.01290037203580141, 0.038308948278427124, -0.0024049500934779644, -0.04359044134616852, 0.010047076269984245, -0.016951922327280045, -0.017950627952814102, 0.0002252952690469101, -0.0859515517950058, 0.012960616499185562, -0.009868291206657887, 0.020009377971291542, 0.01893169991672039, 0.014683406800031662, -0.0030375521164387465, -0.001094939187169075, -0.022562043741345406, -0.013336949981749058, 0.0033218443859368563, -0.007926808670163155, -0.015716295689344406, -0.008151188492774963, -0.05472773686051369, -0.07977693527936935};
+    public static final String[] FEATURES = {"length", "speed", "num_lanes", "change_speed", "change_num_lanes", "num_to_links", "junction_inc_lanes", "priority_lower", "priority_equal", "priority_higher", "is_secondary_or_higher", "is_primary_or_higher", "is_motorway", "is_link"};
 
     @Override
     public double predict(Object2DoubleMap<String> ft) {
@@ -45,6 +46,41 @@ public final class BerlinNetworkParams_speedRelative_priority implements Feature
 
         return score(data, params);
     }
+
+    @Override
+    public String[] getFeatures() {
+        return FEATURES;
+    }
+
+    @Override
+    public void predict(double[][] ft, double[] out, int from, int to) {
+        predict(ft, DEFAULT_PARAMS, out, from, to);
+    }
+
+    public static void predict(double[][] ft, double[] params, double[] out, int from, int to) {
+        double[] data = new double[14];
+        for (int i = from; i < to; i++) {
+			data[0] = (ft[0][i] - 142.5375147043097) / 99.88133624783757;
+			data[1] = (ft[1][i] - 12.960856860228855) / 3.818676471858858;
+			data[2] = (ft[2][i] - 1.2051384878622606) / 0.6153877429557003;
+			data[3] = ft[3][i];
+			data[4] = ft[4][i];
+			data[5] = ft[5][i];
+			data[6] = ft[6][i];
+			data[7] = ft[7][i];
+			data[8] = ft[8][i];
+			data[9] = ft[9][i];
+			data[10] = ft[10][i];
+			data[11] = ft[11][i];
+			data[12] = ft[12][i];
+			data[13] = ft[13][i];
+
+            for (int j = 0; j < data.length; j++)
+                if (Double.isNaN(data[j])) throw new IllegalArgumentException("Invalid data at index: " + j + " for row: " + i);
+
+            out[i] = score(data, params);
+        }
+    }
     public static double score(double[] input, double[] params) {
         double var0;
         if (input[3] >= -3.4699998) {
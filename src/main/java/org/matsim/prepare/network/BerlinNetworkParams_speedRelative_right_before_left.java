@@ -5,10 +5,11 @@ import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 /**
 * Generated model, do not modify.
 */
-public final class BerlinNetworkParams_speedRelative_right_before_left implements FeatureRegressor {
+public final class BerlinNetworkParams_speedRelative_right_before_left implements FeatureRegressor, BatchPredictor {
 
     public static BerlinNetworkParams_speedRelative_right_before_left INSTANCE = new BerlinNetworkParams_speedRelative_right_before_left();
     public static final double[] DEFAULT_PARAMS = {0.8501698970794678, 0.9006523489952087, 0.8484615087509155, 0.9332157373428345, 0.9654031991958618, 0.7838205695152283, 0.9256957173347473, 0.9549677968025208, 0.8052073121070862, 0.8382558226585388, 0.9484443068504333, 0.9078091979026794, 0.9063796997070312, 0.8464484214782715, 0.8108808994293213, 0.9163745641708374, 0.941914439201355, 0.949999988079071, 0.8465233445167542, 0.8688034415245056, 0.8775915503501892, 0.9402863383293152, 0.9495895504951477, 0.8825960755348206, 0.8238087296485901, 0.9011247158050537, 0.8459143042564392, 0.8655627965927124, 0.8199752569198608, 0.8992147445678711, 0.7966489195823669, 0.8579999804496765, 0.8710649609565735, 0.7907753586769104, 0.9156076908111572, 0.8679876327514648, 0.9876474142074585, 0.794172465801239, 0.9140607714653015, 0.9037666320800781, 0.8168045878410339, 0.8536452651023865, 1.0151387453079224, 0.8642212152481079, 1.0296967029571533, 0.8043543696403503, 0.7827005386352539, 0.8400399684906006, 0.9112281799316406, 0.9027798771858215, 0.8668215870857239, 0.9703286290168762, 0.8510969877243042, 0.9588707685470581, 0.8380865454673767, 0.9060183167457581, 0.8086714148521423, 0.8899999856948853, 0.8702351450920105, 0.8167619705200195, 0.881017804145813, 0.8917708396911621, 0.8898671865463257, 0.9124057292938232, 0.9038119912147522, 0.8082835674285889, 0.9032228589057922, 0.9692773818969727, 0.7851191163063049, 0.9151013493537903, 0.8872057795524597, 0.8399999737739563, 0.8969735503196716, 0.8183333277702332, 0.7989745736122131, 0.9540218710899353, 0.8480196595191956, 0.8248308897018433, 0.8740478754043579, 0.7323729395866394, 0.9444176554679871, 0.8704118132591248, 0.96578049659729, 0.7970685362815857, 0.9479656219482422, 0.826766848564148, 0.7914180159568787, 0.8081436157226562, 0.8508738875389099, 0.9340909123420715, 0.9815088510513306, 0.9774714112281799, 0.8721084594726562, 0.8936017155647278, 0.85148686170578, 0.9024903178215027, 0.8605471849441528, 0.9828650951385498, 0.9500955939292908, 0.7599999904632568, 0.9269111156463623, 0.8720079660415649, 0.8653984069824219, 0.8197725415229797, 0.9061167240142822, 0.9564887285232544, 0.8769751191139221, 0.8558287024497986, 0.8147779107093811, 0.8483192324638367, 0.9398745894432068, 0.893629789352417, 0.8337939977645874, 0.964969277381897, 0.7900000214576721, 0.9434866905212402, 0.8190807104110718, 0.8359490036964417, 0.8498650789260864, 0.8630268573760986, 0.8285882472991943, 0.8156688809394836, 0.8775268793106079, 0.9993680119514465, 0.8820398449897766, 0.9098674654960632, 0.8552159070968628, 0.8126517534255981, 0.8735414743423462, 0.8983948826789856, 0.9142025709152222, 0.9788086414337158, 0.8658783435821533, 0.8190967440605164, 0.8848844170570374, 0.8562158346176147, 0.909334123134613, 0.8601728677749634, 0.7592419981956482, 1.0365158319473267, 0.8781071901321411, 0.847541868686676, 0.9003839492797852, 0.9481457471847534, 0.8890439867973328, 0.9426897168159485, 0.9181755781173706, 0.9372392892837524, 0.9060111045837402, 0.815224289894104, 0.7869310975074768, 0.9040620923042297, 0.8649681210517883, 0.8579493761062622, 1.0132747888565063, 0.8378110527992249, 0.9725226163864136, 0.8364429473876953, 0.8697134852409363, 0.9064249396324158, 0.9608400464057922, 0.9030491709709167, 0.8059999942779541, 0.7702260613441467, 0.9495320916175842, 0.7942577600479126, 0.8006508350372314, 0.8567498326301575, 0.9633333086967468, 0.815035343170166, 0.7993671894073486, 0.8521023392677307, 0.9075300097465515, 0.8529704213142395, 0.8750404715538025, 0.8677250742912292, 0.9662194848060608, 0.9261354804039001, 0.8400701284408569, 0.8164852857589722, 0.7565231323242188, 0.9053943753242493, 0.8107093572616577, 0.7893573641777039, 0.8567478060722351, 0.9325000047683716, 0.8400388360023499, 0.8383146524429321, 0.9119933843612671, 0.8517348170280457, 0.8734019994735718, 0.9788123369216919, 0.7063427567481995, 0.9700000286102295, 0.9358868598937988, 0.8132143020629883, 0.9118583798408508, 0.7074904441833496, 0.7708765268325806, 0.9016913771629333, 0.8006144762039185, 1.010364055633545, 0.8237125873565674, 0.8798007369041443, 0.8935883641242981, 0.9630178809165955, 0.9531705975532532, 0.75, 0.8560128808021545, 0.8395475149154663, 0.8837317228317261, 0.8818429708480835, 0.9545405507087708, 0.8352820873260498, 0.7400753498077393, 0.9284844994544983, 0.8388035297393799, 0.8536258339881897, 0.945603609085083, 0.8691257238388062, 0.9723203182220459, 0.9076040387153625, 0.949999988079071, 0.8989589810371399, 0.7738989591598511, 0.7819089293479919, 0.7974745035171509, 1.0653083324432373, 0.9143388271331787, 0.8224573731422424, 0.9618649482727051, 0.7823584675788879};
+    public static final String[] FEATURES = {"length", "speed", "num_lanes", "change_speed", "change_num_lanes", "num_to_links", "junction_inc_lanes", "priority_lower", "priority_equal", "priority_higher", "is_secondary_or_higher", "is_primary_or_higher", "is_motorway", "is_link"};
 
     @Override
     public double predict(Object2DoubleMap<String> ft) {
@@ -45,6 +46,41 @@ public final class BerlinNetworkParams_speedRelative_right_before_left implement
 
         return score(data, params);
     }
+
+    @Override
+    public String[] getFeatures() {
+        return FEATURES;
+    }
+
+    @Override
+    public void predict(double[][] ft, double[] out, int from, int to) {
+        predict(ft, DEFAULT_PARAMS, out, from, to);
+    }
+
+    public static void predict(double[][] ft, double[] params, double[] out, int from, int to) {
+        double[] data = new double[14];
+        for (int i = from; i < to; i++) {
+			data[0] = (ft[0][i] - 135.45585940281805) / 80.1533714259824;
+			data[1] = (ft[1][i] - 8.33240398799532) / 0.1138739274502052;
+			data[2] = (ft[2][i] - 1.0053919324482425) / 0.07859221404615896;
+			data[3] = ft[3][i];
+			data[4] = ft[4][i];
+			data[5] = ft[5][i];
+			data[6] = ft[6][i];
+			data[7] = ft[7][i];
+			data[8] = ft[8][i];
+			data[9] = ft[9][i];
+			data[10] = ft[10][i];
+			data[11] = ft[11][i];
+			data[12] = ft[12][i];
+			data[13] = ft[13][i];
+
+            for (int j = 0; j < data.length; j++)
+                if (Double.isNaN(data[j])) throw new IllegalArgumentException("Invalid data at index: " + j + " for row: " + i);
+
+            out[i] = score(data, params);
+        }
+    }
     public static double score(double[] input, double[] params) {
         double var0;
         if (input[0] <= -0.8098955750465393) {
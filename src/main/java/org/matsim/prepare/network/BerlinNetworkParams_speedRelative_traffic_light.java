@@ -5,10 +5,11 @@ import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 /**
 * Generated model, do not modify.
 */
-public final class BerlinNetworkParams_speedRelative_traffic_light implements FeatureRegressor {
+public final class BerlinNetworkParams_speedRelative_traffic_light implements FeatureRegressor, BatchPredictor {
 
     public static BerlinNetworkParams_speedRelative_traffic_light INSTANCE = new BerlinNetworkParams_speedRelative_traffic_light();
     public static final double[] DEFAULT_PARAMS = {0.09477858245372772, 0.024961795657873154, 0.05215027555823326, 0.04529440030455589, 0.10769770294427872, -0.010175180621445179, 0.06397837400436401, 0.09346377849578857, -0.01878441497683525, -0.03836909309029579, -0.03612988442182541, -0.036683693528175354, -0.03920404613018036, 0.049536239355802536, -0.028043050318956375, -0.020683132112026215, -0.04123802110552788, -0.015528692863881588, -0.0010444645304232836, 0.00027182858320884407, 0.025174731388688087, -0.051955271512269974, 0.05832090973854065, -0.03617055341601372, 0.002929517300799489, -0.03787662088871002, 0.01718505099415779, 0.03068765252828598, 0.042251624166965485, -0.025210829451680183, 0.07233680039644241, 0.04169170558452606, -0.06606648862361908, 0.01265812013298273, 0.061538904905319214, 0.039855677634477615, 0.029593830928206444, 0.013986560516059399, 0.0269416943192482, -0.06255616992712021, -0.02440592646598816, -0.05753442272543907, 0.013662389479577541, -0.006829550489783287, 0.010282006114721298, 0.10807370394468307, -0.028119588270783424, -0.020801255479454994, -0.051618482917547226, 0.029009703546762466, -0.03420453518629074, 0.0391840860247612, -0.031076161190867424, 0.007786449510604143, 0.0010389130329713225, -0.03834688290953636, 0.015224960632622242, 0.023260487243533134, -0.028351278975605965, -0.025181248784065247, 0.011883235536515713, 0.006389571353793144, -0.0058663696981966496, 0.08980250358581543, -0.0024985293857753277, -0.0872153639793396, -0.002206072211265564, -0.018361136317253113, 0.027677016332745552, 0.06199769303202629, -0.003127946751192212, -0.000470195256639272, 0.002299156505614519, -0.05186403915286064, -0.0024114155676215887, 0.018149523064494133, -0.09073321521282196, -0.035859301686286926, -0.03024864010512829, -0.09571264684200287, 0.06942830979824066, 0.06682193279266357, -0.03228773921728134, 0.03487442061305046, -0.022272953763604164, 0.03912162408232689, 0.06724213063716888, 0.04162085801362991, -0.007613599766045809, 0.006396702490746975, 0.02164488285779953, -0.061113182455301285, -0.009217862039804459, -0.0027491527143865824, -0.08875013887882233, -0.04032323136925697, -0.08039136976003647, -0.02479078806936741, -0.002274827565997839, -0.0003081985341850668, 0.026899315416812897, 0.029915446415543556, 0.02165626548230648, 0.011354343965649605, 0.03788495063781738, -0.07385263592004776, -0.025971250608563423, -0.09235341846942902, 0.07943302392959595, -0.08456835150718689, 0.04046338424086571, 0.014923954382538795, -0.013514173217117786, 0.08085555583238602, 0.02335379645228386, 0.0, -0.011788212694227695, 0.001432398334145546, -0.03479909524321556, 0.031546588987112045, -0.029067574068903923, -0.0467766635119915, 0.04133051261305809, -0.02921120822429657, -0.04396310821175575, 0.06312629580497742, -0.010433847084641457, -0.014403829351067543, -0.05112474039196968, 0.08823229372501373, -0.02762967348098755, -0.10604787617921829, 0.0034027881920337677, 0.012485688552260399, -0.0229945108294487, 0.022365892305970192, 0.01904802955687046, -0.028173450380563736, -0.03831734508275986, 0.069863460958004, -0.019679296761751175, 0.022212959825992584, -0.005587196908891201, -0.0749577209353447, -0.0006668040878139436, -0.024650167673826218, 0.0867362916469574, -0.020552337169647217, -0.03666907548904419, -0.004803492687642574, 0.07588484138250351, -0.0437135249376297, -0.009972099214792252, 0.024154629558324814, -0.1030224859714508, 0.033259447664022446, 0.016893994063138962, -0.005496613681316376, 0.005061516538262367, 0.05876634642481804, 0.024983610957860947, 0.002600488718599081, -0.003802846185863018, -0.006242914590984583, 0.04155726730823517, -0.017330344766378403, -0.031040670350193977, 0.028996489942073822, -0.007637656293809414, -0.02624373510479927, -0.0038524840492755175, -0.01818557269871235, 0.029007064178586006, 0.04009193554520607, 0.0641530379652977, -0.02685282751917839, 0.03187573701143265, -0.01906539872288704, -0.01222801674157381, -0.05649347975850105, -0.007130799349397421, 0.016183258965611458, -0.016919251531362534, -0.008059244602918625, -0.0016773879760876298, 0.00915554165840149, 0.01644226163625717, -0.028181472793221474, -0.06819659471511841, -0.000624064530711621, 0.002341644139960408, 0.02479373663663864, -0.007763983216136694, 0.08865330368280411, 0.05385930463671684, -0.01637246645987034, 0.010793815366923809, 0.03354409337043762, -0.010797847993671894, -0.03252674266695976, 0.002833093050867319, 0.005017886403948069, 0.02196858637034893, -0.007877596653997898, 0.022556260228157043, -0.01959807239472866, -0.04224714636802673, 0.027651604264974594, 0.10500088334083557, 0.003199423896148801, -0.030143404379487038, 0.09455209225416183, 0.10794500261545181, -0.07964403927326202, 0.03209894895553589, 0.04134976491332054, 0.0214556697756052, 0.0, -0.05652076005935669, -0.07216477394104004, 0.000702638877555728, 0.04435044899582863, -0.002140351803973317, 0.05243822932243347, -0.013511004857718945, -0.013377759605646133, -0.02417120523750782, -0.04396841302514076, 0.012991765514016151, 0.013078195042908192, -0.07471057027578354, -0.012499094940721989, 0.03581491857767105, 0.021713558584451675, 0.010606594383716583, -0.007959146052598953, 0.017969822511076927, -0.02250480465590954, 0.025483399629592896, -0.000761750154197216, 0.009877116419374943, 0.0033774732146412134, -0.07663911581039429, -0.03293929621577263, 0.10860101878643036, -0.009304926730692387, 0.04004058614373207, -0.013393530622124672, -0.01470731571316719, -0.0026667655911296606, 0.0037203922402113676, 0.13162679970264435, 0.005440572742372751, -0.10369328409433365, 0.021979283541440964, -0.004456195514649153, 0.018988555297255516, -0.01012477744370699, 0.024126088246703148, -0.006756459828466177, 0.0585167296230793, -0.01833771914243698, 0.06841331720352173, -0.08230630308389664, 0.06219062954187393, 0.008766790851950645, -0.06255728006362915, 0.06336342543363571, -0.05696338787674904, 0.03859696537256241, -0.02904669940471649, -0.019308073446154594, 0.06130903214216232, -0.01839805394411087, 0.007799986284226179, 0.04500095173716545, -0.010437620803713799, -0.03823637589812279, -0.004675905220210552, 0.059230417013168335, -0.0632948949933052, 0.021470284089446068, -0.03795137628912926, 0.015925945714116096, 0.0026486420538276434, -0.05100562050938606, 0.0035429371055215597, 0.05839664489030838, 0.023669391870498657, -0.02815730683505535, 0.003138321917504072, -0.017807722091674805, -0.022523503750562668, 0.024915732443332672, 0.0030161652248352766, 0.02379363402724266, 0.01294044777750969, 0.01239923108369112, -0.06546293199062347, -0.012741826474666595, 0.010725719854235649, 0.047915615141391754, -0.08232632279396057, 0.2199823409318924, 0.02820354327559471, 0.0361969992518425, 0.046670809388160706, 0.0453379787504673, -0.010222319513559341, -0.023378858342766762, 0.007131570018827915, -0.021758053451776505, 0.016992997378110886, -0.013280576094985008, 0.011572153307497501, 0.021448327228426933, -0.015999948605895042, -0.012445788830518723, 0.03593910112977028, 0.03199077025055885, 0.07597552984952927, 0.011780139990150928, -0.027428699657320976, -0.0680043026804924, 0.03195140138268471, 0.026561031118035316, 0.002097967779263854, -0.08706827461719513, 0.0, 0.002473807195201516, -0.04043450579047203, -0.029131874442100525, 0.04835514724254608, 0.009964147582650185, -0.08820398151874542, -0.020176328718662262, 0.06771263480186462, -0.002722879173234105, 0.01663830690085888, -0.03440510109066963, -0.03653261065483093, 0.0007556826458312571, -0.01154464390128851, -0.011213849298655987, -0.0035759794991463423, 0.10973358899354935, -0.10046170651912689, -0.03598024323582649, 0.02210204303264618, -0.021618084982037544, 0.08319307118654251, 0.04645979776978493, 0.0010335169499740005, 0.012282530777156353, -0.04830203950405121, 0.04124152287840843, 0.006587902083992958, -0.020353548228740692, 0.0014101103879511356, 0.0570966862142086, 0.004237841349095106, 0.010775372385978699, -0.007615164387971163, -0.021669384092092514, 0.017141785472631454, -0.03783917799592018, 0.05817849934101105, 0.008765492588281631, 0.08070896565914154, -0.0001659818517509848, -0.030934177339076996, 0.10026049613952637, -0.0005714595317840576, 0.027210678905248642, 0.015433969907462597, -0.0033679574262350798, -0.0038846665993332863, -0.008313622325658798, -0.019168218597769737, -0.018095657229423523, -0.04774407669901848, 0.011829153634607792, -0.009946607984602451, 0.02153913490474224, 0.004407722037285566, 0.00632559135556221, 0.060267455875873566, 0.0314628891646862, 0.006059314589947462, -0.046949177980422974};
+    public static final String[] FEATURES = {"length", "speed", "num_lanes", "change_speed", "change_num_lanes", "num_to_links", "junction_inc_lanes", "priority_lower", "priority_equal", "priority_higher", "is_secondary_or_higher", "is_primary_or_higher", "is_motorway", "is_link"};
 
     @Override
     public double predict(Object2DoubleMap<String> ft) {
@@ -45,6 +46,41 @@ public final class BerlinNetworkParams_speedRelative_traffic_light implements Fe
 
         return score(data, params);
     }
+
+    @Override
+    public String[] getFeatures() {
+        return FEATURES;
+    }
+
+    @Override
+    public void predict(double[][] ft, double[] out, int from, int to) {
+        predict(ft, DEFAULT_PARAMS, out, from, to);
+    }
+
+    public static void predict(double[][] ft, double[] params, double[] out, int from, int to) {
+        double[] data = new double[14];
+        for (int i = from; i < to; i++) {
+			data[0] = (ft[0][i] - 126.0499887471868) / 87.86859846568598;
+			data[1] = (ft[1][i] - 12.740663915978995) / 2.6516169764830786;
+			data[2] = (ft[2][i] - 1.847336834208552) / 0.9858081652916906;
+			data[3] = ft[3][i];
+			data[4] = ft[4][i];
+			data[5] = ft[5][i];
+			data[6] = ft[6][i];
+			data[7] = ft[7][i];
+			data[8] = ft[8][i];
+			data[9] = ft[9][i];
+			data[10] = ft[10][i];
+			data[11] = ft[11][i];
+			data[12] = ft[12][i];
+			data[13] = ft[13][i];
+
+            for (int j = 0; j < data.length; j++)
+                if (Double.isNaN(data[j])) throw new IllegalArgumentException("Invalid data at index: " + j + " for row: " + i);
+
+            out[i] = score(data, params);
+        }
+    }
     public static double score(double[] input, double[] params) {
         double var0;
         if (input[0] >= -0.22351545) {
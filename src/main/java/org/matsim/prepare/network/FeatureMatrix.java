@@ -0,0 +1,65 @@
+package org.matsim.prepare.network;
+
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+
+import java.util.List;
+
+/**
+ * Column-oriented feature matrix, with one {@code double[]} per feature indexed by row (e.g. link).
+ * Missing features are treated as 0, the same as the default return value of {@link Object2DoubleMap}.
+ */
+public final class FeatureMatrix {
+
+	private final int rows;
+	private final Object2ObjectLinkedOpenHashMap<String, double[]> columns = new Object2ObjectLinkedOpenHashMap<>();
+
+	public FeatureMatrix(int rows) {
+		this.rows = rows;
+	}
+
+	/**
+	 * Copy the features of individual rows into a column matrix.
+	 */
+	public static FeatureMatrix of(List<? extends Object2DoubleMap<String>> features) {
+		FeatureMatrix m = new FeatureMatrix(features.size());
+		for (int i = 0; i < features.size(); i++) {
+			for (Object2DoubleMap.Entry<String> e : features.get(i).object2DoubleEntrySet()) {
+				m.column(e.getKey())[i] = e.getDoubleValue();
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * Number of rows.
+	 */
+	public int rows() {
+		return rows;
+	}
+
+	/**
+	 * Return the column for a feature, it will be created if not present.
+	 */
+	public double[] column(String feature) {
+		return columns.computeIfAbsent(feature, k -> new double[rows]);
+	}
+
+	/**
+	 * Set a single value.
+	 */
+	public void set(String feature, int row, double value) {
+		column(feature)[row] = value;
+	}
+
+	/**
+	 * Resolve the columns for the given features, in the same order.
+	 */
+	double[][] columns(String[] features) {
+		double[][] result = new double[features.length][];
+		for (int i = 0; i < features.length; i++) {
+			result[i] = column(features[i]);
+		}
+		return result;
+	}
+}
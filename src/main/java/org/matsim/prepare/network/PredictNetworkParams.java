@@ -0,0 +1,122 @@
+package org.matsim.prepare.network;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.application.MATSimAppCommand;
+import org.matsim.core.utils.io.IOUtils;
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@CommandLine.Command(
+	name = "predict-network-params",
+	description = "Predict capacity and speed factor of all links with the Berlin network models, evaluated in batches per junction type."
+)
+public class PredictNetworkParams implements MATSimAppCommand {
+
+	private static final Logger log = LogManager.getLogger(PredictNetworkParams.class);
+
+	/**
+	 * Columns of the feature file, which are not model features.
+	 */
+	private static final Set<String> ID_COLUMNS = Set.of("linkId", "junction_type", "highway_type");
+
+	@CommandLine.Option(names = "--input-features", description = "Path to link features, same as for apply-network-params", required = true)
+	private Path inputFeatures;
+
+	@CommandLine.Option(names = "--output", description = "Path to output csv", required = true)
+	private Path output;
+
+	@CommandLine.Option(names = "--interpreted", description = "Use the array based models instead of the generated sources")
+	private boolean interpreted;
+
+	public static void main(String[] args) {
+		new PredictNetworkParams().execute(args);
+	}
+
+	@Override
+	public Integer call() throws Exception {
+
+		Map<String, List<CSVRecord>> byType = new LinkedHashMap<>();
+		List<String> header;
+
+		try (CSVParser parser = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build()
+			.parse(IOUtils.getBufferedReader(inputFeatures.toString()))) {
+
+			header = parser.getHeaderNames();
+			for (CSVRecord row : parser) {
+				byType.computeIfAbsent(row.get("junction_type"), k -> new ArrayList<>()).add(row);
+			}
+		}
+
+		BerlinNetworkParams params = new BerlinNetworkParams(interpreted);
+
+		int n = 0;
+		try (CSVPrinter csv = new CSVPrinter(IOUtils.getBufferedWriter(output.toString()), CSVFormat.DEFAULT)) {
+
+			csv.printRecord("linkId", "junction_type", "capacity", "speed_factor");
+
+			for (Map.Entry<String, List<CSVRecord>> e : byType.entrySet()) {
+
+				String type = e.getKey();
+				List<CSVRecord> rows = e.getValue();
+
+				if (!BerlinNetworkParams.JUNCTION_TYPES.contains(type)) {
+					log.warn("Skipping {} links with junction type {}", rows.size(), type);
+					continue;
+				}
+
+				FeatureMatrix matrix = createMatrix(header, rows);
+
+				double[] capacity = params.batchCapacity(type).predict(matrix);
+				double[] speedFactor = params.batchSpeedFactor(type).predict(matrix);
+
+				for (int i = 0; i < rows.size(); i++) {
+					csv.printRecord(rows.get(i).get("linkId"), type, capacity[i], speedFactor[i]);
+				}
+
+				n += rows.size();
+			}
+		}
+
+		log.info("Predicted params of {} links", n);
+
+		return 0;
+	}
+
+	private static FeatureMatrix createMatrix(List<String> header, List<CSVRecord> rows) {
+
+		FeatureMatrix matrix = new FeatureMatrix(rows.size());
+		for (String column : header) {
+			if (ID_COLUMNS.contains(column))
+				continue;
+
+			double[] values = matrix.column(column);
+			for (int i = 0; i < rows.size(); i++) {
+				values[i] = parse(rows.get(i).get(column));
+			}
+		}
+
+		return matrix;
+	}
+
+	/**
+	 * Parse numeric values, other values are interpreted as boolean.
+	 */
+	private static double parse(String value) {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return Boolean.parseBoolean(value) ? 1 : 0;
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package org.matsim.prepare.network;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import org.matsim.application.prepare.network.params.FeatureRegressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates a tree ensemble stored in flat primitive arrays, as an alternative to the large generated model sources.
+ * The models are converted with {@code src/main/python/export_tree_models.py} and produce identical results.
+ * <p>
+ * All trees are stored in one set of node arrays. Inner nodes have a feature index and go to the left child if the input value
+ * is less or equal than the threshold. Leaf nodes have a feature index of -1 and point into the parameter array.
+ */
+public final class TreeEnsembleRegressor implements FeatureRegressor, BatchPredictor {
+
+	private final String name;
+	private final String[] features;
+	private final double[] mean;
+	private final double[] scale;
+
+	private final double base;
+	private final double intercept;
+	private final double factor;
+	private final double[] params;
+
+	private final int[] roots;
+	private final int[] feature;
+	private final double[] threshold;
+	private final int[] left;
+	private final int[] right;
+	private final int[] leaf;
+
+	private TreeEnsembleRegressor(Spec spec) {
+		this.name = spec.model;
+		this.features = spec.features;
+		this.mean = spec.mean;
+		this.scale = spec.scale;
+		this.base = spec.base;
+		this.intercept = spec.intercept;
+		this.factor = spec.factor;
+		this.params = spec.params;
+		this.roots = spec.roots;
+		this.feature = spec.feature;
+		this.threshold = spec.threshold;
+		this.left = spec.left;
+		this.right = spec.right;
+		this.leaf = spec.leaf;
+
+		if (mean.length != features.length || scale.length != features.length)
+			throw new IllegalArgumentException("Feature transformation does not match number of features in " + name);
+
+		int n = feature.length;
+		if (threshold.length != n || left.length != n || right.length != n || leaf.length != n)
+			throw new IllegalArgumentException("Node arrays have different length in " + name);
+	}
+
+	/**
+	 * Load the model for a generated class, which is stored as json resource with the same name next to it.
+	 */
+	public static TreeEnsembleRegressor load(Class<?> generated) {
+		URL url = generated.getResource(generated.getSimpleName() + ".json");
+		if (url == null)
+			throw new IllegalArgumentException("No tree model resource found for " + generated.getName());
+
+		return load(url);
+	}
+
+	/**
+	 * Load model from json.
+	 */
+	public static TreeEnsembleRegressor load(URL url) {
+		try (InputStream in = url.openStream()) {
+			return new TreeEnsembleRegressor(new ObjectMapper().readerFor(Spec.class).readValue(in));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read tree model " + url, e);
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String[] getFeatures() {
+		return features;
+	}
+
+	public double[] getDefaultParams() {
+		return params;
+	}
+
+	@Override
+	public double predict(Object2DoubleMap<String> ft) {
+		return predict(ft, params);
+	}
+
+	@Override
+	public double predict(Object2DoubleMap<String> ft, double[] params) {
+
+		double[] data = getData(ft);
+		for (int i = 0; i < data.length; i++)
+			if (Double.isNaN(data[i])) throw new IllegalArgumentException("Invalid data at index: " + i);
+
+		return score(data, params);
+	}
+
+	@Override
+	public double[] getData(Object2DoubleMap<String> ft) {
+		double[] data = new double[features.length];
+		for (int i = 0; i < features.length; i++) {
+			data[i] = (ft.getDouble(features[i]) - mean[i]) / scale[i];
+		}
+		return data;
+	}
+
+	@Override
+	public double predict(Object2DoubleMap<String> features, Object2ObjectMap<String, String> categories) {
+		return predict(features, params);
+	}
+
+	@Override
+	public double predict(Object2DoubleMap<String> features, Object2ObjectMap<String, String> categories, double[] params) {
+		return predict(features, params);
+	}
+
+	@Override
+	public double[] getData(Object2DoubleMap<String> features, Object2ObjectMap<String, String> categories) {
+		return getData(features);
+	}
+
+	@Override
+	public void predict(double[][] ft, double[] out, int from, int to) {
+		double[] data = new double[features.length];
+		for (int i = from; i < to; i++) {
+			for (int j = 0; j < data.length; j++) {
+				data[j] = (ft[j][i] - mean[j]) / scale[j];
+				if (Double.isNaN(data[j])) throw new IllegalArgumentException("Invalid data at index: " + j + " for row: " + i);
+			}
+
+			out[i] = score(data, params);
+		}
+	}
+
+	/**
+	 * Evaluate the ensemble on already transformed input data.
+	 */
+	public double score(double[] input, double[] params) {
+
+		// Summation order is the same as in the generated code
+		double sum = intercept;
+		for (int root : roots) {
+			int n = root;
+			while (feature[n] >= 0) {
+				n = input[feature[n]] <= threshold[n] ? left[n] : right[n];
+			}
+			sum += params[leaf[n]];
+		}
+
+		return base + sum * factor;
+	}
+
+	/**
+	 * Split values used for the given feature.
+	 */
+	double[] splits(int f) {
+		return IntStream.range(0, feature.length)
+			.filter(i -> feature[i] == f)
+			.mapToDouble(i -> threshold[i])
+			.toArray();
+	}
+
+	/**
+	 * Json representation of the model.
+	 */
+	static final class Spec {
+		public String model;
+		public String[] features;
+		public double[] mean;
+		public double[] scale;
+		public double base;
+		public double intercept;
+		public double factor = 1;
+		public double[] params;
+		public int[] roots;
+		public int[] feature;
+		public double[] threshold;
+		public int[] left;
+		public int[] right;
+		public int[] leaf;
+	}
+}
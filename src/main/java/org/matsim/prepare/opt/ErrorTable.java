@@ -0,0 +1,121 @@
+package org.matsim.prepare.opt;
+
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed error values for each count value and the range of likely observed values.
+ * Incremental changes of the error are then only two array lookups.
+ * The size of the table is limited, count values that do not fit are computed in closed form.
+ */
+final class ErrorTable {
+
+	/**
+	 * Constant added to counts and observations for the log and percentage errors.
+	 */
+	static final double C = 15.0;
+
+	/**
+	 * Observations up to two times the count plus this margin are stored.
+	 */
+	private static final int MARGIN = 64;
+
+	/**
+	 * Maximum number of stored values (32 MB). Small count values are stored first.
+	 */
+	static final int MAX_SIZE = 1 << 22;
+
+	private final ErrorMetric metric;
+
+	/**
+	 * Start of the values for each count value in {@link #values}, -1 if a count value does not occur.
+	 */
+	private final int[] offset;
+	/**
+	 * Maximum stored observation for each count value.
+	 */
+	private final int[] limit;
+	private final double[] values;
+
+	ErrorTable(ErrorMetric metric, int[] counts) {
+		this(metric, counts, MAX_SIZE);
+	}
+
+	ErrorTable(ErrorMetric metric, int[] counts, int maxSize) {
+		this.metric = metric;
+
+		int[] distinct = Arrays.stream(counts).filter(c -> c >= 0).distinct().sorted().toArray();
+
+		// Number of count values that fit into the table, the size of each entry grows with the count
+		int n = 0;
+		long size = 0;
+		while (n < distinct.length && size + 2L * distinct[n] + MARGIN + 1 <= maxSize) {
+			size += 2L * distinct[n] + MARGIN + 1;
+			n++;
+		}
+
+		int max = n > 0 ? distinct[n - 1] : -1;
+
+		this.offset = new int[max + 1];
+		this.limit = new int[max + 1];
+		Arrays.fill(offset, -1);
+
+		int pos = 0;
+		for (int i = 0; i < n; i++) {
+			int c = distinct[i];
+			offset[c] = pos;
+			limit[c] = 2 * c + MARGIN;
+			pos += limit[c] + 1;
+		}
+
+		this.values = new double[pos];
+		for (int c = 0; c <= max; c++) {
+			if (offset[c] == -1)
+				continue;
+
+			for (int o = 0; o <= limit[c]; o++) {
+				values[offset[c] + o] = error(metric, c, o);
+			}
+		}
+	}
+
+	/**
+	 * Error of a single observation.
+	 */
+	static double error(ErrorMetric err, int count, int observed) {
+		return switch (err) {
+			case abs_error -> Math.abs(count - observed);
+			case log_error -> FastMath.abs(FastMath.log((observed + C) / (count + C)));
+			case symmetric_percentage_error -> FastMath.abs((double) (observed - count) / (observed + count + 2 * C) / 2.);
+		};
+	}
+
+	/**
+	 * Error of a single observation, using the precomputed values if available.
+	 */
+	double get(int count, int observed) {
+		if (count >= 0 && count < offset.length && offset[count] >= 0 && observed >= 0 && observed <= limit[count])
+			return values[offset[count] + observed];
+
+		return error(metric, count, observed);
+	}
+
+	/**
+	 * Change of error when the observation changes from old to update.
+	 */
+	double diff(int count, int old, int update) {
+		return get(count, update) - get(count, old);
+	}
+
+	/**
+	 * Number of stored values.
+	 */
+	int size() {
+		return values.length;
+	}
+
+	ErrorMetric getMetric() {
+		return metric;
+	}
+}
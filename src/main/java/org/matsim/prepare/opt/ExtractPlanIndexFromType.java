@@ -6,10 +6,8 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.application.MATSimAppCommand;
-import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.population.algorithms.PersonAlgorithm;
-import org.matsim.core.population.io.StreamingPopulationReader;
-import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.prepare.population.StreamingPopulation;
 import picocli.CommandLine;
 
 import java.nio.file.Files;
@@ -29,11 +27,10 @@ public class ExtractPlanIndexFromType implements MATSimAppCommand, PersonAlgorit
 	@Override
 	public Integer call() throws Exception {
 
-		StreamingPopulationReader reader = new StreamingPopulationReader(ScenarioUtils.createScenario(ConfigUtils.createConfig()));
-
-		reader.addAlgorithm(this);
-
-		reader.readFile(input.toString());
+		// Supports xml and snapshot input
+		try (StreamingPopulation.Reader reader = StreamingPopulation.openReader(input.toString())) {
+			reader.forEachRemaining(this::run);
+		}
 
 		try (CSVPrinter csv = new CSVPrinter(Files.newBufferedWriter(output), CSVFormat.DEFAULT)) {
 			csv.printRecord("id", "idx");
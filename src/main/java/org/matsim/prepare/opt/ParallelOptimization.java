@@ -0,0 +1,280 @@
+package org.matsim.prepare.opt;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.optaplanner.core.api.score.buildin.simplebigdecimal.SimpleBigDecimalScore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Runs the annealing of {@link PlanAssignmentProblem#iterate(int, double, double, double, long)} in parallel.
+ * Either as independent chains with different seeds, or on partitions of the persons. Results only depend on the seeds,
+ * but not on the number of threads.
+ */
+final class ParallelOptimization {
+
+	private ParallelOptimization() {
+	}
+
+	/**
+	 * Run independent chains on copies of the problem and return the best solution.
+	 * If multiple chains reach the same score, the one with the lower index is used.
+	 */
+	static PlanAssignmentProblem multiStart(PlanAssignmentProblem problem, Annealing annealing, long[] seeds, ExecutorService executor) {
+
+		List<CompletableFuture<PlanAssignmentProblem>> futures = new ArrayList<>();
+		for (long seed : seeds) {
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				PlanAssignmentProblem copy = problem.copy();
+				annealing.apply(copy, seed);
+				return copy;
+			}, executor));
+		}
+
+		PlanAssignmentProblem best = null;
+		for (int i = 0; i < futures.size(); i++) {
+			PlanAssignmentProblem result = futures.get(i).join();
+			RunCountOptimization.log.info("Chain {} with seed {} reached score: {}", i, seeds[i], result.getScore());
+
+			if (best == null || result.getScore().compareTo(best.getScore()) > 0)
+				best = result;
+		}
+
+		RunCountOptimization.log.info("Best score of {} chains: {}", seeds.length, best.getScore());
+		return best;
+	}
+
+	/**
+	 * Optimize partitions of persons concurrently. Each person belongs to the partition containing most of its observations.
+	 * The observations of all other persons are kept fixed while a partition is optimized.
+	 * <p>
+	 * Because persons of different partitions may affect the same counts, the results are reconciled after each round:
+	 * All partition results are applied together if this improves the overall score, otherwise each partition result
+	 * is applied one after another, only if it improves the score.
+	 *
+	 * @param partition partition for each count index
+	 */
+	static PlanAssignmentProblem partitioned(PlanAssignmentProblem problem, int[] partition, int partitions, int rounds,
+											 Annealing annealing, long seed, ExecutorService executor) {
+
+		PlanAssignmentProblem current = problem.copy();
+		List<List<PlanPerson>> members = assignPersons(current.getPersons(), partition, partitions);
+
+		for (int p = 0; p < partitions; p++) {
+			RunCountOptimization.log.info("Partition {} contains {} persons", p, members.get(p).size());
+		}
+
+		SimpleBigDecimalScore score = score(current);
+
+		for (int r = 0; r < rounds; r++) {
+
+			SimpleBigDecimalScore start = score;
+			int[] observed = observed(current.getPersons(), current);
+
+			List<CompletableFuture<Object2IntMap<Id<Person>>>> futures = new ArrayList<>();
+			for (int p = 0; p < partitions; p++) {
+
+				List<PlanPerson> persons = members.get(p);
+				long s = seed + (long) r * partitions + p;
+
+				futures.add(CompletableFuture.supplyAsync(() -> optimizePartition(current, persons, observed, annealing, s), executor));
+			}
+
+			List<Object2IntMap<Id<Person>>> results = futures.stream().map(CompletableFuture::join).toList();
+
+			Object2IntMap<Id<Person>> before = selection(current.getPersons());
+
+			results.forEach(res -> apply(current, res));
+			SimpleBigDecimalScore combined = score(current);
+
+			if (combined.compareTo(score) < 0) {
+
+				// Combined result is worse, partitions are applied one by one
+				apply(current, before);
+				for (Object2IntMap<Id<Person>> res : results) {
+
+					Object2IntMap<Id<Person>> previous = selection(current.getPersons());
+					apply(current, res);
+
+					SimpleBigDecimalScore s = score(current);
+					if (s.compareTo(score) > 0)
+						score = s;
+					else
+						apply(current, previous);
+				}
+			} else
+				score = combined;
+
+			current.setScore(score);
+			RunCountOptimization.log.info("Round {} of partitioned optimization reached score: {}", r, score);
+
+			if (score.compareTo(start) <= 0)
+				break;
+		}
+
+		return current;
+	}
+
+	/**
+	 * Optimize the given persons with the observations of all other persons fixed.
+	 *
+	 * @return selected plan index of each person
+	 */
+	private static Object2IntMap<Id<Person>> optimizePartition(PlanAssignmentProblem problem, List<PlanPerson> persons, int[] observed,
+															   Annealing annealing, long seed) {
+
+		List<PlanPerson> copies = new ArrayList<>();
+		int[] fixed = observed.clone();
+		for (PlanPerson person : persons) {
+			copies.add(person.deepCopy());
+
+			int[] stations = person.selectedStations();
+			int[] inc = person.selectedIncrements();
+			for (int i = 0; i < stations.length; i++) {
+				fixed[stations[i]] -= inc[i];
+			}
+		}
+
+		PlanAssignmentProblem sub = new PlanAssignmentProblem(problem, copies, fixed);
+		annealing.apply(sub, seed);
+
+		return selection(sub.getPersons());
+	}
+
+	/**
+	 * Assign each person to the partition where the sum of its observations over all plans is largest.
+	 */
+	private static List<List<PlanPerson>> assignPersons(List<PlanPerson> persons, int[] partition, int partitions) {
+
+		List<List<PlanPerson>> members = new ArrayList<>();
+		for (int p = 0; p < partitions; p++) {
+			members.add(new ArrayList<>());
+		}
+
+		int[] impact = new int[partitions];
+		for (PlanPerson person : persons) {
+
+			Arrays.fill(impact, 0);
+			for (int k = 0; k < person.getNumberOfPlans(); k++) {
+				int[] stations = person.getStations(k);
+				int[] inc = person.getIncrements(k);
+				for (int i = 0; i < stations.length; i++) {
+					impact[partition[stations[i]]] += inc[i];
+				}
+			}
+
+			int best = 0;
+			for (int p = 1; p < partitions; p++) {
+				if (impact[p] > impact[best])
+					best = p;
+			}
+
+			members.get(best).add(person);
+		}
+
+		return members;
+	}
+
+	/**
+	 * Split stations into partitions with similar size by recursive coordinate bisection.
+	 *
+	 * @return partition index for each station
+	 */
+	static int[] bisect(double[] x, double[] y, int partitions) {
+
+		int[] result = new int[x.length];
+		IntList all = new IntArrayList();
+		for (int i = 0; i < x.length; i++) {
+			all.add(i);
+		}
+
+		bisect(x, y, all, 0, partitions, result);
+		return result;
+	}
+
+	private static void bisect(double[] x, double[] y, IntList stations, int first, int n, int[] result) {
+
+		if (n <= 1 || stations.size() <= 1) {
+			for (int s : stations) {
+				result[s] = first;
+			}
+			return;
+		}
+
+		double minX = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int s : stations) {
+			minX = Math.min(minX, x[s]);
+			maxX = Math.max(maxX, x[s]);
+			minY = Math.min(minY, y[s]);
+			maxY = Math.max(maxY, y[s]);
+		}
+
+		// Split along the larger extent, ties are resolved by station index to be deterministic
+		double[] coord = maxX - minX >= maxY - minY ? x : y;
+		IntList sorted = new IntArrayList(stations);
+		sorted.sort((a, b) -> {
+			int c = Double.compare(coord[a], coord[b]);
+			return c != 0 ? c : Integer.compare(a, b);
+		});
+
+		int left = n / 2;
+		int split = (int) ((long) sorted.size() * left / n);
+
+		bisect(x, y, sorted.subList(0, split), first, left, result);
+		bisect(x, y, sorted.subList(split, sorted.size()), first + left, n - left, result);
+	}
+
+	private static int[] observed(List<PlanPerson> persons, PlanAssignmentProblem problem) {
+		int[] observed = problem.fixed != null ? problem.fixed.clone() : new int[problem.counts.length];
+		for (PlanPerson person : persons) {
+			int[] stations = person.selectedStations();
+			int[] inc = person.selectedIncrements();
+			for (int i = 0; i < stations.length; i++) {
+				observed[stations[i]] += inc[i];
+			}
+		}
+		return observed;
+	}
+
+	private static SimpleBigDecimalScore score(PlanAssignmentProblem problem) {
+		ScoreCalculator calc = new ScoreCalculator();
+		calc.resetWorkingSolution(problem);
+		return calc.calculateScore();
+	}
+
+	private static Object2IntMap<Id<Person>> selection(List<PlanPerson> persons) {
+		Object2IntMap<Id<Person>> k = new Object2IntOpenHashMap<>();
+		for (PlanPerson person : persons) {
+			k.put(person.getId(), person.getK());
+		}
+		return k;
+	}
+
+	private static void apply(PlanAssignmentProblem problem, Object2IntMap<Id<Person>> selection) {
+		for (PlanPerson person : problem.getPersons()) {
+			if (selection.containsKey(person.getId()))
+				person.setK(selection.getInt(person.getId()));
+		}
+	}
+
+	/**
+	 * Parameters for {@link PlanAssignmentProblem#iterate(int, double, double, double, long)}.
+	 */
+	record Annealing(int iterations, double prob, double beta, double w) {
+
+		void apply(PlanAssignmentProblem problem, long seed) {
+			problem.iterate(iterations, prob, beta, w, seed);
+		}
+	}
+}
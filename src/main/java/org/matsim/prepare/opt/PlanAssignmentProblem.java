@@ -20,6 +20,14 @@ public final class PlanAssignmentProblem implements Iterable<PlanPerson> {
 
 	final int[] counts;
 	final ErrorMetric metric;
+	/**
+	 * Observations of persons that are not part of this problem, may be null.
+	 */
+	final int[] fixed;
+	/**
+	 * Error values for the counts, shared by all copies and sub problems.
+	 */
+	final ErrorTable table;
 	private final int maxK;
 	@PlanningEntityCollectionProperty
 	private final List<PlanPerson> persons;
@@ -31,18 +39,37 @@ public final class PlanAssignmentProblem implements Iterable<PlanPerson> {
 		this.metric = metric;
 		this.persons = persons;
 		this.counts = counts;
+		this.fixed = null;
+		this.table = new ErrorTable(metric, counts);
 		this.score = SimpleBigDecimalScore.ofUninitialized(-1, BigDecimal.ZERO);
 
 		persons.sort(new PlanPerson.DifficultyComparator());
 		Collections.reverse(persons);
 	}
 
+	/**
+	 * Create a problem for a subset of persons, the observations of all other persons are given as fixed.
+	 */
+	PlanAssignmentProblem(PlanAssignmentProblem problem, List<PlanPerson> persons, int[] fixed) {
+		this.maxK = problem.maxK;
+		this.metric = problem.metric;
+		this.persons = persons;
+		this.counts = problem.counts;
+		this.fixed = fixed;
+		this.table = problem.table;
+		this.score = SimpleBigDecimalScore.ofUninitialized(-1, BigDecimal.ZERO);
+
+		persons.sort(new PlanPerson.DifficultyComparator());
+		Collections.reverse(persons);
+	}
 
-	private PlanAssignmentProblem(int maxK, ErrorMetric metric, List<PlanPerson> persons, int[] counts, SimpleBigDecimalScore score) {
-		this.maxK = maxK;
-		this.metric = metric;
+	private PlanAssignmentProblem(PlanAssignmentProblem problem, List<PlanPerson> persons, SimpleBigDecimalScore score) {
+		this.maxK = problem.maxK;
+		this.metric = problem.metric;
 		this.persons = persons;
-		this.counts = counts;
+		this.counts = problem.counts;
+		this.fixed = problem.fixed;
+		this.table = problem.table;
 		this.score = score;
 	}
 
@@ -76,10 +103,30 @@ public final class PlanAssignmentProblem implements Iterable<PlanPerson> {
 		return persons.iterator();
 	}
 
+	/**
+	 * Copy of this problem, where the persons can be modified independently of this instance.
+	 */
+	PlanAssignmentProblem copy() {
+		List<PlanPerson> personsCopy = new ArrayList<>();
+		for (PlanPerson person : persons) {
+			personsCopy.add(person.deepCopy());
+		}
+		return new PlanAssignmentProblem(this, personsCopy, score);
+	}
+
 	/**
 	 * Iterative pre optimization using change plan exp beta logic.
 	 */
 	public void iterate(int n, double prob, double beta, double w) {
+		iterate(n, prob, beta, w, 0);
+	}
+
+	/**
+	 * Iterative pre optimization using change plan exp beta logic.
+	 *
+	 * @param seed seed for the random number generator
+	 */
+	public void iterate(int n, double prob, double beta, double w, long seed) {
 
 		ScoreCalculator calc = new ScoreCalculator();
 		calc.resetWorkingSolution(this);
@@ -87,7 +134,7 @@ public final class PlanAssignmentProblem implements Iterable<PlanPerson> {
 
 		RunCountOptimization.log.info("Iterating {} iters with prob {} and beta {}", n, prob, beta);
 
-		SplittableRandom rnd = new SplittableRandom(0);
+		SplittableRandom rnd = new SplittableRandom(seed);
 
 		double step = prob / n;
 
@@ -126,6 +173,10 @@ public final class PlanAssignmentProblem implements Iterable<PlanPerson> {
 				}
 			}
 		}
+
+		// Score of the final assignment
+		calc.resetWorkingSolution(this);
+		score = calc.calculateScore();
 	}
 
 	/**
@@ -138,7 +189,7 @@ public final class PlanAssignmentProblem implements Iterable<PlanPerson> {
 			for (PlanPerson person : original.persons) {
 				personsCopy.add(person.copy());
 			}
-			return new PlanAssignmentProblem(original.maxK, original.metric, personsCopy, original.counts, original.score);
+			return new PlanAssignmentProblem(original, personsCopy, original.score);
 		}
 	}
 
@@ -42,6 +42,16 @@ public final class PlanPerson {
 	 */
 	private final Int2IntMap[] plans;
 
+	/**
+	 * Affected count stations of each plan, as primitive arrays of the plan maps.
+	 */
+	private final int[][] stations;
+
+	/**
+	 * Count increment for each entry in {@link #stations}.
+	 */
+	private final int[][] increments;
+
 	/**
 	 * Scores of each plan.
 	 */
@@ -57,10 +67,22 @@ public final class PlanPerson {
 		this.offset = offset;
 		this.plans = plans;
 		this.k = 0;
+		this.stations = new int[plans.length][];
+		this.increments = new int[plans.length][];
 
 		int max = 0;
-		for (Int2IntMap plan : plans) {
+		for (int i = 0; i < plans.length; i++) {
+			Int2IntMap plan = plans[i];
 			max = Math.max(max, plan.values().intStream().sum());
+
+			stations[i] = new int[plan.size()];
+			increments[i] = new int[plan.size()];
+			int j = 0;
+			for (Int2IntMap.Entry e : plan.int2IntEntrySet()) {
+				stations[i][j] = e.getIntKey();
+				increments[i][j] = e.getIntValue();
+				j++;
+			}
 		}
 		this.scores = new double[plans.length];
 		Arrays.fill(scores, Float.NaN);
@@ -71,11 +93,14 @@ public final class PlanPerson {
 	/**
 	 * Constructor for cloning.
 	 */
-	private PlanPerson(Integer k, Id<Person> id, int offset, Int2IntMap[] plans, double[] scores, int maxImpact) {
+	private PlanPerson(Integer k, Id<Person> id, int offset, Int2IntMap[] plans, int[][] stations, int[][] increments,
+					   double[] scores, int maxImpact) {
 		this.k = k;
 		this.id = id;
 		this.offset = offset;
 		this.plans = plans;
+		this.stations = stations;
+		this.increments = increments;
 		this.scores = scores;
 		this.maxImpact = maxImpact;
 	}
@@ -98,6 +123,32 @@ public final class PlanPerson {
 		return plans[k];
 	}
 
+	/**
+	 * Count stations affected by the selected plan.
+	 */
+	int[] selectedStations() {
+		return stations[k];
+	}
+
+	/**
+	 * Count increments of the selected plan, same order as {@link #selectedStations()}.
+	 */
+	int[] selectedIncrements() {
+		return increments[k];
+	}
+
+	int getNumberOfPlans() {
+		return plans.length;
+	}
+
+	int[] getStations(int idx) {
+		return stations[idx];
+	}
+
+	int[] getIncrements(int idx) {
+		return increments[idx];
+	}
+
 	public Int2IntMap get(int idx) {
 		return plans[idx];
 	}
@@ -117,10 +168,10 @@ public final class PlanPerson {
 
 			double score = 0;
 
-			Int2IntMap p = plans[i];
-
-			for (Int2IntMap.Entry e : p.int2IntEntrySet()) {
-				score += calc.scoreEntry(e);
+			int[] s = stations[i];
+			int[] inc = increments[i];
+			for (int j = 0; j < s.length; j++) {
+				score += calc.scoreEntry(s[j], inc[j]);
 			}
 
 			scores[i] = score;
@@ -156,7 +207,14 @@ public final class PlanPerson {
 	}
 
 	PlanPerson copy() {
-		return new PlanPerson(k, id, offset, plans, scores, maxImpact);
+		return new PlanPerson(k, id, offset, plans, stations, increments, scores, maxImpact);
+	}
+
+	/**
+	 * Copy with its own plan scores, which can be modified independently of this instance.
+	 */
+	PlanPerson deepCopy() {
+		return new PlanPerson(k, id, offset, plans, stations, increments, scores.clone(), maxImpact);
 	}
 
 	/**
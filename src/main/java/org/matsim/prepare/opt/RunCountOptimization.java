@@ -15,20 +15,23 @@ import org.matsim.api.core.v01.population.*;
 import org.matsim.application.MATSimAppCommand;
 import org.matsim.application.options.CsvOptions;
 import org.matsim.core.network.NetworkUtils;
-import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.routes.NetworkRoute;
 import org.matsim.counts.Counts;
 import org.matsim.counts.MatsimCountsReader;
 import org.matsim.counts.Measurable;
 import org.matsim.counts.MeasurementLocation;
 import org.matsim.prepare.RunOpenBerlinCalibration;
+import org.matsim.prepare.population.PopulationSnapshot;
 import org.optaplanner.core.api.solver.Solver;
 import org.optaplanner.core.api.solver.SolverFactory;
 import picocli.CommandLine;
 
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
 
 @CommandLine.Command(name = "run-count-opt", description = "Select plans to match counts data")
 public class RunCountOptimization implements MATSimAppCommand {
@@ -64,6 +67,21 @@ public class RunCountOptimization implements MATSimAppCommand {
 	@CommandLine.Option(names = "--k", description = "Number of plans to use from each agent", defaultValue = "5")
 	private int maxK;
 
+	@CommandLine.Option(names = "--seed", description = "Seed for the pre optimization, chains and partitions use consecutive seeds", defaultValue = "0")
+	private long seed;
+
+	@CommandLine.Option(names = "--chains", description = "Number of independent pre optimization chains, the best result is used", defaultValue = "1")
+	private int chains;
+
+	@CommandLine.Option(names = "--partitions", description = "Number of spatial partitions of count stations that are pre optimized concurrently", defaultValue = "1")
+	private int partitions;
+
+	@CommandLine.Option(names = "--partition-rounds", description = "Number of rounds for the partitioned pre optimization", defaultValue = "5")
+	private int partitionRounds;
+
+	@CommandLine.Option(names = "--threads", description = "Number of threads for the parallel pre optimization")
+	private int threads = Runtime.getRuntime().availableProcessors();
+
 	@CommandLine.Mixin
 	private CsvOptions csv;
 
@@ -123,7 +141,23 @@ public class RunCountOptimization implements MATSimAppCommand {
 			case symmetric_percentage_error -> 300;
 		};
 
-		problem.iterate(5000, 0.5, beta, 0.01);
+		ParallelOptimization.Annealing annealing = new ParallelOptimization.Annealing(5000, 0.5, beta, 0.01);
+
+		if (partitions > 1 || chains > 1) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				if (partitions > 1) {
+					int[] partition = partitionCounts(network, counts.length);
+					problem = ParallelOptimization.partitioned(problem, partition, partitions, partitionRounds, annealing, seed, executor);
+				} else {
+					long[] seeds = LongStream.range(seed, seed + chains).toArray();
+					problem = ParallelOptimization.multiStart(problem, annealing, seeds, executor);
+				}
+			} finally {
+				executor.shutdown();
+			}
+		} else
+			annealing.apply(problem, seed);
 
 		PlanAssignmentProblem solution = solve(problem);
 
@@ -139,12 +173,34 @@ public class RunCountOptimization implements MATSimAppCommand {
 		return 0;
 	}
 
+	/**
+	 * Assign each count index to a spatial partition of the count stations.
+	 */
+	private int[] partitionCounts(Network network, int size) {
+
+		double[] x = new double[linkMapping.size()];
+		double[] y = new double[linkMapping.size()];
+		for (Object2IntMap.Entry<Id<Link>> e : linkMapping.object2IntEntrySet()) {
+			Link link = network.getLinks().get(e.getKey());
+			x[e.getIntValue()] = link.getCoord().getX();
+			y[e.getIntValue()] = link.getCoord().getY();
+		}
+
+		int[] stations = ParallelOptimization.bisect(x, y, partitions);
+		int[] partition = new int[size];
+		for (int i = 0; i < size; i++) {
+			partition[i] = stations[i / H];
+		}
+
+		return partition;
+	}
+
 	/**
 	 * Create an array for each person.
 	 */
 	private List<PlanPerson> processPopulation(Path input, Network network, Counts<Link> linkCounts) {
 
-		Population population = PopulationUtils.readPopulation(input.toString());
+		Population population = PopulationSnapshot.readPopulation(input.toString());
 		List<PlanPerson> persons = new ArrayList<>();
 
 		Set<Id<Link>> links = linkCounts.getMeasureLocations().keySet();
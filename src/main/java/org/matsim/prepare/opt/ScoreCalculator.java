@@ -1,7 +1,6 @@
 package org.matsim.prepare.opt;
 
 
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
 import org.apache.commons.math3.util.FastMath;
 import org.optaplanner.core.api.score.buildin.simplebigdecimal.SimpleBigDecimalScore;
 import org.optaplanner.core.api.score.calculator.IncrementalScoreCalculator;
@@ -13,7 +12,7 @@ import java.math.BigDecimal;
  */
 public final class ScoreCalculator implements IncrementalScoreCalculator<PlanAssignmentProblem, SimpleBigDecimalScore> {
 
-	private static final double C = 15.0;
+	private static final double C = ErrorTable.C;
 	/**
 	 * Error metric.
 	 */
@@ -30,30 +29,33 @@ public final class ScoreCalculator implements IncrementalScoreCalculator<PlanAss
 
 	private ErrorMetric metric;
 
+	/**
+	 * Precomputed error values of the problem.
+	 */
+	private ErrorTable table;
+
 	static double diffChange(ErrorMetric err, int count, int old, int update) {
 
 		// Floating point arithmetic still leads to score corruption in full assert mode
 		// logarithm can not even be efficiently calculated using big decimal, the corruption needs to be accepted as this point
 
-		return switch (err) {
-			case abs_error -> Math.abs(count - update) - Math.abs(count - old);
-			case log_error -> FastMath.abs(FastMath.log((update + C) / (count + C))) - FastMath.abs(FastMath.log((old + C) / (count + C)));
-			case symmetric_percentage_error -> FastMath.abs((double) (update - count) / (update + count + 2 * C) / 2.) -
-					FastMath.abs((double) (old - count) / (old + count + 2 * C) / 2.);
-		};
+		return ErrorTable.error(err, count, update) - ErrorTable.error(err, count, old);
 	}
 
 
 	@Override
 	public void resetWorkingSolution(PlanAssignmentProblem problem) {
 
-		observed = new int[problem.counts.length];
+		table = problem.table;
+		observed = problem.fixed != null ? problem.fixed.clone() : new int[problem.counts.length];
 		counts = problem.counts;
 		metric = problem.metric;
 
 		for (PlanPerson person : problem) {
-			for (Int2IntMap.Entry e : person.selected().int2IntEntrySet()) {
-				observed[e.getIntKey()] += e.getIntValue();
+			int[] stations = person.selectedStations();
+			int[] inc = person.selectedIncrements();
+			for (int i = 0; i < stations.length; i++) {
+				observed[stations[i]] += inc[i];
 			}
 		}
 
@@ -92,12 +94,15 @@ public final class ScoreCalculator implements IncrementalScoreCalculator<PlanAss
 		PlanPerson person = (PlanPerson) entity;
 
 		// remove this persons plan from the calculation
-		for (Int2IntMap.Entry e : person.selected().int2IntEntrySet()) {
+		int[] stations = person.selectedStations();
+		int[] inc = person.selectedIncrements();
+		for (int i = 0; i < stations.length; i++) {
 
-			int old = observed[e.getIntKey()];
-			int update = observed[e.getIntKey()] -= e.getIntValue();
+			int idx = stations[i];
+			int old = observed[idx];
+			int update = observed[idx] -= inc[i];
 
-			error += diffChange(metric, counts[e.getIntKey()], old, update);
+			error += table.diff(counts[idx], old, update);
 		}
 
 	}
@@ -109,12 +114,15 @@ public final class ScoreCalculator implements IncrementalScoreCalculator<PlanAss
 		PlanPerson person = (PlanPerson) entity;
 
 		// add this persons contribution to the score
-		for (Int2IntMap.Entry e : person.selected().int2IntEntrySet()) {
+		int[] stations = person.selectedStations();
+		int[] inc = person.selectedIncrements();
+		for (int i = 0; i < stations.length; i++) {
 
-			int old = observed[e.getIntKey()];
-			int update = observed[e.getIntKey()] += e.getIntValue();
+			int idx = stations[i];
+			int old = observed[idx];
+			int update = observed[idx] += inc[i];
 
-			error += diffChange(metric, counts[e.getIntKey()], old, update);
+			error += table.diff(counts[idx], old, update);
 		}
 	}
 
@@ -132,14 +140,12 @@ public final class ScoreCalculator implements IncrementalScoreCalculator<PlanAss
 		return SimpleBigDecimalScore.of(BigDecimal.valueOf(-error));
 	}
 
-	double scoreEntry(Int2IntMap.Entry e) {
-
-		int idx = e.getIntKey();
+	double scoreEntry(int idx, int value) {
 
 		// Calculate impact compared to a plan without the observations of this plan
 		// old can not get negative
 
-		return -diffChange(metric, counts[idx], Math.max(0, observed[idx] - e.getIntValue()), observed[idx]);
+		return -table.diff(counts[idx], Math.max(0, observed[idx] - value), observed[idx]);
 	}
 }
 
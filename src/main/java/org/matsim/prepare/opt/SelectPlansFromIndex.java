@@ -7,10 +7,9 @@ import org.apache.commons.csv.CSVRecord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
-import org.matsim.api.core.v01.population.Population;
 import org.matsim.application.MATSimAppCommand;
 import org.matsim.application.options.CsvOptions;
-import org.matsim.core.population.PopulationUtils;
+import org.matsim.prepare.population.StreamingPopulation;
 import picocli.CommandLine;
 
 import java.nio.file.Path;
@@ -60,7 +59,6 @@ public class SelectPlansFromIndex implements MATSimAppCommand {
 	@Override
 	public Integer call() throws Exception {
 
-		Population population = PopulationUtils.readPopulation(input.toString());
 		Object2IntMap<Id<Person>> idx = new Object2IntOpenHashMap<>();
 		try (CSVParser parser = csvOpt.createParser(csv)) {
 			for (CSVRecord row : parser) {
@@ -68,27 +66,26 @@ public class SelectPlansFromIndex implements MATSimAppCommand {
 			}
 		}
 
-		Set<Id<Person>> toRemove = new HashSet<>();
+		// Persons are processed one by one, without loading the whole population
+		try (StreamingPopulation.Reader reader = StreamingPopulation.openReader(input.toString())) {
 
-		for (Person person : population.getPersons().values()) {
+			reader.hasNext();
+			try (StreamingPopulation.Writer writer = StreamingPopulation.openWriter(output.toString(), reader.getAttributes())) {
+				while (reader.hasNext()) {
+					Person person = reader.next();
 
-			// will be 0 if no value is present
-			int planIndex = idx.getInt(person.getId());
-			if (planIndex == -1) {
-				toRemove.add(person.getId());
-				continue;
-			}
+					// will be 0 if no value is present
+					int planIndex = idx.getInt(person.getId());
+					if (planIndex == -1)
+						continue;
 
-			selectPlanWithIndex(person, planIndex);
+					selectPlanWithIndex(person, planIndex);
+					writer.write(person);
+				}
+			}
 		}
 
-		toRemove.forEach(population::removePerson);
-
-		PopulationUtils.writePopulation(population, output.toString());
-
 		return 0;
 	}
 
 }
-
-
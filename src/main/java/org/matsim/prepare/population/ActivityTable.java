@@ -0,0 +1,227 @@
+package org.matsim.prepare.population;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Activities from the survey data, stored column-wise. Values are parsed once while reading,
+ * strings are stored as codes into a shared dictionary.
+ * The activities of one person are consecutive rows, which can be accessed via {@link #getStart(int)} and {@link #getEnd(int)}.
+ */
+public final class ActivityTable {
+
+	private static final Logger log = LogManager.getLogger(ActivityTable.class);
+
+	/**
+	 * Maps person id to its index.
+	 */
+	private final Object2IntMap<String> persons = new Object2IntOpenHashMap<>();
+
+	/**
+	 * First row of each person, the last entry marks the end of the table.
+	 */
+	private final int[] offsets;
+
+	private final List<String> dictionary;
+	private final int[] type;
+	private final int[] duration;
+	private final double[] legDuration;
+	private final double[] legDist;
+	private final int[] legMode;
+	private final int[] location;
+	private final int[] zone;
+
+	private ActivityTable(Builder b) {
+		persons.defaultReturnValue(-1);
+
+		// Same as a map, if a person occurs multiple times, the last group of rows is used
+		for (int i = 0; i < b.ids.size(); i++) {
+			persons.put(b.ids.get(i), i);
+		}
+
+		offsets = b.offsets.toIntArray();
+		dictionary = List.copyOf(b.dictionary);
+		type = b.type.toIntArray();
+		duration = b.duration.toIntArray();
+		legDuration = b.legDuration.toDoubleArray();
+		legDist = b.legDist.toDoubleArray();
+		legMode = b.legMode.toIntArray();
+		location = b.location.toIntArray();
+		zone = b.zone.toIntArray();
+	}
+
+	/**
+	 * Read activities and group them by person id. Activities of the same person need to be consecutive.
+	 */
+	public static ActivityTable read(Path csv) throws IOException {
+		try (CSVParser parser = CSVParser.parse(csv, StandardCharsets.UTF_8,
+			CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build())) {
+			return read(parser, "p_id");
+		}
+	}
+
+	/**
+	 * Read activities from a parser, using given column as person id.
+	 */
+	public static ActivityTable read(CSVParser parser, String idColumn) {
+
+		Builder b = new Builder();
+
+		// Location columns are optional
+		boolean hasLocation = parser.getHeaderMap().containsKey("location");
+		boolean hasZone = parser.getHeaderMap().containsKey("zone");
+		boolean hasMode = parser.getHeaderMap().containsKey("leg_mode");
+
+		String currentId = null;
+		for (CSVRecord r : parser) {
+
+			String pId = r.get(idColumn);
+			if (!Objects.equals(pId, currentId)) {
+				b.ids.add(pId);
+				b.offsets.add(b.type.size());
+				currentId = pId;
+			}
+
+			b.type.add(b.encode(r.get("type")));
+			b.duration.add((int) Double.parseDouble(r.get("duration")));
+			b.legDuration.add(Double.parseDouble(r.get("leg_duration")));
+			b.legDist.add(Double.parseDouble(r.get("leg_dist")));
+			b.legMode.add(hasMode ? b.encode(r.get("leg_mode")) : -1);
+			b.location.add(hasLocation ? b.encode(r.get("location")) : -1);
+			b.zone.add(hasZone ? b.encode(r.get("zone")) : -1);
+		}
+
+		b.offsets.add(b.type.size());
+
+		ActivityTable table = new ActivityTable(b);
+		log.info("Read {} activities for {} persons", table.size(), table.persons.size());
+
+		return table;
+	}
+
+	/**
+	 * Index of a person, which is used to access its rows.
+	 *
+	 * @return -1 if the person is not known
+	 */
+	public int getPerson(String personId) {
+		return persons.getInt(personId);
+	}
+
+	/**
+	 * First row of a person (inclusive).
+	 */
+	public int getStart(int person) {
+		return offsets[person];
+	}
+
+	/**
+	 * Last row of a person (exclusive).
+	 */
+	public int getEnd(int person) {
+		return offsets[person + 1];
+	}
+
+	/**
+	 * Total number of rows.
+	 */
+	public int size() {
+		return type.length;
+	}
+
+	/**
+	 * Activity type of a row.
+	 */
+	public String getType(int row) {
+		return dictionary.get(type[row]);
+	}
+
+	/**
+	 * Activity duration in minutes.
+	 */
+	public int getDuration(int row) {
+		return duration[row];
+	}
+
+	/**
+	 * Duration of the leg leading to this activity in minutes.
+	 */
+	public double getLegDuration(int row) {
+		return legDuration[row];
+	}
+
+	/**
+	 * Distance of the leg leading to this activity.
+	 */
+	public double getLegDist(int row) {
+		return legDist[row];
+	}
+
+	/**
+	 * Mode of the leg leading to this activity.
+	 */
+	public String getLegMode(int row) {
+		return decode(legMode[row]);
+	}
+
+	/**
+	 * Location name, or null if not present.
+	 */
+	public String getLocation(int row) {
+		return decode(location[row]);
+	}
+
+	/**
+	 * Zone of the location, or null if not present.
+	 */
+	public String getZone(int row) {
+		return decode(zone[row]);
+	}
+
+	private String decode(int code) {
+		return code < 0 ? null : dictionary.get(code);
+	}
+
+	/**
+	 * Collects the columns while reading.
+	 */
+	private static final class Builder {
+
+		private final Object2IntMap<String> codes = new Object2IntOpenHashMap<>();
+		private final List<String> dictionary = new ArrayList<>();
+		private final List<String> ids = new ArrayList<>();
+		private final IntArrayList offsets = new IntArrayList();
+		private final IntArrayList type = new IntArrayList();
+		private final IntArrayList duration = new IntArrayList();
+		private final DoubleArrayList legDuration = new DoubleArrayList();
+		private final DoubleArrayList legDist = new DoubleArrayList();
+		private final IntArrayList legMode = new IntArrayList();
+		private final IntArrayList location = new IntArrayList();
+		private final IntArrayList zone = new IntArrayList();
+
+		private int encode(String value) {
+			int code = codes.getOrDefault(value, -1);
+			if (code < 0) {
+				code = dictionary.size();
+				codes.put(value, code);
+				dictionary.add(value);
+			}
+
+			return code;
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package org.matsim.prepare.population;
 
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import me.tongfei.progressbar.ProgressBar;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.logging.log4j.LogManager;
@@ -13,7 +14,6 @@ import org.matsim.api.core.v01.population.Population;
 import org.matsim.application.MATSimAppCommand;
 import org.matsim.application.analysis.population.TripAnalysis;
 import org.matsim.application.options.ShpOptions;
-import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.run.OpenBerlinScenario;
 import picocli.CommandLine;
@@ -76,7 +76,7 @@ public class AssignReferencePopulation implements MATSimAppCommand {
 			return 2;
 		}
 
-		Population population = PopulationUtils.readPopulation(populationPath);
+		Population population = PopulationSnapshot.readPopulation(populationPath);
 
 		SplittableRandom rnd = new SplittableRandom(0);
 		persons = new PersonMatcher("idx", personsPath);
@@ -87,8 +87,10 @@ public class AssignReferencePopulation implements MATSimAppCommand {
 		Long2ObjectMap<List<Person>> homeIndex = planBuilder.createHomeIndex(population);
 
 		// Remove persons without legs, these can not be assigned
-		for (List<Person> list : homeIndex.values()) {
-			list.removeIf(p -> TripStructureUtils.getLegs(p.getSelectedPlan()).isEmpty());
+		Long2ObjectMap<PersonMatcher.Index> matchIndex = new Long2ObjectOpenHashMap<>();
+		for (Long2ObjectMap.Entry<List<Person>> e : homeIndex.long2ObjectEntrySet()) {
+			e.getValue().removeIf(p -> TripStructureUtils.getLegs(p.getSelectedPlan()).isEmpty());
+			matchIndex.put(e.getLongKey(), persons.createIndex(e.getValue()));
 		}
 
 		RunActivitySampling sampling = new RunActivitySampling(persons, planBuilder.getActivities(), population.getFactory(), 1);
@@ -113,7 +115,7 @@ public class AssignReferencePopulation implements MATSimAppCommand {
 			if (zone < 0)
 				continue;
 
-			List<Person> refPersons = homeIndex.get(zone);
+			PersonMatcher.Index refPersons = matchIndex.get(zone);
 
 			if (refPersons == null)
 				continue;
@@ -135,7 +137,7 @@ public class AssignReferencePopulation implements MATSimAppCommand {
 				boolean success = planBuilder.assignLocationsFromZones(e.getKey(), plan, homeCoord);
 
 				if (success) {
-					sampling.copyAttributes(p, person);
+					sampling.copyAttributes(e.getKey(), person);
 					person.getAttributes().putAttribute(TripAnalysis.ATTR_REF_WEIGHT, p.get("p_weight"));
 					person.removePlan(person.getSelectedPlan());
 					person.addPlan(plan);
@@ -155,7 +157,7 @@ public class AssignReferencePopulation implements MATSimAppCommand {
 
 		log.info("Assigned {}/{} reference persons", i, population.getPersons().size());
 
-		PopulationUtils.writePopulation(population, output.toString());
+		PopulationSnapshot.writePopulation(population, output.toString());
 
 		return 0;
 	}
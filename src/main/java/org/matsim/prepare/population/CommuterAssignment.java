@@ -11,6 +11,7 @@ import org.apache.commons.csv.CSVRecord;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.geotools.api.feature.simple.SimpleFeature;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
 import org.matsim.application.options.CsvOptions;
@@ -19,37 +20,77 @@ import org.matsim.facilities.ActivityFacility;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Helper class for commuter assignment.
+ * <p>
+ * Remaining commuters are stored as fixed-point budgets, which are reduced with compare-and-set, so that
+ * concurrent threads do not need to lock. Targets are drawn proportional to the remaining commuters.
+ * If no target is accepted within a limited number of draws, the remaining destinations are scanned.
+ * <p>
+ * Multiple variants with independent budgets can be tracked, e.g. to generate several plans per person in one pass.
  */
 public class CommuterAssignment {
 
 	private static final Logger log = LogManager.getLogger(CommuterAssignment.class);
 
-	private final Map<Long, SimpleFeature> zones;
+	/**
+	 * Fixed-point scale of the budgets, one unit corresponds to one person of the sample.
+	 */
+	private static final long UNIT = 1L << 20;
+
+	/**
+	 * Maximum number of draws per destination, before scanning all remaining destinations.
+	 */
+	private static final int MAX_DRAWS = 32;
+
+	/**
+	 * Geometries of all destination zones, indexed by ordinal.
+	 */
+	private final Geometry[] geometries;
+
+	/**
+	 * Bounding circles of the destination zones.
+	 */
+	private final double[] centerX;
+	private final double[] centerY;
+	private final double[] radius;
 
 	/**
 	 * Outgoing commuter from ars to ars. This is german wide with quite large zones.
 	 */
-	private final Long2ObjectMap<Long2DoubleMap> commuter;
+	private final Long2ObjectMap<Origin> commuter;
 
 	/**
 	 * Maps home district to probabilities of commuting to other districts.
 	 */
 	private final Int2ObjectMap<Int2DoubleMap> berlinCommuter;
 
+	/**
+	 * Per thread marks of already tried destinations.
+	 */
+	private final ThreadLocal<long[]> tried;
+
 	private final CsvOptions csv = new CsvOptions(CSVFormat.Predefined.Default);
-	private final double sample;
 
 	public CommuterAssignment(Long2ObjectMap<SimpleFeature> zones, Path commuterPath, Path berlinCommuterPath, double sample) {
-		this.sample = sample;
+		this(zones, commuterPath, berlinCommuterPath, sample, 1);
+	}
 
-		// outgoing commuters
-		this.commuter = new Long2ObjectOpenHashMap<>();
-		this.zones = zones;
+	/**
+	 * Constructor.
+	 *
+	 * @param variants number of independent budgets
+	 */
+	public CommuterAssignment(Long2ObjectMap<SimpleFeature> zones, Path commuterPath, Path berlinCommuterPath, double sample, int variants) {
+
+		Long2ObjectMap<Long2DoubleMap> flows = new Long2ObjectOpenHashMap<>();
+		Long2IntMap ordinals = new Long2IntLinkedOpenHashMap();
+		int missing = 0;
 
 		// read commuters
 		try (CSVParser parser = csv.createParser(commuterPath)) {
@@ -63,14 +104,48 @@ public class CommuterAssignment {
 					continue;
 				}
 
+				// TODO: should maybe not be allowed
+				if (!zones.containsKey(to)) {
+					missing++;
+					continue;
+				}
+
+				ordinals.putIfAbsent(to, ordinals.size());
+
 				String n = row.get("n");
-				commuter.computeIfAbsent(from, k -> Long2DoubleMaps.synchronize(new Long2DoubleOpenHashMap()))
+				flows.computeIfAbsent(from, k -> new Long2DoubleOpenHashMap())
 					.mergeDouble(to, Integer.parseInt(n), Double::sum);
 			}
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
 
+		if (missing > 0)
+			log.warn("Ignored {} commuter relations with unknown target zone", missing);
+
+		int size = ordinals.size();
+		this.geometries = new Geometry[size];
+		this.centerX = new double[size];
+		this.centerY = new double[size];
+		this.radius = new double[size];
+
+		for (Long2IntMap.Entry e : ordinals.long2IntEntrySet()) {
+			Geometry zone = (Geometry) zones.get(e.getLongKey()).getDefaultGeometry();
+			Envelope env = zone.getEnvelopeInternal();
+			int i = e.getIntValue();
+			geometries[i] = zone;
+			centerX[i] = env.centre().x;
+			centerY[i] = env.centre().y;
+			radius[i] = Math.hypot(env.getWidth(), env.getHeight()) / 2;
+		}
+
+		this.commuter = new Long2ObjectOpenHashMap<>();
+		for (Long2ObjectMap.Entry<Long2DoubleMap> e : flows.long2ObjectEntrySet()) {
+			commuter.put(e.getLongKey(), new Origin(e.getValue(), ordinals, sample, variants));
+		}
+
+		this.tried = ThreadLocal.withInitial(() -> new long[(size + 63) >>> 6]);
+
 		this.berlinCommuter = new Int2ObjectOpenHashMap<>();
 
 		try (CSVParser parser = csv.createParser(berlinCommuterPath)) {
@@ -96,64 +171,126 @@ public class CommuterAssignment {
 
 	}
 
-		/**
+	/**
 	 * Select and return a commute target.
 	 *
 	 * @param f   sampler producing target locations
 	 * @param ars origin zone
 	 */
 	public ActivityFacility selectTarget(SplittableRandom rnd, long ars, double dist, Point refPoint, Sampler f) {
+		return selectTarget(0, rnd, ars, dist, refPoint, f);
+	}
+
+	/**
+	 * Select and return a commute target, using the budgets of one variant.
+	 *
+	 * @param variant index of the variant
+	 * @param f       sampler producing target locations
+	 * @param ars     origin zone
+	 */
+	public ActivityFacility selectTarget(int variant, SplittableRandom rnd, long ars, double dist, Point refPoint, Sampler f) {
 
-		// Commute in same zone
-		Long2DoubleMap comms = commuter.get(ars);
-		if (!commuter.containsKey(ars) || comms.isEmpty())
+		Origin origin = commuter.get(ars);
+		if (origin == null || origin.active.get(variant) <= 0)
 			return null;
 
-		LongList entries;
-		synchronized (comms) {
-			entries = new LongArrayList(comms.keySet());
-		}
+		long[] marks = tried.get();
+		Arrays.fill(marks, 0);
+
+		int n = origin.zones.length;
+		int offset = variant * n;
+		int remaining = n;
+		double limit = dist * 1.2;
+
+		for (int draw = 0; draw < n * MAX_DRAWS && remaining > 0; draw++) {
 
-		while (!entries.isEmpty()) {
-			long key = entries.removeLong(rnd.nextInt(entries.size()));
+			int idx = origin.alias.sample(rnd);
+			int zone = origin.zones[idx];
 
-			SimpleFeature ft = zones.get(key);
+			if ((marks[zone >>> 6] & (1L << zone)) != 0)
+				continue;
 
-			// TODO: should maybe not be allowed
-			if (ft == null)
+			// Rejection, so that the targets are drawn proportional to the remaining commuters
+			long budget = origin.budget.get(offset + idx);
+			if (budget <= 0 || rnd.nextDouble() * origin.initial[idx] >= budget) {
+				if (budget <= 0) {
+					marks[zone >>> 6] |= 1L << zone;
+					remaining--;
+				}
 				continue;
+			}
 
-			Geometry zone = (Geometry) ft.getDefaultGeometry();
+			marks[zone >>> 6] |= 1L << zone;
+			remaining--;
 
-			// Zones too far away don't need to be considered
-			if (zone.distance(refPoint) > dist * 1.2)
+			// Zones too far away don't need to be considered, the bounding circle gives a lower bound of the distance
+			double lowerBound = Math.hypot(centerX[zone] - refPoint.getX(), centerY[zone] - refPoint.getY()) - radius[zone];
+			if (lowerBound > limit)
 				continue;
 
-			ActivityFacility res = f.sample(zone);
+			ActivityFacility res = f.sample(geometries[zone]);
 
-			if (res != null) {
-				synchronized (comms) {
-					double old = comms.get(key);
+			// Other threads may have reduced the budget while computing, the result is then thrown away
+			if (res != null && origin.consume(variant, offset + idx))
+				return res;
+		}
 
-					// Check if other thread reduced the counter while computing
-					// result needs to be thrown away
-					if (old <= 0) {
-						comms.remove(key);
-						continue;
-					}
+		if (remaining == 0)
+			return null;
 
-					// subtract available commuters
-					double newValue = old - (1 / sample);
-					comms.put(key, newValue);
+		return scanRemaining(variant, rnd, origin, marks, refPoint, limit, f);
+	}
 
-					if (newValue <= 0)
-						comms.remove(key);
-				}
+	/**
+	 * Select among destinations that have not been tried, weighted by their remaining budget.
+	 * Used when the rejection sampling fails, because most budgets are nearly used up.
+	 */
+	private ActivityFacility scanRemaining(int variant, SplittableRandom rnd, Origin origin, long[] marks, Point refPoint, double limit, Sampler f) {
 
-				return res;
-			}
+		int n = origin.zones.length;
+		int offset = variant * n;
+
+		int[] candidates = new int[n];
+		double[] weights = new double[n];
+		int size = 0;
+		double total = 0;
+
+		for (int idx = 0; idx < n; idx++) {
+			int zone = origin.zones[idx];
+			long budget = origin.budget.get(offset + idx);
+			if ((marks[zone >>> 6] & (1L << zone)) != 0 || budget <= 0)
+				continue;
+
+			double lowerBound = Math.hypot(centerX[zone] - refPoint.getX(), centerY[zone] - refPoint.getY()) - radius[zone];
+			if (lowerBound > limit)
+				continue;
+
+			candidates[size] = idx;
+			weights[size] = budget;
+			total += budget;
+			size++;
 		}
 
+		while (size > 0) {
+
+			// Draw without replacement
+			double r = rnd.nextDouble() * total;
+			int k = 0;
+			while (k < size - 1 && r >= weights[k]) {
+				r -= weights[k];
+				k++;
+			}
+
+			int idx = candidates[k];
+			total -= weights[k];
+			size--;
+			candidates[k] = candidates[size];
+			weights[k] = weights[size];
+
+			ActivityFacility res = f.sample(geometries[origin.zones[idx]]);
+			if (res != null && origin.consume(variant, offset + idx))
+				return res;
+		}
 
 		return null;
 	}
@@ -174,6 +311,132 @@ public class CommuterAssignment {
 
 	}
 
+	/**
+	 * Commuter flows of one origin zone.
+	 */
+	private static final class Origin {
+
+		/**
+		 * Destination zone ordinals.
+		 */
+		private final int[] zones;
+		private final long[] initial;
+		/**
+		 * Budgets of all variants, one block of destinations after the other.
+		 */
+		private final AtomicLongArray budget;
+		private final AliasTable alias;
+
+		/**
+		 * Number of destinations with remaining budget, per variant.
+		 */
+		private final AtomicIntegerArray active;
+
+		private Origin(Long2DoubleMap flows, Long2IntMap ordinals, double sample, int variants) {
+			int n = flows.size();
+			zones = new int[n];
+			initial = new long[n];
+			budget = new AtomicLongArray(n * variants);
+
+			double[] weights = new double[n];
+			int i = 0;
+			for (Long2DoubleMap.Entry e : flows.long2DoubleEntrySet()) {
+				zones[i] = ordinals.get(e.getLongKey());
+				initial[i] = Math.round(e.getDoubleValue() * sample * UNIT);
+				for (int v = 0; v < variants; v++) {
+					budget.set(v * n + i, initial[i]);
+				}
+				weights[i] = initial[i];
+				i++;
+			}
+
+			alias = new AliasTable(weights);
+			active = new AtomicIntegerArray(variants);
+			int positive = (int) Arrays.stream(initial).filter(b -> b > 0).count();
+			for (int v = 0; v < variants; v++) {
+				active.set(v, positive);
+			}
+		}
+
+		/**
+		 * Subtract one person from the budget of a destination.
+		 *
+		 * @return false if the budget was already used up
+		 */
+		private boolean consume(int variant, int idx) {
+			while (true) {
+				long old = budget.get(idx);
+				if (old <= 0)
+					return false;
+
+				long value = old - UNIT;
+				if (budget.compareAndSet(idx, old, value)) {
+					if (value <= 0)
+						active.decrementAndGet(variant);
+
+					return true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Samples indices proportional to fixed weights in constant time, using Vose's alias method.
+	 */
+	private static final class AliasTable {
+
+		private final double[] prob;
+		private final int[] alias;
+
+		private AliasTable(double[] weights) {
+			int n = weights.length;
+			prob = new double[n];
+			alias = new int[n];
+
+			double sum = Arrays.stream(weights).sum();
+			double[] scaled = new double[n];
+			int[] small = new int[n];
+			int[] large = new int[n];
+			int ns = 0;
+			int nl = 0;
+
+			for (int i = 0; i < n; i++) {
+				scaled[i] = sum > 0 ? weights[i] * n / sum : 1;
+				if (scaled[i] < 1)
+					small[ns++] = i;
+				else
+					large[nl++] = i;
+			}
+
+			while (ns > 0 && nl > 0) {
+				int s = small[--ns];
+				int l = large[--nl];
+
+				prob[s] = scaled[s];
+				alias[s] = l;
+
+				scaled[l] = scaled[l] + scaled[s] - 1;
+				if (scaled[l] < 1)
+					small[ns++] = l;
+				else
+					large[nl++] = l;
+			}
+
+			// Remaining entries are one, up to numerical errors
+			while (nl > 0) {
+				prob[large[--nl]] = 1;
+			}
+			while (ns > 0) {
+				prob[small[--ns]] = 1;
+			}
+		}
+
+		private int sample(SplittableRandom rnd) {
+			int i = rnd.nextInt(prob.length);
+			return rnd.nextDouble() < prob[i] ? i : alias[i];
+		}
+	}
+
 }
 
 
@@ -0,0 +1,42 @@
+package org.matsim.prepare.population;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.application.MATSimAppCommand;
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+
+@CommandLine.Command(
+	name = "convert-population",
+	description = "Convert population between xml and binary snapshot (" + PopulationSnapshot.EXTENSION + ") format."
+)
+public class ConvertPopulation implements MATSimAppCommand {
+
+	private static final Logger log = LogManager.getLogger(ConvertPopulation.class);
+
+	@CommandLine.Option(names = "--input", required = true, description = "Input population, format is determined by the extension")
+	private Path input;
+
+	@CommandLine.Option(names = "--output", required = true, description = "Output population, format is determined by the extension")
+	private Path output;
+
+	public static void main(String[] args) {
+		new ConvertPopulation().execute(args);
+	}
+
+	@Override
+	public Integer call() throws Exception {
+
+		long t = System.currentTimeMillis();
+		Population population = PopulationSnapshot.readPopulation(input.toString());
+		log.info("Read {} persons in {}s", population.getPersons().size(), (System.currentTimeMillis() - t) / 1000);
+
+		t = System.currentTimeMillis();
+		PopulationSnapshot.writePopulation(population, output.toString());
+		log.info("Wrote {} in {}s", output, (System.currentTimeMillis() - t) / 1000);
+
+		return 0;
+	}
+}
@@ -156,7 +156,7 @@ public class CreateBerlinPopulation implements MATSimAppCommand {
 		PopulationUtils.sortPersons(population);
 
 		ProjectionUtils.putCRS(population, OpenBerlinScenario.CRS);
-		PopulationUtils.writePopulation(population, output.toString());
+		PopulationSnapshot.writePopulation(population, output.toString());
 
 		return 0;
 	}
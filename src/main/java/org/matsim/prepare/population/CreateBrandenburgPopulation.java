@@ -126,7 +126,7 @@ public class CreateBrandenburgPopulation implements MATSimAppCommand {
 		PopulationUtils.sortPersons(population);
 
 		ProjectionUtils.putCRS(population, OpenBerlinScenario.CRS);
-		PopulationUtils.writePopulation(population, output.toString());
+		PopulationSnapshot.writePopulation(population, output.toString());
 
 		return 0;
 	}
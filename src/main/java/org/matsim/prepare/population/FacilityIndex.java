@@ -2,9 +2,8 @@ package org.matsim.prepare.population;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.locationtech.jts.index.strtree.STRtree;
-import org.matsim.api.core.v01.Id;
-import org.matsim.core.utils.geometry.geotools.MGC;
+import org.locationtech.jts.geom.Envelope;
+import org.matsim.api.core.v01.Coord;
 import org.matsim.facilities.ActivityFacilities;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.facilities.FacilitiesUtils;
@@ -13,6 +12,8 @@ import org.matsim.prepare.facilities.AttributedActivityFacility;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -25,9 +26,14 @@ public final class FacilityIndex {
 	/**
 	 * Maps activity type to spatial index.
 	 */
-	public final Map<String, STRtree> index = new HashMap<>();
+	public final Map<String, TypeIndex> index = new HashMap<>();
 	final ActivityFacilities all = FacilitiesUtils.createActivityFacilities();
 
+	/**
+	 * Packed index containing all facilities with at least one of the indexed activity types.
+	 */
+	private final PackedFacilityIndex packed;
+
 	public FacilityIndex(String facilityPath, String crs) {
 		this(facilityPath, f -> true, crs);
 	}
@@ -41,24 +47,33 @@ public final class FacilityIndex {
 
 		new MatsimFacilitiesReader(crs, crs, all).readFile(facilityPath);
 
-		Set<String> activities = all.getFacilities().values().stream()
+		List<String> activities = all.getFacilities().values().stream()
 			.filter(f)
 			.flatMap(a -> a.getActivityOptions().keySet().stream())
-			.collect(Collectors.toSet());
+			.distinct()
+			.sorted()
+			.toList();
 
 		log.info("Found activity types: {}", activities);
 
-		for (String act : activities) {
+		Set<String> types = new HashSet<>(activities);
+		List<AttributedActivityFacility> facilities = all.getFacilities().values().stream()
+			.filter(af -> af.getActivityOptions().keySet().stream().anyMatch(types::contains))
+			.map(AttributedActivityFacility::new)
+			.toList();
 
-			NavigableMap<Id<ActivityFacility>, ActivityFacility> afs = all.getFacilitiesForActivityType(act);
-			for (ActivityFacility af : afs.values()) {
-				STRtree idx = this.index.computeIfAbsent(act, k -> new STRtree());
-				idx.insert(MGC.coord2Point(af.getCoord()).getEnvelopeInternal(), new AttributedActivityFacility(af));
-			}
+		packed = new PackedFacilityIndex(facilities, activities);
+
+		for (String act : activities) {
+			index.put(act, new TypeIndex(packed, packed.getType(act)));
 		}
+	}
 
-		// Build all trees
-		index.values().forEach(STRtree::build);
+	/**
+	 * The underlying packed index for all activity types.
+	 */
+	public PackedFacilityIndex getPacked() {
+		return packed;
 	}
 
 	/**
@@ -241,6 +256,53 @@ public final class FacilityIndex {
 		return list.get(rnd.nextInt(list.size()));
 	}
 
-}
+	/**
+	 * View on the packed index for a single activity type.
+	 */
+	public static final class TypeIndex {
 
+		private final PackedFacilityIndex packed;
+		private final int type;
 
+		private TypeIndex(PackedFacilityIndex packed, int type) {
+			this.packed = packed;
+			this.type = type;
+		}
+
+		/**
+		 * Query all facilities within the envelope.
+		 */
+		public List<AttributedActivityFacility> query(Envelope env) {
+			List<AttributedActivityFacility> result = new ArrayList<>();
+			query(env, i -> result.add(packed.getFacility(i)));
+			return result;
+		}
+
+		/**
+		 * Visit the ordinals of all facilities within the envelope, without creating intermediate lists.
+		 */
+		public void query(Envelope env, IntConsumer visitor) {
+			packed.query(type, env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY(), visitor);
+		}
+
+		/**
+		 * Sample a facility with distance between min and max to the origin, weighted by the given function of facility ordinals.
+		 *
+		 * @return null if there is no facility with positive weight within this distance
+		 * @see PackedFacilityIndex#sample(int, double, double, double, double, IntToDoubleFunction, SplittableRandom)
+		 */
+		public AttributedActivityFacility sample(Coord origin, double min, double max, IntToDoubleFunction weight, SplittableRandom rnd) {
+			int idx = packed.sample(type, origin.getX(), origin.getY(), min, max, weight, rnd);
+			return idx < 0 ? null : packed.getFacility(idx);
+		}
+
+		public PackedFacilityIndex getPacked() {
+			return packed;
+		}
+
+		public int getType() {
+			return type;
+		}
+	}
+
+}
@@ -8,7 +8,6 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.geotools.api.feature.simple.SimpleFeature;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.index.strtree.STRtree;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.api.core.v01.network.Link;
@@ -87,6 +86,9 @@ public class InitLocationChoice implements MATSimAppCommand, PersonAlgorithm {
 	@CommandLine.Option(names = "--seed", description = "Seed used to sample locations", defaultValue = "1")
 	private long seed;
 
+	@CommandLine.Option(names = "--single-pass", description = "Read the population once and generate all k plans per person in one pass.")
+	private boolean singlePass;
+
 	@CommandLine.Mixin
 	private ShpOptions shp;
 
@@ -150,6 +152,9 @@ public class InitLocationChoice implements MATSimAppCommand, PersonAlgorithm {
 
 		log.info("Using input file: {}", input);
 
+		if (singlePass)
+			return runSinglePass();
+
 		List<Population> populations = new ArrayList<>();
 
 		for (int i = 0; i < k; i++) {
@@ -158,7 +163,7 @@ public class InitLocationChoice implements MATSimAppCommand, PersonAlgorithm {
 
 			commuter = new CommuterAssignment(zones, commuterPath, berlinCommuterPath, sample);
 
-			Population population = PopulationUtils.readPopulation(input.toString());
+			Population population = PopulationSnapshot.readPopulation(input.toString());
 
 			pb = new ProgressBar("Performing location choice " + i, population.getPersons().size());
 
@@ -191,7 +196,57 @@ public class InitLocationChoice implements MATSimAppCommand, PersonAlgorithm {
 			}
 		}
 
-		PopulationUtils.writePopulation(population, output.toString());
+		PopulationSnapshot.writePopulation(population, output.toString());
+
+		return 0;
+	}
+
+	/**
+	 * Read the population once and generate all plans in one parallel pass. Each variant uses its own seed and commuter budgets.
+	 */
+	private Integer runSinglePass() {
+
+		commuter = new CommuterAssignment(zones, commuterPath, berlinCommuterPath, sample, k);
+
+		Population population = PopulationSnapshot.readPopulation(input.toString());
+
+		log.info("Generating {} plans per person with seeds {} to {}", k, seed, seed + k - 1);
+
+		pb = new ProgressBar("Performing location choice", population.getPersons().size());
+
+		ParallelPersonAlgorithmUtils.run(population, Runtime.getRuntime().availableProcessors() - 1, person -> {
+
+			List<Plan> plans = List.copyOf(person.getPlans());
+
+			// Copies of the first plan need to be created before locations are assigned to it
+			List<Plan> copies = new ArrayList<>();
+			for (int v = 1; v < k; v++) {
+				Plan copy = PopulationUtils.createPlan();
+				PopulationUtils.copyFromTo(plans.get(0), copy);
+				copies.add(copy);
+				person.addPlan(copy);
+			}
+
+			if (isReferencePerson(person)) {
+				pb.step();
+				return;
+			}
+
+			Map<String, ActivityFacility> fixedLocations = new HashMap<>();
+			for (int i = 0; i < plans.size(); i++) {
+				assignLocations(person, plans.get(i), 0, initRandomNumberGenerator(person, seed, i), fixedLocations);
+			}
+
+			for (int v = 1; v < k; v++) {
+				assignLocations(person, copies.get(v - 1), v, initRandomNumberGenerator(person, seed + v, 0), new HashMap<>());
+			}
+
+			pb.step();
+		});
+
+		log.info("Processed {} activities with {} warnings", total.get(), warning.get());
+
+		PopulationSnapshot.writePopulation(population, output.toString());
 
 		return 0;
 	}
@@ -199,11 +254,8 @@ public class InitLocationChoice implements MATSimAppCommand, PersonAlgorithm {
 	@Override
 	public void run(Person person) {
 
-		Coord homeCoord = Attributes.getHomeCoord(person);
-		long ars = (long) person.getAttributes().getAttribute(Attributes.ARS);
-
 		// Reference persons are not assigned locations
-		if (person.getAttributes().getAttribute(Attributes.REF_MODES) != null) {
+		if (isReferencePerson(person)) {
 			pb.step();
 			return;
 		}
@@ -213,95 +265,106 @@ public class InitLocationChoice implements MATSimAppCommand, PersonAlgorithm {
 
 		int planNumber = 0;
 		for (Plan plan : person.getPlans()) {
-			List<Activity> acts = TripStructureUtils.getActivities(plan, TripStructureUtils.StageActivityHandling.ExcludeStageActivities);
+			// Person specific rng, increment plan number for each plan
+			assignLocations(person, plan, 0, initRandomNumberGenerator(person, seed, planNumber++), fixedLocations);
+		}
 
-			// keep track of the current coordinate
-			Coord lastCoord = homeCoord;
+		pb.step();
+	}
 
-			// Person specific rng, increment plan number for each plan
-			SplittableRandom rnd = initRandomNumberGenerator(person, planNumber++);
+	private static boolean isReferencePerson(Person person) {
+		return person.getAttributes().getAttribute(Attributes.REF_MODES) != null;
+	}
 
-			for (Activity act : acts) {
+	/**
+	 * Assign locations to all unassigned activities of a plan.
+	 *
+	 * @param variant        index of the commuter budgets to use
+	 * @param fixedLocations activities that only occur on one place per person
+	 */
+	private void assignLocations(Person person, Plan plan, int variant, SplittableRandom rnd, Map<String, ActivityFacility> fixedLocations) {
 
-				total.incrementAndGet();
+		Coord homeCoord = Attributes.getHomeCoord(person);
+		long ars = (long) person.getAttributes().getAttribute(Attributes.ARS);
 
-				if (Attributes.isLinkUnassigned(act.getLinkId())) {
+		List<Activity> acts = TripStructureUtils.getActivities(plan, TripStructureUtils.StageActivityHandling.ExcludeStageActivities);
 
-					String type = act.getType();
+		// keep track of the current coordinate
+		Coord lastCoord = homeCoord;
 
-					act.setLinkId(null);
-					ActivityFacility location = null;
+		for (Activity act : acts) {
 
-					// target leg distance in km
-					double origDist = (double) act.getAttributes().getAttribute("orig_dist");
+			total.incrementAndGet();
 
-					// Distance will be reduced
-					double dist = beelineDist(origDist);
+			if (Attributes.isLinkUnassigned(act.getLinkId())) {
 
-					if (fixedLocations.containsKey(type)) {
-						location = fixedLocations.get(type);
-					}
+				String type = act.getType();
 
-					if (location == null && type.equals("work")) {
-						// sample work commute
-						location = sampleCommute(rnd, dist, lastCoord, (String) person.getAttributes().getAttribute(Attributes.ZONE), ars);
-					}
+				act.setLinkId(null);
+				ActivityFacility location = null;
 
-					if (location == null && facilities.index.containsKey(type)) {
-						// Needed for lambda
-						final Coord refCoord = lastCoord;
+				// target leg distance in km
+				double origDist = (double) act.getAttributes().getAttribute("orig_dist");
 
+				// Distance will be reduced
+				double dist = beelineDist(origDist);
 
-						// Try to find a facility within the bounds
-						// increase bounds if no facility is found
-						for (Double b : DoubleList.of(1, 1.2, 1.5)) {
-							List<AttributedActivityFacility> query = facilities.index.get(type).query(MGC.coord2Point(lastCoord).buffer(dist * (b + 0.2)).getEnvelopeInternal());
-							// Distance should be within the bounds
-							List<AttributedActivityFacility> res = query.stream().filter(f -> checkDistanceBound(dist, refCoord, f.getCoord(), b)).toList();
+				if (fixedLocations.containsKey(type)) {
+					location = fixedLocations.get(type);
+				}
 
-							if (!res.isEmpty()) {
-								location = query.get(FacilityIndex.sampleByWeight(query, AttributedActivityFacility::getOtherAttraction, rnd));
-								break;
-							}
-						}
-					}
+				if (location == null && type.equals("work")) {
+					// sample work commute
+					location = sampleCommute(variant, rnd, dist, lastCoord, (String) person.getAttributes().getAttribute(Attributes.ZONE), ars);
+				}
 
-					if (location == null) {
-						// sample only coordinate if nothing else is possible
-						// Activities without facility entry, or where no facility could be found
-						Coord c = sampleLink(rnd, dist, lastCoord);
-						act.setCoord(c);
-						lastCoord = c;
+				if (location == null && facilities.index.containsKey(type)) {
 
-						// An activity with type could not be put into correct facility.
-						if (facilities.index.containsKey(type)) {
-							warning.incrementAndGet();
-						}
+					FacilityIndex.TypeIndex index = facilities.index.get(type);
+					PackedFacilityIndex packed = index.getPacked();
 
-						continue;
+					// Try to find a facility within the bounds
+					// increase bounds if no facility is found
+					for (double b : DoubleList.of(1, 1.2, 1.5)) {
+						location = index.sample(lastCoord, lowerBound(dist, b), upperBound(dist, b), packed::getOtherAttraction, rnd);
+						if (location != null)
+							break;
 					}
+				}
 
-					if (type.equals("work") || type.startsWith("edu"))
-						fixedLocations.put(type, location);
+				if (location == null) {
+					// sample only coordinate if nothing else is possible
+					// Activities without facility entry, or where no facility could be found
+					Coord c = sampleLink(rnd, dist, lastCoord);
+					act.setCoord(c);
+					lastCoord = c;
 
-					act.setFacilityId(location.getId());
+					// An activity with type could not be put into correct facility.
+					if (facilities.index.containsKey(type)) {
+						warning.incrementAndGet();
+					}
+
+					continue;
 				}
 
-				if (act.getCoord() != null)
-					lastCoord = act.getCoord();
-				else if (act.getFacilityId() != null)
-					lastCoord = facilities.all.getFacilities().get(act.getFacilityId()).getCoord();
+				if (type.equals("work") || type.startsWith("edu"))
+					fixedLocations.put(type, location);
 
+				act.setFacilityId(location.getId());
 			}
-		}
 
-		pb.step();
+			if (act.getCoord() != null)
+				lastCoord = act.getCoord();
+			else if (act.getFacilityId() != null)
+				lastCoord = facilities.all.getFacilities().get(act.getFacilityId()).getCoord();
+
+		}
 	}
 
 	/**
 	 * Initializes random number generator with person specific seed.
 	 */
-	private SplittableRandom initRandomNumberGenerator(Person person, long planNumber) {
+	private static SplittableRandom initRandomNumberGenerator(Person person, long seed, long planNumber) {
 		BigInteger i = new BigInteger(person.getId().toString().getBytes());
 		return new SplittableRandom(i.longValue() + seed * 1000 + planNumber * 10);
 	}
@@ -309,15 +372,15 @@ public class InitLocationChoice implements MATSimAppCommand, PersonAlgorithm {
 	/**
 	 * Sample work place by using commute and distance information.
 	 */
-	private ActivityFacility sampleCommute(SplittableRandom rnd, double dist, Coord refCoord, String homeZone, long ars) {
+	private ActivityFacility sampleCommute(int variant, SplittableRandom rnd, double dist, Coord refCoord, String homeZone, long ars) {
 
-		STRtree index = facilities.index.get("work");
+		FacilityIndex.TypeIndex index = facilities.index.get("work");
 
 		ActivityFacility workPlace = null;
 
 		// Only larger distances can be commuters to other zones
 		if (dist > 3000) {
-			workPlace = commuter.selectTarget(rnd, ars, dist, MGC.coord2Point(refCoord), zone -> sampleZone(index, dist, refCoord, zone, rnd));
+			workPlace = commuter.selectTarget(variant, rnd, ars, dist, MGC.coord2Point(refCoord), zone -> sampleZone(index, dist, refCoord, zone, rnd));
 		}
 
 		// Within Berlin, separate data for commute is used
@@ -352,7 +415,7 @@ public class InitLocationChoice implements MATSimAppCommand, PersonAlgorithm {
 	/**
 	 * Samples randomly from the zone.
 	 */
-	private ActivityFacility sampleZone(STRtree index, double dist, Coord refCoord, Geometry zone, SplittableRandom rnd) {
+	private ActivityFacility sampleZone(FacilityIndex.TypeIndex index, double dist, Coord refCoord, Geometry zone, SplittableRandom rnd) {
 
 		List<AttributedActivityFacility> query = index.query(MGC.coord2Point(refCoord).buffer(dist * 1.2).getEnvelopeInternal());
 
@@ -364,38 +427,36 @@ public class InitLocationChoice implements MATSimAppCommand, PersonAlgorithm {
 	/**
 	 * Only samples randomly from the zone, ignoring the distance.
 	 */
-	private ActivityFacility sampleBerlinWorkPlace(STRtree index, double dist, Coord refCoord, String homeZone, SplittableRandom rnd) {
-
-		List<AttributedActivityFacility> query = index.query(MGC.coord2Point(refCoord).buffer(dist * 1.2).getEnvelopeInternal());
-
-		query = query.stream()
-			.filter(f -> f.getZone() != null)
-			.filter(f -> checkDistanceBound(dist, refCoord, f.getCoord(), 1))
-			.collect(Collectors.toList());
+	private ActivityFacility sampleBerlinWorkPlace(FacilityIndex.TypeIndex index, double dist, Coord refCoord, String homeZone, SplittableRandom rnd) {
 
-		if (query.isEmpty())
-			return null;
+		PackedFacilityIndex packed = index.getPacked();
 
-		int idx = FacilityIndex.sampleByWeight(query,
-			f -> f.getWorkAttraction() * commuter.getZoneWeight(homeZone, f.getZone()), rnd);
-
-		return query.get(idx);
+		return index.sample(refCoord, lowerBound(dist, 1), upperBound(dist, 1), i -> {
+			String zone = packed.getFacility(i).getZone();
+			return zone == null ? 0 : packed.getWorkAttraction(i) * commuter.getZoneWeight(homeZone, zone);
+		}, rnd);
 	}
 
 	/**
 	 * General logic to filter coordinate within target distance.
 	 */
 	private boolean checkDistanceBound(double target, Coord refCoord, Coord other, double factor) {
+		double dist = CoordUtils.calcEuclideanDistance(refCoord, other);
+		return dist >= lowerBound(target, factor) && dist <= upperBound(target, factor);
+	}
 
-		// Constant added to the bounds, needed for trips with low base distance
-		double constant = (factor - 0.95) * 1000;
-
-		// Percentage based bounds
-		double lower = target * 0.8 * (2 - factor) - constant;
-		double upper = target * 1.15 * factor + constant;
+	/**
+	 * Lower distance bound, percentage based with a constant, which is needed for trips with low base distance.
+	 */
+	private static double lowerBound(double target, double factor) {
+		return target * 0.8 * (2 - factor) - (factor - 0.95) * 1000;
+	}
 
-		double dist = CoordUtils.calcEuclideanDistance(refCoord, other);
-		return dist >= lower && dist <= upper;
+	/**
+	 * Upper distance bound, see {@link #lowerBound(double, double)}.
+	 */
+	private static double upperBound(double target, double factor) {
+		return target * 1.15 * factor + (factor - 0.95) * 1000;
 	}
 
 }
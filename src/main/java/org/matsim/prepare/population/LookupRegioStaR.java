@@ -12,7 +12,6 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.application.MATSimAppCommand;
-import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PersonAlgorithm;
 import picocli.CommandLine;
 
@@ -56,11 +55,11 @@ public class LookupRegioStaR implements MATSimAppCommand, PersonAlgorithm {
 		lookup = readXls();
 		log.info("Read {} entries from xls.", lookup.size());
 
-		Population population = PopulationUtils.readPopulation(input.toString());
+		Population population = PopulationSnapshot.readPopulation(input.toString());
 
 		population.getPersons().values().forEach(this::run);
 
-		PopulationUtils.writePopulation(population, output.toString());
+		PopulationSnapshot.writePopulation(population, output.toString());
 
 		return 0;
 	}
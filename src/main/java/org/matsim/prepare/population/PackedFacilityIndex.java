@@ -0,0 +1,458 @@
+package org.matsim.prepare.population;
+
+import org.matsim.prepare.facilities.AttributedActivityFacility;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Static spatial index for facilities stored in flat primitive arrays.
+ * <p>
+ * Facilities are arranged as an implicit kd-tree: for every range of the arrays the element in the middle is the split node,
+ * the left half contains elements with smaller or equal and the right half elements with larger or equal coordinates.
+ * The split axis alternates between x and y. The position in this layout is the ordinal of a facility.
+ * <p>
+ * Activity types are stored as bitsets, for each element and aggregated for each sub-tree, so that sub-trees without the
+ * requested type are skipped entirely. Queries report matching ordinals to a callback and do not allocate.
+ */
+public final class PackedFacilityIndex {
+
+	private final String[] types;
+	private final int words;
+
+	private final AttributedActivityFacility[] facilities;
+	private final double[] x;
+	private final double[] y;
+	private final double[] workAttraction;
+	private final double[] otherAttraction;
+
+	/**
+	 * Activity types of each element, {@link #words} longs per element.
+	 */
+	private final long[] own;
+
+	/**
+	 * Union of activity types within the sub-tree rooted at each element.
+	 */
+	private final long[] subtree;
+
+	/**
+	 * Creates the index.
+	 *
+	 * @param facilities all facilities to index, will not be modified
+	 * @param types      activity types that can be queried, other activity options are ignored
+	 */
+	public PackedFacilityIndex(List<AttributedActivityFacility> facilities, List<String> types) {
+
+		int n = facilities.size();
+		this.types = types.toArray(String[]::new);
+		this.words = Math.max(1, (this.types.length + 63) / 64);
+
+		double[] cx = new double[n];
+		double[] cy = new double[n];
+		int[] perm = new int[n];
+		for (int i = 0; i < n; i++) {
+			cx[i] = facilities.get(i).getCoord().getX();
+			cy[i] = facilities.get(i).getCoord().getY();
+			perm[i] = i;
+		}
+
+		build(perm, cx, cy, 0, n, 0);
+
+		this.facilities = new AttributedActivityFacility[n];
+		this.x = new double[n];
+		this.y = new double[n];
+		this.workAttraction = new double[n];
+		this.otherAttraction = new double[n];
+		this.own = new long[n * words];
+		this.subtree = new long[n * words];
+
+		for (int i = 0; i < n; i++) {
+			AttributedActivityFacility af = facilities.get(perm[i]);
+			this.facilities[i] = af;
+			this.x[i] = cx[perm[i]];
+			this.y[i] = cy[perm[i]];
+			this.workAttraction[i] = af.getWorkAttraction();
+			this.otherAttraction[i] = af.getOtherAttraction();
+
+			for (int t = 0; t < this.types.length; t++) {
+				if (af.getActivityOptions().containsKey(this.types[t]))
+					own[i * words + t / 64] |= 1L << t;
+			}
+		}
+
+		aggregate(0, n);
+	}
+
+	/**
+	 * Partially sorts the permutation so that it forms the implicit kd-tree.
+	 */
+	private static void build(int[] perm, double[] cx, double[] cy, int lo, int hi, int depth) {
+		if (hi - lo <= 1)
+			return;
+
+		int mid = (lo + hi) >>> 1;
+		select(perm, (depth & 1) == 0 ? cx : cy, lo, hi - 1, mid);
+
+		build(perm, cx, cy, lo, mid, depth + 1);
+		build(perm, cx, cy, mid + 1, hi, depth + 1);
+	}
+
+	/**
+	 * Quickselect of the k-th smallest element between left and right (inclusive).
+	 */
+	private static void select(int[] perm, double[] key, int left, int right, int k) {
+		while (right > left) {
+			double pivot = key[perm[(left + right) >>> 1]];
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (key[perm[i]] < pivot) i++;
+				while (key[perm[j]] > pivot) j--;
+				if (i <= j) {
+					int tmp = perm[i];
+					perm[i] = perm[j];
+					perm[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	/**
+	 * Fill the sub-tree type masks.
+	 */
+	private void aggregate(int lo, int hi) {
+		if (lo >= hi)
+			return;
+
+		int mid = (lo + hi) >>> 1;
+		aggregate(lo, mid);
+		aggregate(mid + 1, hi);
+
+		for (int w = 0; w < words; w++) {
+			long m = own[mid * words + w];
+			if (lo < mid)
+				m |= subtree[((lo + mid) >>> 1) * words + w];
+			if (mid + 1 < hi)
+				m |= subtree[((mid + 1 + hi) >>> 1) * words + w];
+
+			subtree[mid * words + w] = m;
+		}
+	}
+
+	/**
+	 * Index of an activity type to use in queries.
+	 *
+	 * @return -1 if type is not present in this index
+	 */
+	public int getType(String type) {
+		for (int i = 0; i < types.length; i++) {
+			if (types[i].equals(type))
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether any facility has the given activity type.
+	 */
+	public boolean hasType(int type) {
+		return type >= 0 && facilities.length > 0 && (subtree[((facilities.length) >>> 1) * words + type / 64] & (1L << type)) != 0;
+	}
+
+	/**
+	 * Number of indexed facilities.
+	 */
+	public int size() {
+		return facilities.length;
+	}
+
+	/**
+	 * Facility for an ordinal.
+	 */
+	public AttributedActivityFacility getFacility(int ordinal) {
+		return facilities[ordinal];
+	}
+
+	public double getX(int ordinal) {
+		return x[ordinal];
+	}
+
+	public double getY(int ordinal) {
+		return y[ordinal];
+	}
+
+	public double getWorkAttraction(int ordinal) {
+		return workAttraction[ordinal];
+	}
+
+	public double getOtherAttraction(int ordinal) {
+		return otherAttraction[ordinal];
+	}
+
+	/**
+	 * Whether the facility at ordinal has the activity type.
+	 */
+	public boolean hasType(int ordinal, int type) {
+		return (own[ordinal * words + type / 64] & (1L << type)) != 0;
+	}
+
+	/**
+	 * Visit all facilities of given type within the rectangle (inclusive).
+	 */
+	public void query(int type, double minX, double minY, double maxX, double maxY, IntConsumer visitor) {
+		if (type < 0)
+			return;
+
+		range(0, facilities.length, 0, type / 64, 1L << type, minX, minY, maxX, maxY, visitor);
+	}
+
+	private void range(int lo, int hi, int depth, int word, long bit, double minX, double minY, double maxX, double maxY, IntConsumer visitor) {
+		if (lo >= hi)
+			return;
+
+		int mid = (lo + hi) >>> 1;
+		if ((subtree[mid * words + word] & bit) == 0)
+			return;
+
+		double px = x[mid];
+		double py = y[mid];
+		if ((own[mid * words + word] & bit) != 0 && px >= minX && px <= maxX && py >= minY && py <= maxY)
+			visitor.accept(mid);
+
+		boolean even = (depth & 1) == 0;
+		double split = even ? px : py;
+		if ((even ? minX : minY) <= split)
+			range(lo, mid, depth + 1, word, bit, minX, minY, maxX, maxY, visitor);
+		if ((even ? maxX : maxY) >= split)
+			range(mid + 1, hi, depth + 1, word, bit, minX, minY, maxX, maxY, visitor);
+	}
+
+	/**
+	 * Visit all facilities of given type within the euclidean distance (inclusive) of a point.
+	 */
+	public void query(int type, double cx, double cy, double radius, IntConsumer visitor) {
+		if (type < 0)
+			return;
+
+		circle(0, facilities.length, 0, type / 64, 1L << type, cx, cy, radius, visitor);
+	}
+
+	private void circle(int lo, int hi, int depth, int word, long bit, double cx, double cy, double radius, IntConsumer visitor) {
+		if (lo >= hi)
+			return;
+
+		int mid = (lo + hi) >>> 1;
+		if ((subtree[mid * words + word] & bit) == 0)
+			return;
+
+		double dx = x[mid] - cx;
+		double dy = y[mid] - cy;
+		if ((own[mid * words + word] & bit) != 0 && dx * dx + dy * dy <= radius * radius)
+			visitor.accept(mid);
+
+		// signed distance of the center to the split plane
+		double d = (depth & 1) == 0 ? -dx : -dy;
+		if (d <= radius)
+			circle(lo, mid, depth + 1, word, bit, cx, cy, radius, visitor);
+		if (d >= -radius)
+			circle(mid + 1, hi, depth + 1, word, bit, cx, cy, radius, visitor);
+	}
+
+	/**
+	 * Sample a facility of given type whose distance to the origin is between min and max (inclusive), with probability
+	 * proportional to its weight. Facilities with a weight of zero are never chosen.
+	 * <p>
+	 * Both passes over the ring only visit the kd-tree and do not allocate.
+	 *
+	 * @param weight weight for a facility ordinal, e.g. {@link #getWorkAttraction(int)}
+	 * @return ordinal of the sampled facility or -1 if there is no facility with positive weight within the ring
+	 */
+	public int sample(int type, double cx, double cy, double min, double max, IntToDoubleFunction weight, SplittableRandom rnd) {
+		if (type < 0 || max < min)
+			return -1;
+
+		int word = type / 64;
+		long bit = 1L << type;
+		double lower = min > 0 ? min * min : 0;
+		double upper = max * max;
+
+		double total = ringSum(0, facilities.length, 0, word, bit, cx, cy, lower, upper, max, weight);
+		if (total <= 0)
+			return -1;
+
+		double r = ringPick(0, facilities.length, 0, word, bit, cx, cy, lower, upper, max, weight, rnd.nextDouble(0, total));
+
+		// Due to rounding the target might not be reached, in this case the first positive option is used
+		if (r >= 0)
+			r = ringPick(0, facilities.length, 0, word, bit, cx, cy, lower, upper, max, weight, 0);
+
+		return (int) (-r - 1);
+	}
+
+	private double ringSum(int lo, int hi, int depth, int word, long bit, double cx, double cy,
+						   double lower, double upper, double max, IntToDoubleFunction weight) {
+		if (lo >= hi)
+			return 0;
+
+		int mid = (lo + hi) >>> 1;
+		if ((subtree[mid * words + word] & bit) == 0)
+			return 0;
+
+		double sum = 0;
+		double dx = x[mid] - cx;
+		double dy = y[mid] - cy;
+		double d = dx * dx + dy * dy;
+		if ((own[mid * words + word] & bit) != 0 && d >= lower && d <= upper)
+			sum += weight.applyAsDouble(mid);
+
+		double plane = (depth & 1) == 0 ? dx : dy;
+		if (plane >= -max)
+			sum += ringSum(lo, mid, depth + 1, word, bit, cx, cy, lower, upper, max, weight);
+		if (plane <= max)
+			sum += ringSum(mid + 1, hi, depth + 1, word, bit, cx, cy, lower, upper, max, weight);
+
+		return sum;
+	}
+
+	/**
+	 * Visits the ring in the same order as {@link #ringSum} and subtracts the weights from the target.
+	 *
+	 * @return the remaining target if it was not reached, otherwise {@code -(ordinal + 1)}
+	 */
+	private double ringPick(int lo, int hi, int depth, int word, long bit, double cx, double cy,
+							double lower, double upper, double max, IntToDoubleFunction weight, double target) {
+		if (lo >= hi)
+			return target;
+
+		int mid = (lo + hi) >>> 1;
+		if ((subtree[mid * words + word] & bit) == 0)
+			return target;
+
+		double dx = x[mid] - cx;
+		double dy = y[mid] - cy;
+		double d = dx * dx + dy * dy;
+		if ((own[mid * words + word] & bit) != 0 && d >= lower && d <= upper) {
+			double w = weight.applyAsDouble(mid);
+			if (w > 0 && target < w)
+				return -mid - 1;
+
+			target -= w;
+		}
+
+		double plane = (depth & 1) == 0 ? dx : dy;
+		if (plane >= -max) {
+			target = ringPick(lo, mid, depth + 1, word, bit, cx, cy, lower, upper, max, weight, target);
+			if (target < 0)
+				return target;
+		}
+		if (plane <= max)
+			target = ringPick(mid + 1, hi, depth + 1, word, bit, cx, cy, lower, upper, max, weight, target);
+
+		return target;
+	}
+
+	/**
+	 * Find the k nearest facilities of given type. Results are written into the given buffers, ordered by distance.
+	 *
+	 * @param ordinals buffer with at least k elements, receives the found ordinals
+	 * @param distSq   buffer with at least k elements, receives the squared distances
+	 * @return number of found facilities, which is less than k if there are not enough facilities of this type
+	 */
+	public int nearest(int type, double cx, double cy, int k, int[] ordinals, double[] distSq) {
+		if (type < 0 || k <= 0)
+			return 0;
+
+		int n = knn(0, facilities.length, 0, type / 64, 1L << type, cx, cy, k, ordinals, distSq, 0);
+
+		// Heap sort, the buffers contain a max-heap
+		for (int end = n - 1; end > 0; end--) {
+			swap(ordinals, distSq, 0, end);
+			siftDown(ordinals, distSq, 0, end);
+		}
+
+		return n;
+	}
+
+	private int knn(int lo, int hi, int depth, int word, long bit, double cx, double cy, int k, int[] ords, double[] dist, int n) {
+		if (lo >= hi)
+			return n;
+
+		int mid = (lo + hi) >>> 1;
+		if ((subtree[mid * words + word] & bit) == 0)
+			return n;
+
+		double dx = x[mid] - cx;
+		double dy = y[mid] - cy;
+		if ((own[mid * words + word] & bit) != 0) {
+			double d = dx * dx + dy * dy;
+			if (n < k) {
+				ords[n] = mid;
+				dist[n] = d;
+				siftUp(ords, dist, n);
+				n++;
+			} else if (d < dist[0]) {
+				ords[0] = mid;
+				dist[0] = d;
+				siftDown(ords, dist, 0, n);
+			}
+		}
+
+		double plane = (depth & 1) == 0 ? dx : dy;
+		boolean leftFirst = plane >= 0;
+
+		n = leftFirst ? knn(lo, mid, depth + 1, word, bit, cx, cy, k, ords, dist, n) : knn(mid + 1, hi, depth + 1, word, bit, cx, cy, k, ords, dist, n);
+
+		if (n < k || plane * plane <= dist[0])
+			n = leftFirst ? knn(mid + 1, hi, depth + 1, word, bit, cx, cy, k, ords, dist, n) : knn(lo, mid, depth + 1, word, bit, cx, cy, k, ords, dist, n);
+
+		return n;
+	}
+
+	private static void siftUp(int[] ords, double[] dist, int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (dist[parent] >= dist[i])
+				return;
+			swap(ords, dist, parent, i);
+			i = parent;
+		}
+	}
+
+	private static void siftDown(int[] ords, double[] dist, int i, int n) {
+		while (true) {
+			int largest = i;
+			int l = 2 * i + 1;
+			int r = l + 1;
+			if (l < n && dist[l] > dist[largest])
+				largest = l;
+			if (r < n && dist[r] > dist[largest])
+				largest = r;
+			if (largest == i)
+				return;
+			swap(ords, dist, i, largest);
+			i = largest;
+		}
+	}
+
+	private static void swap(int[] ords, double[] dist, int i, int j) {
+		int o = ords[i];
+		ords[i] = ords[j];
+		ords[j] = o;
+		double d = dist[i];
+		dist[i] = dist[j];
+		dist[j] = d;
+	}
+
+}
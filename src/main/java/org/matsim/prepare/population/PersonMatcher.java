@@ -1,5 +1,9 @@
 package org.matsim.prepare.population;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
@@ -14,7 +18,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -25,6 +29,11 @@ public class PersonMatcher implements Iterable<Map.Entry<String, CSVRecord>> {
 
 	private static final Logger log = LogManager.getLogger(PersonMatcher.class);
 
+	/**
+	 * Number of random picks of removed persons, before all remaining persons are collected.
+	 */
+	private static final int MAX_REJECTIONS = 16;
+
 	private final String idxColumn;
 
 	private final CsvOptions csv = new CsvOptions(CSVFormat.Predefined.Default);
@@ -63,26 +72,52 @@ public class PersonMatcher implements Iterable<Map.Entry<String, CSVRecord>> {
 	}
 
 	/**
-	 * Matches a person csv entry to one person in a list.
+	 * Create an index of persons, which can be matched with {@link #matchEntry(CSVRecord, Index, SplittableRandom)}.
+	 */
+	public Index createIndex(List<Person> refPersons) {
+		return new Index(refPersons);
+	}
+
+	/**
+	 * Matches a person csv entry to one of the remaining persons in the index.
 	 * @return null if no match was found
 	 */
-	public Person matchEntry(CSVRecord p, List<Person> refPersons, SplittableRandom rnd) {
+	public Person matchEntry(CSVRecord p, Index index, SplittableRandom rnd) {
+
+		// Each person has exactly one key, so the buckets of different keys are disjoint
+		List<int[]> buckets = createKey(p)
+			.map(index.buckets::get)
+			.filter(Objects::nonNull)
+			.toList();
 
-		int regionType = Integer.parseInt(p.get("region_type"));
-		String gender = p.get("gender");
-		String employment = p.get("employment");
-		int age = Integer.parseInt(p.get("age"));
+		int total = 0;
+		for (int[] b : buckets) {
+			total += b.length;
+		}
 
-		Set<Key> keys = createKey(gender, age, regionType, employment).collect(Collectors.toSet());
+		if (total == 0)
+			return null;
 
-		List<Person> matched = refPersons.stream()
-			.filter(person -> keys.contains(createKey(person)))
-			.toList();
+		// Rejection of already removed persons, which is fast as long as only few of them are removed
+		for (int i = 0; i < MAX_REJECTIONS; i++) {
+			int idx = pick(buckets, rnd.nextInt(total));
+			if (!index.removed.get(idx))
+				return index.persons[idx];
+		}
+
+		// Otherwise, choose uniformly from the remaining ones
+		IntList remaining = new IntArrayList();
+		for (int[] b : buckets) {
+			for (int idx : b) {
+				if (!index.removed.get(idx))
+					remaining.add(idx);
+			}
+		}
 
-		if (matched.isEmpty())
+		if (remaining.isEmpty())
 			return null;
 
-		return matched.get(rnd.nextInt(matched.size()));
+		return index.persons[remaining.getInt(rnd.nextInt(remaining.size()))];
 	}
 
 	/**
@@ -102,12 +137,8 @@ public class PersonMatcher implements Iterable<Map.Entry<String, CSVRecord>> {
 		for (CSVRecord r : csv) {
 
 			String idx = r.get(idxColumn);
-			int regionType = Integer.parseInt(r.get("region_type"));
-			String gender = r.get("gender");
-			String employment = r.get("employment");
-			int age = Integer.parseInt(r.get("age"));
 
-			Stream<Key> keys = createKey(gender, age, regionType, employment);
+			Stream<Key> keys = createKey(r);
 			keys.forEach(key -> groups.computeIfAbsent(key, (k) -> new ArrayList<>()).add(idx));
 			persons.put(idx, r);
 			i++;
@@ -116,6 +147,28 @@ public class PersonMatcher implements Iterable<Map.Entry<String, CSVRecord>> {
 		log.info("Read {} persons from csv.", i);
 	}
 
+	private static int pick(List<int[]> buckets, int r) {
+		for (int[] b : buckets) {
+			if (r < b.length)
+				return b[r];
+			r -= b.length;
+		}
+
+		throw new IllegalStateException("Index out of range");
+	}
+
+	/**
+	 * Keys of a reference person, which can be matched with all persons having one of these keys.
+	 */
+	Stream<Key> createKey(CSVRecord r) {
+		int regionType = Integer.parseInt(r.get("region_type"));
+		String gender = r.get("gender");
+		String employment = r.get("employment");
+		int age = Integer.parseInt(r.get("age"));
+
+		return createKey(gender, age, regionType, employment);
+	}
+
 	private Stream<Key> createKey(String gender, int age, int regionType, String employment) {
 		if (age < 6) {
 			return IntStream.rangeClosed(0, 5).mapToObj(i -> new Key(null, i, regionType, null));
@@ -140,7 +193,10 @@ public class PersonMatcher implements Iterable<Map.Entry<String, CSVRecord>> {
 		return IntStream.rangeClosed(min, max).mapToObj(i -> new Key(gender, i, regionType, isEmployed));
 	}
 
-	private Key createKey(Person person) {
+	/**
+	 * Key of a person in the population.
+	 */
+	Key createKey(Person person) {
 
 		Integer age = PersonUtils.getAge(person);
 		String gender = PersonUtils.getSex(person);
@@ -172,6 +228,66 @@ public class PersonMatcher implements Iterable<Map.Entry<String, CSVRecord>> {
 	public record Key(String gender, int age, int regionType, Boolean employed) {
 	}
 
+	/**
+	 * Inverted index from {@link Key} to persons of a population. Persons that have been used can be removed.
+	 * Matching and removal are thread-safe.
+	 */
+	public final class Index {
+
+		private final Person[] persons;
+		private final Reference2IntMap<Person> ordinals = new Reference2IntOpenHashMap<>();
+		private final Map<Key, int[]> buckets = new HashMap<>();
+		private final AtomicBitSet removed;
+
+		private Index(List<Person> refPersons) {
+			persons = refPersons.toArray(new Person[0]);
+			removed = new AtomicBitSet(persons.length);
+
+			Map<Key, IntList> groups = new HashMap<>();
+			for (int i = 0; i < persons.length; i++) {
+				ordinals.put(persons[i], i);
+				groups.computeIfAbsent(createKey(persons[i]), k -> new IntArrayList()).add(i);
+			}
+
+			groups.forEach((k, v) -> buckets.put(k, v.toIntArray()));
+		}
+
+		/**
+		 * Remove a person, so that it will not be matched again.
+		 *
+		 * @return false if the person was already removed or is not part of the index.
+		 */
+		public boolean remove(Person person) {
+			int idx = ordinals.getOrDefault(person, -1);
+			return idx >= 0 && removed.set(idx);
+		}
+	}
+
+	/**
+	 * Bit set that can be modified concurrently.
+	 */
+	private static final class AtomicBitSet {
+
+		private final AtomicLongArray words;
+
+		private AtomicBitSet(int size) {
+			words = new AtomicLongArray((size + 63) >>> 6);
+		}
+
+		private boolean get(int idx) {
+			return (words.get(idx >>> 6) & (1L << idx)) != 0;
+		}
+
+		/**
+		 * Set a bit and return whether it was previously unset.
+		 */
+		private boolean set(int idx) {
+			long mask = 1L << idx;
+			long old = words.getAndUpdate(idx >>> 6, w -> w | mask);
+			return (old & mask) == 0;
+		}
+	}
+
 }
 
 
@@ -0,0 +1,139 @@
+package org.matsim.prepare.population;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.apache.commons.csv.CSVRecord;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.population.PersonUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Attributes of the survey persons, parsed once and stored column-wise.
+ * These are the attributes that are copied to persons of the synthetic population.
+ */
+public final class PersonTable {
+
+	private final Object2IntMap<String> rows = new Object2IntOpenHashMap<>();
+
+	private final Object2IntMap<String> codes = new Object2IntOpenHashMap<>();
+	private final List<String> dictionary = new ArrayList<>();
+
+	private final byte[] mobile;
+	private final boolean[] carAvail;
+	private final boolean[] bikeAvail;
+	private final boolean[] ptAboAvail;
+	private final boolean[] restrictedMobility;
+	private final int[] licence;
+	private final int[] income;
+	private final int[] employment;
+	private final int[] economicStatus;
+	private final int[] householdSize;
+	private final double[] householdEquivalentSize;
+	private final int[] householdType;
+
+	/**
+	 * Create table from all persons of the matcher.
+	 */
+	public PersonTable(Iterable<Map.Entry<String, CSVRecord>> persons) {
+
+		List<Map.Entry<String, CSVRecord>> entries = new ArrayList<>();
+		persons.forEach(entries::add);
+
+		int n = entries.size();
+		rows.defaultReturnValue(-1);
+		codes.defaultReturnValue(-1);
+
+		mobile = new byte[n];
+		carAvail = new boolean[n];
+		bikeAvail = new boolean[n];
+		ptAboAvail = new boolean[n];
+		restrictedMobility = new boolean[n];
+		licence = new int[n];
+		income = new int[n];
+		employment = new int[n];
+		economicStatus = new int[n];
+		householdSize = new int[n];
+		householdEquivalentSize = new double[n];
+		householdType = new int[n];
+
+		for (int i = 0; i < n; i++) {
+			rows.put(entries.get(i).getKey(), i);
+			CSVRecord row = entries.get(i).getValue();
+
+			mobile[i] = switch (row.get("mobile_on_day").toLowerCase()) {
+				case "true" -> 1;
+				case "false" -> 0;
+				default -> -1;
+			};
+
+			carAvail[i] = row.get("car_avail").equals("True");
+			bikeAvail[i] = row.get("bike_avail").equals("True");
+			ptAboAvail[i] = row.get("pt_abo_avail").equals("True");
+			restrictedMobility[i] = row.get("restricted_mobility").equals("True");
+			licence[i] = encode(row.get("driving_license").toLowerCase());
+
+			// Define a minimum income
+			income[i] = Math.max(249, (int) Math.round(Double.parseDouble(row.get("income"))));
+
+			employment[i] = encode(row.get("employment"));
+			economicStatus[i] = encode(row.get("economic_status"));
+			householdSize[i] = Integer.parseInt(row.get("n_persons"));
+			householdEquivalentSize[i] = Double.parseDouble(row.get("equivalent_size"));
+			householdType[i] = encode(row.get("type"));
+		}
+	}
+
+	private int encode(String value) {
+		int code = codes.getInt(value);
+		if (code < 0) {
+			code = dictionary.size();
+			codes.put(value, code);
+			dictionary.add(value);
+		}
+
+		return code;
+	}
+
+	/**
+	 * Row of a person.
+	 *
+	 * @return -1 if the person is not known
+	 */
+	public int getRow(String personId) {
+		return rows.getInt(personId);
+	}
+
+	/**
+	 * Whether the person is mobile on the survey day.
+	 *
+	 * @throws IllegalStateException if the attribute has an invalid value
+	 */
+	public boolean isMobile(int row) {
+		if (mobile[row] < 0)
+			throw new IllegalStateException("Invalid mobile_on_day attribute in row " + row);
+
+		return mobile[row] == 1;
+	}
+
+	/**
+	 * Copy attributes of a row to a person.
+	 */
+	public void copyAttributes(int row, Person person) {
+		PersonUtils.setCarAvail(person, carAvail[row] ? "always" : "never");
+		PersonUtils.setLicence(person, dictionary.get(licence[row]));
+		PersonUtils.setIncome(person, income[row]);
+
+		person.getAttributes().putAttribute(Attributes.BIKE_AVAIL, bikeAvail[row] ? "always" : "never");
+		person.getAttributes().putAttribute(Attributes.PT_ABO_AVAIL, ptAboAvail[row] ? "always" : "never");
+
+		person.getAttributes().putAttribute(Attributes.EMPLOYMENT, dictionary.get(employment[row]));
+		person.getAttributes().putAttribute(Attributes.RESTRICTED_MOBILITY, restrictedMobility[row]);
+		person.getAttributes().putAttribute(Attributes.ECONOMIC_STATUS, dictionary.get(economicStatus[row]));
+		person.getAttributes().putAttribute(Attributes.HOUSEHOLD_SIZE, householdSize[row]);
+		person.getAttributes().putAttribute(Attributes.HOUSEHOLD_EQUIVALENT_SIZE, householdEquivalentSize[row]);
+		person.getAttributes().putAttribute(Attributes.HOUSEHOLD_TYPE, dictionary.get(householdType[row]));
+	}
+}
@@ -8,9 +8,6 @@ import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
 import org.geotools.api.feature.simple.SimpleFeature;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.population.Activity;
@@ -32,7 +29,6 @@ import java.util.*;
  */
 public class PlanBuilder {
 
-	private static final Logger log = LogManager.getLogger(PlanBuilder.class);
 	private static final CsvOptions csv = new CsvOptions(CSVFormat.Predefined.Default);
 
 	/**
@@ -47,7 +43,7 @@ public class PlanBuilder {
 	 */
 	private final Object2LongMap<Location> features = new Object2LongOpenHashMap<>();
 
-	private final Map<String, List<CSVRecord>> activities = new HashMap<>();
+	private final ActivityTable activities;
 
 	private final SplittableRandom rnd = new SplittableRandom();
 
@@ -69,43 +65,14 @@ public class PlanBuilder {
 		}
 
 		try (CSVParser parser = csv.createParser(activityPath)) {
-			readActivities(parser, "p_id");
+			activities = ActivityTable.read(parser, "p_id");
 		}
 	}
 
-	private void readActivities(CSVParser csv, String idColumn) {
-
-		String currentId = null;
-		List<CSVRecord> current = null;
-
-		int i = 0;
-		for (CSVRecord r : csv) {
-
-			String pId = r.get(idColumn);
-
-			if (!Objects.equals(pId, currentId)) {
-				if (current != null)
-					activities.put(currentId, current);
-
-				currentId = pId;
-				current = new ArrayList<>();
-			}
-
-			current.add(r);
-			i++;
-		}
-
-		if (current != null && !current.isEmpty()) {
-			activities.put(currentId, current);
-		}
-
-		log.info("Read {} activities for {} persons", i, activities.size());
-	}
-
 	/**
 	 * Return all read activities.
 	 */
-	public Map<String, List<CSVRecord>> getActivities() {
+	public ActivityTable getActivities() {
 		return activities;
 	}
 
@@ -137,14 +104,18 @@ public class PlanBuilder {
 	 */
 	public long findHomeZone(String personId) {
 
-		List<CSVRecord> acts = activities.get(personId);
-
-		Optional<CSVRecord> home = acts.stream().filter(r -> r.get("type").equals("home")).findFirst();
-		if (home.isEmpty())
+		int p = activities.getPerson(personId);
+		if (p < 0)
 			return -1;
 
-		Location loc = new Location(home.get().get("location"), home.get().get("zone"));
-		return features.getOrDefault(loc, -1);
+		for (int i = activities.getStart(p); i < activities.getEnd(p); i++) {
+			if (activities.getType(i).equals("home")) {
+				Location loc = new Location(activities.getLocation(i), activities.getZone(i));
+				return features.getOrDefault(loc, -1);
+			}
+		}
+
+		return -1;
 	}
 
 	/**
@@ -154,12 +125,17 @@ public class PlanBuilder {
 	 */
 	public boolean assignLocationsFromZones(String personId, Plan plan, Coord homeCoord) {
 
-		List<CSVRecord> acts = activities.get(personId);
+		int p = activities.getPerson(personId);
+		if (p < 0)
+			return false;
+
+		int start = activities.getStart(p);
+		int n = activities.getEnd(p) - start;
 		List<Activity> existing = TripStructureUtils.getActivities(plan, TripStructureUtils.StageActivityHandling.ExcludeStageActivities);
 
 		// If activities don't match, this entry is skipped
 		// this can happen if an end home activity has been added at the end
-		if (acts.size() != existing.size())
+		if (n != existing.size())
 			return false;
 
 		ActLocation home = new ActLocation(null, homeCoord);
@@ -169,21 +145,21 @@ public class PlanBuilder {
 		// Distances between activities in meter
 		DoubleList dists = new DoubleArrayList();
 
-		for (int i = 0; i < acts.size(); i++) {
+		for (int i = 0; i < n; i++) {
 
-			CSVRecord ref = acts.get(i);
+			int ref = start + i;
 			Activity activity = existing.get(i);
 
 			String type = activity.getType();
 
-			dists.add(InitLocationChoice.beelineDist(Double.parseDouble(ref.get("leg_dist"))));
+			dists.add(InitLocationChoice.beelineDist(activities.getLegDist(ref)));
 
 			if (type.equals("home")) {
 				possibleLocations.add(List.of(home));
 				continue;
 			}
 
-			Location loc = new Location(ref.get("location"), ref.get("zone"));
+			Location loc = new Location(activities.getLocation(ref), activities.getZone(ref));
 			long id = features.getOrDefault(loc, -1);
 			if (id == -1) {
 				return false;
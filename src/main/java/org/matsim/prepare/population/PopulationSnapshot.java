@@ -0,0 +1,829 @@
+package org.matsim.prepare.population;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.*;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.utils.objectattributes.attributable.AttributesImpl;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary format for populations, which is much faster to read and write than compressed xml.
+ * <p>
+ * Persons are stored in independently compressed chunks, which are encoded and decoded in parallel. Within a chunk, all strings
+ * (ids, types, modes, attribute keys) are interned. Coordinates and times are delta encoded per person, as long as they can be
+ * represented exactly with fixed precision. All other values are stored as is, so that conversion from and to xml is lossless.
+ * <p>
+ * Files are recognized by the {@link #EXTENSION}, use {@link #readPopulation(String)} and {@link #writePopulation(Population, String)}
+ * to support both formats transparently.
+ */
+public final class PopulationSnapshot {
+
+	/**
+	 * File extension of population snapshots.
+	 */
+	public static final String EXTENSION = ".plans.bin";
+
+	private static final Logger log = LogManager.getLogger(PopulationSnapshot.class);
+
+	private static final int MAGIC = 0x4D504F50;
+	private static final int VERSION = 2;
+
+	/**
+	 * Number of persons per chunk.
+	 */
+	private static final int CHUNK_SIZE = 10_000;
+
+	/**
+	 * Number of chunks that are held in memory at once.
+	 */
+	private static final int BATCH = 64;
+
+	/**
+	 * Fixed-point precision of coordinates.
+	 */
+	private static final double COORD_SCALE = 1000;
+
+	private static final byte ACTIVITY = 0;
+	private static final byte LEG = 1;
+
+	private static final byte ATTR_STRING = 0;
+	private static final byte ATTR_INT = 1;
+	private static final byte ATTR_LONG = 2;
+	private static final byte ATTR_DOUBLE = 3;
+	private static final byte ATTR_BOOLEAN = 4;
+	private static final byte ATTR_OTHER = 5;
+
+	private PopulationSnapshot() {
+	}
+
+	/**
+	 * Check whether a path refers to a population snapshot.
+	 */
+	public static boolean isSnapshot(String path) {
+		return path.endsWith(EXTENSION);
+	}
+
+	/**
+	 * Read a population either from xml or from a snapshot, depending on the file extension.
+	 */
+	public static Population readPopulation(String path) {
+		if (!isSnapshot(path))
+			return PopulationUtils.readPopulation(path);
+
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		try {
+			read(Path.of(path), population);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return population;
+	}
+
+	/**
+	 * Write a population either as xml or as snapshot, depending on the file extension.
+	 */
+	public static void writePopulation(Population population, String path) {
+		if (!isSnapshot(path)) {
+			PopulationUtils.writePopulation(population, path);
+			return;
+		}
+
+		try {
+			write(population, Path.of(path));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Write population as snapshot.
+	 */
+	public static void write(Population population, Path path) throws IOException {
+
+		try (SnapshotWriter writer = new SnapshotWriter(path, population.getAttributes(), BATCH)) {
+			population.getPersons().values().forEach(writer::write);
+		}
+
+		log.info("Wrote {} persons to {}", population.getPersons().size(), path);
+	}
+
+	/**
+	 * Read a snapshot into the given population.
+	 */
+	public static void read(Path path, Population population) throws IOException {
+
+		try (SnapshotReader reader = new SnapshotReader(path, population.getFactory(), BATCH)) {
+			reader.getAttributes().getAsMap().forEach(population.getAttributes()::putAttribute);
+			reader.forEachRemaining(population::addPerson);
+		}
+
+		log.info("Read {} persons from {}", population.getPersons().size(), path);
+	}
+
+	/**
+	 * Open a snapshot for reading person by person. Only a few chunks are decoded at once.
+	 */
+	static StreamingPopulation.Reader openReader(String path, PopulationFactory factory) throws IOException {
+		return new SnapshotReader(Path.of(path), factory, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Open a snapshot for writing person by person. Only a few chunks are encoded at once.
+	 */
+	static StreamingPopulation.Writer openWriter(String path, Attributes attributes) throws IOException {
+		return new SnapshotWriter(Path.of(path), attributes, Runtime.getRuntime().availableProcessors());
+	}
+
+	private static void writeChunk(DataOutputStream out, byte[][] chunk) throws IOException {
+		out.writeInt(chunk[0].length);
+		out.writeInt(chunk[1].length);
+		out.write(chunk[1]);
+	}
+
+	/**
+	 * Read the next chunk and return its uncompressed content, or null if the end was reached.
+	 */
+	private static byte[] readChunk(DataInputStream in) throws IOException {
+		int raw = in.readInt();
+		if (raw < 0)
+			return null;
+
+		byte[] compressed = new byte[in.readInt()];
+		in.readFully(compressed);
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] result = new byte[raw];
+			int n = 0;
+			while (n < raw && !inflater.finished()) {
+				int read = inflater.inflate(result, n, raw - n);
+				if (read == 0 && inflater.needsInput())
+					throw new IOException("Truncated chunk");
+				n += read;
+			}
+			return result;
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt chunk", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Buffers persons and writes them in chunks, which are encoded in parallel.
+	 */
+	private static final class SnapshotWriter implements StreamingPopulation.Writer {
+
+		private final DataOutputStream out;
+		private final ObjectAttributesConverter converter = new ObjectAttributesConverter();
+		private final int batch;
+		private final List<Person> buffer = new ArrayList<>();
+
+		private SnapshotWriter(Path path, Attributes attributes, int batch) throws IOException {
+			this.batch = batch;
+			this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 20));
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			Encoder header = new Encoder(converter);
+			header.writeAttributes(attributes);
+			writeChunk(out, header.compress());
+		}
+
+		@Override
+		public void write(Person person) {
+			buffer.add(person);
+			if (buffer.size() >= CHUNK_SIZE * batch)
+				flush();
+		}
+
+		private void flush() {
+
+			List<List<Person>> chunks = new ArrayList<>();
+			for (int i = 0; i < buffer.size(); i += CHUNK_SIZE) {
+				chunks.add(buffer.subList(i, Math.min(i + CHUNK_SIZE, buffer.size())));
+			}
+
+			// toList retains the order of the chunks
+			List<byte[][]> encoded = chunks.parallelStream()
+				.map(chunk -> {
+					Encoder enc = new Encoder(converter);
+					enc.writeVarLong(chunk.size());
+					chunk.forEach(enc::writePerson);
+					return enc.compress();
+				})
+				.toList();
+
+			try {
+				for (byte[][] chunk : encoded) {
+					writeChunk(out, chunk);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			buffer.clear();
+		}
+
+		@Override
+		public void close() {
+			flush();
+			try {
+				out.writeInt(-1);
+				out.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Reads chunks ahead and decodes them in parallel.
+	 */
+	private static final class SnapshotReader implements StreamingPopulation.Reader {
+
+		private final DataInputStream in;
+		private final PopulationFactory factory;
+		private final ObjectAttributesConverter converter = new ObjectAttributesConverter();
+		private final int batch;
+		private final Attributes attributes = new AttributesImpl();
+
+		private final Deque<Person> persons = new ArrayDeque<>();
+		private boolean end;
+
+		private SnapshotReader(Path path, PopulationFactory factory, int batch) throws IOException {
+			this.factory = factory;
+			this.batch = batch;
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 20));
+
+			if (in.readInt() != MAGIC)
+				throw new IOException("Not a population snapshot: " + path);
+
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported snapshot version " + version + " in " + path);
+
+			Decoder header = new Decoder(readChunk(in), factory, converter);
+			header.readAttributes(attributes);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (persons.isEmpty() && !end)
+				readBatch();
+
+			return !persons.isEmpty();
+		}
+
+		@Override
+		public Person next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			return persons.poll();
+		}
+
+		private void readBatch() {
+			List<byte[]> chunks = new ArrayList<>();
+			try {
+				while (chunks.size() < batch && !end) {
+					byte[] chunk = readChunk(in);
+					end = chunk == null;
+					if (chunk != null)
+						chunks.add(chunk);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			// Decode persons in parallel, but keep the original order
+			chunks.parallelStream()
+				.map(c -> new Decoder(c, factory, converter).readPersons())
+				.toList()
+				.forEach(persons::addAll);
+		}
+
+		@Override
+		public Attributes getAttributes() {
+			return attributes;
+		}
+
+		@Override
+		public void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Encodes persons into a byte buffer. Not thread-safe.
+	 */
+	private static final class Encoder {
+
+		private final ObjectAttributesConverter converter;
+		private final Object2IntMap<String> strings = new Object2IntOpenHashMap<>();
+
+		private byte[] buf = new byte[1 << 16];
+		private int pos;
+
+		private long lastTime;
+		private long lastX;
+		private long lastY;
+
+		private Encoder(ObjectAttributesConverter converter) {
+			this.converter = converter;
+			this.strings.defaultReturnValue(-1);
+		}
+
+		/**
+		 * Return the uncompressed and compressed content.
+		 */
+		private byte[][] compress() {
+			byte[] raw = Arrays.copyOf(buf, pos);
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try {
+				deflater.setInput(raw);
+				deflater.finish();
+				ByteArrayOutputStream out = new ByteArrayOutputStream(pos / 4 + 64);
+				byte[] tmp = new byte[1 << 16];
+				while (!deflater.finished()) {
+					int n = deflater.deflate(tmp);
+					out.write(tmp, 0, n);
+				}
+				return new byte[][]{raw, out.toByteArray()};
+			} finally {
+				deflater.end();
+			}
+		}
+
+		private void ensure(int n) {
+			if (pos + n > buf.length)
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + n));
+		}
+
+		private void writeByte(int b) {
+			ensure(1);
+			buf[pos++] = (byte) b;
+		}
+
+		private void writeVarLong(long v) {
+			ensure(10);
+			while ((v & ~0x7FL) != 0) {
+				buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			buf[pos++] = (byte) v;
+		}
+
+		private void writeSignedVarLong(long v) {
+			writeVarLong((v << 1) ^ (v >> 63));
+		}
+
+		private void writeDouble(double d) {
+			long v = Double.doubleToRawLongBits(d);
+			ensure(8);
+			for (int i = 0; i < 8; i++) {
+				buf[pos++] = (byte) (v >>> (i * 8));
+			}
+		}
+
+		/**
+		 * Strings are written only once, afterward by their index. 0 is null, 1 is a new string.
+		 */
+		private void writeString(String s) {
+			if (s == null) {
+				writeVarLong(0);
+				return;
+			}
+
+			int idx = strings.getInt(s);
+			if (idx >= 0) {
+				writeVarLong(idx + 2L);
+				return;
+			}
+
+			strings.put(s, strings.size());
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeVarLong(1);
+			writeVarLong(bytes.length);
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, buf, pos, bytes.length);
+			pos += bytes.length;
+		}
+
+		private void writeId(Id<?> id) {
+			writeString(id == null ? null : id.toString());
+		}
+
+		/**
+		 * Times are delta encoded if they are whole seconds. The lowest bit marks raw values.
+		 */
+		private void writeTime(OptionalTime time) {
+			if (time.isUndefined()) {
+				writeVarLong(0);
+				return;
+			}
+
+			double t = time.seconds();
+			if (t == Math.rint(t) && Math.abs(t) < 1e15) {
+				long delta = (long) t - lastTime;
+				lastTime = (long) t;
+				writeVarLong((((delta << 1) ^ (delta >> 63)) + 1) << 1);
+			} else {
+				writeVarLong(1);
+				writeDouble(t);
+			}
+		}
+
+		private long writeCoordValue(double v, long last) {
+			double scaled = v * COORD_SCALE;
+			if (scaled == Math.rint(scaled) && Math.abs(scaled) < 1e15 && Math.rint(scaled) / COORD_SCALE == v) {
+				long fixed = (long) scaled;
+				long delta = fixed - last;
+				writeVarLong(((delta << 1) ^ (delta >> 63)) << 1);
+				return fixed;
+			}
+
+			writeVarLong(1);
+			writeDouble(v);
+			return last;
+		}
+
+		private void writeCoord(Coord coord) {
+			if (coord == null) {
+				writeByte(0);
+				return;
+			}
+
+			writeByte(coord.hasZ() ? 2 : 1);
+			lastX = writeCoordValue(coord.getX(), lastX);
+			lastY = writeCoordValue(coord.getY(), lastY);
+			if (coord.hasZ())
+				writeDouble(coord.getZ());
+		}
+
+		private void writeAttributes(Attributes attributes) {
+			Map<String, Object> map = attributes.getAsMap();
+			writeVarLong(map.size());
+			for (Map.Entry<String, Object> e : map.entrySet()) {
+				writeString(e.getKey());
+				writeValue(e.getValue());
+			}
+		}
+
+		private void writeValue(Object value) {
+			if (value instanceof String s) {
+				writeByte(ATTR_STRING);
+				writeString(s);
+			} else if (value instanceof Integer i) {
+				writeByte(ATTR_INT);
+				writeSignedVarLong(i);
+			} else if (value instanceof Long l) {
+				writeByte(ATTR_LONG);
+				writeSignedVarLong(l);
+			} else if (value instanceof Double d) {
+				writeByte(ATTR_DOUBLE);
+				writeDouble(d);
+			} else if (value instanceof Boolean b) {
+				writeByte(ATTR_BOOLEAN);
+				writeByte(b ? 1 : 0);
+			} else {
+				String converted = converter.convert(value);
+				if (converted == null)
+					throw new IllegalArgumentException("No converter for attribute of " + value.getClass());
+
+				writeByte(ATTR_OTHER);
+				writeString(value.getClass().getName());
+				writeString(converted);
+			}
+		}
+
+		private void writePerson(Person person) {
+			lastTime = 0;
+			lastX = 0;
+			lastY = 0;
+
+			writeId(person.getId());
+			writeAttributes(person.getAttributes());
+
+			List<? extends Plan> plans = person.getPlans();
+			writeVarLong(plans.size());
+			writeVarLong(plans.indexOf(person.getSelectedPlan()) + 1L);
+
+			for (Plan plan : plans) {
+				writePlan(plan);
+			}
+		}
+
+		private void writePlan(Plan plan) {
+			Double score = plan.getScore();
+			writeByte(score == null ? 0 : 1);
+			if (score != null)
+				writeDouble(score);
+
+			writeString(plan.getType());
+			writeAttributes(plan.getAttributes());
+
+			List<PlanElement> elements = plan.getPlanElements();
+			writeVarLong(elements.size());
+			for (PlanElement el : elements) {
+				if (el instanceof Activity act)
+					writeActivity(act);
+				else if (el instanceof Leg leg)
+					writeLeg(leg);
+				else
+					throw new IllegalArgumentException("Unknown plan element " + el.getClass());
+			}
+		}
+
+		private void writeActivity(Activity act) {
+			writeByte(ACTIVITY);
+			writeString(act.getType());
+			writeCoord(act.getCoord());
+			writeId(act.getLinkId());
+			writeId(act.getFacilityId());
+			writeTime(act.getStartTime());
+			writeTime(act.getEndTime());
+			writeTime(act.getMaximumDuration());
+			writeAttributes(act.getAttributes());
+		}
+
+		private void writeLeg(Leg leg) {
+			writeByte(LEG);
+			writeString(leg.getMode());
+			writeString(leg.getRoutingMode());
+			writeTime(leg.getDepartureTime());
+			writeTime(leg.getTravelTime());
+
+			Route route = leg.getRoute();
+			if (route == null) {
+				writeString(null);
+			} else {
+				writeString(route.getRouteType());
+				writeId(route.getStartLinkId());
+				writeId(route.getEndLinkId());
+				writeDouble(route.getDistance());
+				writeTime(route.getTravelTime());
+				writeString(route.getRouteDescription());
+				writeId(route instanceof NetworkRoute nr ? nr.getVehicleId() : null);
+			}
+
+			writeAttributes(leg.getAttributes());
+		}
+	}
+
+	/**
+	 * Decodes persons from a byte buffer. Not thread-safe.
+	 */
+	private static final class Decoder {
+
+		private final byte[] buf;
+		private final PopulationFactory factory;
+		private final RouteFactories routeFactories;
+		private final ObjectAttributesConverter converter;
+		private final List<String> strings = new ArrayList<>();
+
+		private int pos;
+
+		private long lastTime;
+		private long lastX;
+		private long lastY;
+
+		private Decoder(byte[] buf, PopulationFactory factory, ObjectAttributesConverter converter) {
+			this.buf = buf;
+			this.factory = factory;
+			this.routeFactories = factory.getRouteFactories();
+			this.converter = converter;
+		}
+
+		private List<Person> readPersons() {
+			int n = (int) readVarLong();
+			List<Person> persons = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				persons.add(readPerson());
+			}
+			return persons;
+		}
+
+		private int readByte() {
+			return buf[pos++];
+		}
+
+		private long readVarLong() {
+			long v = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buf[pos++];
+				v |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return v;
+		}
+
+		private long readSignedVarLong() {
+			long v = readVarLong();
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		private double readDouble() {
+			long v = 0;
+			for (int i = 0; i < 8; i++) {
+				v |= (buf[pos++] & 0xFFL) << (i * 8);
+			}
+			return Double.longBitsToDouble(v);
+		}
+
+		private String readString() {
+			long ref = readVarLong();
+			if (ref == 0)
+				return null;
+			if (ref > 1)
+				return strings.get((int) (ref - 2));
+
+			int length = (int) readVarLong();
+			String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+			pos += length;
+			strings.add(s);
+			return s;
+		}
+
+		private <T> Id<T> readId(Class<T> type) {
+			String s = readString();
+			return s == null ? null : Id.create(s, type);
+		}
+
+		private OptionalTime readTime() {
+			long v = readVarLong();
+			if (v == 0)
+				return OptionalTime.undefined();
+			if (v == 1)
+				return OptionalTime.defined(readDouble());
+
+			long zigzag = (v >>> 1) - 1;
+			lastTime += (zigzag >>> 1) ^ -(zigzag & 1);
+			return OptionalTime.defined(lastTime);
+		}
+
+		private double readCoordValue(boolean isX) {
+			long v = readVarLong();
+			if (v == 1)
+				return readDouble();
+
+			long zigzag = v >>> 1;
+			long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+			if (isX) {
+				lastX += delta;
+				return lastX / COORD_SCALE;
+			}
+
+			lastY += delta;
+			return lastY / COORD_SCALE;
+		}
+
+		private Coord readCoord() {
+			int type = readByte();
+			if (type == 0)
+				return null;
+
+			double x = readCoordValue(true);
+			double y = readCoordValue(false);
+			return type == 2 ? new Coord(x, y, readDouble()) : new Coord(x, y);
+		}
+
+		private void readAttributes(Attributes attributes) {
+			int n = (int) readVarLong();
+			for (int i = 0; i < n; i++) {
+				String key = readString();
+				attributes.putAttribute(key, readValue());
+			}
+		}
+
+		private Object readValue() {
+			int type = readByte();
+			return switch (type) {
+				case ATTR_STRING -> readString();
+				case ATTR_INT -> Integer.valueOf((int) readSignedVarLong());
+				case ATTR_LONG -> Long.valueOf(readSignedVarLong());
+				case ATTR_DOUBLE -> Double.valueOf(readDouble());
+				case ATTR_BOOLEAN -> Boolean.valueOf(readByte() == 1);
+				case ATTR_OTHER -> converter.convert(readString(), readString());
+				default -> throw new IllegalStateException("Unknown attribute type " + type);
+			};
+		}
+
+		private Person readPerson() {
+			lastTime = 0;
+			lastX = 0;
+			lastY = 0;
+
+			Person person = factory.createPerson(readId(Person.class));
+			readAttributes(person.getAttributes());
+
+			int n = (int) readVarLong();
+			int selected = (int) readVarLong() - 1;
+
+			for (int i = 0; i < n; i++) {
+				Plan plan = readPlan();
+				person.addPlan(plan);
+				if (i == selected)
+					person.setSelectedPlan(plan);
+			}
+
+			return person;
+		}
+
+		private Plan readPlan() {
+			Plan plan = factory.createPlan();
+			if (readByte() == 1)
+				plan.setScore(readDouble());
+
+			plan.setType(readString());
+			readAttributes(plan.getAttributes());
+
+			int n = (int) readVarLong();
+			for (int i = 0; i < n; i++) {
+				int type = readByte();
+				if (type == ACTIVITY)
+					plan.addActivity(readActivity());
+				else if (type == LEG)
+					plan.addLeg(readLeg());
+				else
+					throw new IllegalStateException("Unknown plan element " + type);
+			}
+
+			return plan;
+		}
+
+		private Activity readActivity() {
+			String type = readString();
+			Coord coord = readCoord();
+			Id<Link> link = readId(Link.class);
+
+			Activity act = coord != null ? factory.createActivityFromCoord(type, coord) : factory.createActivityFromLinkId(type, link);
+			act.setLinkId(link);
+			act.setFacilityId(readId(ActivityFacility.class));
+
+			readTime().ifDefinedOrElse(act::setStartTime, act::setStartTimeUndefined);
+			readTime().ifDefinedOrElse(act::setEndTime, act::setEndTimeUndefined);
+			readTime().ifDefinedOrElse(act::setMaximumDuration, act::setMaximumDurationUndefined);
+
+			readAttributes(act.getAttributes());
+			return act;
+		}
+
+		private Leg readLeg() {
+			Leg leg = factory.createLeg(readString());
+			leg.setRoutingMode(readString());
+			readTime().ifDefinedOrElse(leg::setDepartureTime, leg::setDepartureTimeUndefined);
+			readTime().ifDefinedOrElse(leg::setTravelTime, leg::setTravelTimeUndefined);
+
+			String routeType = readString();
+			if (routeType != null) {
+				Id<Link> start = readId(Link.class);
+				Id<Link> end = readId(Link.class);
+				Route route = routeFactories.createRoute(routeFactories.getRouteClassForType(routeType), start, end);
+				route.setDistance(readDouble());
+				readTime().ifDefinedOrElse(route::setTravelTime, route::setTravelTimeUndefined);
+				route.setRouteDescription(readString());
+
+				Id<Vehicle> vehicle = readId(Vehicle.class);
+				if (route instanceof NetworkRoute nr)
+					nr.setVehicleId(vehicle);
+
+				leg.setRoute(route);
+			}
+
+			readAttributes(leg.getAttributes());
+			return leg;
+		}
+	}
+}
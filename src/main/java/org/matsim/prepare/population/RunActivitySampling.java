@@ -1,25 +1,18 @@
 package org.matsim.prepare.population;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.*;
 import org.matsim.application.MATSimAppCommand;
-import org.matsim.core.population.PersonUtils;
-import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.ParallelPersonAlgorithmUtils;
 import org.matsim.core.population.algorithms.PersonAlgorithm;
 import org.matsim.core.router.TripStructureUtils;
 import org.matsim.prepare.RunOpenBerlinCalibration;
 import picocli.CommandLine;
 
-import java.io.IOException;
 import java.math.BigInteger;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.*;
 
@@ -31,11 +24,6 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 
 	private static final Logger log = LogManager.getLogger(RunActivitySampling.class);
 
-	/**
-	 * Maps person index to list of activities.
-	 */
-	private final Map<String, List<CSVRecord>> activities = new HashMap<>();
-
 	@CommandLine.Option(names = "--input", description = "Path to input population", required = true)
 	private Path input;
 	@CommandLine.Option(names = "--output", description = "Output path for population", required = true)
@@ -49,6 +37,8 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 
 	private PopulationFactory factory;
 	private PersonMatcher matcher;
+	private PersonTable persons;
+	private ActivityTable activities;
 
 	/**
 	 * Default constructor. Can only be used with command line.
@@ -59,9 +49,10 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 	/**
 	 * Constructor that allows to use the run method directly and not as command.
 	 */
-	RunActivitySampling(PersonMatcher matcher, Map<String, List<CSVRecord>> activities, PopulationFactory factory, long seed) {
+	RunActivitySampling(PersonMatcher matcher, ActivityTable activities, PopulationFactory factory, long seed) {
 		this.matcher = matcher;
-		this.activities.putAll(activities);
+		this.persons = new PersonTable(matcher);
+		this.activities = activities;
 		this.factory = factory;
 		this.seed = seed;
 	}
@@ -71,9 +62,9 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 	}
 
 	/**
-	 * Create daily plan from a list of entries.
+	 * Create daily plan from the activities of one person in the table.
 	 */
-	public static Plan createPlan(Coord homeCoord, List<CSVRecord> activities, SplittableRandom rnd, PopulationFactory factory) {
+	public static Plan createPlan(Coord homeCoord, ActivityTable activities, int person, SplittableRandom rnd, PopulationFactory factory) {
 		Plan plan = factory.createPlan();
 
 		Activity a = null;
@@ -85,24 +76,25 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 		double homeDist = 0;
 		boolean arrivedHome = false;
 
-		for (int i = 0; i < activities.size(); i++) {
+		int start = activities.getStart(person);
+		int end = activities.getEnd(person);
 
-			CSVRecord act = activities.get(i);
+		for (int i = start; i < end; i++) {
 
-			String actType = act.get("type");
+			String actType = activities.getType(i);
 
 			// First and last activities that are other are changed to home
-			if (actType.equals("other") && (i == 0 || i == activities.size() - 1))
+			if (actType.equals("other") && (i == start || i == end - 1))
 				actType = "home";
 
-			int duration = (int) Double.parseDouble(act.get("duration"));
+			int duration = activities.getDuration(i);
 
 			if (actType.equals("home")) {
 				a = factory.createActivityFromCoord("home", homeCoord);
 			} else
 				a = factory.createActivityFromLinkId(actType, Id.createLinkId("unassigned"));
 
-			double legDuration = Double.parseDouble(act.get("leg_duration"));
+			double legDuration = activities.getLegDuration(i);
 
 			if (plan.getPlanElements().isEmpty()) {
 				// Add little
@@ -129,15 +121,15 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 				startTime += seconds;
 			}
 
-			double legDist = Double.parseDouble(act.get("leg_dist"));
+			double legDist = activities.getLegDist(i);
 
-			if (i > 0) {
+			if (i > start) {
 				a.getAttributes().putAttribute("orig_dist", legDist);
 				a.getAttributes().putAttribute("orig_duration", legDuration);
 			}
 
 			if (!plan.getPlanElements().isEmpty()) {
-				lastMode = act.get("leg_mode");
+				lastMode = activities.getLegMode(i);
 
 				// other mode is initialized as walk
 				if (lastMode.equals("other"))
@@ -181,45 +173,6 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 		return plan;
 	}
 
-	/**
-	 * Read and group activities by person id.
-	 */
-	public static Map<String, List<CSVRecord>> readActivities(Path csv) throws IOException {
-
-		String currentId = null;
-		List<CSVRecord> current = null;
-		Map<String, List<CSVRecord>> activities = new LinkedHashMap<>();
-		int i = 0;
-
-
-		try (CSVParser parser = CSVParser.parse(csv, StandardCharsets.UTF_8,
-			CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build())) {
-			for (CSVRecord r : parser) {
-
-				String pId = r.get("p_id");
-
-				if (!Objects.equals(pId, currentId)) {
-					if (current != null)
-						activities.put(currentId, current);
-
-					currentId = pId;
-					current = new ArrayList<>();
-				}
-
-				current.add(r);
-				i++;
-			}
-		}
-
-		if (current != null && !current.isEmpty()) {
-			activities.put(currentId, current);
-		}
-
-		log.info("Read {} activities for {} persons", i, activities.size());
-
-		return activities;
-	}
-
 	/**
 	 * Randomize the duration slightly, depending on total duration.
 	 */
@@ -239,17 +192,18 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 	@Override
 	public Integer call() throws Exception {
 
-		Population population = PopulationUtils.readPopulation(input.toString());
+		Population population = PopulationSnapshot.readPopulation(input.toString());
 
 		matcher = new PersonMatcher("idx", personsPath);
+		persons = new PersonTable(matcher);
 
-		activities.putAll(readActivities(activityPath));
+		activities = ActivityTable.read(activityPath);
 
 		factory = population.getFactory();
 
 		ParallelPersonAlgorithmUtils.run(population, 8, this);
 
-		PopulationUtils.writePopulation(population, output.toString());
+		PopulationSnapshot.writePopulation(population, output.toString());
 
 		double atHome = 0;
 		for (Person person : population.getPersons().values()) {
@@ -272,60 +226,33 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 		SplittableRandom rnd = initRandomNumberGenerator(person);
 
 		String idx = matcher.matchPerson(person, rnd);
-		CSVRecord row = matcher.getPerson(idx);
-
-		copyAttributes(row, person);
+		int row = persons.getRow(idx);
 
-		String mobile = row.get("mobile_on_day");
+		persons.copyAttributes(row, person);
 
-		// ensure mobile agents have a valid plan
-		switch (mobile.toLowerCase()) {
+		// ensure mobile agents have a valid plan, otherwise keep the stay home plan
+		if (persons.isMobile(row)) {
+			int p = activities.getPerson(idx);
 
-			case "true" -> {
-				List<CSVRecord> activities = this.activities.get(idx);
+			if (p < 0)
+				throw new AssertionError("No activities for mobile person " + idx);
 
-				if (activities == null)
-					throw new AssertionError("No activities for mobile person " + idx);
+			if (activities.getStart(p) == activities.getEnd(p))
+				throw new AssertionError("Activities for mobile agent can not be empty.");
 
-				if (activities.size() == 0)
-					throw new AssertionError("Activities for mobile agent can not be empty.");
+			person.removePlan(person.getSelectedPlan());
+			Plan plan = createPlan(Attributes.getHomeCoord(person), activities, p, rnd, factory);
 
-				person.removePlan(person.getSelectedPlan());
-				Plan plan = createPlan(Attributes.getHomeCoord(person), activities, rnd, factory);
-
-				person.addPlan(plan);
-				person.setSelectedPlan(plan);
-			}
-
-			case "false" -> {
-				// Keep the stay home plan
-			}
-
-			default -> throw new AssertionError("Invalid mobile_on_day attribute " + mobile);
+			person.addPlan(plan);
+			person.setSelectedPlan(plan);
 		}
 	}
 
 	/**
-	 * Copy attributes from csv record to person.
+	 * Copy attributes of a reference person to a person.
 	 */
-	public void copyAttributes(CSVRecord row, Person person) {
-		PersonUtils.setCarAvail(person, row.get("car_avail").equals("True") ? "always" : "never");
-		PersonUtils.setLicence(person, row.get("driving_license").toLowerCase());
-
-		double income = Double.parseDouble(row.get("income"));
-
-		// Define a minimum income
-		PersonUtils.setIncome(person, Math.max(249, (int) Math.round(income)));
-
-		person.getAttributes().putAttribute(Attributes.BIKE_AVAIL, row.get("bike_avail").equals("True") ? "always" : "never");
-		person.getAttributes().putAttribute(Attributes.PT_ABO_AVAIL, row.get("pt_abo_avail").equals("True") ? "always" : "never");
-
-		person.getAttributes().putAttribute(Attributes.EMPLOYMENT, row.get("employment"));
-		person.getAttributes().putAttribute(Attributes.RESTRICTED_MOBILITY, row.get("restricted_mobility").equals("True"));
-		person.getAttributes().putAttribute(Attributes.ECONOMIC_STATUS, row.get("economic_status"));
-		person.getAttributes().putAttribute(Attributes.HOUSEHOLD_SIZE, Integer.parseInt(row.get("n_persons")));
-		person.getAttributes().putAttribute(Attributes.HOUSEHOLD_EQUIVALENT_SIZE, Double.parseDouble(row.get("equivalent_size")));
-		person.getAttributes().putAttribute(Attributes.HOUSEHOLD_TYPE, row.get("type"));
+	public void copyAttributes(String personId, Person person) {
+		persons.copyAttributes(persons.getRow(personId), person);
 	}
 
 	/**
@@ -341,7 +268,7 @@ public final class RunActivitySampling implements MATSimAppCommand, PersonAlgori
 	 */
 	@SuppressWarnings("OverloadMethodsDeclarationOrder")
 	public Plan createPlan(Coord homeCoord, String personId, SplittableRandom rnd) {
-		return createPlan(homeCoord, activities.get(personId), rnd, factory);
+		return createPlan(homeCoord, activities, activities.getPerson(personId), rnd, factory);
 	}
 
 	private record Context(SplittableRandom rnd) {
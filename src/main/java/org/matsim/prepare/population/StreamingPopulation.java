@@ -0,0 +1,212 @@
+package org.matsim.prepare.population;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.io.PopulationWriter;
+import org.matsim.core.population.io.StreamingPopulationReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads and writes populations person by person, so that only a bounded number of persons is held in memory.
+ * Xml and {@link PopulationSnapshot} files are supported, the format is determined by the file extension.
+ */
+public final class StreamingPopulation {
+
+	/**
+	 * Number of persons that are read ahead.
+	 */
+	private static final int CAPACITY = 1000;
+
+	private StreamingPopulation() {
+	}
+
+	/**
+	 * Open a population file for reading.
+	 */
+	public static Reader openReader(String path) {
+		if (PopulationSnapshot.isSnapshot(path)) {
+			try {
+				return PopulationSnapshot.openReader(path, PopulationUtils.getFactory());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		return new XmlReader(path);
+	}
+
+	/**
+	 * Open a population file for writing.
+	 *
+	 * @param attributes attributes of the population, e.g. the coordinate system
+	 */
+	public static Writer openWriter(String path, Attributes attributes) {
+		if (PopulationSnapshot.isSnapshot(path)) {
+			try {
+				return PopulationSnapshot.openWriter(path, attributes);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		return new XmlWriter(path, attributes);
+	}
+
+	/**
+	 * Iterates over the persons of a population file in the order they are stored.
+	 */
+	public interface Reader extends Iterator<Person>, Closeable {
+
+		/**
+		 * Attributes of the population. Only available after {@link #hasNext()} has been called once.
+		 */
+		Attributes getAttributes();
+
+		@Override
+		void close();
+
+	}
+
+	/**
+	 * Writes persons one after another.
+	 */
+	public interface Writer extends Closeable {
+
+		/**
+		 * Write a person, which may not be modified afterward.
+		 */
+		void write(Person person);
+
+		@Override
+		void close();
+
+	}
+
+	/**
+	 * Parses xml in a separate thread, persons are passed through a bounded queue.
+	 */
+	private static final class XmlReader implements Reader {
+
+		/**
+		 * Marks the end of the file.
+		 */
+		private static final Object END = new Object();
+
+		private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(CAPACITY);
+		private final Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		private final Thread thread;
+
+		private volatile Throwable error;
+		private Object next;
+
+		private XmlReader(String path) {
+			thread = new Thread(() -> {
+				try {
+					StreamingPopulationReader reader = new StreamingPopulationReader(scenario);
+					reader.addAlgorithm(this::put);
+					reader.readFile(path);
+				} finally {
+					put(END);
+				}
+			}, "population-reader");
+
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler((t, e) -> error = e);
+			thread.start();
+		}
+
+		private void put(Object person) {
+			try {
+				queue.put(person);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Reading was interrupted", e);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next == null) {
+				try {
+					next = queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while reading", e);
+				}
+			}
+
+			if (next == END) {
+				// Wait for the error handler to be called
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				if (error != null)
+					throw new IllegalStateException("Error reading population", error);
+			}
+
+			return next != END;
+		}
+
+		@Override
+		public Person next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			Person p = (Person) next;
+			next = null;
+			return p;
+		}
+
+		@Override
+		public Attributes getAttributes() {
+			return scenario.getPopulation().getAttributes();
+		}
+
+		@Override
+		public void close() {
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Writes xml using the streaming methods of {@link PopulationWriter}.
+	 */
+	private static final class XmlWriter implements Writer {
+
+		private final PopulationWriter writer;
+
+		private XmlWriter(String path, Attributes attributes) {
+			// Empty population that only holds the attributes for the header
+			Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+			attributes.getAsMap().forEach(population.getAttributes()::putAttribute);
+
+			writer = new PopulationWriter(population);
+			writer.writeStartPlans(path);
+		}
+
+		@Override
+		public void write(Person person) {
+			writer.writePerson(person);
+		}
+
+		@Override
+		public void close() {
+			writer.writeEndPlans();
+		}
+	}
+}
@@ -2,7 +2,11 @@ package org.matsim.run;
 
 import com.google.inject.Key;
 import com.google.inject.name.Names;
+import org.matsim.analysis.DTVAnalysis;
+import org.matsim.analysis.EventsPass;
 import org.matsim.analysis.QsimTimingModule;
+import org.matsim.analysis.TravelTimeComparison;
+import org.matsim.analysis.VolumesAnalyzer;
 import org.matsim.analysis.personMoney.PersonMoneyEventsAnalysisModule;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.TransportMode;
@@ -27,8 +31,11 @@ import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutilityF
 import org.matsim.core.router.costcalculators.TravelDisutilityFactory;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.scoring.functions.ScoringParametersForPerson;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.dashboard.DTVComparisonDashboard;
 import org.matsim.run.scoring.AdvancedScoringConfigGroup;
 import org.matsim.run.scoring.AdvancedScoringModule;
+import org.matsim.simwrapper.SimWrapper;
 import org.matsim.simwrapper.SimWrapperConfigGroup;
 import org.matsim.simwrapper.SimWrapperModule;
 import picocli.CommandLine;
@@ -57,6 +64,12 @@ public class OpenBerlinScenario extends MATSimApplication {
 		defaultValue = DefaultPlanStrategiesModule.DefaultSelector.ChangeExpBeta)
 	private String planSelector;
 
+	@CommandLine.Option(names = "--jfr", description = "Write a flight recording with controller phase timings to the output directory.")
+	private boolean jfr;
+
+	@CommandLine.Option(names = "--dtv", description = "Path to dtv counts matched to links, adds the DTV comparison dashboard.")
+	private String dtv;
+
 	public OpenBerlinScenario() {
 		super(String.format("input/v%s/berlin-v%s.config.xml", VERSION, VERSION));
 	}
@@ -65,6 +78,19 @@ public class OpenBerlinScenario extends MATSimApplication {
 		MATSimApplication.run(OpenBerlinScenario.class, args);
 	}
 
+	@Override
+	public Integer call() throws Exception {
+
+		// Analyses of the dashboards, which run after the simulation, read the output events only once
+		try (EventsPass pass = EventsPass.open()) {
+			pass.register(TravelTimeCalculator.class, TravelTimeComparison::createTravelTimes);
+			if (dtv != null)
+				pass.register(VolumesAnalyzer.class, DTVAnalysis::createVolumes);
+
+			return super.call();
+		}
+	}
+
 	@Override
 	protected Config prepareConfig(Config config) {
 
@@ -154,11 +180,15 @@ public class OpenBerlinScenario extends MATSimApplication {
 	@Override
 	protected void prepareControler(Controler controler) {
 
-		controler.addOverridingModule(new SimWrapperModule());
+		SimWrapper sw = SimWrapper.create(controler.getConfig());
+		if (dtv != null)
+			sw.addDashboard(new DTVComparisonDashboard(dtv));
+
+		controler.addOverridingModule(new SimWrapperModule(sw));
 
 		controler.addOverridingModule(new TravelTimeBinding());
 
-		controler.addOverridingModule(new QsimTimingModule());
+		controler.addOverridingModule(new QsimTimingModule(jfr));
 
 		// AdvancedScoring is specific to matsim-berlin!
 		if (ConfigUtils.hasModule(controler.getConfig(), AdvancedScoringConfigGroup.class)) {
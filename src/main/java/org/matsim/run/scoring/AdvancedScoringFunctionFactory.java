@@ -10,6 +10,9 @@ import org.matsim.core.scoring.ScoringFunctionFactory;
 import org.matsim.core.scoring.SumScoringFunction;
 import org.matsim.core.scoring.functions.*;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Same as {@link org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory} but with {@link PiecewiseLinearlLegScoring}.
  */
@@ -20,6 +23,7 @@ public class AdvancedScoringFunctionFactory implements ScoringFunctionFactory {
 	private final AnalysisMainModeIdentifier mmi;
 	private final ScoringParametersForPerson params;
 	private final PseudoRandomScorer pseudoRNG;
+	private final ModeIndex modes;
 
 	@Inject
 	public AdvancedScoringFunctionFactory(Config config, AnalysisMainModeIdentifier mmi,
@@ -29,25 +33,50 @@ public class AdvancedScoringFunctionFactory implements ScoringFunctionFactory {
 		this.mmi = mmi;
 		this.params = params;
 		this.pseudoRNG = pseudoRNG;
+		this.modes = ModeIndex.fromConfig(config);
 	}
 
 	@Override
 	public ScoringFunction createNewScoringFunction(Person person) {
-		final ScoringParameters parameters = params.getScoringParameters(person);
-
 		SumScoringFunction sumScoringFunction = new SumScoringFunction();
-		sumScoringFunction.addScoringFunction(new CharyparNagelActivityScoring(parameters));
+		createComponents(person).values().forEach(sumScoringFunction::addScoringFunction);
+		return sumScoringFunction;
+	}
+
+	/**
+	 * Create the named parts of the scoring function for a person, in the order they are added to the {@link SumScoringFunction}.
+	 */
+	public Map<String, SumScoringFunction.BasicScoring> createComponents(Person person) {
+
+		final ScoringParameters parameters;
+		final PiecewiseLinearlLegScoring legScoring;
+		final double marginalUtilityOfMoney;
+
+		// Individual parameters are read from the shared tables, without creating parameters per person
+		if (params instanceof IndividualPersonScoringParameters individual) {
+			IndividualPersonScoringParameters.PersonParameters p = individual.getPersonParameters(person);
+			parameters = p.base();
+			legScoring = new PiecewiseLinearlLegScoring(p);
+			marginalUtilityOfMoney = p.marginalUtilityOfMoney();
+		} else {
+			parameters = params.getScoringParameters(person);
+			legScoring = new PiecewiseLinearlLegScoring(parameters, modes);
+			marginalUtilityOfMoney = parameters.marginalUtilityOfMoney;
+		}
+
+		Map<String, SumScoringFunction.BasicScoring> components = new LinkedHashMap<>();
+		components.put("act", new CharyparNagelActivityScoring(parameters));
 
 		if (scoring.pseudoRamdomScale > 0) {
-			sumScoringFunction.addScoringFunction(new PseudoRandomTripScoring(person.getId(), mmi, pseudoRNG));
+			components.put("trips", new PseudoRandomTripScoring(person.getId(), mmi, pseudoRNG));
 		}
 
 		// replaced original leg scoring
-		sumScoringFunction.addScoringFunction(new PiecewiseLinearlLegScoring(parameters, config.transit().getTransitModes()));
-		sumScoringFunction.addScoringFunction(new CharyparNagelMoneyScoring(parameters));
-		sumScoringFunction.addScoringFunction(new CharyparNagelAgentStuckScoring(parameters));
-		sumScoringFunction.addScoringFunction(new ScoreEventScoring());
-		return sumScoringFunction;
+		components.put("legs", legScoring);
+		components.put("money", new CharyparNagelMoneyScoring(marginalUtilityOfMoney));
+		components.put("stuck", new CharyparNagelAgentStuckScoring(parameters));
+		components.put("events", new ScoreEventScoring());
+		return components;
 	}
 
 }
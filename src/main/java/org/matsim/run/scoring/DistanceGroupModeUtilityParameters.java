@@ -15,12 +15,19 @@ public class DistanceGroupModeUtilityParameters extends ModeUtilityParameters {
 	 * Constructor which copies the base params from given modeParams.
 	 */
 	DistanceGroupModeUtilityParameters(ModeUtilityParameters modeParams, DeltaBuilder delta, DistanceGroup[] groups) {
+		this(modeParams, delta.constant, delta.dailyUtilityConstant, groups);
+	}
+
+	/**
+	 * Constructor which copies the base params from given modeParams and adds the deltas for the constants.
+	 */
+	DistanceGroupModeUtilityParameters(ModeUtilityParameters modeParams, double deltaConstant, double deltaDailyUtilityConstant, DistanceGroup[] groups) {
 		super(modeParams.marginalUtilityOfTraveling_s,
 			modeParams.marginalUtilityOfDistance_m,
 			modeParams.monetaryDistanceCostRate,
-			modeParams.constant + delta.constant,
+			modeParams.constant + deltaConstant,
 			modeParams.dailyMoneyConstant,
-			modeParams.dailyUtilityConstant + delta.dailyUtilityConstant);
+			modeParams.dailyUtilityConstant + deltaDailyUtilityConstant);
 
 		this.groups = groups;
 	}
@@ -29,6 +36,13 @@ public class DistanceGroupModeUtilityParameters extends ModeUtilityParameters {
 	 * Calculate the utility for given distance.
 	 */
 	public double calcUtilityDistDelta(double dist) {
+		return calcUtilityDistDelta(groups, dist);
+	}
+
+	/**
+	 * Calculate the utility for given distance and distance groups.
+	 */
+	static double calcUtilityDistDelta(DistanceGroup[] groups, double dist) {
 
 		if (groups == null)
 			return 0;
@@ -16,8 +16,8 @@ import org.apache.commons.statistics.distribution.TruncatedNormalDistribution;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.application.analysis.population.Category;
@@ -51,13 +51,13 @@ public class IndividualPersonScoringParameters implements ScoringParametersForPe
 	 */
 	final Map<Id<Person>, Object2DoubleMap<String>> info = new ConcurrentHashMap<>();
 	/**
-	 * Cache instances of {@link ActivityUtilityParameters} for each subpopulation.
+	 * Shared parameters for each subpopulation.
 	 */
-	private final Map<String, Map<String, ActivityUtilityParameters>> actUtils = new ConcurrentHashMap<>();
+	private final Map<String, SubpopulationParameters> subpopulations = new ConcurrentHashMap<>();
 	/**
-	 * Cache instances of {@link ScoringParameters} for each person.
+	 * Modes that are known to the scoring, including all modes with individual parameters.
 	 */
-	private final IdMap<Person, ScoringParameters> cache;
+	private final ModeIndex modeIndex;
 	/**
 	 * Cache and reuse distance group arrays.
 	 */
@@ -80,6 +80,11 @@ public class IndividualPersonScoringParameters implements ScoringParametersForPe
 	 * Average income of all agents with this attribute. Can be NaN if not used.
 	 */
 	private final double globalAvgIncome;
+	/**
+	 * Person specific deltas, indexed by person ordinal. Computed once on first request for each person.
+	 * The table is replaced by a larger copy if persons are added after initialization.
+	 */
+	private volatile PersonScoringDeltas deltas;
 
 	@Inject
 	public IndividualPersonScoringParameters(Scenario scenario) {
@@ -89,7 +94,6 @@ public class IndividualPersonScoringParameters implements ScoringParametersForPe
 		this.transitConfig = scenario.getConfig().transit();
 		this.globalAvgIncome = computeAvgIncome(scenario.getPopulation());
 		this.categories = Category.fromConfigParams(this.scoring.getScoringParameters());
-		this.cache = new IdMap<>(Person.class, scenario.getPopulation().getPersons().size());
 
 		// Create uncorrelated seed from the global seed
 		SplittableRandom rng = new SplittableRandom(scenario.getConfig().global().getRandomSeed());
@@ -99,6 +103,24 @@ public class IndividualPersonScoringParameters implements ScoringParametersForPe
 
 		byte[] seed = Longs.toByteArray(rng.nextLong());
 		this.rnd = ThreadLocal.withInitial(() -> new Context(seed));
+
+		String[] modes = scoring.getScoringParameters().stream()
+			.flatMap(p -> p.getModeParams().keySet().stream())
+			.distinct()
+			.sorted()
+			.toArray(String[]::new);
+
+		this.deltas = new PersonScoringDeltas(modes, Id.getNumberOfIds(Person.class));
+
+		Set<String> allModes = new TreeSet<>(Arrays.asList(modes));
+		for (ScoringConfigGroup.ScoringParameterSet params : basicScoring.getScoringParametersPerSubpopulation().values()) {
+			allModes.addAll(params.getModes().keySet());
+		}
+
+		this.modeIndex = new ModeIndex(allModes, transitConfig.getTransitModes());
+
+		log.info("Allocated scoring delta table for {} persons and {} modes using {} KB.",
+			deltas.size(), modes.length, deltas.getMemoryUsage() / 1024);
 	}
 
 	static DistanceGroup[] calcDistanceGroups(List<Integer> dists, DoubleList distUtils) {
@@ -174,123 +196,210 @@ public class IndividualPersonScoringParameters implements ScoringParametersForPe
 		}
 	}
 
+	/**
+	 * Parameters of a person, consisting of the shared parameters of its subpopulation and its row in the delta table.
+	 * No person specific objects are created, which is preferred over {@link #getScoringParameters(Person)}.
+	 */
+	PersonParameters getPersonParameters(Person person) {
+		SubpopulationParameters sp = getSubpopulationParameters(PopulationUtils.getSubpopulation(person));
+		int row = person.getId().index();
+		PersonScoringDeltas d = getDeltas(person, row);
+
+		double money = d.getMarginalUtilityOfMoney(row);
+		if (Double.isNaN(money))
+			money = sp.base.marginalUtilityOfMoney;
+
+		return new PersonParameters(sp.base, sp.modeParams, modeIndex, d.getState(row) == PersonScoringDeltas.INDIVIDUAL ? d : null,
+			row, sp.deltaModes, money);
+	}
+
+	/**
+	 * Build full scoring parameters of a person. Creates a new instance for each person with individual parameters,
+	 * the scoring function uses {@link #getPersonParameters(Person)} instead.
+	 */
 	@Override
 	public ScoringParameters getScoringParameters(Person person) {
 
-		return this.cache.computeIfAbsent(person.getId(), id -> {
+		SubpopulationParameters sp = getSubpopulationParameters(PopulationUtils.getSubpopulation(person));
 
-			String subpopulation = PopulationUtils.getSubpopulation(person);
-			ScoringConfigGroup.ScoringParameterSet scoringParameters = basicScoring.getScoringParameters(subpopulation);
+		int row = person.getId().index();
+		PersonScoringDeltas d = getDeltas(person, row);
 
-			// Activity params can be reused per subpopulation
-			Map<String, ActivityUtilityParameters> activityParams = actUtils.computeIfAbsent(subpopulation, k -> {
-				Map<String, ActivityUtilityParameters> ap = new TreeMap<>();
-				for (ScoringConfigGroup.ActivityParams params : scoringParameters.getActivityParams()) {
-					ActivityUtilityParameters.Builder factory = new ActivityUtilityParameters.Builder(params);
-					ap.put(params.getActivityType(), factory.build());
-				}
+		if (d.getState(row) == PersonScoringDeltas.BASE)
+			return sp.base;
 
-				// The code to add this activity type is always copied between different scoring implementations
-				// it might not be actually needed anymore (because default staging activities are also added elsewhere)
-				// but it's not clear if it's safe to remove it.
-				if (transitConfig.isUseTransit()) {
-					ScoringConfigGroup.ActivityParams transitActivityParams = new ScoringConfigGroup.ActivityParams(PtConstants.TRANSIT_ACTIVITY_TYPE);
-					transitActivityParams.setTypicalDuration(120.0);
-					transitActivityParams.setOpeningTime(0.);
-					transitActivityParams.setClosingTime(0.);
-					ActivityUtilityParameters.Builder modeParamsBuilder = new ActivityUtilityParameters.Builder(transitActivityParams);
-					modeParamsBuilder.setScoreAtAll(false);
-					ap.put(PtConstants.TRANSIT_ACTIVITY_TYPE, modeParamsBuilder.build());
-				}
+		ScoringParameters.Builder builder = new ScoringParameters.Builder(basicScoring,
+			sp.params, sp.activityParams, scenario.getConfig().scenario());
 
-				return ap;
-			});
+		double money = d.getMarginalUtilityOfMoney(row);
+		if (!Double.isNaN(money))
+			builder.setMarginalUtilityOfMoney(money);
 
-			ScoringParameters.Builder builder = new ScoringParameters.Builder(basicScoring,
-				scoringParameters, activityParams, scenario.getConfig().scenario());
+		for (int m = 0; m < d.getNumberOfModes(); m++) {
+			if (d.hasMode(row, m)) {
+				String mode = d.getMode(m);
+				builder.setModeParameters(mode, new DistanceGroupModeUtilityParameters(builder.getModeParameters(mode),
+					d.getConstant(row, m), d.getDailyConstant(row, m), d.getGroups(row, m)));
+			}
+		}
 
-			Double personalIncome = PersonUtils.getIncome(person);
-			// Income dependent scoring might be disabled
-			if (!Double.isNaN(globalAvgIncome) && personalIncome != null) {
-				if (personalIncome != 0) {
-					builder.setMarginalUtilityOfMoney(scoringParameters.getMarginalUtilityOfMoney() *
-						Math.pow(globalAvgIncome / personalIncome, this.scoring.incomeExponent));
-				} else {
-					log.warn("You have set income to {} for person {}. This is invalid and gets ignored.Instead, the marginalUtilityOfMoney is derived from the subpopulation's scoring parameters.", personalIncome, person);
-				}
+		return builder.build();
+	}
+
+	/**
+	 * Return the delta table, which contains the computed values for the given person.
+	 */
+	private PersonScoringDeltas getDeltas(Person person, int row) {
+		PersonScoringDeltas d = deltas;
+		if (row < d.size() && d.getState(row) != PersonScoringDeltas.UNKNOWN)
+			return d;
+
+		// Each person is computed only once, writes to the table are serialized
+		synchronized (this) {
+			d = deltas;
+			if (row >= d.size()) {
+				d = d.grow(Math.max(row + 1, Id.getNumberOfIds(Person.class)));
+				deltas = d;
 			}
 
-			Map<String, DistanceGroupModeUtilityParameters.DeltaBuilder> deltaParams = new HashMap<>();
+			if (d.getState(row) == PersonScoringDeltas.UNKNOWN)
+				computeDeltas(person, d, row);
 
-			this.rnd.get().setSeed(person);
+			return d;
+		}
+	}
 
-			for (AdvancedScoringConfigGroup.ScoringParameters parameter : scoring.getScoringParameters()) {
+	/**
+	 * Parameters that can be shared for the whole subpopulation.
+	 */
+	private SubpopulationParameters getSubpopulationParameters(String subpopulation) {
 
-				if (Category.matchAttributesWithConfig(person.getAttributes(), parameter, categories)) {
-					for (Map.Entry<String, AdvancedScoringConfigGroup.ModeParams> mode : parameter.getModeParams().entrySet()) {
+		// Null keys are not supported by the map
+		return subpopulations.computeIfAbsent(Objects.requireNonNullElse(subpopulation, ""), k -> {
 
-						DistanceGroupModeUtilityParameters.DeltaBuilder b =
-							deltaParams.computeIfAbsent(mode.getKey(), k -> new DistanceGroupModeUtilityParameters.DeltaBuilder());
+			ScoringConfigGroup.ScoringParameterSet scoringParameters = basicScoring.getScoringParameters(subpopulation);
 
-						b.addUtilsDistance(mode.getValue());
-						addDeltaParams(this.rnd.get(), b, mode.getValue());
-					}
-				}
+			Map<String, ActivityUtilityParameters> ap = new TreeMap<>();
+			for (ScoringConfigGroup.ActivityParams params : scoringParameters.getActivityParams()) {
+				ActivityUtilityParameters.Builder factory = new ActivityUtilityParameters.Builder(params);
+				ap.put(params.getActivityType(), factory.build());
 			}
 
-			Object attr = person.getAttributes().getAttribute("utilDelta");
-			Object2DoubleMap<String> existing = new Object2DoubleOpenHashMap<>();
-			if (attr instanceof String s) {
-				String[] split = s.split("\\|");
-				for (String s1 : split) {
-					String[] split1 = s1.split("=");
-					existing.put(split1[0], Double.parseDouble(split1[1]));
-				}
+			// The code to add this activity type is always copied between different scoring implementations
+			// it might not be actually needed anymore (because default staging activities are also added elsewhere)
+			// but it's not clear if it's safe to remove it.
+			if (transitConfig.isUseTransit()) {
+				ScoringConfigGroup.ActivityParams transitActivityParams = new ScoringConfigGroup.ActivityParams(PtConstants.TRANSIT_ACTIVITY_TYPE);
+				transitActivityParams.setTypicalDuration(120.0);
+				transitActivityParams.setOpeningTime(0.);
+				transitActivityParams.setClosingTime(0.);
+				ActivityUtilityParameters.Builder modeParamsBuilder = new ActivityUtilityParameters.Builder(transitActivityParams);
+				modeParamsBuilder.setScoreAtAll(false);
+				ap.put(PtConstants.TRANSIT_ACTIVITY_TYPE, modeParamsBuilder.build());
 			}
 
-			for (Map.Entry<String, DistanceGroupModeUtilityParameters.DeltaBuilder> mode : deltaParams.entrySet()) {
-				ModeUtilityParameters params = builder.getModeParameters(mode.getKey());
-				DistanceGroupModeUtilityParameters.DeltaBuilder delta = mode.getValue();
+			ScoringParameters base = new ScoringParameters.Builder(basicScoring, scoringParameters, ap, scenario.getConfig().scenario()).build();
+			// Modes that are resolved to the walk parameters also use the walk deltas
+			int[] deltaModes = new int[modeIndex.size()];
+			for (int i = 0; i < deltaModes.length; i++) {
+				String mode = modeIndex.getMode(i);
+				deltaModes[i] = deltas.getModeIndex(base.modeParams.containsKey(mode) ? mode : TransportMode.walk);
+			}
 
-				// These arrays are re-used if possible
-				DistanceGroup[] groups = distGroups.computeIfAbsent(delta.getPerDistGroup(), k -> calcDistanceGroups(scoring.distGroups, k));
+			return new SubpopulationParameters(scoringParameters, ap, base, modeIndex.resolve(base), deltaModes);
+		});
+	}
 
-				// This may overwrite the preferences with the one stored
-				loadPreferences(mode.getKey(), delta, person, existing);
+	/**
+	 * Compute the deltas of one person and store them in given row.
+	 */
+	private void computeDeltas(Person person, PersonScoringDeltas d, int row) {
+
+		SubpopulationParameters sp = getSubpopulationParameters(PopulationUtils.getSubpopulation(person));
+		boolean individual = false;
+
+		Double personalIncome = PersonUtils.getIncome(person);
+		// Income dependent scoring might be disabled
+		if (!Double.isNaN(globalAvgIncome) && personalIncome != null) {
+			if (personalIncome != 0) {
+				individual = true;
+				d.setMarginalUtilityOfMoney(row, sp.params.getMarginalUtilityOfMoney() *
+					Math.pow(globalAvgIncome / personalIncome, this.scoring.incomeExponent));
+			} else {
+				log.warn("You have set income to {} for person {}. This is invalid and gets ignored.Instead, the marginalUtilityOfMoney is derived from the subpopulation's scoring parameters.", personalIncome, person);
+			}
+		}
 
-				DistanceGroupModeUtilityParameters p = new DistanceGroupModeUtilityParameters(params, delta, groups);
-				builder.setModeParameters(mode.getKey(), p);
+		Map<String, DistanceGroupModeUtilityParameters.DeltaBuilder> deltaParams = new HashMap<>();
 
-				// Collect final adjustments information
-				Object2DoubleMap<String> values = info.computeIfAbsent(person.getId(), k -> new Object2DoubleOpenHashMap<>());
+		this.rnd.get().setSeed(person);
 
-				// Write the overall constants, but only if they are different to the base values
-				if (delta.constant != 0) {
-					values.put(mode.getKey() + "_constant", p.constant);
-					existing.put(mode.getKey() + "_constant", delta.constant);
-				}
+		for (AdvancedScoringConfigGroup.ScoringParameters parameter : scoring.getScoringParameters()) {
 
-				if (delta.dailyUtilityConstant != 0) {
-					values.put(mode.getKey() + "_dailyConstant", p.dailyUtilityConstant);
-					existing.put(mode.getKey() + "_dailyConstant", delta.dailyUtilityConstant);
-				}
+			if (Category.matchAttributesWithConfig(person.getAttributes(), parameter, categories)) {
+				for (Map.Entry<String, AdvancedScoringConfigGroup.ModeParams> mode : parameter.getModeParams().entrySet()) {
 
-				if (groups != null) {
-					for (DistanceGroup group : groups) {
-						values.put("%s_dist_%.0f".formatted(mode.getKey(), group.dist()), group.utilPerM());
-					}
+					DistanceGroupModeUtilityParameters.DeltaBuilder b =
+						deltaParams.computeIfAbsent(mode.getKey(), k -> new DistanceGroupModeUtilityParameters.DeltaBuilder());
+
+					b.addUtilsDistance(mode.getValue());
+					addDeltaParams(this.rnd.get(), b, mode.getValue());
 				}
+			}
+		}
 
-				header.addAll(values.keySet());
+		Object attr = person.getAttributes().getAttribute("utilDelta");
+		Object2DoubleMap<String> existing = new Object2DoubleOpenHashMap<>();
+		if (attr instanceof String s) {
+			String[] split = s.split("\\|");
+			for (String s1 : split) {
+				String[] split1 = s1.split("=");
+				existing.put(split1[0], Double.parseDouble(split1[1]));
 			}
+		}
+
+		for (Map.Entry<String, DistanceGroupModeUtilityParameters.DeltaBuilder> mode : deltaParams.entrySet()) {
+			ModeUtilityParameters params = sp.base.modeParams.get(mode.getKey());
+			DistanceGroupModeUtilityParameters.DeltaBuilder delta = mode.getValue();
+
+			// These arrays are re-used if possible
+			DistanceGroup[] groups = distGroups.computeIfAbsent(delta.getPerDistGroup(), k -> calcDistanceGroups(scoring.distGroups, k));
 
-			if (!existing.isEmpty()) {
-				Joiner.MapJoiner mapJoiner = Joiner.on("|").withKeyValueSeparator("=");
-				person.getAttributes().putAttribute("utilDelta", mapJoiner.join(existing));
+			// This may overwrite the preferences with the one stored
+			loadPreferences(mode.getKey(), delta, person, existing);
+
+			d.setMode(row, d.getModeIndex(mode.getKey()), delta.constant, delta.dailyUtilityConstant, groups);
+			individual = true;
+
+			// Collect final adjustments information
+			Object2DoubleMap<String> values = info.computeIfAbsent(person.getId(), k -> new Object2DoubleOpenHashMap<>());
+
+			// Write the overall constants, but only if they are different to the base values
+			if (delta.constant != 0) {
+				values.put(mode.getKey() + "_constant", params.constant + delta.constant);
+				existing.put(mode.getKey() + "_constant", delta.constant);
 			}
 
-			return builder.build();
-		});
+			if (delta.dailyUtilityConstant != 0) {
+				values.put(mode.getKey() + "_dailyConstant", params.dailyUtilityConstant + delta.dailyUtilityConstant);
+				existing.put(mode.getKey() + "_dailyConstant", delta.dailyUtilityConstant);
+			}
+
+			if (groups != null) {
+				for (DistanceGroup group : groups) {
+					values.put("%s_dist_%.0f".formatted(mode.getKey(), group.dist()), group.utilPerM());
+				}
+			}
+
+			header.addAll(values.keySet());
+		}
+
+		if (!existing.isEmpty()) {
+			Joiner.MapJoiner mapJoiner = Joiner.on("|").withKeyValueSeparator("=");
+			person.getAttributes().putAttribute("utilDelta", mapJoiner.join(existing));
+		}
+
+		d.setState(row, individual ? PersonScoringDeltas.INDIVIDUAL : PersonScoringDeltas.BASE);
 	}
 
 	private void loadPreferences(String mode, DistanceGroupModeUtilityParameters.DeltaBuilder delta, Person person, Object2DoubleMap<String> existing) {
@@ -341,6 +450,29 @@ public class IndividualPersonScoringParameters implements ScoringParametersForPe
 		}
 	}
 
+	/**
+	 * Scoring config, activity parameters and base parameters of a subpopulation, shared by all its persons.
+	 */
+	private record SubpopulationParameters(ScoringConfigGroup.ScoringParameterSet params,
+										   Map<String, ActivityUtilityParameters> activityParams,
+										   ScoringParameters base,
+										   ModeUtilityParameters[] modeParams,
+										   int[] deltaModes) {
+	}
+
+	/**
+	 * Scoring parameters of one person, see {@link #getPersonParameters(Person)}.
+	 *
+	 * @param base       shared parameters of the subpopulation
+	 * @param modeParams shared mode parameters of the subpopulation, by index of {@code modes}
+	 * @param deltas     delta table, null if the person uses the base parameters
+	 * @param row        row of the person in the delta table
+	 * @param deltaModes maps mode index to the mode index in the delta table
+	 */
+	record PersonParameters(ScoringParameters base, ModeUtilityParameters[] modeParams, ModeIndex modes,
+							PersonScoringDeltas deltas, int row, int[] deltaModes, double marginalUtilityOfMoney) {
+	}
+
 	/**
 	 * Thread-local context for random number generation. This makes generation thread-safe and consistent independently of threads and order of persons.
 	 */
@@ -0,0 +1,107 @@
+package org.matsim.run.scoring;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.groups.ScoringConfigGroup;
+import org.matsim.core.scoring.functions.ModeUtilityParameters;
+import org.matsim.core.scoring.functions.ScoringParameters;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Interns transport modes to small integers, so that mode dependent values can be stored in arrays and bitmasks.
+ */
+final class ModeIndex {
+
+	/**
+	 * Maximum number of modes, which allows to use one long as set of modes.
+	 */
+	static final int MAX_MODES = 64;
+
+	private final Object2IntMap<String> index = new Object2IntOpenHashMap<>();
+	private final String[] modes;
+	private final long ptModes;
+	private final int pt;
+
+	ModeIndex(Collection<String> modes, Set<String> ptModes) {
+
+		Set<String> all = new TreeSet<>(modes);
+		all.addAll(ptModes);
+		all.add(TransportMode.walk);
+		all.add(TransportMode.transit_walk);
+		all.add(TransportMode.non_network_walk);
+		all.add(TransportMode.pt);
+
+		if (all.size() > MAX_MODES)
+			throw new IllegalArgumentException("Too many modes for scoring: " + all);
+
+		this.modes = all.toArray(String[]::new);
+		this.index.defaultReturnValue(-1);
+
+		long mask = 0;
+		for (int i = 0; i < this.modes.length; i++) {
+			index.put(this.modes[i], i);
+			if (ptModes.contains(this.modes[i]))
+				mask |= 1L << i;
+		}
+
+		this.ptModes = mask;
+		this.pt = index.getInt(TransportMode.pt);
+	}
+
+	/**
+	 * Create index for all modes in the scoring and transit config.
+	 */
+	static ModeIndex fromConfig(Config config) {
+		Set<String> modes = new TreeSet<>();
+		for (ScoringConfigGroup.ScoringParameterSet params : config.scoring().getScoringParametersPerSubpopulation().values()) {
+			modes.addAll(params.getModes().keySet());
+		}
+
+		return new ModeIndex(modes, config.transit().getTransitModes());
+	}
+
+	/**
+	 * Index of a mode.
+	 *
+	 * @return -1 if mode is unknown
+	 */
+	int get(String mode) {
+		return index.getInt(mode);
+	}
+
+	int size() {
+		return modes.length;
+	}
+
+	String getMode(int mode) {
+		return modes[mode];
+	}
+
+	int getPt() {
+		return pt;
+	}
+
+	boolean isPt(int mode) {
+		return (ptModes & (1L << mode)) != 0;
+	}
+
+	/**
+	 * Resolve mode parameters for all modes. Transit walks use the walk parameters if they have no own parameters.
+	 */
+	ModeUtilityParameters[] resolve(ScoringParameters params) {
+		ModeUtilityParameters[] result = new ModeUtilityParameters[modes.length];
+		for (int i = 0; i < modes.length; i++) {
+			result[i] = params.modeParams.get(modes[i]);
+
+			if (result[i] == null && (modes[i].equals(TransportMode.transit_walk) || modes[i].equals(TransportMode.non_network_walk)))
+				result[i] = params.modeParams.get(TransportMode.walk);
+		}
+
+		return result;
+	}
+}
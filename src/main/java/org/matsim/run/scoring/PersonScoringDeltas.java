@@ -0,0 +1,148 @@
+package org.matsim.run.scoring;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Person specific deltas to the scoring parameters of their subpopulation. Values are stored in primitive arrays,
+ * indexed by person ordinal (the index of the person id) and mode index.
+ * <p>
+ * Values of a row are written first and then published with {@link #setState(int, byte)}. Readers that observe a state
+ * other than {@link #UNKNOWN} via {@link #getState(int)} also see all values of that row.
+ */
+final class PersonScoringDeltas {
+
+	/**
+	 * Person has not been processed.
+	 */
+	static final byte UNKNOWN = 0;
+	/**
+	 * Person uses the parameters of the subpopulation.
+	 */
+	static final byte BASE = 1;
+	/**
+	 * Person has individual parameters.
+	 */
+	static final byte INDIVIDUAL = 2;
+
+	private static final VarHandle STATE = MethodHandles.arrayElementVarHandle(byte[].class);
+
+	private final String[] modes;
+	private final Object2IntMap<String> modeIndex;
+
+	private final byte[] state;
+	/**
+	 * Marginal utility of money, NaN if the subpopulation value is used.
+	 */
+	private final double[] money;
+	/**
+	 * Delta of the mode constant, NaN if there are no deltas for a mode.
+	 */
+	private final double[] constant;
+	private final double[] dailyConstant;
+	/**
+	 * Distance groups, these arrays are shared between persons.
+	 */
+	private final DistanceGroup[][] groups;
+
+	PersonScoringDeltas(String[] modes, int size) {
+		this.modes = modes;
+		this.modeIndex = new Object2IntOpenHashMap<>();
+		this.modeIndex.defaultReturnValue(-1);
+		for (int i = 0; i < modes.length; i++) {
+			modeIndex.put(modes[i], i);
+		}
+
+		this.state = new byte[size];
+		this.money = new double[size];
+		this.constant = new double[size * modes.length];
+		this.dailyConstant = new double[size * modes.length];
+		this.groups = new DistanceGroup[size * modes.length][];
+
+		Arrays.fill(money, Double.NaN);
+		Arrays.fill(constant, Double.NaN);
+	}
+
+	/**
+	 * Copy of this table with a larger number of rows.
+	 */
+	PersonScoringDeltas grow(int size) {
+		PersonScoringDeltas copy = new PersonScoringDeltas(modes, size);
+		int n = modes.length;
+		System.arraycopy(state, 0, copy.state, 0, state.length);
+		System.arraycopy(money, 0, copy.money, 0, money.length);
+		System.arraycopy(constant, 0, copy.constant, 0, constant.length);
+		System.arraycopy(dailyConstant, 0, copy.dailyConstant, 0, dailyConstant.length);
+		System.arraycopy(groups, 0, copy.groups, 0, state.length * n);
+		return copy;
+	}
+
+	int size() {
+		return state.length;
+	}
+
+	int getModeIndex(String mode) {
+		return modeIndex.getInt(mode);
+	}
+
+	String getMode(int m) {
+		return modes[m];
+	}
+
+	int getNumberOfModes() {
+		return modes.length;
+	}
+
+	byte getState(int row) {
+		return (byte) STATE.getAcquire(state, row);
+	}
+
+	double getMarginalUtilityOfMoney(int row) {
+		return money[row];
+	}
+
+	boolean hasMode(int row, int m) {
+		return !Double.isNaN(constant[row * modes.length + m]);
+	}
+
+	double getConstant(int row, int m) {
+		return constant[row * modes.length + m];
+	}
+
+	double getDailyConstant(int row, int m) {
+		return dailyConstant[row * modes.length + m];
+	}
+
+	DistanceGroup[] getGroups(int row, int m) {
+		return groups[row * modes.length + m];
+	}
+
+	void setMarginalUtilityOfMoney(int row, double value) {
+		money[row] = value;
+	}
+
+	void setMode(int row, int m, double deltaConstant, double deltaDailyConstant, DistanceGroup[] distGroups) {
+		int idx = row * modes.length + m;
+		constant[idx] = deltaConstant;
+		dailyConstant[idx] = deltaDailyConstant;
+		groups[idx] = distGroups;
+	}
+
+	/**
+	 * Publish the values of a row, must be called after all values have been set.
+	 */
+	void setState(int row, byte value) {
+		STATE.setRelease(state, row, value);
+	}
+
+	/**
+	 * Approximate heap size of the stored arrays in bytes.
+	 */
+	long getMemoryUsage() {
+		return state.length + 8L * money.length + 8L * constant.length + 8L * dailyConstant.length + 4L * groups.length;
+	}
+}
@@ -28,7 +28,7 @@ import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.PersonDepartureEvent;
 import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
 import org.matsim.api.core.v01.population.Leg;
-import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.router.TripStructureUtils;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.scoring.functions.ModeUtilityParameters;
 import org.matsim.core.scoring.functions.ScoringParameters;
@@ -40,9 +40,12 @@ import java.util.Set;
 /**
  * This is a copy of {@link org.matsim.core.scoring.functions.CharyparNagelLegScoring}.
  * Distance utilities are scored with different linear functions per distance group.
+ * Modes are looked up by their index in the {@link ModeIndex}, daily constants are tracked in a bitmask.
+ * If legs are scored without departure events, the pt constant and line switches of transfers are accounted for per trip.
  */
 @SuppressWarnings("checkstyle")
-public final class PiecewiseLinearlLegScoring implements org.matsim.core.scoring.SumScoringFunction.LegScoring, org.matsim.core.scoring.SumScoringFunction.ArbitraryEventScoring {
+public final class PiecewiseLinearlLegScoring implements org.matsim.core.scoring.SumScoringFunction.LegScoring,
+	org.matsim.core.scoring.SumScoringFunction.ArbitraryEventScoring, org.matsim.core.scoring.SumScoringFunction.TripScoring {
 	// yyyy URL in above javadoc is broken.  kai, feb'17
 
 	private static final Logger log = LogManager.getLogger(PiecewiseLinearlLegScoring.class);
@@ -51,20 +54,63 @@ public final class PiecewiseLinearlLegScoring implements org.matsim.core.scoring
 	 * The parameters used for scoring.
 	 */
 	private final ScoringParameters params;
-	private final Set<String> ptModes;
+	private final ModeIndex modes;
+	/**
+	 * Mode parameters by mode index.
+	 */
+	private final ModeUtilityParameters[] modeParams;
 	private final double marginalUtilityOfMoney;
-	private final Set<String> modesAlreadyConsideredForDailyConstants;
+	/**
+	 * Person specific deltas, null if the person uses the base parameters.
+	 */
+	private final PersonScoringDeltas deltas;
+	private final int row;
+	/**
+	 * Maps mode index to the mode index in the delta table.
+	 */
+	private final int[] deltaModes;
+	/**
+	 * Bitmask of mode indices for which the daily constants have been considered.
+	 */
+	private long modesAlreadyConsideredForDailyConstants;
+	/**
+	 * Modes not contained in the index, only created if needed.
+	 */
+	private Set<String> otherModesAlreadyConsideredForDailyConstants;
 	private double score;
 	private boolean nextEnterVehicleIsFirstOfTrip = true;
 	private boolean nextStartPtLegIsFirstOfTrip = true;
 	private boolean currentLegIsPtLeg = false;
 	private double lastActivityEndTime = Double.NaN;
+	/**
+	 * Whether departure events are handled, otherwise pt transfers are scored in {@link #handleTrip(TripStructureUtils.Trip)}.
+	 */
+	private boolean departuresHandled = false;
 
 	public PiecewiseLinearlLegScoring(final ScoringParameters params, Set<String> ptModes) {
+		this(params, new ModeIndex(params.modeParams.keySet(), ptModes));
+	}
+
+	PiecewiseLinearlLegScoring(final ScoringParameters params, ModeIndex modes) {
+		this(params, modes, modes.resolve(params), null, -1, null, params.marginalUtilityOfMoney);
+	}
+
+	/**
+	 * Score with the shared parameters of the subpopulation and the deltas of the person.
+	 */
+	PiecewiseLinearlLegScoring(IndividualPersonScoringParameters.PersonParameters p) {
+		this(p.base(), p.modes(), p.modeParams(), p.deltas(), p.row(), p.deltaModes(), p.marginalUtilityOfMoney());
+	}
+
+	private PiecewiseLinearlLegScoring(ScoringParameters params, ModeIndex modes, ModeUtilityParameters[] modeParams,
+									   PersonScoringDeltas deltas, int row, int[] deltaModes, double marginalUtilityOfMoney) {
 		this.params = params;
-		this.ptModes = ptModes;
-		this.modesAlreadyConsideredForDailyConstants = new HashSet<>();
-		this.marginalUtilityOfMoney = this.params.marginalUtilityOfMoney;
+		this.modes = modes;
+		this.modeParams = modeParams;
+		this.deltas = deltas;
+		this.row = row;
+		this.deltaModes = deltaModes;
+		this.marginalUtilityOfMoney = marginalUtilityOfMoney;
 	}
 
 	@Override
@@ -77,6 +123,41 @@ public final class PiecewiseLinearlLegScoring implements org.matsim.core.scoring
 		return this.score;
 	}
 
+	private static void warnNaN(double dist) {
+		if (Double.isNaN(dist)) {
+			if (ccc < 10) {
+				ccc++;
+				LogManager.getLogger(PiecewiseLinearlLegScoring.class).warn("distance is NaN. Will make score of this plan NaN. Possible reason: Simulation does not report " +
+					"a distance for this trip. Possible reason for that: mode is teleported and router does not " +
+					"write distance into plan.  Needs to be fixed or these plans will die out.");
+				if (ccc == 10) {
+					LogManager.getLogger(PiecewiseLinearlLegScoring.class).warn(Gbl.FUTURE_SUPPRESSED);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Mode index in the delta table, if the person has deltas for this mode.
+	 *
+	 * @return -1 if there are no deltas
+	 */
+	private int getDeltaMode(int idx) {
+		if (deltas == null || idx < 0)
+			return -1;
+
+		int m = deltaModes[idx];
+		return m >= 0 && deltas.hasMode(row, m) ? m : -1;
+	}
+
+	/**
+	 * Mode constant including the person specific delta.
+	 */
+	private double getConstant(int idx, ModeUtilityParameters modeParams) {
+		int m = getDeltaMode(idx);
+		return m >= 0 ? modeParams.constant + deltas.getConstant(row, m) : modeParams.constant;
+	}
+
 	/**
 	 * Calculate the score for a leg.
 	 */
@@ -84,81 +165,61 @@ public final class PiecewiseLinearlLegScoring implements org.matsim.core.scoring
 		double tmpScore = 0.0;
 		// travel time in seconds
 		double travelTime = arrivalTime - departureTime;
-		ModeUtilityParameters modeParams = this.params.modeParams.get(leg.getMode());
+
+		String mode = leg.getMode();
+		int idx = modes.get(mode);
+		ModeUtilityParameters modeParams = idx >= 0 ? this.modeParams[idx] : this.params.modeParams.get(mode);
 
 		if (modeParams == null) {
-			if (leg.getMode().equals(TransportMode.transit_walk) || leg.getMode().equals(TransportMode.non_network_walk)) {
-				modeParams = this.params.modeParams.get(TransportMode.walk);
-			} else {
-//				modeParams = this.params.modeParams.get(TransportMode.other);
-				throw new RuntimeException("just encountered mode for which no scoring parameters are defined: " + leg.getMode());
-			}
+//			modeParams = this.params.modeParams.get(TransportMode.other);
+			throw new RuntimeException("just encountered mode for which no scoring parameters are defined: " + mode);
 		}
 
 		tmpScore += travelTime * modeParams.marginalUtilityOfTraveling_s;
 
-		if (modeParams instanceof DistanceGroupModeUtilityParameters distParams) {
+		int m = getDeltaMode(idx);
+
+		if (modeParams instanceof DistanceGroupModeUtilityParameters || m >= 0) {
+
+			// distance in meters
+			double dist = leg.getRoute().getDistance();
 
 			if (modeParams.monetaryDistanceCostRate != 0.0) {
-				Route route = leg.getRoute();
-				// distance in meters
-				double dist = route.getDistance();
-				if (Double.isNaN(dist)) {
-					if (ccc < 10) {
-						ccc++;
-						LogManager.getLogger(this.getClass()).warn("distance is NaN. Will make score of this plan NaN. Possible reason: Simulation does not report " +
-							"a distance for this trip. Possible reason for that: mode is teleported and router does not " +
-							"write distance into plan.  Needs to be fixed or these plans will die out.");
-						if (ccc == 10) {
-							LogManager.getLogger(this.getClass()).warn(Gbl.FUTURE_SUPPRESSED);
-						}
-					}
-				}
+				warnNaN(dist);
 				tmpScore += modeParams.monetaryDistanceCostRate * this.marginalUtilityOfMoney * dist;
 			}
 
-			Route route = leg.getRoute();
-			double dist = route.getDistance();
-
 			// Apply the default distance scoring parameter.
 			if (modeParams.marginalUtilityOfDistance_m != 0) {
 				tmpScore += modeParams.marginalUtilityOfDistance_m * dist;
 			}
 
-			tmpScore += distParams.calcUtilityDistDelta(dist);
+			if (modeParams instanceof DistanceGroupModeUtilityParameters distParams)
+				tmpScore += distParams.calcUtilityDistDelta(dist);
+			else
+				tmpScore += DistanceGroupModeUtilityParameters.calcUtilityDistDelta(deltas.getGroups(row, m), dist);
 
 		} else {
 
 			// standard leg scoring
 			if (modeParams.marginalUtilityOfDistance_m != 0.0
 				|| modeParams.monetaryDistanceCostRate != 0.0) {
-				Route route = leg.getRoute();
 				// distance in meters
-				double dist = route.getDistance();
-				if (Double.isNaN(dist)) {
-					if (ccc < 10) {
-						ccc++;
-						LogManager.getLogger(this.getClass()).warn("distance is NaN. Will make score of this plan NaN. Possible reason: Simulation does not report " +
-							"a distance for this trip. Possible reason for that: mode is teleported and router does not " +
-							"write distance into plan.  Needs to be fixed or these plans will die out.");
-						if (ccc == 10) {
-							LogManager.getLogger(this.getClass()).warn(Gbl.FUTURE_SUPPRESSED);
-						}
-					}
-				}
+				double dist = leg.getRoute().getDistance();
+				warnNaN(dist);
 				tmpScore += modeParams.marginalUtilityOfDistance_m * dist;
 				tmpScore += modeParams.monetaryDistanceCostRate * this.marginalUtilityOfMoney * dist;
 			}
 		}
 
-		tmpScore += modeParams.constant;
+		tmpScore += getConstant(idx, modeParams);
 		// (yyyy once we have multiple legs without "real" activities in between, this will produce wrong results.  kai, dec'12)
 		// (yy NOTE: the constant is added for _every_ pt leg.  This is not how such models are estimated.  kai, nov'12)
 
 		// account for the daily constants
-		if (!modesAlreadyConsideredForDailyConstants.contains(leg.getMode())) {
-			tmpScore += modeParams.dailyUtilityConstant + modeParams.dailyMoneyConstant * this.marginalUtilityOfMoney;
-			modesAlreadyConsideredForDailyConstants.add(leg.getMode());
+		if (isFirstLegOfMode(idx, mode)) {
+			double daily = m >= 0 ? modeParams.dailyUtilityConstant + deltas.getDailyConstant(row, m) : modeParams.dailyUtilityConstant;
+			tmpScore += daily + modeParams.dailyMoneyConstant * this.marginalUtilityOfMoney;
 		}
 		// yyyy the above will cause problems if we ever decide to differentiate pt mode into bus, tram, train, ...
 		// Might have to move the MainModeIdentifier then.  kai, sep'18
@@ -166,11 +227,28 @@ public final class PiecewiseLinearlLegScoring implements org.matsim.core.scoring
 		return tmpScore;
 	}
 
+	/**
+	 * Check and mark whether the daily constant of a mode has been considered.
+	 */
+	private boolean isFirstLegOfMode(int idx, String mode) {
+		if (idx >= 0) {
+			long bit = 1L << idx;
+			boolean first = (modesAlreadyConsideredForDailyConstants & bit) == 0;
+			modesAlreadyConsideredForDailyConstants |= bit;
+			return first;
+		}
+
+		if (otherModesAlreadyConsideredForDailyConstants == null)
+			otherModesAlreadyConsideredForDailyConstants = new HashSet<>();
+
+		return otherModesAlreadyConsideredForDailyConstants.add(mode);
+	}
+
 	@Override
 	public void handleEvent(Event event) {
-		if (event instanceof ActivityEndEvent) {
+		if (event instanceof ActivityEndEvent actEnd) {
 			// When there is a "real" activity, flags are reset:
-			if (!PtConstants.TRANSIT_ACTIVITY_TYPE.equals(((ActivityEndEvent) event).getActType())) {
+			if (!PtConstants.TRANSIT_ACTIVITY_TYPE.equals(actEnd.getActType())) {
 				this.nextEnterVehicleIsFirstOfTrip = true;
 				this.nextStartPtLegIsFirstOfTrip = true;
 			}
@@ -184,16 +262,17 @@ public final class PiecewiseLinearlLegScoring implements org.matsim.core.scoring
 			}
 			this.nextEnterVehicleIsFirstOfTrip = false;
 			// add score of waiting, _minus_ score of travelling (since it is added in the legscoring above):
-			this.score += (event.getTime() - this.lastActivityEndTime) * (this.params.marginalUtilityOfWaitingPt_s - this.params.modeParams.get(TransportMode.pt).marginalUtilityOfTraveling_s);
+			this.score += (event.getTime() - this.lastActivityEndTime) * (this.params.marginalUtilityOfWaitingPt_s - this.modeParams[modes.getPt()].marginalUtilityOfTraveling_s);
 		}
 
-		if (event instanceof PersonDepartureEvent) {
-			String mode = ((PersonDepartureEvent) event).getLegMode();
+		if (event instanceof PersonDepartureEvent departure) {
+			this.departuresHandled = true;
+			int idx = modes.get(departure.getLegMode());
 
-			this.currentLegIsPtLeg = this.ptModes.contains(mode);
+			this.currentLegIsPtLeg = idx >= 0 && modes.isPt(idx);
 			if (currentLegIsPtLeg) {
 				if (!this.nextStartPtLegIsFirstOfTrip) {
-					this.score -= params.modeParams.get(mode).constant;
+					this.score -= getConstant(idx, modeParams[idx]);
 					// (yyyy deducting this again, since is it wrongly added above.  should be consolidated; this is so the code
 					// modification is minimally invasive.  kai, dec'12)
 				}
@@ -202,6 +281,27 @@ public final class PiecewiseLinearlLegScoring implements org.matsim.core.scoring
 		}
 	}
 
+	@Override
+	public void handleTrip(TripStructureUtils.Trip trip) {
+
+		// Same as for the departure and enter vehicle events above, but without waiting times
+		if (departuresHandled)
+			return;
+
+		boolean first = true;
+		for (Leg leg : trip.getLegsOnly()) {
+			int idx = modes.get(leg.getMode());
+			if (idx < 0 || !modes.isPt(idx))
+				continue;
+
+			if (!first) {
+				this.score -= getConstant(idx, modeParams[idx]);
+				this.score += params.utilityOfLineSwitch;
+			}
+			first = false;
+		}
+	}
+
 	@Override
 	public void handleLeg(Leg leg) {
 		Gbl.assertIf(leg.getDepartureTime().isDefined());
@@ -1,11 +1,6 @@
 package org.matsim.run.scoring;
 
 import com.google.inject.Inject;
-import org.apache.commons.math3.exception.OutOfRangeException;
-import org.apache.commons.math3.util.FastMath;
-import org.apache.commons.rng.UniformRandomProvider;
-import org.apache.commons.rng.core.source64.XoRoShiRo128PlusPlus;
-import org.apache.commons.rng.sampling.distribution.ZigguratSampler;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.config.Config;
@@ -24,6 +19,11 @@ public final class PseudoRandomScorer {
 	 */
 	private static final int WARMUP_ITERATIONS = 100;
 
+	/**
+	 * Odd constant of SplitMix64, used to advance the counter.
+	 */
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
 	private final PseudoRandomTripError tripScore;
 	private final long seed;
 	private final double scale;
@@ -44,6 +44,22 @@ public final class PseudoRandomScorer {
 		this.seed = rnd.nextLong();
 	}
 
+	/**
+	 * Stateless mixing function of SplitMix64, which maps each input to a well distributed output.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Convert the upper 53 bits to a double in the open interval (0, 1).
+	 */
+	private static double toUniform(long z) {
+		return ((z >>> 11) + 0.5) * 0x1.0p-53;
+	}
+
 	/**
 	 * Calculates the pseudo random score of a trip.
 	 */
@@ -54,19 +70,20 @@ public final class PseudoRandomScorer {
 
 		long tripSeed = tripScore.getSeed(personId, mainMode, trip);
 
-		// Need to create a new instance because reusing them will also create a lot of intermediate arrays
-		XoRoShiRo128PlusPlus rng = new XoRoShiRo128PlusPlus(seed, tripSeed);
-		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
-			rng.nextLong();
-		}
-
 		return switch (distribution) {
-			case gumbel -> sampleGumbel(rng, 0, scale);
-			case normal -> sampleNormal(rng, 0, scale);
+			case gumbel -> sampleGumbel(tripSeed, 0, scale);
+			case normal -> sampleNormal(tripSeed, 0, scale);
 			default -> throw new IllegalStateException("Unsupported distribution: " + distribution);
 		};
 	}
 
+	/**
+	 * Uniform random number for the i-th draw of a trip. The global seed serves as key,
+	 * the trip seed and draw number as counter, so no generator state is needed.
+	 */
+	private double uniform(long tripSeed, int i) {
+		return toUniform(mix(mix(tripSeed ^ seed) + (i + 1) * GOLDEN_GAMMA));
+	}
 
 	/**
 	 * Sample from a Gumbel distribution.
@@ -74,24 +91,18 @@ public final class PseudoRandomScorer {
 	 * @param mu   location parameter
 	 * @param beta scale parameter (must be positive)
 	 */
-	private double sampleGumbel(UniformRandomProvider rng, double mu, double beta) {
-
-		double v = rng.nextDouble();
-		if (v < 0.0 || v > 1.0) {
-			throw new OutOfRangeException(v, 0.0, 1.0);
-		} else if (v == 0) {
-			return Double.NEGATIVE_INFINITY;
-		} else if (v == 1) {
-			return Double.POSITIVE_INFINITY;
-		}
-
-		return mu - FastMath.log(-FastMath.log(v)) * beta;
+	private double sampleGumbel(long tripSeed, double mu, double beta) {
+		double v = uniform(tripSeed, 0);
+		return mu - Math.log(-Math.log(v)) * beta;
 	}
 
-	private double sampleNormal(UniformRandomProvider rng, double mu, double sigma) {
-		return mu + ZigguratSampler.NormalizedGaussian.of(rng).sample() * sigma;
+	/**
+	 * Sample from a normal distribution using the Box-Muller transform.
+	 */
+	private double sampleNormal(long tripSeed, double mu, double sigma) {
+		double u1 = uniform(tripSeed, 0);
+		double u2 = uniform(tripSeed, 1);
+		return mu + Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2) * sigma;
 	}
 
 }
-
-
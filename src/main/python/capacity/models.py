@@ -391,8 +391,11 @@ def sympy_to_c(model):
     return c_code
 
 
-def model_to_java(name, model, scaler, df):
-    """ Convert to java source file """
+def model_to_java(name, model, scaler, df, predictor=False):
+    """ Convert to java source file
+
+    :param predictor: implement the Predictor interface, which also receives categorical features, instead of FeatureRegressor
+    """
     import m2cgen as m2c
 
     name = name.capitalize()
@@ -401,50 +404,102 @@ def model_to_java(name, model, scaler, df):
 
     code, params = replace_params(code)
 
-    imp = """import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+    if predictor:
+        imp = """import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import org.matsim.application.prepare.Predictor;
+    
+/**
+* Generated model, do not modify.
+*/
+public final class"""
+        interface = "Predictor"
+        ft = "features"
+        args = "Object2DoubleMap<String> features, Object2ObjectMap<String, String> categories"
+        call = "features, categories"
+    else:
+        imp = """import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
     
 /**
 * Generated model, do not modify.
 */
 public final class"""
+        interface = "FeatureRegressor"
+        ft = "ft"
+        args = "Object2DoubleMap<String> ft"
+        call = "ft"
 
     code = code.replace("public class", imp)
-    code = code.replace(name, name + " implements FeatureRegressor")
+    code = code.replace(name, name + " implements %s, BatchPredictor" % interface)
+
+    features = [f"data[{i}] = {s.replace('ft.getDouble', ft + '.getDouble')};\n"
+                for i, s in enumerate(model_features(scaler, df))]
 
-    features = [f"data[{i}] = {s};\n" for i, s in enumerate(model_features(scaler, df))]
+    # Same transformation, but reading from the column matrix, which has one column per distinct feature name
+    pattern = r'\w+\.getDouble\("(\w+)"\)'
+    names = list(dict.fromkeys(re.findall(pattern, "".join(features))))
+    batch_features = [re.sub(pattern, lambda m: f"ft[{names.index(m.group(1))}][i]", f) for f in features]
 
     idx = code.index("public static double score")
 
     pre = """
     public static %s INSTANCE = new %s();
     public static final double[] DEFAULT_PARAMS = %s;
+    public static final String[] FEATURES = %s;
 
     @Override
-    public double predict(Object2DoubleMap<String> ft) {
-        return predict(ft, DEFAULT_PARAMS);
+    public double predict(%s) {
+        return predict(%s, DEFAULT_PARAMS);
     }
     
     @Override
-    public double[] getData(Object2DoubleMap<String> ft) {
+    public double[] getData(%s) {
         double[] data = new double[%d];
-""" % (name, name, str(params).replace("[", "{").replace("]", "}"), len(features))
+""" % (name, name, str(params).replace("[", "{").replace("]", "}"),
+       "{" + ", ".join(f'"{n}"' for n in names) + "}", args, call, args, len(features))
 
-    for ft in features:
-        pre += "\t\t" + ft
+    for f in features:
+        pre += "\t\t" + f
 
     pre += """
         return data;
     }
     
     @Override
-    public double predict(Object2DoubleMap<String> ft, double[] params) {
+    public double predict(%s, double[] params) {
 
-        double[] data = getData(ft);
+        double[] data = getData(%s);
         for (int i = 0; i < data.length; i++)
             if (Double.isNaN(data[i])) throw new IllegalArgumentException("Invalid data at index: " + i);
     
         return score(data, params);
     }
+
+    @Override
+    public String[] getFeatures() {
+        return FEATURES;
+    }
+
+    @Override
+    public void predict(double[][] ft, double[] out, int from, int to) {
+        predict(ft, DEFAULT_PARAMS, out, from, to);
+    }
+
+    public static void predict(double[][] ft, double[] params, double[] out, int from, int to) {
+        double[] data = new double[%d];
+        for (int i = from; i < to; i++) {
+""" % (args, call, len(features))
+
+    for f in batch_features:
+        pre += "\t\t\t" + f
+
+    pre += """
+            for (int j = 0; j < data.length; j++)
+                if (Double.isNaN(data[j])) throw new IllegalArgumentException("Invalid data at index: " + j + " for row: " + i);
+
+            out[i] = score(data, params);
+        }
+    }
     """
 
     code = code.replace("score(double[] input)", "score(double[] input, double[] params)")
@@ -0,0 +1,160 @@
+#!/usr/bin/env python
+# -*- coding: utf-8 -*-
+
+""" Converts generated tree ensemble java sources into the flat json format read by TreeEnsembleRegressor """
+
+import argparse
+import json
+import math
+import os
+import re
+
+FEATURE = re.compile(r"data\[(\d+)\] = (.+);")
+GET = r"\w+\.getDouble\(\"(\w+)\"\)"
+
+COND = re.compile(r"if \(input\[(\d+)\] (<=|>=|>) (\S+)\) \{")
+LEAF = re.compile(r"var\d+ = params\[(\d+)\];")
+
+
+def parse_feature(expr):
+    """ Returns name, mean and scale of one feature transformation """
+
+    m = re.fullmatch(r"\(%s - (\S+)\) / (\S+)" % GET, expr)
+    if m:
+        return m.group(1), m.group(2), m.group(3)
+
+    m = re.fullmatch(r"%s / (\S+)" % GET, expr)
+    if m:
+        return m.group(1), "0", m.group(2)
+
+    m = re.fullmatch(GET, expr)
+    if m:
+        return m.group(1), "0", "1"
+
+    raise ValueError("Unknown feature transformation: " + expr)
+
+
+class Trees:
+
+    def __init__(self):
+        self.feature = []
+        self.threshold = []
+        self.left = []
+        self.right = []
+        self.leaf = []
+
+    def node(self):
+        self.feature.append(-1)
+        self.threshold.append(0.0)
+        self.left.append(-1)
+        self.right.append(-1)
+        self.leaf.append(-1)
+        return len(self.feature) - 1
+
+    def parse(self, lines, pos):
+        """ Parses one node starting at pos, returns node index and next position """
+
+        line = lines[pos]
+        n = self.node()
+
+        m = LEAF.fullmatch(line)
+        if m:
+            self.leaf[n] = int(m.group(1))
+            return n, pos + 1
+
+        m = COND.fullmatch(line)
+        if not m:
+            raise ValueError("Unexpected line: " + line)
+
+        then_node, pos = self.parse(lines, pos + 1)
+        if lines[pos] != "} else {":
+            raise ValueError("Expected else, got: " + lines[pos])
+
+        else_node, pos = self.parse(lines, pos + 1)
+        if lines[pos] != "}":
+            raise ValueError("Expected end of block, got: " + lines[pos])
+
+        # All conditions are normalized to input <= threshold
+        t = float(m.group(3))
+        op = m.group(2)
+
+        self.feature[n] = int(m.group(1))
+        if op == "<=":
+            self.threshold[n] = t
+            self.left[n], self.right[n] = then_node, else_node
+        elif op == ">":
+            self.threshold[n] = t
+            self.left[n], self.right[n] = else_node, then_node
+        else:
+            # x >= t is the same as not x <= nextDown(t)
+            self.threshold[n] = math.nextafter(t, -math.inf)
+            self.left[n], self.right[n] = else_node, then_node
+
+        return n, pos + 1
+
+
+def convert(path):
+    with open(path) as f:
+        src = f.read()
+
+    name = os.path.basename(path).replace(".java", "")
+
+    params = re.search(r"DEFAULT_PARAMS = \{(.+?)};", src).group(1)
+    params = [float(p) for p in params.split(",")]
+
+    get_data = src[src.index("getData("):]
+    get_data = get_data[:get_data.index("return data;")]
+
+    features = [parse_feature(m.group(2)) for m in FEATURE.finditer(get_data)]
+
+    score = src[src.index("public static double score"):]
+    lines = [line.strip() for line in score.splitlines()[1:] if line.strip()]
+
+    ret = next(line for line in lines if line.startswith("return"))
+    m = re.fullmatch(r"return (?:(\S+) \+ )?\((?:(\S+) \+ )?var0 [^()]+\)(?: \* (\S+))?;|return var0 [^()]+;", ret)
+    if not m:
+        raise ValueError("Unknown return statement: " + ret)
+
+    trees = Trees()
+    roots = []
+
+    pos = 0
+    while not lines[pos].startswith("return"):
+        if not re.fullmatch(r"double var\d+;", lines[pos]):
+            raise ValueError("Expected tree declaration, got: " + lines[pos])
+
+        root, pos = trees.parse(lines, pos + 1)
+        roots.append(root)
+
+    return {
+        "model": name,
+        "features": [f[0] for f in features],
+        "mean": [float(f[1]) for f in features],
+        "scale": [float(f[2]) for f in features],
+        "base": float(m.group(1) or 0),
+        "intercept": float(m.group(2) or 0),
+        "factor": float(m.group(3) or 1),
+        "params": params,
+        "roots": roots,
+        "feature": trees.feature,
+        "threshold": trees.threshold,
+        "left": trees.left,
+        "right": trees.right,
+        "leaf": trees.leaf
+    }
+
+
+if __name__ == "__main__":
+    parser = argparse.ArgumentParser(description="Convert generated tree models to json")
+    parser.add_argument("input", nargs="+", help="Generated java sources")
+    parser.add_argument("--output", help="Output directory", required=True)
+
+    args = parser.parse_args()
+
+    for p in args.input:
+        model = convert(p)
+
+        with open(os.path.join(args.output, model["model"] + ".json"), "w") as f:
+            json.dump(model, f)
+
+        print("Converted %s with %d trees and %d nodes" % (model["model"], len(model["roots"]), len(model["feature"])))
@@ -0,0 +1,111 @@
+package org.matsim.analysis;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.events.algorithms.EventWriterXML;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator;
+import org.matsim.vehicles.Vehicle;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventsPassTest {
+
+	@TempDir
+	private Path dir;
+
+	private Network network;
+	private Link link;
+	private String eventsPath;
+	private String networkPath;
+
+	private final AtomicInteger volumesCreated = new AtomicInteger();
+	private final AtomicInteger travelTimesCreated = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+
+		network = NetworkUtils.createNetwork();
+		Node a = NetworkUtils.createAndAddNode(network, Id.createNodeId("a"), new Coord(0, 0));
+		Node b = NetworkUtils.createAndAddNode(network, Id.createNodeId("b"), new Coord(1000, 0));
+		link = NetworkUtils.createAndAddLink(network, Id.createLinkId("ab"), a, b, 1000, 20, 1000, 1);
+
+		networkPath = dir.resolve("network.xml").toString();
+		NetworkUtils.writeNetwork(network, networkPath);
+
+		eventsPath = dir.resolve("events.xml").toString();
+		EventWriterXML writer = new EventWriterXML(eventsPath);
+		for (int i = 0; i < 3; i++) {
+			Id<Vehicle> vehicle = Id.createVehicleId(i);
+			writer.handleEvent(new LinkEnterEvent(i * 10, vehicle, link.getId()));
+			writer.handleEvent(new LinkLeaveEvent(i * 10 + 60, vehicle, link.getId()));
+		}
+		writer.closeFile();
+	}
+
+	private VolumesAnalyzer createVolumes(Network n) {
+		volumesCreated.incrementAndGet();
+		return DTVAnalysis.createVolumes(n);
+	}
+
+	private TravelTimeCalculator createTravelTimes(Network n) {
+		travelTimesCreated.incrementAndGet();
+		return TravelTimeComparison.createTravelTimes(n);
+	}
+
+	private VolumesAnalyzer volumes() {
+		return EventsPass.get(eventsPath, networkPath, network, VolumesAnalyzer.class, this::createVolumes);
+	}
+
+	private TravelTimeCalculator travelTimes() {
+		return EventsPass.get(eventsPath, networkPath, network, TravelTimeCalculator.class, this::createTravelTimes);
+	}
+
+	@Test
+	void sharedPass() {
+
+		try (EventsPass pass = EventsPass.open()) {
+			pass.register(VolumesAnalyzer.class, this::createVolumes);
+			pass.register(TravelTimeCalculator.class, this::createTravelTimes);
+
+			VolumesAnalyzer volumes = volumes();
+			TravelTimeCalculator tt = travelTimes();
+
+			// Both handlers were created for the first read, the second analysis did not read the events again
+			assertThat(volumesCreated).hasValue(1);
+			assertThat(travelTimesCreated).hasValue(1);
+
+			assertThat(volumes.getVolumesForLink(link.getId())[0]).isEqualTo(3);
+			assertThat(tt.getLinkTravelTimes().getLinkTravelTime(link, 0, null, null)).isEqualTo(60);
+
+			assertThat(volumes()).isSameAs(volumes);
+		}
+
+		// Analyses read on their own after the pass was closed
+		volumes();
+		assertThat(volumesCreated).hasValue(2);
+	}
+
+	@Test
+	void withoutPass() {
+
+		volumes();
+		travelTimes();
+		volumes();
+
+		assertThat(volumesCreated).hasValue(2);
+		assertThat(travelTimesCreated).hasValue(1);
+	}
+
+}
@@ -0,0 +1,92 @@
+package org.matsim.prepare;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MergePlansTest {
+
+	@TempDir
+	private Path dir;
+
+	private Path write(String name, double score, List<String> ids) {
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		for (String id : ids) {
+			Person person = population.getFactory().createPerson(Id.createPersonId(id));
+			Plan plan = population.getFactory().createPlan();
+			plan.addActivity(population.getFactory().createActivityFromCoord("home", new Coord(0, 0)));
+			plan.setScore(score);
+			person.addPlan(plan);
+			population.addPerson(person);
+		}
+
+		Path path = dir.resolve(name);
+		PopulationUtils.writePopulation(population, path.toString());
+		return path;
+	}
+
+	@Test
+	void unsortedInputs() {
+
+		// Same order as the merged populations: berlin, then brandenburg and commercial traffic, which is not sorted by id
+		Path first = write("first.xml", 0, List.of("berlin_1", "berlin_2", "bb_1", "bb_2", "commercial_1"));
+		Path second = write("second.xml", 1, List.of("berlin_2", "berlin_1", "other_1", "bb_2", "bb_1"));
+		Path third = write("third.xml", 2, List.of("commercial_1", "bb_1", "berlin_1"));
+
+		Path output = dir.resolve("output.xml.gz");
+
+		int code = new CommandLine(new MergePlans()).execute(first.toString(), second.toString(), third.toString(),
+			"--output", output.toString());
+
+		assertThat(code).isZero();
+
+		Population merged = PopulationUtils.readPopulation(output.toString());
+
+		assertThat(merged.getPersons().keySet())
+			.map(Id::toString)
+			.containsExactly("berlin_1", "berlin_2", "bb_1", "bb_2", "commercial_1");
+
+		assertThat(scores(merged, "berlin_1")).containsExactly(0.0, 1.0, 2.0);
+		assertThat(scores(merged, "berlin_2")).containsExactly(0.0, 1.0);
+		assertThat(scores(merged, "bb_1")).containsExactly(0.0, 1.0, 2.0);
+		assertThat(scores(merged, "bb_2")).containsExactly(0.0, 1.0);
+		assertThat(scores(merged, "commercial_1")).containsExactly(0.0, 2.0);
+	}
+
+	@Test
+	void limitedReadAhead() {
+
+		Path first = write("first.xml", 0, List.of("a", "b", "c", "d"));
+		Path second = write("second.xml", 1, List.of("x", "a", "b", "c", "y", "z", "d"));
+
+		Path output = dir.resolve("output.xml");
+
+		// d follows two persons that are not in the first input, which exceeds the read ahead
+		int code = new CommandLine(new MergePlans()).execute(first.toString(), second.toString(),
+			"--output", output.toString(), "--read-ahead", "2");
+
+		assertThat(code).isZero();
+
+		Population merged = PopulationUtils.readPopulation(output.toString());
+		assertThat(scores(merged, "a")).containsExactly(0.0, 1.0);
+		assertThat(scores(merged, "b")).containsExactly(0.0, 1.0);
+		assertThat(scores(merged, "c")).containsExactly(0.0, 1.0);
+		assertThat(scores(merged, "d")).containsExactly(0.0);
+	}
+
+	private static List<Double> scores(Population population, String id) {
+		return population.getPersons().get(Id.createPersonId(id)).getPlans().stream().map(Plan::getScore).toList();
+	}
+}
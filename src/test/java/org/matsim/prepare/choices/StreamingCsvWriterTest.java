@@ -0,0 +1,85 @@
+package org.matsim.prepare.choices;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.matsim.core.utils.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamingCsvWriterTest {
+
+	@TempDir
+	private Path dir;
+
+	@Test
+	void concurrentRows() throws IOException {
+
+		Path path = dir.resolve("rows.csv.gz");
+		CSVFormat format = CSVFormat.DEFAULT.builder().setCommentMarker('#').build();
+
+		try (StreamingCsvWriter writer = new StreamingCsvWriter(path, format, 16, List.of("first"), List.of("id", "value", "text"))) {
+
+			IntStream.range(0, 5000).parallel().forEach(i -> {
+				StreamingCsvWriter.Row row = writer.newRow();
+				row.add(i).add(i * 0.5).add("a, \"b\"");
+
+				if (i % 10 == 0)
+					row.discard();
+				else
+					row.write();
+			});
+
+			assertThat(writer.getRows()).isEqualTo(4500);
+			writer.addComment("last");
+		}
+
+		CSVFormat read = format.builder().setHeader().setSkipHeaderRecord(true).build();
+		try (CSVParser parser = read.parse(IOUtils.getBufferedReader(path.toString()))) {
+
+			List<CSVRecord> records = parser.getRecords();
+			assertThat(parser.getHeaderNames()).containsExactly("id", "value", "text");
+			assertThat(records).hasSize(4500);
+
+			for (CSVRecord r : records) {
+				int i = Integer.parseInt(r.get("id"));
+				assertThat(i % 10).isNotZero();
+				assertThat(Double.parseDouble(r.get("value"))).isEqualTo(i * 0.5);
+				assertThat(r.get("text")).isEqualTo("a, \"b\"");
+			}
+		}
+	}
+
+	@Test
+	void incompleteRow() throws IOException {
+
+		Path path = dir.resolve("incomplete.csv");
+
+		try (StreamingCsvWriter writer = new StreamingCsvWriter(path, CSVFormat.DEFAULT, 4, List.of(), List.of("id", "value"))) {
+
+			StreamingCsvWriter.Row row = writer.newRow();
+			for (int i = 0; i < 3; i++) {
+				try (StreamingCsvWriter.Row r = row) {
+					r.add(i);
+					if (i == 1)
+						throw new IllegalStateException("Failed row");
+
+					r.add("v" + i).write();
+				} catch (IllegalStateException e) {
+					// Row is skipped
+				}
+			}
+		}
+
+		assertThat(Files.readAllLines(path))
+			.containsExactly("id,value", "0,v0", "2,v2");
+	}
+}
@@ -0,0 +1,56 @@
+package org.matsim.prepare.facilities;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LinkIndexTest {
+
+	@Test
+	void sameAsExactLookup() {
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		Network network = NetworkUtils.createNetwork();
+
+		// Grid with links in both directions, which results in many ties
+		int n = 30;
+		for (int x = 0; x < n; x++) {
+			for (int y = 0; y < n; y++) {
+				NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), new Coord(x * 100, y * 100 + rnd.nextInt(0, 30)));
+			}
+		}
+
+		for (int x = 0; x < n; x++) {
+			for (int y = 0; y < n; y++) {
+				Node node = network.getNodes().get(Id.createNodeId(x + "_" + y));
+				if (x + 1 < n)
+					connect(network, node, network.getNodes().get(Id.createNodeId((x + 1) + "_" + y)));
+				if (y + 1 < n)
+					connect(network, node, network.getNodes().get(Id.createNodeId(x + "_" + (y + 1))));
+			}
+		}
+
+		LinkIndex index = new LinkIndex(network);
+
+		for (int i = 0; i < 5000; i++) {
+			// Also include points outside the network and on the grid
+			Coord coord = i % 5 == 0 ? new Coord(rnd.nextInt(-5, 35) * 100, rnd.nextInt(-5, 35) * 100) :
+				new Coord(rnd.nextDouble(-500, n * 100 + 500), rnd.nextDouble(-500, n * 100 + 500));
+
+			assertThat(index.getNearestLink(coord))
+				.isSameAs(NetworkUtils.getNearestLinkExactly(network, coord));
+		}
+	}
+
+	private static void connect(Network network, Node a, Node b) {
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(a.getId() + "-" + b.getId()), a, b, 100, 10, 600, 1);
+		NetworkUtils.createAndAddLink(network, Id.createLinkId(b.getId() + "-" + a.getId()), b, a, 100, 10, 600, 1);
+	}
+}
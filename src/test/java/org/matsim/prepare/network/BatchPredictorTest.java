@@ -0,0 +1,80 @@
+package org.matsim.prepare.network;
+
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.junit.jupiter.api.Test;
+import org.matsim.application.prepare.Predictor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchPredictorTest {
+
+	private static final List<String> TYPES = List.of("traffic_light", "right_before_left", "priority");
+
+	private final BerlinNetworkParams params = new BerlinNetworkParams();
+
+	private static List<Object2DoubleMap<String>> createFeatures(String[] names, int n) {
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		List<Object2DoubleMap<String>> rows = new ArrayList<>();
+
+		for (int i = 0; i < n; i++) {
+			Object2DoubleMap<String> ft = new Object2DoubleOpenHashMap<>();
+			ft.put("length", rnd.nextDouble(5, 800));
+			ft.put("speed", rnd.nextDouble(5, 36));
+			ft.put("num_lanes", rnd.nextInt(1, 5));
+			ft.put("change_speed", rnd.nextDouble(-10, 10));
+
+			// All other features are binary or small counts
+			for (String name : names) {
+				if (!ft.containsKey(name))
+					ft.put(name, rnd.nextInt(0, 3) == 0 ? 1 : 0);
+			}
+			rows.add(ft);
+		}
+
+		return rows;
+	}
+
+	private static void assertParity(Predictor p, BatchPredictor batch) {
+
+		// More rows than one chunk to cover the parallel split
+		List<Object2DoubleMap<String>> rows = createFeatures(batch.getFeatures(), BatchPredictor.CHUNK_SIZE * 3 + 17);
+		double[] out = batch.predict(FeatureMatrix.of(rows));
+
+		for (int i = 0; i < rows.size(); i++) {
+			assertThat(out[i])
+				.isEqualTo(p.predict(rows.get(i), new Object2ObjectOpenHashMap<>()));
+		}
+	}
+
+	@Test
+	void capacity() {
+		for (String type : TYPES) {
+			assertParity(params.capacity(type, null), params.batchCapacity(type));
+		}
+	}
+
+	@Test
+	void speedFactor() {
+		for (String type : TYPES) {
+			assertParity(params.speedFactor(type, null), params.batchSpeedFactor(type));
+		}
+	}
+
+	@Test
+	void invalid() {
+
+		FeatureMatrix m = new FeatureMatrix(10);
+		m.set("speed", 5, Double.NaN);
+
+		assertThatThrownBy(() -> params.batchCapacity("priority").predict(m))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+}
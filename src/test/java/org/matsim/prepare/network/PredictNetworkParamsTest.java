@@ -0,0 +1,67 @@
+package org.matsim.prepare.network;
+
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PredictNetworkParamsTest {
+
+	@TempDir
+	private Path dir;
+
+	@Test
+	void sameAsSingleLink() throws IOException {
+
+		Path features = dir.resolve("features.csv");
+		Files.writeString(features, """
+			linkId,junction_type,length,speed,num_lanes,change_speed,num_to_links,junction_inc_lanes,priority_lower,is_primary_or_higher,is_secondary_or_higher
+			a,priority,120.5,13.89,2,0,3,4,1,False,True
+			b,traffic_light,80,8.33,1,-5.56,2,3,0,True,True
+			c,dead_end,10,8.33,1,0,0,1,0,False,False
+			d,priority,300,22.22,3,8.33,1,3,0,True,True
+			""");
+
+		Path output = dir.resolve("output.csv");
+
+		int code = new CommandLine(new PredictNetworkParams()).execute("--input-features", features.toString(), "--output", output.toString());
+		assertThat(code).isZero();
+
+		BerlinNetworkParams params = new BerlinNetworkParams();
+
+		try (CSVParser parser = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build().parse(Files.newBufferedReader(output))) {
+
+			List<CSVRecord> records = parser.getRecords();
+			assertThat(records).map(r -> r.get("linkId")).containsExactly("a", "d", "b");
+
+			// Links with junction types without model are skipped
+			CSVRecord b = records.get(2);
+			Object2DoubleMap<String> ft = new Object2DoubleOpenHashMap<>();
+			ft.put("length", 80);
+			ft.put("speed", 8.33);
+			ft.put("num_lanes", 1);
+			ft.put("change_speed", -5.56);
+			ft.put("num_to_links", 2);
+			ft.put("junction_inc_lanes", 3);
+			ft.put("is_primary_or_higher", 1);
+			ft.put("is_secondary_or_higher", 1);
+
+			assertThat(Double.parseDouble(b.get("capacity")))
+				.isEqualTo(params.capacity("traffic_light", null).predict(ft, new Object2ObjectOpenHashMap<>()));
+			assertThat(Double.parseDouble(b.get("speed_factor")))
+				.isEqualTo(params.speedFactor("traffic_light", null).predict(ft, new Object2ObjectOpenHashMap<>()));
+		}
+	}
+}
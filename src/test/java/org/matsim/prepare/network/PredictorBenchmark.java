@@ -0,0 +1,104 @@
+package org.matsim.prepare.network;
+
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.matsim.application.prepare.Predictor;
+import org.matsim.prepare.facilities.FacilityAttractionModelOther;
+import org.matsim.prepare.facilities.FacilityAttractionModelWork;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generated network and facility models, queried per row with feature maps and with the batch API.
+ * The facility models have no generated batch variant, so the {@link TreeEnsembleRegressor} is used for them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PredictorBenchmark {
+
+	private static final int N = 50_000;
+
+	@Param({"capacity_priority", "capacity_traffic_light", "speedRelative_priority", "attraction_work", "attraction_other"})
+	private String model;
+
+	private Predictor predictor;
+	private BatchPredictor batch;
+
+	private List<Object2DoubleMap<String>> rows;
+	private FeatureMatrix matrix;
+	private final Object2ObjectMap<String, String> categories = new Object2ObjectOpenHashMap<>();
+
+	@Setup
+	public void setup() {
+
+		BerlinNetworkParams params = new BerlinNetworkParams();
+
+		predictor = switch (model) {
+			case "capacity_priority" -> params.capacity("priority", null);
+			case "capacity_traffic_light" -> params.capacity("traffic_light", null);
+			case "speedRelative_priority" -> params.speedFactor("priority", null);
+			case "attraction_work" -> FacilityAttractionModelWork.INSTANCE;
+			case "attraction_other" -> FacilityAttractionModelOther.INSTANCE;
+			default -> throw new IllegalArgumentException("Unknown model: " + model);
+		};
+
+		batch = predictor instanceof BatchPredictor b ? b : TreeEnsembleRegressor.load(predictor.getClass());
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		rows = new ArrayList<>();
+		for (int i = 0; i < N; i++) {
+			Object2DoubleMap<String> ft = new Object2DoubleOpenHashMap<>();
+			for (String f : batch.getFeatures()) {
+				ft.put(f, feature(f, rnd));
+			}
+			rows.add(ft);
+		}
+
+		matrix = FeatureMatrix.of(rows);
+	}
+
+	/**
+	 * Random feature value in a plausible range.
+	 */
+	private static double feature(String name, SplittableRandom rnd) {
+		return switch (name) {
+			case "length" -> rnd.nextDouble(5, 800);
+			case "speed" -> rnd.nextDouble(5, 36);
+			case "num_lanes" -> rnd.nextInt(1, 5);
+			case "change_speed" -> rnd.nextDouble(-10, 10);
+			case "area" -> Math.exp(rnd.nextDouble(3, 9));
+			case "levels" -> rnd.nextInt(0, 10);
+			case "nearest_bus_stop", "nearest_train_station" -> rnd.nextDouble(0, 3000);
+			default -> {
+				if (name.startsWith("landuse_") || name.startsWith("parking_space"))
+					yield rnd.nextDouble();
+				if (name.startsWith("poi_") || name.startsWith("num_"))
+					yield rnd.nextInt(0, 6);
+				yield rnd.nextInt(0, 2);
+			}
+		};
+	}
+
+	@Benchmark
+	public void perRow(Blackhole bh) {
+		for (Object2DoubleMap<String> row : rows) {
+			bh.consume(predictor.predict(row, categories));
+		}
+	}
+
+	@Benchmark
+	public double[] batch() {
+		return batch.predict(matrix);
+	}
+}
@@ -0,0 +1,94 @@
+package org.matsim.prepare.network;
+
+import org.matsim.prepare.facilities.FacilityAttractionModelOther;
+import org.matsim.prepare.facilities.FacilityAttractionModelWork;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Compares the generated tree model sources with the {@link TreeEnsembleRegressor}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeEnsembleBenchmark {
+
+	private static final int N = 1000;
+
+	@Param({"capacity_priority", "speedRelative_traffic_light", "attraction_work", "attraction_other"})
+	private String model;
+
+	private ToDoubleBiFunction<double[], double[]> generated;
+	private TreeEnsembleRegressor interpreted;
+	private double[][] inputs;
+
+	@Setup
+	public void setup() {
+
+		Class<?> c = switch (model) {
+			case "capacity_priority" -> BerlinNetworkParams_capacity_priority.class;
+			case "speedRelative_traffic_light" -> BerlinNetworkParams_speedRelative_traffic_light.class;
+			case "attraction_work" -> FacilityAttractionModelWork.class;
+			case "attraction_other" -> FacilityAttractionModelOther.class;
+			default -> throw new IllegalArgumentException("Unknown model: " + model);
+		};
+
+		generated = switch (model) {
+			case "capacity_priority" -> BerlinNetworkParams_capacity_priority::score;
+			case "speedRelative_traffic_light" -> BerlinNetworkParams_speedRelative_traffic_light::score;
+			case "attraction_work" -> FacilityAttractionModelWork::score;
+			case "attraction_other" -> FacilityAttractionModelOther::score;
+			default -> throw new IllegalArgumentException("Unknown model: " + model);
+		};
+
+		interpreted = TreeEnsembleRegressor.load(c);
+		inputs = createInputs(interpreted, N, new SplittableRandom(0));
+	}
+
+	/**
+	 * Feature vectors with values drawn around the split points of the model, so that all parts of the trees are visited.
+	 */
+	static double[][] createInputs(TreeEnsembleRegressor model, int n, SplittableRandom rnd) {
+
+		int k = model.getFeatures().length;
+		double[][] splits = new double[k][];
+		for (int i = 0; i < k; i++) {
+			splits[i] = model.splits(i);
+		}
+
+		double[][] inputs = new double[n][k];
+		for (double[] input : inputs) {
+			for (int i = 0; i < k; i++) {
+				if (splits[i].length == 0)
+					input[i] = rnd.nextInt(0, 2);
+				else
+					input[i] = splits[i][rnd.nextInt(splits[i].length)] + rnd.nextGaussian() * 0.1;
+			}
+		}
+
+		return inputs;
+	}
+
+	@Benchmark
+	public void generated(Blackhole bh) {
+		double[] params = interpreted.getDefaultParams();
+		for (double[] input : inputs) {
+			bh.consume(generated.applyAsDouble(input, params));
+		}
+	}
+
+	@Benchmark
+	public void interpreted(Blackhole bh) {
+		double[] params = interpreted.getDefaultParams();
+		for (double[] input : inputs) {
+			bh.consume(interpreted.score(input, params));
+		}
+	}
+}
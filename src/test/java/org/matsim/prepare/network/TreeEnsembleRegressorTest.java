@@ -0,0 +1,106 @@
+package org.matsim.prepare.network;
+
+import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.junit.jupiter.api.Test;
+import org.matsim.application.prepare.Predictor;
+import org.matsim.prepare.facilities.FacilityAttractionModelOther;
+import org.matsim.prepare.facilities.FacilityAttractionModelWork;
+
+import java.util.SplittableRandom;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TreeEnsembleRegressorTest {
+
+	/**
+	 * Create random inputs, which often lie exactly at or next to split values.
+	 */
+	private static void assertParity(Class<?> generated, BiFunction<double[], double[], Double> score) {
+
+		TreeEnsembleRegressor model = TreeEnsembleRegressor.load(generated);
+		int n = model.getFeatures().length;
+
+		double[][] splits = new double[n][];
+		for (int i = 0; i < n; i++) {
+			splits[i] = model.splits(i);
+		}
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		double[] input = new double[n];
+
+		for (int k = 0; k < 20_000; k++) {
+			for (int i = 0; i < n; i++) {
+				double r = rnd.nextDouble();
+				if (splits[i].length == 0 || r < 0.2)
+					input[i] = rnd.nextInt(0, 2);
+				else {
+					double s = splits[i][rnd.nextInt(splits[i].length)];
+					if (r < 0.5)
+						input[i] = s;
+					else if (r < 0.6)
+						input[i] = Math.nextUp(s);
+					else if (r < 0.7)
+						input[i] = Math.nextDown(s);
+					else
+						input[i] = s + rnd.nextGaussian();
+				}
+			}
+
+			assertThat(model.score(input, model.getDefaultParams()))
+				.isEqualTo(score.apply(input, model.getDefaultParams()));
+		}
+	}
+
+	@Test
+	void networkParams() {
+
+		assertParity(BerlinNetworkParams_capacity_priority.class, BerlinNetworkParams_capacity_priority::score);
+		assertParity(BerlinNetworkParams_capacity_right_before_left.class, BerlinNetworkParams_capacity_right_before_left::score);
+		assertParity(BerlinNetworkParams_capacity_traffic_light.class, BerlinNetworkParams_capacity_traffic_light::score);
+		assertParity(BerlinNetworkParams_speedRelative_priority.class, BerlinNetworkParams_speedRelative_priority::score);
+		assertParity(BerlinNetworkParams_speedRelative_right_before_left.class, BerlinNetworkParams_speedRelative_right_before_left::score);
+		assertParity(BerlinNetworkParams_speedRelative_traffic_light.class, BerlinNetworkParams_speedRelative_traffic_light::score);
+
+	}
+
+	@Test
+	void facilityAttraction() {
+
+		assertParity(FacilityAttractionModelWork.class, FacilityAttractionModelWork::score);
+		assertParity(FacilityAttractionModelOther.class, FacilityAttractionModelOther::score);
+
+	}
+
+	@Test
+	void features() {
+
+		BerlinNetworkParams generated = new BerlinNetworkParams();
+		BerlinNetworkParams interpreted = new BerlinNetworkParams(true);
+
+		SplittableRandom rnd = new SplittableRandom(1);
+
+		for (int i = 0; i < 1000; i++) {
+			Object2DoubleMap<String> ft = new Object2DoubleOpenHashMap<>();
+			ft.put("length", rnd.nextDouble(5, 800));
+			ft.put("speed", rnd.nextDouble(5, 36));
+			ft.put("num_lanes", rnd.nextInt(1, 5));
+			ft.put("change_speed", rnd.nextDouble(-10, 10));
+			ft.put("junction_inc_lanes", rnd.nextInt(1, 8));
+			ft.put("priority_higher", rnd.nextInt(0, 2));
+			ft.put("is_secondary_or_higher", rnd.nextInt(0, 2));
+
+			for (String type : new String[]{"right_before_left", "priority", "traffic_light"}) {
+
+				Predictor g = generated.speedFactor(type, null);
+				Predictor t = interpreted.speedFactor(type, null);
+
+				assertThat(t).isInstanceOf(TreeEnsembleRegressor.class);
+				assertThat(t.predict(ft, new Object2ObjectOpenHashMap<>()))
+					.isEqualTo(g.predict(ft, new Object2ObjectOpenHashMap<>()));
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package org.matsim.prepare.opt;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ErrorTableTest {
+
+	@ParameterizedTest
+	@EnumSource(ErrorMetric.class)
+	void lookup(ErrorMetric metric) {
+
+		SplittableRandom rnd = new SplittableRandom(0);
+
+		int[] counts = new int[500];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = rnd.nextInt(0, 400);
+		}
+
+		ErrorTable table = new ErrorTable(metric, counts);
+
+		for (int i = 0; i < 100_000; i++) {
+			int count = counts[rnd.nextInt(counts.length)];
+			// Includes values outside the precomputed range
+			int old = rnd.nextInt(0, 1200);
+			int update = Math.max(0, old + rnd.nextInt(-5, 5));
+
+			assertThat(table.diff(count, old, update))
+				.isEqualTo(ScoreCalculator.diffChange(metric, count, old, update));
+		}
+
+		// Count values not contained in the table
+		assertThat(table.diff(1000, 10, 20))
+			.isEqualTo(ScoreCalculator.diffChange(metric, 1000, 10, 20));
+	}
+
+	@ParameterizedTest
+	@EnumSource(ErrorMetric.class)
+	void limitedSize(ErrorMetric metric) {
+
+		// Unscaled counts, which would need several GB without limit
+		int[] counts = new int[10_000];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = i * 100;
+		}
+
+		ErrorTable table = new ErrorTable(metric, counts, 100_000);
+		assertThat(table.size()).isLessThanOrEqualTo(100_000).isPositive();
+
+		for (int count : new int[]{0, 100, 500_000, 999_900}) {
+			assertThat(table.diff(count, count / 2, count + 7))
+				.isEqualTo(ScoreCalculator.diffChange(metric, count, count / 2, count + 7));
+		}
+
+		assertThat(new ErrorTable(metric, counts).size()).isLessThanOrEqualTo(ErrorTable.MAX_SIZE);
+	}
+}
@@ -0,0 +1,121 @@
+package org.matsim.prepare.opt;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelOptimizationTest {
+
+	private static final int STATIONS = 64;
+
+	private static final ParallelOptimization.Annealing ANNEALING = new ParallelOptimization.Annealing(200, 0.5, 1, 0.01);
+
+	private static PlanAssignmentProblem createProblem() {
+
+		SplittableRandom rnd = new SplittableRandom(0);
+
+		int[] counts = new int[STATIONS];
+		for (int i = 0; i < STATIONS; i++) {
+			counts[i] = rnd.nextInt(0, 40);
+		}
+
+		List<PlanPerson> persons = new ArrayList<>();
+		for (int p = 0; p < 500; p++) {
+
+			// Plans of a person are located in the same area
+			int area = rnd.nextInt(0, STATIONS - 8);
+
+			Int2IntMap[] plans = new Int2IntMap[4];
+			for (int k = 0; k < plans.length; k++) {
+				plans[k] = new Int2IntOpenHashMap();
+				for (int i = 0; i < 3; i++) {
+					plans[k].merge(area + rnd.nextInt(0, 8), 1, Integer::sum);
+				}
+			}
+
+			persons.add(new PlanPerson(Id.createPersonId(p), 0, plans));
+		}
+
+		return new PlanAssignmentProblem(4, ErrorMetric.log_error, persons, counts);
+	}
+
+	private static int[] partition(int partitions) {
+		double[] x = new double[STATIONS];
+		double[] y = new double[STATIONS];
+		for (int i = 0; i < STATIONS; i++) {
+			x[i] = i;
+			y[i] = i % 8;
+		}
+
+		return ParallelOptimization.bisect(x, y, partitions);
+	}
+
+	private static PlanAssignmentProblem run(int threads, Function<ExecutorService, PlanAssignmentProblem> f) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			return f.apply(executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static Map<Id<Person>, Integer> selection(PlanAssignmentProblem problem) {
+		return problem.getPersons().stream().collect(Collectors.toMap(PlanPerson::getId, PlanPerson::getK));
+	}
+
+	private static double recompute(PlanAssignmentProblem problem) {
+		ScoreCalculator calc = new ScoreCalculator();
+		calc.resetWorkingSolution(problem);
+		return calc.calculateScore().score().doubleValue();
+	}
+
+	@Test
+	void multiStart() {
+
+		long[] seeds = {0, 1, 2, 3};
+
+		PlanAssignmentProblem problem = createProblem();
+		PlanAssignmentProblem a = run(2, e -> ParallelOptimization.multiStart(problem, ANNEALING, seeds, e));
+		PlanAssignmentProblem b = run(2, e -> ParallelOptimization.multiStart(createProblem(), ANNEALING, seeds, e));
+
+		assertThat(a.getScore()).isEqualTo(b.getScore());
+		assertThat(selection(a)).isEqualTo(selection(b));
+
+		// Input is not modified
+		assertThat(problem.getPersons()).allMatch(p -> p.getK() == 0);
+
+		// Error table is built once per problem
+		assertThat(a.table).isSameAs(problem.table);
+	}
+
+	@Test
+	void partitioned() {
+
+		int[] partition = partition(4);
+		assertThat(partition).containsOnly(0, 1, 2, 3);
+
+		PlanAssignmentProblem a = run(4, e -> ParallelOptimization.partitioned(createProblem(), partition, 4, 3, ANNEALING, 0, e));
+		PlanAssignmentProblem b = run(4, e -> ParallelOptimization.partitioned(createProblem(), partition, 4, 3, ANNEALING, 0, e));
+
+		assertThat(a.getScore()).isEqualTo(b.getScore());
+		assertThat(selection(a)).isEqualTo(selection(b));
+
+		// Reconciled score must be the same as for the whole problem
+		assertThat(a.getScore().score().doubleValue()).isEqualTo(recompute(a));
+		assertThat(a.getScore().score().doubleValue()).isGreaterThanOrEqualTo(recompute(createProblem()));
+	}
+
+}
@@ -0,0 +1,58 @@
+package org.matsim.prepare.opt;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental error computation, which is performed for every count station touched by a move.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreCalculatorBenchmark {
+
+	private static final int N = 10_000;
+
+	@Param({"abs_error", "log_error", "symmetric_percentage_error"})
+	private ErrorMetric metric;
+
+	private final int[] counts = new int[N];
+	private final int[] old = new int[N];
+	private final int[] update = new int[N];
+	private ErrorTable table;
+
+	@Setup
+	public void setup() {
+		SplittableRandom rnd = new SplittableRandom(0);
+		for (int i = 0; i < N; i++) {
+			counts[i] = rnd.nextInt(0, 300);
+			old[i] = Math.max(0, counts[i] + rnd.nextInt(-50, 50));
+			update[i] = Math.max(0, old[i] + (rnd.nextBoolean() ? 1 : -1) * rnd.nextInt(1, 4));
+		}
+
+		table = new ErrorTable(metric, counts);
+	}
+
+	@Benchmark
+	public double diffChange() {
+		double error = 0;
+		for (int i = 0; i < N; i++) {
+			error += ScoreCalculator.diffChange(metric, counts[i], old[i], update[i]);
+		}
+		return error;
+	}
+
+	@Benchmark
+	public double table() {
+		double error = 0;
+		for (int i = 0; i < N; i++) {
+			error += table.diff(counts[i], old[i], update[i]);
+		}
+		return error;
+	}
+}
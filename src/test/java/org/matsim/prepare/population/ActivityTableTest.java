@@ -0,0 +1,60 @@
+package org.matsim.prepare.population;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.TripStructureUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivityTableTest {
+
+	@TempDir
+	private Path dir;
+
+	@Test
+	void groupedByPerson() throws IOException {
+
+		Path csv = dir.resolve("activities.csv");
+		Files.writeString(csv, """
+			p_id,n,type,duration,leg_duration,leg_dist,leg_mode,location,zone
+			1,0,home,480.0,0,0,,home,10
+			1,1,work,510.5,25.0,8000.0,pt,work_1,11
+			1,2,home,450.0,30.0,8200.0,pt,home,10
+			2,0,other,1440.0,0,0,,home,12
+			""");
+
+		ActivityTable table = ActivityTable.read(csv);
+
+		assertThat(table.size()).isEqualTo(4);
+		assertThat(table.getPerson("3")).isEqualTo(-1);
+
+		int p = table.getPerson("1");
+		assertThat(table.getEnd(p) - table.getStart(p)).isEqualTo(3);
+
+		int row = table.getStart(p) + 1;
+		assertThat(table.getType(row)).isEqualTo("work");
+		assertThat(table.getDuration(row)).isEqualTo(510);
+		assertThat(table.getLegDist(row)).isEqualTo(8000.0);
+		assertThat(table.getLegMode(row)).isEqualTo("pt");
+		assertThat(table.getLocation(row)).isEqualTo("work_1");
+		assertThat(table.getZone(row)).isEqualTo("11");
+
+		Plan plan = RunActivitySampling.createPlan(new Coord(0, 0), table, p, new SplittableRandom(0), PopulationUtils.getFactory());
+		assertThat(TripStructureUtils.getActivities(plan, TripStructureUtils.StageActivityHandling.ExcludeStageActivities))
+			.hasSize(3);
+		assertThat(TripStructureUtils.getLegs(plan))
+			.allMatch(l -> l.getMode().equals("pt"));
+
+		p = table.getPerson("2");
+		assertThat(table.getType(table.getStart(p))).isEqualTo("other");
+		assertThat(table.getEnd(p)).isEqualTo(table.size());
+	}
+}
@@ -0,0 +1,186 @@
+package org.matsim.prepare.population;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.population.PersonUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.facilities.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Small synthetic inputs for the benchmarks, so that they run without any scenario data.
+ * All coordinates lie in a square of {@link #SIZE} meters, which is divided into a grid of square zones.
+ */
+final class BenchmarkFixtures {
+
+	static final double SIZE = 50_000;
+	static final int ZONES_PER_SIDE = 10;
+	static final List<String> TYPES = List.of("work", "shop_daily", "leisure", "edu_prim", "other");
+
+	private BenchmarkFixtures() {
+	}
+
+	static Coord randomCoord(SplittableRandom rnd) {
+		return new Coord(rnd.nextDouble(0, SIZE), rnd.nextDouble(0, SIZE));
+	}
+
+	/**
+	 * Write facility file with random locations, activity types and attraction.
+	 */
+	static Path writeFacilities(Path dir, int n, SplittableRandom rnd) {
+
+		ActivityFacilities facilities = FacilitiesUtils.createActivityFacilities();
+		ActivityFacilitiesFactory f = facilities.getFactory();
+
+		for (int i = 0; i < n; i++) {
+			ActivityFacility facility = f.createActivityFacility(Id.create(i, ActivityFacility.class), randomCoord(rnd));
+			for (String type : TYPES) {
+				if (rnd.nextDouble() < 0.4)
+					facility.addActivityOption(f.createActivityOption(type));
+			}
+
+			if (facility.getActivityOptions().isEmpty())
+				facility.addActivityOption(f.createActivityOption("other"));
+
+			facility.getAttributes().putAttribute(Attributes.ATTRACTION_WORK, rnd.nextDouble(5, 500));
+			facility.getAttributes().putAttribute(Attributes.ATTRACTION_OTHER, rnd.nextDouble(5, 500));
+			facilities.addActivityFacility(facility);
+		}
+
+		Path path = dir.resolve("facilities.xml.gz");
+		new FacilitiesWriter(facilities).write(path.toString());
+		return path;
+	}
+
+	/**
+	 * Square zones, ids start at 1.
+	 */
+	static Long2ObjectMap<SimpleFeature> createZones() {
+
+		SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+		typeBuilder.setName("zones");
+		typeBuilder.add("the_geom", Polygon.class);
+		typeBuilder.add("ARS", String.class);
+		SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+		GeometryFactory gf = new GeometryFactory();
+		SimpleFeatureBuilder b = new SimpleFeatureBuilder(type);
+
+		double cell = SIZE / ZONES_PER_SIDE;
+		Long2ObjectMap<SimpleFeature> zones = new Long2ObjectOpenHashMap<>();
+		for (int x = 0; x < ZONES_PER_SIDE; x++) {
+			for (int y = 0; y < ZONES_PER_SIDE; y++) {
+				long id = zoneId(x, y);
+				b.add(gf.toGeometry(new Envelope(x * cell, (x + 1) * cell, y * cell, (y + 1) * cell)));
+				b.add(String.valueOf(id));
+				zones.put(id, b.buildFeature(String.valueOf(id)));
+			}
+		}
+
+		return zones;
+	}
+
+	static long zoneId(int x, int y) {
+		return x * ZONES_PER_SIDE + y + 1;
+	}
+
+	/**
+	 * Commuter relations between all zones with a large number of commuters, so they are never exhausted.
+	 */
+	static Path writeCommuter(Path dir, SplittableRandom rnd) {
+		Path path = dir.resolve("commuter.csv");
+		int n = ZONES_PER_SIDE * ZONES_PER_SIDE;
+
+		try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+			writer.write("from,to,n\n");
+			for (int i = 1; i <= n; i++) {
+				for (int j = 1; j <= n; j++) {
+					writer.write(i + "," + j + "," + rnd.nextInt(1_000_000, 10_000_000) + "\n");
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return path;
+	}
+
+	/**
+	 * Commuter probabilities between the Berlin districts.
+	 */
+	static Path writeBerlinCommuter(Path dir, SplittableRandom rnd) {
+		Path path = dir.resolve("berlin_commuter.csv");
+
+		try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+			writer.write("home,work,n\n");
+			for (int i = 1; i <= 12; i++) {
+				for (int j = 1; j <= 12; j++) {
+					writer.write(i + "," + j + "," + rnd.nextInt(1, 1000) + "\n");
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return path;
+	}
+
+	/**
+	 * Reference persons as in the survey data.
+	 */
+	static Path writeRefPersons(Path dir, int n, SplittableRandom rnd) {
+		Path path = dir.resolve("ref_persons.csv");
+
+		try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+			writer.write("p_id,region_type,gender,employment,age\n");
+			for (int i = 0; i < n; i++) {
+				writer.write(String.join(",",
+					String.valueOf(i),
+					rnd.nextBoolean() ? "1" : "3",
+					rnd.nextBoolean() ? "m" : "f",
+					rnd.nextDouble() < 0.3 ? "unemployed" : "job_full_time",
+					String.valueOf(rnd.nextInt(0, 100))
+				));
+				writer.write("\n");
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return path;
+	}
+
+	/**
+	 * Person with the demographic attributes used for matching.
+	 */
+	static Person createPerson(int i, SplittableRandom rnd) {
+		Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId(i));
+		PersonUtils.setAge(person, rnd.nextInt(0, 90));
+		PersonUtils.setSex(person, rnd.nextBoolean() ? "m" : "f");
+		PersonUtils.setEmployed(person, rnd.nextDouble() > 0.3);
+		person.getAttributes().putAttribute(Attributes.RegioStaR7, rnd.nextInt(1, 8));
+
+		Coord home = randomCoord(rnd);
+		person.getAttributes().putAttribute(Attributes.HOME_X, home.getX());
+		person.getAttributes().putAttribute(Attributes.HOME_Y, home.getY());
+
+		return person;
+	}
+}
@@ -0,0 +1,76 @@
+package org.matsim.prepare.population;
+
+import org.locationtech.jts.geom.Point;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.geometry.geotools.MGC;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.FacilitiesUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selection of commute targets, with all threads competing for the same origin zones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommuterAssignmentBenchmark {
+
+	private Path dir;
+	private CommuterAssignment commuter;
+	private ActivityFacility target;
+
+	@Setup
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("commuter");
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		commuter = new CommuterAssignment(BenchmarkFixtures.createZones(),
+			BenchmarkFixtures.writeCommuter(dir, rnd), BenchmarkFixtures.writeBerlinCommuter(dir, rnd), 0.25);
+
+		target = FacilitiesUtils.createActivityFacilities().getFactory()
+			.createActivityFacility(Id.create("target", ActivityFacility.class), BenchmarkFixtures.randomCoord(rnd));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		IOUtils.deleteDirectoryRecursively(dir);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public ActivityFacility selectTarget(ThreadState s) {
+		return s.select(commuter, target);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public ActivityFacility selectTargetParallel(ThreadState s) {
+		return s.select(commuter, target);
+	}
+
+	/**
+	 * Per thread random state.
+	 */
+	@State(Scope.Thread)
+	public static class ThreadState {
+
+		private final SplittableRandom rnd = new SplittableRandom(Thread.currentThread().threadId());
+
+		ActivityFacility select(CommuterAssignment commuter, ActivityFacility target) {
+			// Few popular origins
+			long ars = BenchmarkFixtures.zoneId(rnd.nextInt(2), rnd.nextInt(2));
+			Point p = MGC.coord2Point(BenchmarkFixtures.randomCoord(rnd));
+			return commuter.selectTarget(rnd, ars, 20_000, p, zone -> target);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package org.matsim.prepare.population;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.assertj.core.data.Offset;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.utils.geometry.geotools.MGC;
+import org.matsim.facilities.ActivityFacilitiesFactory;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.facilities.FacilitiesUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommuterAssignmentTest {
+
+	private static final long ORIGIN = 1;
+	private static final long A = 2;
+	private static final long B = 3;
+	private static final long FAR = 4;
+
+	@TempDir
+	private Path dir;
+
+	/**
+	 * Square zones of 5 km, a and b are next to the origin.
+	 */
+	private static Long2ObjectMap<SimpleFeature> createZones() {
+
+		SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+		typeBuilder.setName("zones");
+		typeBuilder.add("the_geom", Polygon.class);
+		typeBuilder.add("ARS", String.class);
+		SimpleFeatureBuilder b = new SimpleFeatureBuilder(typeBuilder.buildFeatureType());
+
+		GeometryFactory gf = new GeometryFactory();
+		Long2ObjectMap<SimpleFeature> zones = new Long2ObjectOpenHashMap<>();
+
+		long[][] cells = {{ORIGIN, 0, 0}, {A, 1, 0}, {B, 0, 1}, {FAR, 9, 9}};
+		for (long[] cell : cells) {
+			b.add(gf.toGeometry(new Envelope(cell[1] * 5000, (cell[1] + 1) * 5000, cell[2] * 5000, (cell[2] + 1) * 5000)));
+			b.add(String.valueOf(cell[0]));
+			zones.put(cell[0], b.buildFeature(String.valueOf(cell[0])));
+		}
+
+		return zones;
+	}
+
+	/**
+	 * Commuter probabilities between Berlin districts, which are not used for these zones.
+	 */
+	private Path writeBerlinCommuter() throws IOException {
+		Path path = dir.resolve("berlin_commuter.csv");
+		Files.writeString(path, "home,work,n\n1,1,10\n1,2,5\n2,1,5\n2,2,10\n");
+		return path;
+	}
+
+	@Test
+	void budgetsAreNotExceeded() throws IOException {
+
+		Path commuterPath = dir.resolve("commuter.csv");
+		Files.writeString(commuterPath, "from,to,n\n%d,%d,80\n%d,%d,20\n%d,%d,1000\n".formatted(ORIGIN, A, ORIGIN, B, ORIGIN, FAR));
+
+		Long2ObjectMap<SimpleFeature> zones = createZones();
+		CommuterAssignment commuter = new CommuterAssignment(zones, commuterPath, writeBerlinCommuter(), 0.5);
+
+		// One facility per zone, identified by its geometry
+		ActivityFacilitiesFactory f = FacilitiesUtils.createActivityFacilities().getFactory();
+		Map<Geometry, ActivityFacility> facilities = new IdentityHashMap<>();
+		for (long id : List.of(A, B, FAR)) {
+			facilities.put((Geometry) zones.get(id).getDefaultGeometry(),
+				f.createActivityFacility(Id.create(id, ActivityFacility.class), new Coord(0, 0)));
+		}
+
+		Point ref = MGC.coord2Point(new Coord(2500, 2500));
+
+		Map<String, Long> counts = IntStream.range(0, 200).parallel()
+			.mapToObj(i -> commuter.selectTarget(new SplittableRandom(i), ORIGIN, 10_000, ref, facilities::get))
+			.filter(Objects::nonNull)
+			.collect(Collectors.groupingBy(ft -> ft.getId().toString(), Collectors.counting()));
+
+		// Budgets are scaled by the sample size, the far away zone is never chosen
+		assertThat(counts)
+			.containsEntry(String.valueOf(A), 40L)
+			.containsEntry(String.valueOf(B), 10L)
+			.doesNotContainKey(String.valueOf(FAR));
+
+		assertThat(commuter.selectTarget(new SplittableRandom(0), ORIGIN, 10_000, ref, facilities::get))
+			.isNull();
+	}
+
+	@Test
+	void proportionalToRemaining() throws IOException {
+
+		Path commuterPath = dir.resolve("commuter.csv");
+		Files.writeString(commuterPath, "from,to,n\n%d,%d,300000\n%d,%d,100000\n".formatted(ORIGIN, A, ORIGIN, B));
+
+		Long2ObjectMap<SimpleFeature> zones = createZones();
+		CommuterAssignment commuter = new CommuterAssignment(zones, commuterPath, writeBerlinCommuter(), 1);
+
+		Point ref = MGC.coord2Point(new Coord(2500, 2500));
+		ActivityFacility target = FacilitiesUtils.createActivityFacilities().getFactory()
+			.createActivityFacility(Id.create("t", ActivityFacility.class), new Coord(0, 0));
+
+		Geometry zoneA = (Geometry) zones.get(A).getDefaultGeometry();
+		SplittableRandom rnd = new SplittableRandom(1);
+
+		Map<Boolean, Long> counts = IntStream.range(0, 10_000)
+			.mapToObj(i -> {
+				Geometry[] selected = new Geometry[1];
+				commuter.selectTarget(rnd, ORIGIN, 10_000, ref, zone -> {
+					selected[0] = zone;
+					return target;
+				});
+				return selected[0] == zoneA;
+			})
+			.collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+		assertThat(counts.get(true) / 10_000.0).isCloseTo(0.75, Offset.offset(0.02));
+	}
+
+	@Test
+	void nearlyUsedUp() throws IOException {
+
+		Path commuterPath = dir.resolve("commuter.csv");
+		Files.writeString(commuterPath, "from,to,n\n%d,%d,1000\n%d,%d,1000\n".formatted(ORIGIN, A, ORIGIN, B));
+
+		Long2ObjectMap<SimpleFeature> zones = createZones();
+		CommuterAssignment commuter = new CommuterAssignment(zones, commuterPath, writeBerlinCommuter(), 1);
+
+		Point ref = MGC.coord2Point(new Coord(2500, 2500));
+		ActivityFacility target = FacilitiesUtils.createActivityFacilities().getFactory()
+			.createActivityFacility(Id.create("t", ActivityFacility.class), new Coord(0, 0));
+
+		// Acceptance of the rejection sampling gets very low for the last persons, the whole budget must be assigned nevertheless
+		SplittableRandom rnd = new SplittableRandom(0);
+		for (int i = 0; i < 2000; i++) {
+			assertThat(commuter.selectTarget(rnd, ORIGIN, 10_000, ref, zone -> target))
+				.isNotNull();
+		}
+
+		assertThat(commuter.selectTarget(rnd, ORIGIN, 10_000, ref, zone -> target))
+			.isNull();
+	}
+}
@@ -0,0 +1,95 @@
+package org.matsim.prepare.population;
+
+import org.locationtech.jts.geom.Envelope;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.prepare.facilities.AttributedActivityFacility;
+import org.matsim.run.OpenBerlinScenario;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spatial queries and weighted sampling on the {@link FacilityIndex}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FacilityIndexBenchmark {
+
+	@Param({"100000"})
+	private int facilities;
+
+	@Param({"1000", "5000"})
+	private double radius;
+
+	private Path dir;
+	private FacilityIndex index;
+	private Coord[] origins;
+
+	@Setup
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("facility-index");
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		index = new FacilityIndex(BenchmarkFixtures.writeFacilities(dir, facilities, rnd).toString(), OpenBerlinScenario.CRS);
+
+		origins = new Coord[1000];
+		for (int i = 0; i < origins.length; i++) {
+			origins[i] = BenchmarkFixtures.randomCoord(rnd);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		IOUtils.deleteDirectoryRecursively(dir);
+	}
+
+	@Benchmark
+	public void query(Blackhole bh) {
+		for (Coord c : origins) {
+			Envelope env = new Envelope(c.getX() - radius, c.getX() + radius, c.getY() - radius, c.getY() + radius);
+			bh.consume(index.index.get("work").query(env));
+		}
+	}
+
+	@Benchmark
+	public void queryVisitor(Blackhole bh) {
+		FacilityIndex.TypeIndex work = index.index.get("work");
+		for (Coord c : origins) {
+			Envelope env = new Envelope(c.getX() - radius, c.getX() + radius, c.getY() - radius, c.getY() + radius);
+			work.query(env, bh::consume);
+		}
+	}
+
+	@Benchmark
+	public void nearest(Blackhole bh) {
+		PackedFacilityIndex packed = index.getPacked();
+		int type = packed.getType("work");
+		int[] ordinals = new int[10];
+		double[] dist = new double[10];
+		for (Coord c : origins) {
+			bh.consume(packed.nearest(type, c.getX(), c.getY(), 10, ordinals, dist));
+		}
+	}
+
+	@Benchmark
+	public void queryAndSample(Blackhole bh) {
+		SplittableRandom rnd = new SplittableRandom(1);
+		for (Coord c : origins) {
+			Envelope env = new Envelope(c.getX() - radius, c.getX() + radius, c.getY() - radius, c.getY() + radius);
+			List<AttributedActivityFacility> query = index.index.get("shop_daily").query(env);
+			if (!query.isEmpty())
+				bh.consume(FacilityIndex.sampleByWeight(query, AttributedActivityFacility::getOtherAttraction, rnd));
+		}
+	}
+}
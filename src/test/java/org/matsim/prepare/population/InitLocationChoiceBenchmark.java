@@ -0,0 +1,39 @@
+package org.matsim.prepare.population;
+
+import org.matsim.api.core.v01.Coord;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Static helpers used for every activity during location choice.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InitLocationChoiceBenchmark {
+
+	private final SplittableRandom rnd = new SplittableRandom(0);
+	private final Coord origin = new Coord(795000, 5825000);
+
+	private double dist;
+
+	@Setup(Level.Iteration)
+	public void setup() {
+		dist = rnd.nextDouble(0.5, 50);
+	}
+
+	@Benchmark
+	public Coord rndCoord() {
+		return InitLocationChoice.rndCoord(rnd, 2500, origin);
+	}
+
+	@Benchmark
+	public double beelineDist() {
+		return InitLocationChoice.beelineDist(dist);
+	}
+}
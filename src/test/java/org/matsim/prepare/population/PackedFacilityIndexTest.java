@@ -0,0 +1,179 @@
+package org.matsim.prepare.population;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.assertj.core.data.Offset;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.facilities.ActivityFacilitiesFactory;
+import org.matsim.facilities.ActivityFacilitiesFactoryImpl;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.prepare.facilities.AttributedActivityFacility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackedFacilityIndexTest {
+
+	private static final List<String> TYPES = List.of("home", "work", "shop", "leisure");
+
+	private final SplittableRandom rnd = new SplittableRandom(0);
+	private PackedFacilityIndex index;
+
+	@BeforeEach
+	void setUp() {
+
+		ActivityFacilitiesFactory factory = new ActivityFacilitiesFactoryImpl();
+		List<AttributedActivityFacility> facilities = new ArrayList<>();
+
+		for (int i = 0; i < 5000; i++) {
+			// Coordinates on a coarse grid to produce many duplicates
+			Coord coord = new Coord(rnd.nextInt(0, 200) * 50, rnd.nextInt(0, 200) * 50);
+			ActivityFacility f = factory.createActivityFacility(Id.create(i, ActivityFacility.class), coord);
+			f.getAttributes().putAttribute(Attributes.ATTRACTION_WORK, rnd.nextDouble());
+			f.getAttributes().putAttribute(Attributes.ATTRACTION_OTHER, rnd.nextDouble());
+
+			for (String type : TYPES) {
+				if (rnd.nextDouble() < (type.equals("work") ? 0.05 : 0.5))
+					f.addActivityOption(factory.createActivityOption(type));
+			}
+
+			facilities.add(new AttributedActivityFacility(f));
+		}
+
+		index = new PackedFacilityIndex(facilities, TYPES);
+	}
+
+	private IntList bruteForce(int type, double x, double y, double radius) {
+		IntList result = new IntArrayList();
+		for (int i = 0; i < index.size(); i++) {
+			double dx = index.getX(i) - x;
+			double dy = index.getY(i) - y;
+			if (index.hasType(i, type) && dx * dx + dy * dy <= radius * radius)
+				result.add(i);
+		}
+		return result;
+	}
+
+	@Test
+	void rangeQuery() {
+
+		int type = index.getType("shop");
+		for (int i = 0; i < 200; i++) {
+			double x = rnd.nextDouble(-500, 10500);
+			double y = rnd.nextDouble(-500, 10500);
+			double r = rnd.nextDouble(0, 2000);
+
+			IntList expected = new IntArrayList();
+			for (int j = 0; j < index.size(); j++) {
+				if (index.hasType(j, type) && Math.abs(index.getX(j) - x) <= r && Math.abs(index.getY(j) - y) <= r)
+					expected.add(j);
+			}
+
+			IntList result = new IntArrayList();
+			index.query(type, x - r, y - r, x + r, y + r, result::add);
+
+			assertThat(result).containsExactlyInAnyOrderElementsOf(expected);
+		}
+	}
+
+	@Test
+	void radiusQuery() {
+
+		for (String t : TYPES) {
+			int type = index.getType(t);
+			for (int i = 0; i < 100; i++) {
+				double x = rnd.nextInt(0, 200) * 50;
+				double y = rnd.nextInt(0, 200) * 50;
+				double r = rnd.nextInt(0, 40) * 50;
+
+				IntList result = new IntArrayList();
+				index.query(type, x, y, r, result::add);
+
+				assertThat(result).containsExactlyInAnyOrderElementsOf(bruteForce(type, x, y, r));
+			}
+		}
+	}
+
+	@Test
+	void nearest() {
+
+		int type = index.getType("work");
+		int[] ordinals = new int[15];
+		double[] dist = new double[15];
+
+		for (int i = 0; i < 200; i++) {
+			double x = rnd.nextDouble(0, 10000);
+			double y = rnd.nextDouble(0, 10000);
+
+			double[] expected = IntStream.range(0, index.size())
+				.filter(j -> index.hasType(j, type))
+				.mapToDouble(j -> Math.pow(index.getX(j) - x, 2) + Math.pow(index.getY(j) - y, 2))
+				.sorted()
+				.limit(15)
+				.toArray();
+
+			int n = index.nearest(type, x, y, 15, ordinals, dist);
+
+			assertThat(n).isEqualTo(15);
+			for (int j = 0; j < n; j++) {
+				assertThat(index.hasType(ordinals[j], type)).isTrue();
+				assertThat(dist[j]).isCloseTo(expected[j], Offset.offset(1e-6));
+			}
+		}
+	}
+
+	@Test
+	void ringSampling() {
+
+		int type = index.getType("leisure");
+		for (int i = 0; i < 10; i++) {
+			double x = rnd.nextDouble(2000, 8000);
+			double y = rnd.nextDouble(2000, 8000);
+
+			double total = 0;
+			int best = -1;
+			for (int j = 0; j < index.size(); j++) {
+				double d = Math.hypot(index.getX(j) - x, index.getY(j) - y);
+				if (index.hasType(j, type) && d >= 300 && d <= 600) {
+					total += index.getOtherAttraction(j);
+					if (best == -1 || index.getOtherAttraction(j) > index.getOtherAttraction(best))
+						best = j;
+				}
+			}
+
+			int count = 0;
+			for (int k = 0; k < 20_000; k++) {
+				int idx = index.sample(type, x, y, 300, 600, index::getOtherAttraction, rnd);
+				double d = Math.hypot(index.getX(idx) - x, index.getY(idx) - y);
+
+				assertThat(d).isBetween(300.0, 600.0);
+				assertThat(index.hasType(idx, type)).isTrue();
+				if (idx == best)
+					count++;
+			}
+
+			assertThat(count / 20_000.0).isCloseTo(index.getOtherAttraction(best) / total, Offset.offset(0.01));
+		}
+
+		assertThat(index.sample(type, -5000, -5000, 0, 100, index::getOtherAttraction, rnd)).isEqualTo(-1);
+		assertThat(index.sample(type, 5000, 5000, 0, 1000, j -> 0, rnd)).isEqualTo(-1);
+	}
+
+	@Test
+	void types() {
+
+		assertThat(index.getType("unknown")).isEqualTo(-1);
+		assertThat(index.hasType(index.getType("work"))).isTrue();
+
+		IntList result = new IntArrayList();
+		index.query(-1, 0, 0, 10000, 10000, result::add);
+		assertThat(result).isEmpty();
+	}
+}
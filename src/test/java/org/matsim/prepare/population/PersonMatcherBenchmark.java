@@ -0,0 +1,84 @@
+package org.matsim.prepare.population;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.io.IOUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching of survey persons to the synthetic population and vice versa.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PersonMatcherBenchmark {
+
+	@Param({"20000"})
+	private int refPersons;
+
+	@Param({"10000"})
+	private int population;
+
+	private Path dir;
+	private PersonMatcher matcher;
+	private List<Person> persons;
+	private PersonMatcher.Index index;
+	private List<CSVRecord> records;
+
+	@Setup
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("person-matcher");
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		Path path = BenchmarkFixtures.writeRefPersons(dir, refPersons, rnd);
+		matcher = new PersonMatcher("p_id", path);
+
+		persons = new ArrayList<>();
+		for (int i = 0; i < population; i++) {
+			persons.add(BenchmarkFixtures.createPerson(i, rnd));
+		}
+
+		index = matcher.createIndex(persons);
+
+		try (Reader reader = Files.newBufferedReader(path);
+			 CSVParser parser = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build().parse(reader)) {
+			records = parser.getRecords().subList(0, 100);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		IOUtils.deleteDirectoryRecursively(dir);
+	}
+
+	@Benchmark
+	public void matchPerson(Blackhole bh) {
+		SplittableRandom rnd = new SplittableRandom(1);
+		for (Person p : persons) {
+			bh.consume(matcher.matchPerson(p, rnd));
+		}
+	}
+
+	@Benchmark
+	public void matchEntry(Blackhole bh) {
+		SplittableRandom rnd = new SplittableRandom(1);
+		for (CSVRecord r : records) {
+			bh.consume(matcher.matchEntry(r, index, rnd));
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package org.matsim.prepare.population;
+
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.population.PersonUtils;
+import org.matsim.core.population.PopulationUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersonMatcherTest {
+
+	@TempDir
+	private Path dir;
+
+	private static Person createPerson(int i, int age, String sex, boolean employed, int regionType) {
+		Person person = PopulationUtils.getFactory().createPerson(Id.createPersonId(i));
+		PersonUtils.setAge(person, age);
+		PersonUtils.setSex(person, sex);
+		PersonUtils.setEmployed(person, employed);
+		person.getAttributes().putAttribute(Attributes.RegioStaR7, regionType);
+		return person;
+	}
+
+	private Path writeRefPersons(int n, SplittableRandom rnd) throws IOException {
+		StringBuilder sb = new StringBuilder("p_id,region_type,gender,employment,age\n");
+		for (int i = 0; i < n; i++) {
+			sb.append(i).append(',')
+				.append(rnd.nextBoolean() ? 1 : 3).append(',')
+				.append(rnd.nextBoolean() ? "m" : "f").append(',')
+				.append(rnd.nextDouble() < 0.3 ? "unemployed" : "job_full_time").append(',')
+				.append(rnd.nextInt(0, 100)).append('\n');
+		}
+
+		Path path = dir.resolve("ref_persons.csv");
+		Files.writeString(path, sb);
+		return path;
+	}
+
+	private static List<CSVRecord> records(PersonMatcher matcher) {
+		List<CSVRecord> records = new ArrayList<>();
+		for (Map.Entry<String, CSVRecord> e : matcher) {
+			records.add(e.getValue());
+		}
+		return records;
+	}
+
+	@Test
+	void matchSameKey() throws IOException {
+
+		Path path = dir.resolve("ref_persons.csv");
+		Files.writeString(path, "p_id,region_type,gender,employment,age\n0,1,m,job_full_time,30\n");
+
+		PersonMatcher matcher = new PersonMatcher("p_id", path);
+		CSVRecord record = matcher.getPerson("0");
+
+		List<Person> persons = List.of(
+			createPerson(0, 30, "f", true, 1),
+			createPerson(1, 30, "m", false, 1),
+			createPerson(2, 30, "m", true, 5),
+			createPerson(3, 70, "m", true, 1),
+			createPerson(4, 34, "m", true, 1)
+		);
+
+		PersonMatcher.Index index = matcher.createIndex(persons);
+
+		// Only the last person is within the age range and has the same attributes
+		for (int i = 0; i < 20; i++) {
+			assertThat(matcher.matchEntry(record, index, new SplittableRandom(i)))
+				.isSameAs(persons.get(4));
+		}
+
+		assertThat(index.remove(persons.get(4))).isTrue();
+		assertThat(matcher.matchEntry(record, index, new SplittableRandom(0))).isNull();
+	}
+
+	@Test
+	void removedPersonsAreNotMatched() throws IOException {
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		PersonMatcher matcher = new PersonMatcher("p_id", writeRefPersons(200, rnd));
+
+		List<Person> persons = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			persons.add(createPerson(i, rnd.nextInt(0, 90), rnd.nextBoolean() ? "m" : "f", rnd.nextDouble() > 0.3, rnd.nextInt(1, 8)));
+		}
+
+		List<CSVRecord> records = records(matcher);
+
+		PersonMatcher.Index index = matcher.createIndex(persons);
+		Set<Person> used = ConcurrentHashMap.newKeySet();
+
+		// Each record is matched multiple times, in parallel. A match is only used if the removal succeeded
+		long matched = IntStream.range(0, records.size() * 10).parallel()
+			.mapToObj(i -> {
+				CSVRecord record = records.get(i % records.size());
+				Person p = matcher.matchEntry(record, index, new SplittableRandom(i));
+				if (p == null)
+					return null;
+
+				// Matched persons must have one of the keys of the record
+				assertThat(matcher.createKey(record)).contains(matcher.createKey(p));
+
+				if (index.remove(p)) {
+					assertThat(used.add(p)).isTrue();
+					return p;
+				}
+				return null;
+			})
+			.filter(Objects::nonNull)
+			.count();
+
+		assertThat(matched).isPositive().isEqualTo(used.size());
+		assertThat(index.remove(persons.get(0))).isEqualTo(!used.contains(persons.get(0)));
+	}
+}
@@ -0,0 +1,133 @@
+package org.matsim.prepare.population;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.*;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.facilities.ActivityFacility;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopulationSnapshotTest {
+
+	@TempDir
+	private Path dir;
+
+	@Test
+	void sameAsXml() throws IOException {
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		PopulationFactory f = population.getFactory();
+		population.getAttributes().putAttribute("coordinateReferenceSystem", "EPSG:25832");
+
+		// More than one chunk
+		for (int i = 0; i < 25_000; i++) {
+			Person person = f.createPerson(Id.createPersonId("p" + i));
+			person.getAttributes().putAttribute("age", rnd.nextInt(0, 100));
+			person.getAttributes().putAttribute("income", rnd.nextDouble() * 5000);
+			person.getAttributes().putAttribute("sex", rnd.nextBoolean() ? "m" : "f");
+			person.getAttributes().putAttribute("employed", rnd.nextBoolean());
+			person.getAttributes().putAttribute("home", new Coord(rnd.nextInt(0, 10000), rnd.nextInt(0, 10000)));
+
+			for (int j = 0; j < 2; j++) {
+				Plan plan = f.createPlan();
+				plan.setScore(j == 0 ? null : rnd.nextDouble());
+				plan.setType(j == 0 ? null : "type");
+
+				// Exact and inexact coordinates and times
+				Activity home = f.createActivityFromCoord("home", new Coord(rnd.nextInt(0, 100000) / 10.0, rnd.nextDouble() * 1000));
+				home.setEndTime(rnd.nextInt(0, 86400));
+				home.getAttributes().putAttribute("orig_dist", rnd.nextDouble());
+				plan.addActivity(home);
+
+				Leg leg = f.createLeg(rnd.nextBoolean() ? "car" : "walk");
+				leg.setRoutingMode(leg.getMode());
+				leg.setDepartureTime(rnd.nextDouble() * 86400);
+				if (leg.getMode().equals("car")) {
+					NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("1"),
+						List.of(Id.createLinkId("2"), Id.createLinkId("3")), Id.createLinkId("4"));
+					route.setDistance(rnd.nextInt(0, 10000));
+					route.setTravelTime(rnd.nextInt(0, 3600));
+					if (rnd.nextBoolean())
+						route.setVehicleId(Id.createVehicleId(person.getId() + "_car"));
+					leg.setRoute(route);
+				}
+				plan.addLeg(leg);
+
+				Activity work = f.createActivityFromLinkId("work", Id.createLinkId("4"));
+				work.setFacilityId(Id.create("f" + rnd.nextInt(0, 100), ActivityFacility.class));
+				work.setStartTime(rnd.nextInt(0, 86400));
+				work.setMaximumDuration(3600.5);
+				plan.addActivity(work);
+
+				person.addPlan(plan);
+			}
+
+			person.setSelectedPlan(person.getPlans().get(1));
+			population.addPerson(person);
+		}
+
+		Path snapshot = dir.resolve("population" + PopulationSnapshot.EXTENSION);
+		PopulationSnapshot.writePopulation(population, snapshot.toString());
+
+		Population read = PopulationSnapshot.readPopulation(snapshot.toString());
+
+		assertThat(read.getPersons()).hasSameSizeAs(population.getPersons());
+		assertThat(List.copyOf(read.getPersons().keySet())).isEqualTo(List.copyOf(population.getPersons().keySet()));
+
+		// Both populations written as xml need to be identical
+		Path expected = dir.resolve("expected.xml");
+		Path actual = dir.resolve("actual.xml");
+
+		PopulationSnapshot.writePopulation(population, expected.toString());
+		PopulationSnapshot.writePopulation(read, actual.toString());
+
+		assertThat(Files.readString(actual)).isEqualTo(Files.readString(expected));
+		assertThat(Files.size(snapshot)).isLessThan(Files.size(expected) / 4);
+	}
+
+	@Test
+	void streaming() {
+
+		PopulationFactory f = PopulationUtils.getFactory();
+		Population population = PopulationUtils.createPopulation(ConfigUtils.createConfig());
+		population.getAttributes().putAttribute("coordinateReferenceSystem", "EPSG:25832");
+
+		for (String path : List.of("population" + PopulationSnapshot.EXTENSION, "population.xml")) {
+			Path file = dir.resolve(path);
+
+			try (StreamingPopulation.Writer writer = StreamingPopulation.openWriter(file.toString(), population.getAttributes())) {
+				for (int i = 0; i < 25_000; i++) {
+					Person person = f.createPerson(Id.createPersonId("p" + i));
+					Plan plan = f.createPlan();
+					plan.addActivity(f.createActivityFromCoord("home", new Coord(i, i)));
+					person.addPlan(plan);
+					writer.write(person);
+				}
+			}
+
+			int n = 0;
+			try (StreamingPopulation.Reader reader = StreamingPopulation.openReader(file.toString())) {
+				while (reader.hasNext()) {
+					assertThat(reader.next().getId()).isEqualTo(Id.createPersonId("p" + n++));
+				}
+
+				assertThat(reader.getAttributes().getAttribute("coordinateReferenceSystem")).isEqualTo("EPSG:25832");
+			}
+
+			assertThat(n).isEqualTo(25_000);
+		}
+	}
+}
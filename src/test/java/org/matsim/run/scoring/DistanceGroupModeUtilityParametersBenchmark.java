@@ -0,0 +1,52 @@
+package org.matsim.run.scoring;
+
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import org.matsim.core.scoring.functions.ModeUtilityParameters;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distance utility lookup performed for every scored leg.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceGroupModeUtilityParametersBenchmark {
+
+	private static final int N = 10_000;
+
+	private final double[] dists = new double[N];
+	private DistanceGroupModeUtilityParameters params;
+
+	@Setup
+	public void setup() {
+		ModeUtilityParameters base = new ModeUtilityParameters(0, -1, 0, 0, 0, 0);
+
+		// Similar to the groups used in the calibrated config
+		List<Integer> groups = List.of(1000, 2000, 5000, 10000, 20000, 50000, 100000);
+		DoubleList utils = DoubleList.of(-0.5, -0.3, -0.2, -0.15, -0.1, -0.05, -0.01);
+
+		params = new DistanceGroupModeUtilityParameters(base, new DistanceGroupModeUtilityParameters.DeltaBuilder(),
+			IndividualPersonScoringParameters.calcDistanceGroups(groups, utils));
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		for (int i = 0; i < N; i++) {
+			dists[i] = Math.exp(rnd.nextDouble(4, 11.5));
+		}
+	}
+
+	@Benchmark
+	public double calcUtilityDistDelta() {
+		double sum = 0;
+		for (double d : dists) {
+			sum += params.calcUtilityDistDelta(d);
+		}
+		return sum;
+	}
+}
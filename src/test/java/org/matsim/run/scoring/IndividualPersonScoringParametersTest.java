@@ -0,0 +1,112 @@
+package org.matsim.run.scoring;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PersonUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndividualPersonScoringParametersTest {
+
+	private static Scenario createScenario() {
+
+		Config config = ConfigUtils.createConfig();
+		PiecewiseLinearlLegScoringTest.createParams(config);
+
+		AdvancedScoringConfigGroup scoring = ConfigUtils.addOrGetModule(config, AdvancedScoringConfigGroup.class);
+		scoring.distGroups = List.of(1000, 5000, 10000);
+
+		AdvancedScoringConfigGroup.ScoringParameters params = new AdvancedScoringConfigGroup.ScoringParameters();
+		scoring.addParameterSet(params);
+
+		AdvancedScoringConfigGroup.ModeParams car = params.getOrCreateModeParams(TransportMode.car);
+		car.deltaConstant = 0.5;
+		car.varConstant = AdvancedScoringConfigGroup.VariationType.normal;
+		car.deltaDailyConstant = -0.3;
+		car.deltaPerDistGroup = List.of(-0.5, -1.0, -3.0);
+
+		AdvancedScoringConfigGroup.ModeParams walk = params.getOrCreateModeParams(TransportMode.walk);
+		walk.deltaConstant = 0.2;
+		walk.varConstant = AdvancedScoringConfigGroup.VariationType.truncatedNormal;
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Population population = scenario.getPopulation();
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		for (int i = 0; i < 500; i++) {
+			Person person = population.getFactory().createPerson(Id.createPersonId("p" + i));
+			PersonUtils.setIncome(person, rnd.nextInt(500, 5000));
+			population.addPerson(person);
+		}
+
+		return scenario;
+	}
+
+	@Test
+	void sameAsFullParameters() {
+
+		Scenario scenario = createScenario();
+		IndividualPersonScoringParameters params = new IndividualPersonScoringParameters(scenario);
+		ModeIndex modes = ModeIndex.fromConfig(scenario.getConfig());
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+
+			List<Object> day = PiecewiseLinearlLegScoringTest.createDay(rnd, person.getId());
+
+			IndividualPersonScoringParameters.PersonParameters p = params.getPersonParameters(person);
+			double expected = PiecewiseLinearlLegScoringTest.replay(new PiecewiseLinearlLegScoring(params.getScoringParameters(person), modes), day);
+
+			assertThat(PiecewiseLinearlLegScoringTest.replay(new PiecewiseLinearlLegScoring(p), day))
+				.isEqualTo(expected);
+
+			assertThat(p.marginalUtilityOfMoney())
+				.isEqualTo(params.getScoringParameters(person).marginalUtilityOfMoney);
+
+			// Base parameters are shared
+			assertThat(p.base()).isSameAs(params.getPersonParameters(person).base());
+		}
+	}
+
+	@Test
+	void computedOnce() {
+
+		Scenario scenario = createScenario();
+		IndividualPersonScoringParameters params = new IndividualPersonScoringParameters(scenario);
+
+		Person person = scenario.getPopulation().getPersons().values().iterator().next();
+		IndividualPersonScoringParameters.PersonParameters p = params.getPersonParameters(person);
+		assertThat(p.deltas()).isNotNull();
+
+		String utilDelta = (String) person.getAttributes().getAttribute("utilDelta");
+
+		// Persons that have not been requested are not modified
+		assertThat(scenario.getPopulation().getPersons().values())
+			.filteredOn(o -> o != person)
+			.allMatch(o -> o.getAttributes().getAttribute("utilDelta") == null);
+
+		// Added after initialization, which requires a larger table
+		Person late = scenario.getPopulation().getFactory().createPerson(Id.createPersonId("late"));
+		PersonUtils.setIncome(late, 1000);
+
+		IndividualPersonScoringParameters.PersonParameters l = params.getPersonParameters(late);
+		assertThat(l.row()).isGreaterThanOrEqualTo(p.row());
+		assertThat(params.getPersonParameters(late).deltas()).isSameAs(l.deltas());
+
+		// Values of the first person are kept in the new table
+		IndividualPersonScoringParameters.PersonParameters again = params.getPersonParameters(person);
+		assertThat(again.marginalUtilityOfMoney()).isEqualTo(p.marginalUtilityOfMoney());
+		assertThat(again.deltas().getConstant(again.row(), 0)).isEqualTo(p.deltas().getConstant(p.row(), 0));
+		assertThat(person.getAttributes().getAttribute("utilDelta")).isEqualTo(utilDelta);
+	}
+}
@@ -0,0 +1,61 @@
+package org.matsim.run.scoring;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scoring.functions.ScoringParameters;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the events and legs of persons into new leg scoring functions, as done in each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LegScoringBenchmark {
+
+	private final List<List<Object>> days = new ArrayList<>();
+	private ScoringParameters params;
+	private ModeIndex modes;
+	private Set<String> ptModes;
+
+	@Setup
+	public void setup() {
+		Config config = ConfigUtils.createConfig();
+		params = PiecewiseLinearlLegScoringTest.createParams(config);
+		modes = ModeIndex.fromConfig(config);
+		ptModes = config.transit().getTransitModes();
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		for (int i = 0; i < 1000; i++) {
+			days.add(PiecewiseLinearlLegScoringTest.createDay(rnd, Id.createPersonId(i)));
+		}
+	}
+
+	@Benchmark
+	public double reference() {
+		double sum = 0;
+		for (List<Object> day : days) {
+			sum += PiecewiseLinearlLegScoringTest.replay(new ReferenceLegScoring(params, ptModes), day);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double indexed() {
+		double sum = 0;
+		for (List<Object> day : days) {
+			sum += PiecewiseLinearlLegScoringTest.replay(new PiecewiseLinearlLegScoring(params, modes), day);
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,215 @@
+package org.matsim.run.scoring;
+
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.ScoringConfigGroup;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.router.TripStructureUtils;
+import org.matsim.core.scoring.SumScoringFunction;
+import org.matsim.core.scoring.functions.ScoringParameters;
+import org.matsim.pt.PtConstants;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class PiecewiseLinearlLegScoringTest {
+
+	private static final List<String> MODES = List.of(TransportMode.car, TransportMode.bike, TransportMode.pt, TransportMode.walk, TransportMode.ride);
+
+	/**
+	 * Scoring parameters with distance groups for car and bike.
+	 */
+	static ScoringParameters createParams(Config config) {
+
+		for (String mode : MODES) {
+			ScoringConfigGroup.ModeParams m = config.scoring().getOrCreateModeParams(mode);
+			m.setConstant(-mode.length() * 0.3);
+			m.setMarginalUtilityOfTraveling(-mode.length() * 0.5);
+			m.setDailyUtilityConstant(-mode.length());
+		}
+
+		config.scoring().getOrCreateModeParams(TransportMode.car).setMonetaryDistanceRate(-0.0002);
+		config.scoring().getOrCreateModeParams(TransportMode.car).setDailyMonetaryConstant(-5);
+		config.scoring().getOrCreateModeParams(TransportMode.ride).setMarginalUtilityOfDistance(-0.0001);
+		config.scoring().getOrCreateModeParams(TransportMode.pt).setMonetaryDistanceRate(-0.0001);
+
+		ScoringParameters.Builder builder = new ScoringParameters.Builder(config.scoring(),
+			config.scoring().getScoringParameters(null), new TreeMap<>(), config.scenario());
+
+		DistanceGroup[] groups = IndividualPersonScoringParameters.calcDistanceGroups(List.of(1000, 5000, 10000), DoubleList.of(-0.5, -1, -3));
+		for (String mode : List.of(TransportMode.car, TransportMode.bike)) {
+			builder.setModeParameters(mode, new DistanceGroupModeUtilityParameters(builder.getModeParameters(mode), 0.3, -0.7, groups));
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Create a sequence of events and legs for one day of a person.
+	 */
+	static List<Object> createDay(SplittableRandom rnd, Id<Person> person) {
+
+		List<Object> day = new ArrayList<>();
+		Id<Link> link = Id.createLinkId("link");
+		Id<Vehicle> vehicle = Id.createVehicleId("veh");
+
+		double t = rnd.nextDouble(5, 9) * 3600;
+		int trips = rnd.nextInt(1, 6);
+		for (int i = 0; i < trips; i++) {
+
+			day.add(new ActivityEndEvent(t, person, link, null, "act", null));
+
+			String mode = MODES.get(rnd.nextInt(MODES.size()));
+			List<String> legs = mode.equals(TransportMode.pt) ?
+				List.of(rnd.nextBoolean() ? TransportMode.walk : TransportMode.transit_walk, TransportMode.pt, TransportMode.pt, TransportMode.walk) :
+				List.of(mode);
+
+			for (int j = 0; j < legs.size(); j++) {
+				if (j > 0)
+					day.add(new ActivityEndEvent(t, person, link, null, PtConstants.TRANSIT_ACTIVITY_TYPE, null));
+
+				String legMode = legs.get(j);
+				day.add(new PersonDepartureEvent(t, person, link, legMode, mode));
+				if (legMode.equals(TransportMode.pt))
+					day.add(new PersonEntersVehicleEvent(t + rnd.nextDouble(0, 600), person, vehicle));
+
+				double tt = rnd.nextDouble(60, 3600);
+				Leg leg = PopulationUtils.createLeg(legMode);
+				leg.setDepartureTime(t);
+				leg.setTravelTime(tt);
+
+				Route route = RouteUtils.createGenericRouteImpl(link, link);
+				route.setDistance(rnd.nextDouble(0, 30000));
+				leg.setRoute(route);
+
+				day.add(leg);
+				t += tt;
+			}
+
+			t += rnd.nextDouble(600, 7200);
+		}
+
+		return day;
+	}
+
+	static <T extends SumScoringFunction.LegScoring & SumScoringFunction.ArbitraryEventScoring> double replay(T scoring, List<Object> day) {
+		for (Object o : day) {
+			if (o instanceof Leg leg)
+				scoring.handleLeg(leg);
+			else
+				scoring.handleEvent((Event) o);
+		}
+
+		scoring.finish();
+		return scoring.getScore();
+	}
+
+	@Test
+	void parity() {
+
+		Config config = ConfigUtils.createConfig();
+		ScoringParameters params = createParams(config);
+		ModeIndex modes = ModeIndex.fromConfig(config);
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		for (int i = 0; i < 2000; i++) {
+
+			List<Object> day = createDay(rnd, Id.createPersonId(i));
+
+			double expected = replay(new ReferenceLegScoring(params, config.transit().getTransitModes()), day);
+
+			assertThat(replay(new PiecewiseLinearlLegScoring(params, modes), day))
+				.isEqualTo(expected);
+
+			assertThat(replay(new PiecewiseLinearlLegScoring(params, config.transit().getTransitModes()), day))
+				.isEqualTo(expected);
+		}
+	}
+
+	@Test
+	void unknownMode() {
+
+		Config config = ConfigUtils.createConfig();
+		ScoringParameters params = createParams(config);
+
+		PiecewiseLinearlLegScoring scoring = new PiecewiseLinearlLegScoring(params, new ModeIndex(List.of(), config.transit().getTransitModes()));
+
+		Leg leg = PopulationUtils.createLeg(TransportMode.ride);
+		leg.setDepartureTime(0);
+		leg.setTravelTime(600);
+		leg.setRoute(RouteUtils.createGenericRouteImpl(Id.createLinkId("a"), Id.createLinkId("b")));
+		leg.getRoute().setDistance(1000);
+
+		ReferenceLegScoring reference = new ReferenceLegScoring(params, config.transit().getTransitModes());
+
+		for (int i = 0; i < 2; i++) {
+			scoring.handleLeg(leg);
+			reference.handleLeg(leg);
+		}
+
+		assertThat(scoring.getScore()).isEqualTo(reference.getScore());
+	}
+
+	@Test
+	void tripsWithoutEvents() {
+
+		Config config = ConfigUtils.createConfig();
+
+		// Waiting times are not known without events
+		config.scoring().setMarginalUtlOfWaitingPt_utils_hr(-TransportMode.pt.length() * 0.5);
+		config.scoring().setUtilityOfLineSwitch(-0.7);
+
+		ScoringParameters params = createParams(config);
+		ModeIndex modes = ModeIndex.fromConfig(config);
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		for (int i = 0; i < 500; i++) {
+
+			List<Object> day = createDay(rnd, Id.createPersonId(i));
+			double expected = replay(new PiecewiseLinearlLegScoring(params, modes), day);
+
+			// Same day as plan elements, activities are created from the end events
+			List<PlanElement> elements = new ArrayList<>();
+			for (Object o : day) {
+				if (o instanceof ActivityEndEvent end)
+					elements.add(PopulationUtils.createActivityFromLinkId(end.getActType(), end.getLinkId()));
+				else if (o instanceof Leg leg)
+					elements.add(leg);
+			}
+			elements.add(PopulationUtils.createActivityFromLinkId("act", Id.createLinkId("link")));
+
+			PiecewiseLinearlLegScoring direct = new PiecewiseLinearlLegScoring(params, modes);
+			for (PlanElement el : elements) {
+				if (el instanceof Leg leg)
+					direct.handleLeg(leg);
+			}
+
+			for (TripStructureUtils.Trip trip : TripStructureUtils.getTrips(elements)) {
+				direct.handleTrip(trip);
+			}
+
+			direct.finish();
+			assertThat(direct.getScore()).isCloseTo(expected, within(1e-9));
+		}
+	}
+}
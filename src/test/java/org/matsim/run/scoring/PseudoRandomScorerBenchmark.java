@@ -0,0 +1,98 @@
+package org.matsim.run.scoring;
+
+import org.apache.commons.rng.core.source64.XoRoShiRo128PlusPlus;
+import org.apache.commons.rng.sampling.distribution.ZigguratSampler;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.TripStructureUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pseudo random error computation, which is performed for every trip of every agent in each iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PseudoRandomScorerBenchmark {
+
+	private static final List<String> MODES = List.of("car", "pt", "bike", "walk", "ride");
+	private static final List<String> ACTS = List.of("home", "work", "shop_daily", "leisure", "edu_prim");
+
+	@Param({"gumbel", "normal"})
+	private AdvancedScoringConfigGroup.VariationType distribution;
+
+	private PseudoRandomScorer scorer;
+	private PseudoRandomTripError error;
+
+	private final List<Id<Person>> persons = new ArrayList<>();
+	private final List<String> modes = new ArrayList<>();
+	private final List<TripStructureUtils.Trip> trips = new ArrayList<>();
+
+	private int i;
+
+	@Setup
+	public void setup() {
+		Config config = ConfigUtils.createConfig();
+		AdvancedScoringConfigGroup scoring = ConfigUtils.addOrGetModule(config, AdvancedScoringConfigGroup.class);
+		scoring.pseudoRamdomScale = 1;
+		scoring.pseudoRandomDistribution = distribution;
+
+		error = new DefaultPseudoRandomTripError();
+		scorer = new PseudoRandomScorer(error, config);
+
+		SplittableRandom rnd = new SplittableRandom(0);
+		for (int p = 0; p < 1000; p++) {
+
+			Plan plan = PopulationUtils.createPlan();
+			PopulationUtils.createAndAddActivityFromCoord(plan, "home", new Coord(0, 0)).setEndTime(8 * 3600);
+			for (int k = 0; k < 3; k++) {
+				String mode = MODES.get(rnd.nextInt(MODES.size()));
+				PopulationUtils.createAndAddLeg(plan, mode);
+				PopulationUtils.createAndAddActivityFromCoord(plan, ACTS.get(rnd.nextInt(ACTS.size())), new Coord(k, k)).setEndTime((9 + k) * 3600);
+			}
+
+			List<TripStructureUtils.Trip> planTrips = TripStructureUtils.getTrips(plan);
+			for (TripStructureUtils.Trip trip : planTrips) {
+				persons.add(Id.createPersonId("person_" + p));
+				modes.add(trip.getLegsOnly().get(0).getMode());
+				trips.add(trip);
+			}
+		}
+	}
+
+	@Benchmark
+	public double scoreTrip() {
+		int k = i++ % trips.size();
+		return scorer.scoreTrip(persons.get(k), modes.get(k), trips.get(k));
+	}
+
+	/**
+	 * Previous implementation, which creates and warms up a generator for every trip.
+	 */
+	@Benchmark
+	public double reference() {
+		int k = i++ % trips.size();
+		XoRoShiRo128PlusPlus rng = new XoRoShiRo128PlusPlus(0, error.getSeed(persons.get(k), modes.get(k), trips.get(k)));
+		for (int j = 0; j < 100; j++) {
+			rng.nextLong();
+		}
+
+		if (distribution == AdvancedScoringConfigGroup.VariationType.gumbel)
+			return -Math.log(-Math.log(rng.nextDouble()));
+
+		return ZigguratSampler.NormalizedGaussian.of(rng).sample();
+	}
+}
@@ -0,0 +1,116 @@
+package org.matsim.run.scoring;
+
+import org.apache.commons.math3.distribution.GumbelDistribution;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.distribution.RealDistribution;
+import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
+import org.apache.commons.math3.stat.inference.KolmogorovSmirnovTest;
+import org.apache.commons.rng.core.source64.XoRoShiRo128PlusPlus;
+import org.apache.commons.rng.sampling.distribution.ZigguratSampler;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.router.TripStructureUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PseudoRandomScorerTest {
+
+	private static final List<String> MODES = List.of("car", "pt", "bike", "walk", "ride");
+	private static final int PERSONS = 5000;
+
+	@ParameterizedTest
+	@EnumSource(value = AdvancedScoringConfigGroup.VariationType.class, names = {"gumbel", "normal"})
+	void sameDistribution(AdvancedScoringConfigGroup.VariationType distribution) {
+
+		Config config = ConfigUtils.createConfig();
+		AdvancedScoringConfigGroup scoring = ConfigUtils.addOrGetModule(config, AdvancedScoringConfigGroup.class);
+		scoring.pseudoRamdomScale = 1;
+		scoring.pseudoRandomDistribution = distribution;
+
+		DefaultPseudoRandomTripError error = new DefaultPseudoRandomTripError();
+		PseudoRandomScorer scorer = new PseudoRandomScorer(error, config);
+
+		// Trips starting at different activity types
+		Plan plan = PopulationUtils.createPlan();
+		for (String act : List.of("home", "work", "shop_daily", "leisure", "home")) {
+			if (!plan.getPlanElements().isEmpty())
+				PopulationUtils.createAndAddLeg(plan, "car");
+			PopulationUtils.createAndAddActivityFromCoord(plan, act, new Coord(0, 0));
+		}
+
+		List<TripStructureUtils.Trip> trips = TripStructureUtils.getTrips(plan);
+
+		int n = PERSONS * MODES.size() * trips.size();
+		double[] actual = new double[n];
+		double[] expected = new double[n];
+
+		long seed = referenceSeed(config);
+
+		int i = 0;
+		for (int p = 0; p < PERSONS; p++) {
+			Id<Person> id = Id.createPersonId("person_" + p);
+			for (String mode : MODES) {
+				for (TripStructureUtils.Trip trip : trips) {
+					actual[i] = scorer.scoreTrip(id, mode, trip);
+					expected[i] = referenceScore(seed, error.getSeed(id, mode, trip), distribution);
+					i++;
+				}
+			}
+		}
+
+		// Errors are frozen
+		assertThat(scorer.scoreTrip(Id.createPersonId("person_0"), "car", trips.get(0)))
+			.isEqualTo(actual[0]);
+
+		RealDistribution dist = distribution == AdvancedScoringConfigGroup.VariationType.gumbel ?
+			new GumbelDistribution(null, 0, 1) : new NormalDistribution(null, 0, 1);
+
+		KolmogorovSmirnovTest ks = new KolmogorovSmirnovTest();
+
+		// Critical values at 0.1% significance are about 0.0062 and 0.0087
+		assertThat(ks.kolmogorovSmirnovStatistic(dist, actual)).isLessThan(0.0062);
+		assertThat(ks.kolmogorovSmirnovStatistic(actual, expected)).isLessThan(0.0087);
+
+		// Errors of the same person and different modes or activities must be uncorrelated
+		double[] a = Arrays.copyOfRange(actual, 0, n - 1);
+		double[] b = Arrays.copyOfRange(actual, 1, n);
+		assertThat(Math.abs(new PearsonsCorrelation().correlation(a, b))).isLessThan(0.02);
+	}
+
+	/**
+	 * Seed derivation of the scorer.
+	 */
+	private static long referenceSeed(Config config) {
+		SplittableRandom rnd = new SplittableRandom(config.global().getRandomSeed());
+		for (int i = 0; i < 100; i++) {
+			rnd.nextDouble();
+		}
+		return rnd.nextLong();
+	}
+
+	/**
+	 * Previous implementation with a seeded generator per trip.
+	 */
+	private static double referenceScore(long seed, long tripSeed, AdvancedScoringConfigGroup.VariationType distribution) {
+		XoRoShiRo128PlusPlus rng = new XoRoShiRo128PlusPlus(seed, tripSeed);
+		for (int i = 0; i < 100; i++) {
+			rng.nextLong();
+		}
+
+		if (distribution == AdvancedScoringConfigGroup.VariationType.gumbel)
+			return -Math.log(-Math.log(rng.nextDouble()));
+
+		return ZigguratSampler.NormalizedGaussian.of(rng).sample();
+	}
+}